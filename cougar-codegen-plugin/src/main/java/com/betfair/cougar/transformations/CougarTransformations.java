@@ -86,6 +86,8 @@ public class CougarTransformations implements Transformations{
                 new Transformation("dataType.ftl", "/interface/dataType", "${package}/${majorVersion}/to", "${name}.java", true, false, OutputDomain.Client_and_Server),
                 new Transformation("dataTypeBuilder.ftl", "/interface/dataType", "${package}/${majorVersion}/to", "${name}Builder.java", true, false, OutputDomain.Client_and_Server),
                 new Transformation("dataTypeDelegate.ftl", "/interface/dataType", "${package}/${majorVersion}/to", "${name}Delegate.java", false, false, OutputDomain.Client_and_Server),
+                new Transformation("dataTypeJsonCodec.ftl", "/interface/dataType", "${package}/${majorVersion}/to", "${name}JsonCodec.java", true, false, OutputDomain.Client_and_Server),
+                new Transformation("dataTypeBinaryCodec.ftl", "/interface/dataType", "${package}/${majorVersion}/to", "${name}BinaryCodec.java", true, false, OutputDomain.Client_and_Server),
                 new Transformation("events/event.ftl", "/interface/event", "${package}/${majorVersion}/events", "${name}.java", true, false, OutputDomain.Client_and_Server),
                 new Transformation("events/jmsServiceBindingDescriptor.ftl", "/interface", "${package}/${majorVersion}/events", "${name}JMSServiceBindingDescriptor.java", true, false, OutputDomain.Client_and_Server),
 
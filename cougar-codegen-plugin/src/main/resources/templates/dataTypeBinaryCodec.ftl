@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+<#include "common.ftl"><#t>
+<#include "interfaceParser.ftl"><#t>
+<#assign dataTypeName = doc.@name><#t>
+<#assign dataType=parseDataType(doc, interface)><#t>
+<#-- java types with a specialised read/write, anything else goes through readValue/writeValue --><#t>
+<#assign typedAccessors = {"Boolean":"Boolean", "Byte":"Byte", "Integer":"Int", "Long":"Long", "Float":"Float", "Double":"Double", "Date":"Date", "String":"String", "byte[]":"Bytes"}><#t>
+<#function accessor param><#t>
+    <#if param.isEnumType><#return "Enum"></#if><#t>
+    <#if param.paramType.componentTypes?size == 0 && typedAccessors[param.paramType.javaType]??><#return typedAccessors[param.paramType.javaType]></#if><#t>
+    <#return ""><#t>
+</#function><#t>
+// Generated from dataTypeBinaryCodec.ftl
+package ${package}.${majorVersion}.to;
+
+import java.io.IOException;
+import java.util.*;
+import com.betfair.cougar.core.api.transcription.BinaryCodec;
+import com.betfair.cougar.core.api.transcription.BinaryCodecInput;
+import com.betfair.cougar.core.api.transcription.BinaryCodecOutput;
+import com.betfair.cougar.core.api.transcription.Parameter;
+import ${package}.${majorVersion}.enumerations.*;
+
+/**
+ * Binary codec for ${dataTypeName}, used by the socket transport in place of hessian field by field transcription.
+ */
+@SuppressWarnings("all")
+public class ${dataTypeName}BinaryCodec implements BinaryCodec<${dataTypeName}> {
+
+    @Override
+    public Parameter[] getParameters() {
+        return ${dataTypeName}.PARAMETERS;
+    }
+
+    @Override
+    public void write(${dataTypeName} value, BinaryCodecOutput out) throws IOException {
+<#list dataType.params as param>
+    <#assign acc = accessor(param)>
+    <#if acc != "">
+        out.write${acc}(value.get${param.paramName?cap_first}());
+    <#else>
+        out.writeValue(value.get${param.paramName?cap_first}(), ${dataTypeName}.PARAMETERS[${param_index}].getParameterType());
+    </#if>
+</#list>
+    }
+
+    @Override
+    public ${dataTypeName} read(BinaryCodecInput in) throws IOException {
+        ${dataTypeName} bean = new ${dataTypeName}();
+<#list dataType.params as param>
+    <#assign acc = accessor(param)>
+    <#if param.isEnumType>
+        // enums are set from their names, so that unrecognised values are handled as for any other transport
+        bean.setRaw${param.paramName?cap_first}Value(in.readString());
+    <#elseif acc != "">
+        bean.set${param.paramName?cap_first}(in.read${acc}());
+    <#else>
+        bean.set${param.paramName?cap_first}((<@createTypeDecl param.paramType/>) in.readValue(${dataTypeName}.PARAMETERS[${param_index}].getParameterType()));
+    </#if>
+</#list>
+        return bean;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+<#include "common.ftl"><#t>
+<#include "interfaceParser.ftl"><#t>
+<#assign dataTypeName = doc.@name><#t>
+<#assign dataType=parseDataType(doc, interface)><#t>
+<#--
+  Jackson derives the json name of a non-enum parameter from its getter, lower casing the leading run of
+  upper case characters, so we do the same here to stay wire compatible with bean introspection.
+--><#t>
+<#function jsonName param><#t>
+    <#if param.isEnumType><#return param.paramName></#if><#t>
+    <#local capped = param.paramName?cap_first><#t>
+    <#local prefix = ""><#t>
+    <#list 0..(capped?length - 1) as i><#t>
+        <#local c = capped?substring(i, i + 1)><#t>
+        <#if c == c?lower_case><#break></#if><#t>
+        <#local prefix = prefix + c?lower_case><#t>
+    </#list><#t>
+    <#return prefix + capped?substring(prefix?length)><#t>
+</#function><#t>
+<#function isString param><#t>
+    <#return !param.isEnumType && param.paramType.javaType == "String" && param.paramType.componentTypes?size == 0><#t>
+</#function><#t>
+// Generated from dataTypeJsonCodec.ftl
+package ${package}.${majorVersion}.to;
+
+import java.io.IOException;
+import java.util.*;
+import com.betfair.cougar.core.api.transcription.JsonCodec;
+import com.betfair.cougar.core.api.transcription.JsonCodecSupport;
+import ${package}.${majorVersion}.enumerations.*;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.ResolvableDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Reflection free json serializer and deserializer for ${dataTypeName}.
+ */
+@SuppressWarnings("all")
+public class ${dataTypeName}JsonCodec implements JsonCodec<${dataTypeName}> {
+
+    @Override
+    public JsonSerializer<${dataTypeName}> createSerializer() {
+        return new Serializer();
+    }
+
+    @Override
+    public JsonDeserializer<${dataTypeName}> createDeserializer() {
+        return new Deserializer();
+    }
+
+    private static class Serializer extends StdSerializer<${dataTypeName}> implements ResolvableSerializer {
+<#list dataType.params as param>
+    <#if !param.isEnumType && !isString(param)>
+        private JsonSerializer<Object> __${param.paramName}Serializer;
+    </#if>
+</#list>
+
+        Serializer() {
+            super(${dataTypeName}.class);
+        }
+
+        @Override
+        public void resolve(SerializerProvider provider) throws JsonMappingException {
+<#list dataType.params as param>
+    <#if !param.isEnumType && !isString(param)>
+            __${param.paramName}Serializer = provider.findValueSerializer(JsonCodecSupport.javaType(provider.getTypeFactory(), ${dataTypeName}.PARAMETERS[${param_index}].getParameterType()), null);
+    </#if>
+</#list>
+        }
+
+        @Override
+        public void serialize(${dataTypeName} value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+            jgen.writeStartObject();
+<#list dataType.params as param>
+    <#if param.isEnumType>
+            String __${param.paramName} = value.getRaw${param.paramName?cap_first}Value();
+            if (__${param.paramName} != null) {
+                jgen.writeStringField("${jsonName(param)}", __${param.paramName});
+            }
+    <#elseif isString(param)>
+            String __${param.paramName} = value.get${param.paramName?cap_first}();
+            if (__${param.paramName} != null) {
+                jgen.writeStringField("${jsonName(param)}", __${param.paramName});
+            }
+    <#else>
+            Object __${param.paramName} = value.get${param.paramName?cap_first}();
+            if (__${param.paramName} != null) {
+                jgen.writeFieldName("${jsonName(param)}");
+                __${param.paramName}Serializer.serialize(__${param.paramName}, jgen, provider);
+            }
+    </#if>
+</#list>
+            jgen.writeEndObject();
+        }
+    }
+
+    private static class Deserializer extends StdDeserializer<${dataTypeName}> implements ResolvableDeserializer {
+<#list dataType.params as param>
+    <#if !param.isEnumType && !isString(param)>
+        private JsonDeserializer<Object> __${param.paramName}Deserializer;
+    </#if>
+</#list>
+
+        Deserializer() {
+            super(${dataTypeName}.class);
+        }
+
+        @Override
+        public void resolve(DeserializationContext ctxt) throws JsonMappingException {
+<#list dataType.params as param>
+    <#if !param.isEnumType && !isString(param)>
+            __${param.paramName}Deserializer = ctxt.findRootValueDeserializer(JsonCodecSupport.javaType(ctxt.getTypeFactory(), ${dataTypeName}.PARAMETERS[${param_index}].getParameterType()));
+    </#if>
+</#list>
+        }
+
+        @Override
+        public ${dataTypeName} deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException {
+            ${dataTypeName} bean = new ${dataTypeName}();
+            for (JsonToken t = JsonCodecSupport.startObject(jp, ctxt, ${dataTypeName}.class); t == JsonToken.FIELD_NAME; t = jp.nextToken()) {
+                String field = jp.getCurrentName();
+                jp.nextToken();
+                try {
+                    switch (field) {
+<#list dataType.params as param>
+                        case "${jsonName(param)}":
+    <#if param.isEnumType>
+                            bean.setRaw${param.paramName?cap_first}Value(JsonCodecSupport.readString(jp, ctxt));
+    <#elseif isString(param)>
+                            bean.set${param.paramName?cap_first}(JsonCodecSupport.readString(jp, ctxt));
+    <#else>
+                            bean.set${param.paramName?cap_first}((<@createTypeDecl param.paramType/>) JsonCodecSupport.readValue(__${param.paramName}Deserializer, jp, ctxt));
+    </#if>
+                            break;
+</#list>
+                        default:
+                            // data types ignore unknown properties
+                            jp.skipChildren();
+                    }
+                }
+                catch (Exception e) {
+                    JsonCodecSupport.wrapAndThrow(e, bean, field, ctxt);
+                }
+            }
+            return bean;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+#!/bin/bash
+# Copyright 2015, Simon Matić Langford
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+
+# Runs the benchmarks (all of them, or those matching the regexp passed) and writes the results to
+# baseline/<name>.json, where name defaults to the current git revision.
+#
+# usage: runBenchmarks.sh [name] [benchmark regexp]
+
+RUN_DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+NAME=${1:-`git -C $RUN_DIR rev-parse --short HEAD`}
+PATTERN=${2:-.*}
+
+if [ ! -f $RUN_DIR/target/benchmarks.jar ]; then
+    echo "Building benchmarks"
+    (cd $RUN_DIR && mvn -q package -DskipTests) || exit 1
+fi
+
+mkdir -p $RUN_DIR/baseline
+# the gc profiler adds gc.alloc.rate.norm (bytes allocated per op) to each result
+java -jar $RUN_DIR/target/benchmarks.jar "$PATTERN" -prof gc -rf json -rff $RUN_DIR/baseline/$NAME.json
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.benchmarks;
+
+import org.apache.mina.common.IoSession;
+import org.apache.mina.common.TransportType;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Just enough of an IoSession for the codecs to run outside of MINA: attributes are kept in a map, and the last
+ * message written is retained so it can be fed to the encoder.
+ */
+public class BenchmarkIoSession implements InvocationHandler {
+
+    private final Map<String, Object> attributes = new HashMap<>();
+    private Object lastWritten;
+
+    public IoSession getSession() {
+        return (IoSession) Proxy.newProxyInstance(IoSession.class.getClassLoader(), new Class[] { IoSession.class }, this);
+    }
+
+    public Object takeLastWritten() {
+        Object ret = lastWritten;
+        lastWritten = null;
+        return ret;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        switch (name) {
+            case "getAttribute":
+                return attributes.get((String) args[0]);
+            case "setAttribute":
+                return attributes.put((String) args[0], args.length > 1 ? args[1] : Boolean.TRUE);
+            case "removeAttribute":
+                return attributes.remove((String) args[0]);
+            case "containsAttribute":
+                return attributes.containsKey((String) args[0]);
+            case "getTransportType":
+                return TransportType.SOCKET;
+            case "write":
+                lastWritten = args[0];
+                return null;
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "BenchmarkIoSession";
+        }
+        Class<?> returnType = method.getReturnType();
+        if (returnType == boolean.class) {
+            return false;
+        }
+        if (returnType == int.class) {
+            return 0;
+        }
+        if (returnType == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.benchmarks;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Representative response body, roughly the shape of a small generated IDD data type, shared by the marshalling
+ * and transcription benchmarks.
+ */
+@XmlRootElement(name = "BenchmarkPayload")
+public class BenchmarkPayload implements Serializable {
+
+    private long id;
+    private String market;
+    private double price;
+    private double size;
+    private boolean persistent;
+    private List<String> tags = new ArrayList<>();
+
+    public static BenchmarkPayload create(int numTags) {
+        BenchmarkPayload ret = new BenchmarkPayload();
+        ret.setId(1234567890L);
+        ret.setMarket("1.23456789");
+        ret.setPrice(2.02);
+        ret.setSize(150.5);
+        ret.setPersistent(true);
+        for (int i=0; i<numTags; i++) {
+            ret.getTags().add("tag-" + i);
+        }
+        return ret;
+    }
+
+    @XmlElement
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    @XmlElement
+    public String getMarket() {
+        return market;
+    }
+
+    public void setMarket(String market) {
+        this.market = market;
+    }
+
+    @XmlElement
+    public double getPrice() {
+        return price;
+    }
+
+    public void setPrice(double price) {
+        this.price = price;
+    }
+
+    @XmlElement
+    public double getSize() {
+        return size;
+    }
+
+    public void setSize(double size) {
+        this.size = size;
+    }
+
+    @XmlElement
+    public boolean isPersistent() {
+        return persistent;
+    }
+
+    public void setPersistent(boolean persistent) {
+        this.persistent = persistent;
+    }
+
+    @XmlElementWrapper(name = "tags")
+    @XmlElement(name = "String")
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.benchmarks;
+
+import com.betfair.cougar.netutil.nio.CougarProtocol;
+import com.betfair.cougar.netutil.nio.hessian.HessianObjectIOFactory;
+import com.betfair.cougar.transport.api.protocol.CougarObjectOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transcription of a generated-style data type over the socket protocol: field by field hessian transcription on the
+ * last protocol version without binary codecs, against the generated binary codec. The encoded size of each message
+ * is printed at setup, as bytes per message is as much the point of the codecs as time per op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BinaryCodecBenchmark {
+
+    @Param({"5", "6"})
+    public byte protocolVersion;
+
+    @Param({"1", "100"})
+    public int tags;
+
+    private HessianObjectIOFactory ioFactory;
+    private TranscribablePayload payload;
+    private byte[] object;
+    private ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+
+    @Setup
+    public void setup() throws IOException {
+        ioFactory = new HessianObjectIOFactory(false);
+        payload = TranscribablePayload.create(tags);
+        object = writeObject();
+        System.out.println(String.format("%n%s: protocol version %d (%s), %d tags: %d bytes per message",
+                getClass().getSimpleName(), protocolVersion,
+                protocolVersion >= CougarProtocol.TRANSPORT_PROTOCOL_VERSION_BINARY_CODECS ? "binary codec" : "hessian",
+                tags, object.length));
+    }
+
+    @Benchmark
+    public byte[] writeObject() throws IOException {
+        out.reset();
+        CougarObjectOutput cos = ioFactory.newCougarObjectOutput(out, protocolVersion);
+        cos.writeObject(payload);
+        cos.flush();
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Object readObject() throws Exception {
+        return ioFactory.newCougarObjectInput(new ByteArrayInputStream(object), protocolVersion).readObject();
+    }
+}
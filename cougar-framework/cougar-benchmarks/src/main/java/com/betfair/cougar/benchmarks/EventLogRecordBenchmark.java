@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.benchmarks;
+
+import com.betfair.cougar.api.LoggableEvent;
+import com.betfair.cougar.logging.records.EventLogRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering of an event log line, with fields resembling a request log entry plus a couple of extension fields.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class EventLogRecordBenchmark {
+
+    private LoggableEvent event;
+    private Object[] extensionFields;
+
+    @Setup
+    public void setup() {
+        final Object[] fields = new Object[] {
+                new Date(),
+                "0a0b0c0d-00000001-00001234",
+                "Baseline",
+                "v2.8",
+                "testSimpleGet",
+                "10.20.30.40",
+                "GBR",
+                Boolean.TRUE,
+                12345L,
+                "RESCRIPT",
+                Arrays.asList("user1", "app,2", "client\t3")
+        };
+        event = new LoggableEvent() {
+            @Override
+            public Object[] getFieldsToLog() {
+                return fields;
+            }
+
+            @Override
+            public String getLogName() {
+                return "REQUEST-LOG";
+            }
+        };
+        extensionFields = new Object[] { "extension", 42 };
+    }
+
+    @Benchmark
+    public String render() {
+        return new EventLogRecord(event, extensionFields).getMessage();
+    }
+}
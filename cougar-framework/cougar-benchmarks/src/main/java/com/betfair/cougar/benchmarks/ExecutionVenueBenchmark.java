@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.benchmarks;
+
+import com.betfair.cougar.api.ExecutionContext;
+import com.betfair.cougar.api.ExecutionContextImpl;
+import com.betfair.cougar.core.api.ServiceVersion;
+import com.betfair.cougar.core.api.ev.Executable;
+import com.betfair.cougar.core.api.ev.ExecutionObserver;
+import com.betfair.cougar.core.api.ev.ExecutionPostProcessor;
+import com.betfair.cougar.core.api.ev.ExecutionPreProcessor;
+import com.betfair.cougar.core.api.ev.ExecutionRequirement;
+import com.betfair.cougar.core.api.ev.ExecutionResult;
+import com.betfair.cougar.core.api.ev.ExecutionTimingRecorder;
+import com.betfair.cougar.core.api.ev.ExecutionVenue;
+import com.betfair.cougar.core.api.ev.InterceptorResult;
+import com.betfair.cougar.core.api.ev.InterceptorState;
+import com.betfair.cougar.core.api.ev.OperationKey;
+import com.betfair.cougar.core.api.ev.SimpleOperationDefinition;
+import com.betfair.cougar.core.api.ev.TimeConstraints;
+import com.betfair.cougar.core.api.transcription.Parameter;
+import com.betfair.cougar.core.api.transcription.ParameterType;
+import com.betfair.cougar.core.impl.DefaultTimeConstraints;
+import com.betfair.cougar.core.impl.ev.BaseExecutionVenue;
+import com.betfair.cougar.core.impl.ev.HashedWheelExpiryScheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synchronous dispatch through BaseExecutionVenue.execute, with and without pre/post processors, both with and
+ * without an execution deadline (and so an expiry timer) per call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ExecutionVenueBenchmark {
+
+    private static final OperationKey KEY = new OperationKey(new ServiceVersion("v1.0"), "Benchmark", "echo");
+    private static final InterceptorResult CONTINUE = new InterceptorResult(InterceptorState.CONTINUE);
+
+    @Param({"0", "3"})
+    public int interceptors;
+
+    @Param({"0", "1000"})
+    public long maxExecutionTime;
+
+    private BaseExecutionVenue ev;
+    private ExecutionContext ctx = new ExecutionContextImpl();
+    private Object[] args = new Object[] { "hello" };
+    private TimeConstraints timeConstraints = DefaultTimeConstraints.NO_CONSTRAINTS;
+    private Object lastResult;
+
+    private final ExecutionObserver observer = new ExecutionObserver() {
+        @Override
+        public void onResult(ExecutionResult executionResult) {
+            lastResult = executionResult.getResult();
+        }
+    };
+
+    @Setup
+    public void setup() {
+        ev = new BaseExecutionVenue();
+        List<ExecutionPreProcessor> pre = new ArrayList<>();
+        List<ExecutionPostProcessor> post = new ArrayList<>();
+        for (int i=0; i<interceptors; i++) {
+            pre.add(new ContinuingPreProcessor("pre" + i));
+            post.add(new ContinuingPostProcessor("post" + i));
+        }
+        // must be set before registration since that's when the interceptors are bound
+        ev.setPreProcessors(pre);
+        ev.setPostProcessors(post);
+        HashedWheelExpiryScheduler expiryScheduler = new HashedWheelExpiryScheduler();
+        expiryScheduler.start();
+        ev.setExpiryScheduler(expiryScheduler);
+
+        SimpleOperationDefinition def = new SimpleOperationDefinition(KEY,
+                new Parameter[] { new Parameter("message", new ParameterType(String.class, null), true) },
+                new ParameterType(String.class, null));
+        ev.registerOperation(null, def, new EchoExecutable(), new NullTimingRecorder(), maxExecutionTime);
+    }
+
+    @Benchmark
+    public Object execute() {
+        ev.execute(ctx, KEY, args, observer, timeConstraints);
+        return lastResult;
+    }
+
+    private static class EchoExecutable implements Executable {
+        @Override
+        public void execute(ExecutionContext ctx, OperationKey key, Object[] args, ExecutionObserver observer, ExecutionVenue executionVenue, TimeConstraints timeConstraints) {
+            observer.onResult(new ExecutionResult(args[0]));
+        }
+    }
+
+    private static class ContinuingPreProcessor implements ExecutionPreProcessor {
+        private final String name;
+
+        private ContinuingPreProcessor(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public ExecutionRequirement getExecutionRequirement() {
+            return ExecutionRequirement.EXACTLY_ONCE;
+        }
+
+        @Override
+        public InterceptorResult invoke(ExecutionContext ctx, OperationKey key, Object[] args) {
+            return CONTINUE;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+    private static class ContinuingPostProcessor implements ExecutionPostProcessor {
+        private final String name;
+
+        private ContinuingPostProcessor(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public InterceptorResult invoke(ExecutionContext ctx, OperationKey key, Object[] args, ExecutionResult result) {
+            return CONTINUE;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+    private static class NullTimingRecorder implements ExecutionTimingRecorder {
+        @Override
+        public void recordCall(double timeTakenMs) {
+        }
+
+        @Override
+        public void recordFailure(double timeTakenMs) {
+        }
+    }
+}
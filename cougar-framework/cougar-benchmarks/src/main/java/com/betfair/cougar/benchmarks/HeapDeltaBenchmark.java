@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.benchmarks;
+
+import com.betfair.cougar.netutil.nio.CougarProtocol;
+import com.betfair.cougar.netutil.nio.HeapDelta;
+import com.betfair.cougar.netutil.nio.connected.InstallField;
+import com.betfair.cougar.netutil.nio.connected.InstallRoot;
+import com.betfair.cougar.netutil.nio.connected.SetScalar;
+import com.betfair.cougar.netutil.nio.connected.Update;
+import com.betfair.cougar.netutil.nio.connected.UpdateAction;
+import com.betfair.cougar.netutil.nio.hessian.HessianObjectIOFactory;
+import com.betfair.cougar.netutil.nio.message.EventMessage;
+import com.betfair.platform.virtualheap.NodeType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialisation of connected object heap deltas, as done by the server push path, and deserialisation as done by
+ * the client.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class HeapDeltaBenchmark {
+
+    /**
+     * Number of scalar fields updated in the delta.
+     */
+    @Param({"1", "100"})
+    public int fields;
+
+    /**
+     * Transcribed actions (6) vs compactly encoded updates (7).
+     */
+    @Param({"6", "7"})
+    public byte protocolVersion;
+
+    private HessianObjectIOFactory ioFactory;
+    private HeapDelta delta;
+    private byte[] serialised;
+
+    @Setup
+    public void setup() throws IOException {
+        ioFactory = new HessianObjectIOFactory(false);
+
+        List<UpdateAction> actions = new ArrayList<>();
+        actions.add(new InstallRoot(0, NodeType.OBJECT));
+        for (int i=1; i<=fields; i++) {
+            actions.add(new InstallField(0, i, "field" + i, NodeType.SCALAR));
+            actions.add(new SetScalar(i, i * 1.5d));
+        }
+        Update update = new Update();
+        update.setActions(actions);
+        List<Update> updates = new ArrayList<>();
+        updates.add(update);
+        delta = new HeapDelta(1L, 1L, updates);
+
+        serialised = serialise().getPayload();
+        System.out.println(String.format("%n%s: protocol version %d (%s), %d fields: %d bytes per delta",
+                getClass().getSimpleName(), protocolVersion,
+                protocolVersion >= CougarProtocol.TRANSPORT_PROTOCOL_VERSION_COMPACT_HEAP_UPDATES ? "compact" : "transcribed",
+                fields, serialised.length));
+    }
+
+    @Benchmark
+    public EventMessage serialise() throws IOException {
+        return EventMessage.serialise(delta, ioFactory, protocolVersion);
+    }
+
+    @Benchmark
+    public Object deserialise() throws Exception {
+        return ioFactory.newCougarObjectInput(new ByteArrayInputStream(serialised), protocolVersion).readObject();
+    }
+}
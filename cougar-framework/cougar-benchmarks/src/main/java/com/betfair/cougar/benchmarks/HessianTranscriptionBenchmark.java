@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.benchmarks;
+
+import com.betfair.cougar.core.api.transcription.ParameterType;
+import com.betfair.cougar.netutil.nio.CougarProtocol;
+import com.betfair.cougar.netutil.nio.hessian.HessianObjectIOFactory;
+import com.betfair.cougar.netutil.nio.marshalling.SocketRMIMarshaller;
+import com.betfair.cougar.transport.api.protocol.CougarObjectOutput;
+import com.betfair.cougar.transport.api.protocol.socket.InvocationResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary protocol transcription: Hessian via HessianObjectIOFactory, both raw and through the SocketRMIMarshaller
+ * response path used by the socket transport.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class HessianTranscriptionBenchmark {
+
+    @Param({"1", "100"})
+    public int tags;
+
+    private final byte protocolVersion = CougarProtocol.TRANSPORT_PROTOCOL_VERSION_MAX_SUPPORTED;
+    private final ParameterType resultType = new ParameterType(BenchmarkPayload.class, null);
+
+    private HessianObjectIOFactory ioFactory;
+    private SocketRMIMarshaller marshaller;
+    private BenchmarkPayload payload;
+    private byte[] object;
+    private byte[] response;
+    private ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+
+    @Setup
+    public void setup() throws IOException {
+        ioFactory = new HessianObjectIOFactory(false);
+        marshaller = new SocketRMIMarshaller();
+        payload = BenchmarkPayload.create(tags);
+        object = writeObject();
+        response = writeResponse();
+    }
+
+    @Benchmark
+    public byte[] writeObject() throws IOException {
+        out.reset();
+        CougarObjectOutput cos = ioFactory.newCougarObjectOutput(out, protocolVersion);
+        cos.writeObject(payload);
+        cos.flush();
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Object readObject() throws Exception {
+        return ioFactory.newCougarObjectInput(new ByteArrayInputStream(object), protocolVersion).readObject();
+    }
+
+    @Benchmark
+    public byte[] writeResponse() throws IOException {
+        out.reset();
+        CougarObjectOutput cos = ioFactory.newCougarObjectOutput(out, protocolVersion);
+        marshaller.writeInvocationResponse(new SocketRMIMarshaller.InvocationResponseImpl(payload), cos, protocolVersion);
+        cos.flush();
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public InvocationResponse readResponse() throws IOException {
+        return marshaller.readInvocationResponse(resultType, ioFactory.newCougarObjectInput(new ByteArrayInputStream(response), protocolVersion));
+    }
+}
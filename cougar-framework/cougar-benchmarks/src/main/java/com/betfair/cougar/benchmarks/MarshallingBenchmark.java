@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.benchmarks;
+
+import com.betfair.cougar.marshalling.api.databinding.Marshaller;
+import com.betfair.cougar.marshalling.api.databinding.UnMarshaller;
+import com.betfair.cougar.marshalling.impl.databinding.json.JSONBindingFactory;
+import com.betfair.cougar.marshalling.impl.databinding.xml.JdkEmbeddedXercesSchemaValidationFailureParser;
+import com.betfair.cougar.marshalling.impl.databinding.xml.XMLDataBindingFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rescript body marshalling: JSONMarshaller/JSONUnMarshaller and XMLMarshaller/XMLUnMarshaller as configured by
+ * their binding factories.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MarshallingBenchmark {
+
+    @Param({"1", "100"})
+    public int tags;
+
+    private Marshaller jsonMarshaller;
+    private UnMarshaller jsonUnMarshaller;
+    private Marshaller xmlMarshaller;
+    private UnMarshaller xmlUnMarshaller;
+
+    private BenchmarkPayload payload;
+    private byte[] json;
+    private byte[] xml;
+    private ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+
+    @Setup
+    public void setup() {
+        JSONBindingFactory jsonFactory = new JSONBindingFactory();
+        jsonMarshaller = jsonFactory.getMarshaller();
+        jsonUnMarshaller = jsonFactory.getUnMarshaller();
+        XMLDataBindingFactory xmlFactory = new XMLDataBindingFactory(new JdkEmbeddedXercesSchemaValidationFailureParser());
+        xmlMarshaller = xmlFactory.getMarshaller();
+        xmlUnMarshaller = xmlFactory.getUnMarshaller();
+
+        payload = BenchmarkPayload.create(tags);
+        json = marshall(jsonMarshaller);
+        xml = marshall(xmlMarshaller);
+    }
+
+    private byte[] marshall(Marshaller marshaller) {
+        out.reset();
+        marshaller.marshall(out, payload, "utf-8", false);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] jsonMarshall() {
+        return marshall(jsonMarshaller);
+    }
+
+    @Benchmark
+    public Object jsonUnMarshall() {
+        return jsonUnMarshaller.unmarshall(new ByteArrayInputStream(json), BenchmarkPayload.class, "utf-8", false);
+    }
+
+    @Benchmark
+    public byte[] xmlMarshall() {
+        return marshall(xmlMarshaller);
+    }
+
+    @Benchmark
+    public Object xmlUnMarshall() {
+        return xmlUnMarshaller.unmarshall(new ByteArrayInputStream(xml), BenchmarkPayload.class, "utf-8", false);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.benchmarks;
+
+import com.betfair.cougar.netutil.nio.CougarProtocol;
+import com.betfair.cougar.netutil.nio.CougarProtocolDecoder;
+import com.betfair.cougar.netutil.nio.CougarProtocolEncoder;
+import com.betfair.cougar.netutil.nio.FramedResponseOutputStream;
+import com.betfair.cougar.netutil.nio.NioLogger;
+import com.betfair.cougar.netutil.nio.message.ResponseMessage;
+import org.apache.mina.common.ByteBuffer;
+import org.apache.mina.common.IoSession;
+import org.apache.mina.common.WriteFuture;
+import org.apache.mina.filter.codec.ProtocolDecoderOutput;
+import org.apache.mina.filter.codec.ProtocolEncoderOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Socket protocol framing of RPC responses through CougarProtocolEncoder and CougarProtocolDecoder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ProtocolFramingBenchmark {
+
+    @Param({"128", "4096", "65536"})
+    public int payloadSize;
+
+    private CougarProtocolEncoder encoder;
+    private CougarProtocolDecoder decoder;
+    private BenchmarkIoSession sessionHandler;
+    private IoSession session;
+    private byte[] payload;
+    private ByteBuffer frame;
+
+    private final ProtocolEncoderOutput encoderOutput = new ProtocolEncoderOutput() {
+        @Override
+        public void write(ByteBuffer buf) {
+            // as MINA does once the buffer has been written to the socket
+            buf.release();
+        }
+
+        @Override
+        public void mergeAll() {
+        }
+
+        @Override
+        public WriteFuture flush() {
+            return null;
+        }
+    };
+
+    private final ProtocolDecoderOutput decoderOutput = new ProtocolDecoderOutput() {
+        @Override
+        public void write(Object message) {
+            lastDecoded = message;
+        }
+
+        @Override
+        public void flush() {
+        }
+    };
+    private Object lastDecoded;
+
+    @Setup
+    public void setup() {
+        NioLogger logger = new NioLogger("NONE");
+        encoder = new CougarProtocolEncoder(logger);
+        decoder = new CougarProtocolDecoder(logger);
+        sessionHandler = new BenchmarkIoSession();
+        session = sessionHandler.getSession();
+        session.setAttribute(CougarProtocol.PROTOCOL_VERSION_ATTR_NAME, CougarProtocol.TRANSPORT_PROTOCOL_VERSION_MAX_SUPPORTED);
+
+        payload = new byte[payloadSize];
+        for (int i=0; i<payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        ByteBuffer encoded = new ResponseMessage(1L, payload).getSerialisedForm(CougarProtocol.TRANSPORT_PROTOCOL_VERSION_MAX_SUPPORTED);
+        encoded.flip();
+        byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        frame = ByteBuffer.wrap(bytes);
+    }
+
+    @Benchmark
+    public void encodeResponse() throws Exception {
+        encoder.encode(session, new ResponseMessage(1L, payload), encoderOutput);
+    }
+
+    @Benchmark
+    public void encodeFramedResponse() throws Exception {
+        FramedResponseOutputStream out = new FramedResponseOutputStream(session, 1L);
+        out.write(payload);
+        out.flush();
+        encoder.encode(session, sessionHandler.takeLastWritten(), encoderOutput);
+    }
+
+    @Benchmark
+    public Object decodeResponse() throws Exception {
+        frame.position(0);
+        decoder.decode(session, frame, decoderOutput);
+        return lastDecoded;
+    }
+}
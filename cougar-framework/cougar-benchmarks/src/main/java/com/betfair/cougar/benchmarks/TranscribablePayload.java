@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.benchmarks;
+
+import com.betfair.cougar.core.api.ServiceVersion;
+import com.betfair.cougar.core.api.transcription.EnumUtils;
+import com.betfair.cougar.core.api.transcription.Parameter;
+import com.betfair.cougar.core.api.transcription.ParameterType;
+import com.betfair.cougar.core.api.transcription.Transcribable;
+import com.betfair.cougar.core.api.transcription.TranscribableParams;
+import com.betfair.cougar.core.api.transcription.TranscriptionInput;
+import com.betfair.cougar.core.api.transcription.TranscriptionOutput;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The same content as {@link BenchmarkPayload}, but shaped as the code generator emits IDD data types, so that it's
+ * transcribed by the socket transport's own serialisers.
+ */
+public class TranscribablePayload implements Transcribable {
+
+    public enum Side { BACK, LAY, UNRECOGNIZED_VALUE }
+
+    private static final Parameter __idParam = new Parameter("id", new ParameterType(Long.class, null), true);
+    private static final Parameter __marketParam = new Parameter("market", new ParameterType(String.class, null), true);
+    private static final Parameter __priceParam = new Parameter("price", new ParameterType(Double.class, null), true);
+    private static final Parameter __sizeParam = new Parameter("size", new ParameterType(Double.class, null), true);
+    private static final Parameter __persistentParam = new Parameter("persistent", new ParameterType(Boolean.class, null), false);
+    private static final Parameter __sideParam = new Parameter("side", new ParameterType(Side.class, null), false);
+    private static final Parameter __tagsParam = new Parameter("tags", new ParameterType(List.class, new ParameterType[] { new ParameterType(String.class, null) }), false);
+
+    public static final Parameter[] PARAMETERS = new Parameter[] { __idParam, __marketParam, __priceParam, __sizeParam, __persistentParam, __sideParam, __tagsParam };
+
+    private static final ServiceVersion SERVICE_VERSION = new ServiceVersion(1, 0);
+
+    private Long id;
+    private String market;
+    private Double price;
+    private Double size;
+    private Boolean persistent;
+    private Side side;
+    private String rawSideValue;
+    private List<String> tags;
+
+    public static TranscribablePayload create(int numTags) {
+        TranscribablePayload ret = new TranscribablePayload();
+        ret.setId(1234567890L);
+        ret.setMarket("1.23456789");
+        ret.setPrice(2.02);
+        ret.setSize(150.5);
+        ret.setPersistent(true);
+        ret.setSide(Side.BACK);
+        List<String> tags = new ArrayList<>();
+        for (int i=0; i<numTags; i++) {
+            tags.add("tag-" + i);
+        }
+        ret.setTags(tags);
+        return ret;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getMarket() {
+        return market;
+    }
+
+    public void setMarket(String market) {
+        this.market = market;
+    }
+
+    public Double getPrice() {
+        return price;
+    }
+
+    public void setPrice(Double price) {
+        this.price = price;
+    }
+
+    public Double getSize() {
+        return size;
+    }
+
+    public void setSize(Double size) {
+        this.size = size;
+    }
+
+    public Boolean getPersistent() {
+        return persistent;
+    }
+
+    public void setPersistent(Boolean persistent) {
+        this.persistent = persistent;
+    }
+
+    public Side getSide() {
+        return side;
+    }
+
+    public void setSide(Side side) {
+        this.side = side;
+        this.rawSideValue = side != null ? side.name() : null;
+    }
+
+    public String getRawSideValue() {
+        return rawSideValue;
+    }
+
+    public void setRawSideValue(String side) {
+        this.side = side != null ? EnumUtils.readEnum(Side.class, side) : null;
+        this.rawSideValue = side;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+
+    @Override
+    public Parameter[] getParameters() {
+        return PARAMETERS;
+    }
+
+    @Override
+    public ServiceVersion getServiceVersion() {
+        return SERVICE_VERSION;
+    }
+
+    @Override
+    public void transcribe(TranscriptionOutput out, Set<TranscribableParams> params, boolean client) throws Exception {
+        out.writeObject(getId(), __idParam, client);
+        out.writeObject(getMarket(), __marketParam, client);
+        out.writeObject(getPrice(), __priceParam, client);
+        out.writeObject(getSize(), __sizeParam, client);
+        out.writeObject(getPersistent(), __persistentParam, client);
+        out.writeObject(getSide() != null ? getSide().name() : null, __sideParam, client);
+        out.writeObject(getTags(), __tagsParam, client);
+    }
+
+    @Override
+    public void transcribe(TranscriptionInput in, Set<TranscribableParams> params, boolean client) throws Exception {
+        setId((Long) in.readObject(__idParam, client));
+        setMarket((String) in.readObject(__marketParam, client));
+        setPrice((Double) in.readObject(__priceParam, client));
+        setSize((Double) in.readObject(__sizeParam, client));
+        setPersistent((Boolean) in.readObject(__persistentParam, client));
+        setRawSideValue((String) in.readObject(__sideParam, client));
+        setTags((List<String>) in.readObject(__tagsParam, client));
+    }
+}
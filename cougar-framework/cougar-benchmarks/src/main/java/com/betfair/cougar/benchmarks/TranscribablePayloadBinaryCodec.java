@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.benchmarks;
+
+import com.betfair.cougar.core.api.transcription.BinaryCodec;
+import com.betfair.cougar.core.api.transcription.BinaryCodecInput;
+import com.betfair.cougar.core.api.transcription.BinaryCodecOutput;
+import com.betfair.cougar.core.api.transcription.Parameter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * What dataTypeBinaryCodec.ftl generates for {@link TranscribablePayload}.
+ */
+public class TranscribablePayloadBinaryCodec implements BinaryCodec<TranscribablePayload> {
+
+    @Override
+    public Parameter[] getParameters() {
+        return TranscribablePayload.PARAMETERS;
+    }
+
+    @Override
+    public void write(TranscribablePayload value, BinaryCodecOutput out) throws IOException {
+        out.writeLong(value.getId());
+        out.writeString(value.getMarket());
+        out.writeDouble(value.getPrice());
+        out.writeDouble(value.getSize());
+        out.writeBoolean(value.getPersistent());
+        out.writeEnum(value.getSide());
+        out.writeValue(value.getTags(), TranscribablePayload.PARAMETERS[6].getParameterType());
+    }
+
+    @Override
+    public TranscribablePayload read(BinaryCodecInput in) throws IOException {
+        TranscribablePayload bean = new TranscribablePayload();
+        bean.setId(in.readLong());
+        bean.setMarket(in.readString());
+        bean.setPrice(in.readDouble());
+        bean.setSize(in.readDouble());
+        bean.setPersistent(in.readBoolean());
+        bean.setRawSideValue(in.readString());
+        bean.setTags((List<String>) in.readValue(TranscribablePayload.PARAMETERS[6].getParameterType()));
+        return bean;
+    }
+}
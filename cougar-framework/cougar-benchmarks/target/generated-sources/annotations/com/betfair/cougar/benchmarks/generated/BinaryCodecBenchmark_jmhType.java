@@ -0,0 +1,4 @@
+package com.betfair.cougar.benchmarks.generated;
+public class BinaryCodecBenchmark_jmhType extends BinaryCodecBenchmark_jmhType_B3 {
+}
+
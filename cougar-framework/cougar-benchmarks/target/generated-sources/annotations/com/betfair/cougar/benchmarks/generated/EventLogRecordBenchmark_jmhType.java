@@ -0,0 +1,4 @@
+package com.betfair.cougar.benchmarks.generated;
+public class EventLogRecordBenchmark_jmhType extends EventLogRecordBenchmark_jmhType_B3 {
+}
+
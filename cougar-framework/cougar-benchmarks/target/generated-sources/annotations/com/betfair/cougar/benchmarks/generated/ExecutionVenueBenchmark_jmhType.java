@@ -0,0 +1,4 @@
+package com.betfair.cougar.benchmarks.generated;
+public class ExecutionVenueBenchmark_jmhType extends ExecutionVenueBenchmark_jmhType_B3 {
+}
+
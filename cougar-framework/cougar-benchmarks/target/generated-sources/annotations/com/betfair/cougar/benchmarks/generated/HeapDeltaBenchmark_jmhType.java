@@ -0,0 +1,4 @@
+package com.betfair.cougar.benchmarks.generated;
+public class HeapDeltaBenchmark_jmhType extends HeapDeltaBenchmark_jmhType_B3 {
+}
+
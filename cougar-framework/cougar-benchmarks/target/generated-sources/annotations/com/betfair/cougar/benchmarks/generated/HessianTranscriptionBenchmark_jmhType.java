@@ -0,0 +1,4 @@
+package com.betfair.cougar.benchmarks.generated;
+public class HessianTranscriptionBenchmark_jmhType extends HessianTranscriptionBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.betfair.cougar.benchmarks.generated;
+public class MarshallingBenchmark_jmhType extends MarshallingBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.betfair.cougar.benchmarks.generated;
+public class ProtocolFramingBenchmark_jmhType extends ProtocolFramingBenchmark_jmhType_B3 {
+}
+
@@ -19,8 +19,10 @@ package com.betfair.cougar.client;
 
 import com.betfair.cougar.client.api.ContextEmitter;
 import com.betfair.cougar.core.api.client.TransportMetrics;
+import com.betfair.cougar.core.api.ev.ClientExecutionResult;
 import com.betfair.cougar.core.api.ev.ExecutionObserver;
 import com.betfair.cougar.core.api.ev.OperationDefinition;
+import com.betfair.cougar.core.api.exception.CougarClientException;
 import com.betfair.cougar.core.api.exception.CougarFrameworkException;
 import com.betfair.cougar.core.api.exception.ServerFaultCode;
 import com.betfair.cougar.core.api.tracing.Tracer;
@@ -33,7 +35,7 @@ import org.eclipse.jetty.client.HttpDestination;
 import org.eclipse.jetty.client.PoolingHttpDestination;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Response;
-import org.eclipse.jetty.client.util.InputStreamResponseListener;
+import org.eclipse.jetty.client.api.Result;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.util.thread.ExecutorThreadPool;
@@ -49,11 +51,14 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Implementation of client executable using async implementation of HTTP ReScript protocol.
@@ -74,6 +79,7 @@ public class AsyncHttpExecutable extends AbstractHttpExecutable<Request> impleme
     private JettyTransportMetrics metrics;
     private int maxConnectionsPerDestination;
     private int maxRequestsQueuedPerDestination;
+    private long maxResponseSize;
 
     public AsyncHttpExecutable(HttpServiceBindingDescriptor bindingDescriptor, ContextEmitter emission, Tracer tracer,
                                ExecutorService threadPool, ExecutorService responseThreadPool) {
@@ -169,28 +175,68 @@ public class AsyncHttpExecutable extends AbstractHttpExecutable<Request> impleme
         this.maxRequestsQueuedPerDestination = maxRequestsQueuedPerDestination;
     }
 
+    /**
+     * Responses are held in memory until fully received, so any response larger than this (in bytes) is aborted
+     * and failed rather than collected. Zero or less means no limit.
+     */
+    public void setMaxResponseSize(long maxResponseSize) {
+        this.maxResponseSize = maxResponseSize;
+    }
+
     @Override
     protected void sendRequest(final Request request, final ExecutionObserver obs,
                                final OperationDefinition operationDefinition) {
         final String url = String.valueOf(request.getURI());
         final long startTime = System.currentTimeMillis();
 
-        InputStreamResponseListener listener = new InputStreamResponseListener() {
+        // the observer must hear about the outcome exactly once, whichever of the listeners below gets there first
+        final AtomicBoolean notified = new AtomicBoolean();
+
+        // content is collected as jetty delivers it and only handed off for unmarshalling once the last chunk has
+        // arrived, so no thread is ever blocked waiting on the network for the duration of the transfer
+        Response.Listener listener = new Response.Listener.Adapter() {
+            private final ResponseContentChunks content = new ResponseContentChunks();
+            private volatile CougarClientException tooLarge;
+
             @Override
-            public void onHeaders(final Response response) {
-                super.onHeaders(response);
+            public void onContent(Response response, ByteBuffer chunk) {
+                if (tooLarge != null) {
+                    return;
+                }
+                if (maxResponseSize > 0 && content.size() + chunk.remaining() > maxResponseSize) {
+                    tooLarge = new CougarClientException(ServerFaultCode.RemoteCougarCommunicationFailure,
+                            "Response from " + url + " exceeded the maximum response size of " + maxResponseSize + " bytes");
+                    response.abort(tooLarge);
+                    return;
+                }
+                content.add(chunk);
+            }
 
-                // can only get this once, so let's makes sure..
-                final InputStream inputStream = getInputStream();
-                // this needs to be done in a seperate thread pool - to avoid deadlocks it needs to be the same size as or larger than the client pool
-                responseThreadPool.submit(new Runnable() {
+            @Override
+            public void onComplete(final Result result) {
+                if (!notified.compareAndSet(false, true)) {
+                    return;
+                }
+                if (tooLarge != null) {
+                    LOGGER.warn("COUGAR: HTTP response TOO LARGE - URL [" + url + "] time [" + elapsed(startTime) + "mS]", tooLarge);
+                    obs.onResult(new ClientExecutionResult(tooLarge, 0));
+                    return;
+                }
+                if (result.isFailed()) {
+                    Throwable failure = result.getFailure() != null ? result.getFailure() : new IOException("Response failed");
+                    LOGGER.warn("COUGAR: HTTP communication ERROR - URL [" + url + "] time [" + elapsed(startTime) + "mS]", failure);
+                    processFailure(obs, failure, url, ServerFaultCode.RemoteCougarCommunicationFailure);
+                    return;
+                }
+                final Response response = result.getResponse();
+                Runnable processor = new Runnable() {
                     @Override
                     public void run() {
                         try {
                             processResponse(new CougarHttpResponse() {
                                 @Override
                                 public InputStream getEntity() throws IOException {
-                                    return inputStream;
+                                    return content.getInputStream();
                                 }
 
                                 @Override
@@ -211,7 +257,7 @@ public class AsyncHttpExecutable extends AbstractHttpExecutable<Request> impleme
                                 @Override
                                 public long getResponseSize() {
                                     String s = response.getHeaders().get(HttpHeader.CONTENT_LENGTH);
-                                    return s != null ? Long.parseLong(s) : -1;
+                                    return s != null ? Long.parseLong(s) : content.size();
                                 }
                             }, obs, operationDefinition);
                         }
@@ -220,29 +266,52 @@ public class AsyncHttpExecutable extends AbstractHttpExecutable<Request> impleme
                             processException(obs, e, url);
                         }
                     }
-                });
+                };
+                // unmarshalling and observer callbacks happen off the jetty threads. the response is already fully
+                // received so this pool no longer needs to be sized to match the client pool
+                try {
+                    responseThreadPool.execute(processor);
+                }
+                catch (RejectedExecutionException ree) {
+                    processor.run();
+                }
             }
         };
         request.onResponseFailure(new Response.FailureListener() {
             @Override
             public void onFailure(Response response, Throwable failure) {
+                if (!notified.compareAndSet(false, true)) {
+                    return;
+                }
                 ServerFaultCode serverFaultCode = ServerFaultCode.RemoteCougarCommunicationFailure;
                 if (failure instanceof TimeoutException) {
                     failure = new CougarFrameworkException("Read timed out", failure);
                     serverFaultCode = ServerFaultCode.Timeout;
                 }
                 LOGGER.warn("COUGAR: HTTP communication ERROR - URL [" + url + "] time [" + elapsed(startTime) + "mS]", failure);
-                processException(obs, failure, url, serverFaultCode);
+                processFailure(obs, failure, url, serverFaultCode);
             }
         }).onRequestFailure(new Request.FailureListener() {
             @Override
             public void onFailure(Request request, Throwable failure) {
+                if (!notified.compareAndSet(false, true)) {
+                    return;
+                }
                 LOGGER.warn("COUGAR: HTTP connection FAILED - URL [" + url + "] time [" + elapsed(startTime) + " mS]", failure);
                 processException(obs, failure, url);
             }
         }).send(listener);
     }
 
+    // failures we raised ourselves (e.g. aborting an oversized response) are already in the form the caller expects
+    private void processFailure(ExecutionObserver obs, Throwable failure, String url, ServerFaultCode serverFaultCode) {
+        if (failure instanceof CougarClientException) {
+            obs.onResult(new ClientExecutionResult((CougarClientException) failure, 0));
+        } else {
+            processException(obs, failure, url, serverFaultCode);
+        }
+    }
+
     private long elapsed(long startTime) {
         return System.currentTimeMillis() - startTime;
     }
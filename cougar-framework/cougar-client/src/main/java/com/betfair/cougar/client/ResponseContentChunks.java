@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Response content as received from the transport, held as the chunks it arrived in so that nothing is copied
+ * beyond the single copy needed to take it out of the transport's (reused) buffer.
+ */
+final class ResponseContentChunks {
+
+    private final List<byte[]> chunks = new ArrayList<byte[]>();
+    private long size;
+
+    public void add(ByteBuffer content) {
+        int len = content.remaining();
+        if (len == 0) {
+            return;
+        }
+        byte[] chunk = new byte[len];
+        content.get(chunk);
+        chunks.add(chunk);
+        size += len;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public InputStream getInputStream() {
+        if (chunks.size() == 1) {
+            return new ByteArrayInputStream(chunks.get(0));
+        }
+        List<InputStream> streams = new ArrayList<InputStream>(chunks.size());
+        for (byte[] chunk : chunks) {
+            streams.add(new ByteArrayInputStream(chunk));
+        }
+        return new SequenceInputStream(Collections.enumeration(streams));
+    }
+}
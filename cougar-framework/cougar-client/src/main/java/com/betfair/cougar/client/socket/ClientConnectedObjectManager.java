@@ -32,18 +32,25 @@ import com.betfair.cougar.netutil.nio.connected.InitialUpdate;
 import com.betfair.cougar.transport.api.protocol.CougarObjectIOFactory;
 import com.betfair.cougar.transport.api.protocol.socket.InvocationResponse;
 import com.betfair.cougar.transport.api.protocol.socket.NewHeapSubscription;
+import com.betfair.cougar.util.JMXReportingThreadPoolExecutor;
+import com.betfair.cougar.util.stats.StripedHistogram;
 import com.betfair.platform.virtualheap.Heap;
 import com.betfair.platform.virtualheap.ImmutableHeap;
 import com.betfair.platform.virtualheap.conflate.Conflater;
 import org.apache.mina.common.IoSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -52,6 +59,7 @@ import java.util.logging.Level;
 /**
  * Manages connected objects, and subscriptions thereof.
  */
+@ManagedResource
 public class ClientConnectedObjectManager {
     private static final Logger LOGGER = LoggerFactory.getLogger(ClientConnectedObjectManager.class);
 
@@ -73,7 +81,20 @@ public class ClientConnectedObjectManager {
 
     private CougarObjectIOFactory objectIOFactory;
 
-    private static final AtomicLong initialPopulationThreadIdSource = new AtomicLong();
+    // subscription responses are completed on this pool once their heap's initial population arrives (or doesn't)
+    private Executor initialPopulationExecutor;
+    private boolean ownInitialPopulationExecutor;
+    private int initialPopulationThreads = 4;
+    private int initialPopulationQueueSize = 1000;
+    private ScheduledExecutorService initialPopulationTimer;
+
+    private final AtomicInteger initialPopulationsAwaitingHeap = new AtomicInteger();
+    private final AtomicInteger initialPopulationsQueued = new AtomicInteger();
+    private final AtomicLong initialPopulationsSucceeded = new AtomicLong();
+    private final AtomicLong initialPopulationsFailed = new AtomicLong();
+    private final AtomicLong initialPopulationsRunOnCaller = new AtomicLong();
+    private final AtomicLong initialPopulationBatches = new AtomicLong();
+    private final StripedHistogram timeToPopulate = new StripedHistogram();
 
     // exposed for testing
     ConcurrentHashMap<String, ConnectedHeaps> getHeapsByServer() {
@@ -113,6 +134,18 @@ public class ClientConnectedObjectManager {
         this.objectIOFactory = objectIOFactory;
     }
 
+    public void setInitialPopulationExecutor(Executor initialPopulationExecutor) {
+        this.initialPopulationExecutor = initialPopulationExecutor;
+    }
+
+    public void setInitialPopulationThreads(int initialPopulationThreads) {
+        this.initialPopulationThreads = initialPopulationThreads;
+    }
+
+    public void setInitialPopulationQueueSize(int initialPopulationQueueSize) {
+        this.initialPopulationQueueSize = initialPopulationQueueSize;
+    }
+
     public void setNewListenerConflater(Conflater newListenerConflater) {
         // spring 2.5 has issues with null beans floating around, so we have a marker implementation to connote null
         if (newListenerConflater != ConflaterFactory.NULL_CONFLATER) {
@@ -123,6 +156,15 @@ public class ClientConnectedObjectManager {
     }
 
     public void start() {
+        if (initialPopulationExecutor == null) {
+            initialPopulationExecutor = new JMXReportingThreadPoolExecutor(initialPopulationThreads, initialPopulationThreads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>(initialPopulationQueueSize), new DaemonThreadFactory("ConnectedObjectInitialPopulation-"));
+            ownInitialPopulationExecutor = true;
+        }
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("ConnectedObjectInitialPopulationTimeout-"));
+        timer.setRemoveOnCancelPolicy(true);
+        initialPopulationTimer = timer;
+
         for (int i = 0; i < numProcessingThreads; i++) {
             ConnectedObjectPuller puller = new ConnectedObjectPuller();
             pullers.add(puller);
@@ -134,6 +176,28 @@ public class ClientConnectedObjectManager {
         for (ConnectedObjectPuller puller : pullers) {
             puller.stop();
         }
+        if (initialPopulationTimer != null) {
+            initialPopulationTimer.shutdownNow();
+        }
+        if (ownInitialPopulationExecutor) {
+            ((ExecutorService) initialPopulationExecutor).shutdown();
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger threadIdSource = new AtomicInteger();
+
+        private DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, prefix + threadIdSource.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
     }
 
     public void setNioLogger(NioLogger nioLogger) {
@@ -200,50 +264,188 @@ public class ClientConnectedObjectManager {
                     currentSession.close();
                 }
             } else {
-                // split this off into it's own thread since the mina docs lie and we only have one ioprocessor thread and if we don't fork we'd block forever
-                final ConnectedHeaps finalHeaps = heaps;
-                new Thread(new Runnable() {
+                // we mustn't block here since we're on the mina ioprocessor thread, which is what will deliver the initial population
+                startInitialPopulation(new InitialPopulation(currentSession, heaps, heapState, newHeapSubscription, preExistingHeap, observer));
+            }
+        }
+    }
+
+    private void startInitialPopulation(final InitialPopulation population) {
+        initialPopulationsAwaitingHeap.incrementAndGet();
+        Boolean populated = population.heaps.addPendingPopulation(population);
+        if (populated != null) {
+            nioLogger.log(NioLogger.LoggingLevel.TRANSPORT, population.session, "Initial heap population, heapUrl = %s", population.subscription.getUri());
+            population.complete(populated);
+        } else {
+            nioLogger.log(NioLogger.LoggingLevel.TRANSPORT, population.session, "Waiting for initial heap population, heapUrl = %s", population.subscription.getUri());
+            try {
+                population.timeout = initialPopulationTimer.schedule(new Runnable() {
                     @Override
                     public void run() {
-                        boolean resultSent = false;
-                        // now we've got the heap
-                        CountDownLatch initialPopulationLatch = finalHeaps.getInitialPopulationLatch(newHeapSubscription.getHeapId());
-                        try {
-                            boolean populated = false;
-                            if (initialPopulationLatch != null) {
-                                nioLogger.log(NioLogger.LoggingLevel.TRANSPORT, currentSession, "Waiting for initial heap population, heapUrl = %s", newHeapSubscription.getUri());
-                                populated = initialPopulationLatch.await(maxInitialPopulationWait, TimeUnit.MILLISECONDS);
-                                finalHeaps.removeInitialPopulationLatch(newHeapSubscription.getHeapId());
-                            } else {
-                                nioLogger.log(NioLogger.LoggingLevel.TRANSPORT, currentSession, "Initial heap population, heapUrl = %s", newHeapSubscription.getUri());
+                        population.heaps.removePendingPopulation(population);
+                        population.complete(false);
+                    }
+                }, maxInitialPopulationWait, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ree) {
+                // we're shutting down
+                population.heaps.removePendingPopulation(population);
+                population.complete(false);
+            }
+        }
+    }
 
-                            }
-                            nioLogger.log(NioLogger.LoggingLevel.TRANSPORT, currentSession, "Returning heap to client, heapUrl = %s", newHeapSubscription.getUri());
-                            if (populated) {
-                                observer.onResult(new ExecutionResult(new ConnectedResponseImpl(heapState.getHeap(), heapState.addSubscription(ClientConnectedObjectManager.this, currentSession, newHeapSubscription.getHeapId(), newHeapSubscription.getSubscriptionId()))));
-                                resultSent = true;
-                            }
-                        } catch (InterruptedException e) {
-                            // we got interrupted waiting for the response, oh well..
-                        } catch (RuntimeException e) {
-                            LOGGER.warn("Error processing initial heap population, treating as a failure", e);
-                        } finally {
-                            if (!resultSent) {
-                                nioLogger.log(NioLogger.LoggingLevel.TRANSPORT, currentSession, "Didn't get initial population message for heap, heapUrl = %s", newHeapSubscription.getUri());
-                                // we don't worry about the case where it was a preExisting heap since the thread where it wasn't received will deal with it
-                                if (!preExistingHeap) {
-                                    terminateSubscriptions(currentSession, newHeapSubscription.getHeapId(), Subscription.CloseReason.INTERNAL_ERROR);
-                                }
-                                LOGGER.warn("Didn't get initial population message for heap id = " + newHeapSubscription.getHeapId());
-                                observer.onResult(new ExecutionResult(new CougarClientException(ServerFaultCode.FrameworkError, "Didn't get initial population message for heap id = " + newHeapSubscription.getHeapId())));
-                            }
+    /**
+     * Queues completed populations for a session, so that a burst of initial heaps for one session is handed to the
+     * population executor as a single batch.
+     */
+    private void queueCompletedPopulation(InitialPopulation population) {
+        initialPopulationsQueued.incrementAndGet();
+        final ConnectedHeaps heaps = population.heaps;
+        heaps.completedPopulations.add(population);
+        if (heaps.populationBatchScheduled.compareAndSet(false, true)) {
+            Runnable batch = new Runnable() {
+                @Override
+                public void run() {
+                    initialPopulationBatches.incrementAndGet();
+                    do {
+                        InitialPopulation p;
+                        while ((p = heaps.completedPopulations.poll()) != null) {
+                            initialPopulationsQueued.decrementAndGet();
+                            p.finish();
                         }
+                        heaps.populationBatchScheduled.set(false);
+                        // anything added after the last poll but before we cleared the flag would otherwise be stranded
+                    } while (!heaps.completedPopulations.isEmpty() && heaps.populationBatchScheduled.compareAndSet(false, true));
+                }
+            };
+            try {
+                initialPopulationExecutor.execute(batch);
+            } catch (RejectedExecutionException ree) {
+                // pool and queue are full, so push back on whoever is completing populations
+                initialPopulationsRunOnCaller.incrementAndGet();
+                batch.run();
+            }
+        }
+    }
+
+    /**
+     * A subscription response awaiting its heap's initial population.
+     */
+    private class InitialPopulation {
+        private final IoSession session;
+        private final ConnectedHeaps heaps;
+        private final HeapState heapState;
+        private final NewHeapSubscription subscription;
+        private final boolean preExistingHeap;
+        private final ExecutionObserver observer;
+        private final long startTime = System.currentTimeMillis();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private volatile boolean populated;
+        private volatile ScheduledFuture<?> timeout;
+
+        private InitialPopulation(IoSession session, ConnectedHeaps heaps, HeapState heapState, NewHeapSubscription subscription, boolean preExistingHeap, ExecutionObserver observer) {
+            this.session = session;
+            this.heaps = heaps;
+            this.heapState = heapState;
+            this.subscription = subscription;
+            this.preExistingHeap = preExistingHeap;
+            this.observer = observer;
+        }
+
+        long getHeapId() {
+            return subscription.getHeapId();
+        }
+
+        void complete(boolean populated) {
+            if (completed.compareAndSet(false, true)) {
+                this.populated = populated;
+                ScheduledFuture<?> t = timeout;
+                if (t != null) {
+                    t.cancel(false);
+                }
+                initialPopulationsAwaitingHeap.decrementAndGet();
+                queueCompletedPopulation(this);
+            }
+        }
+
+        void finish() {
+            boolean resultSent = false;
+            heaps.removeInitialPopulationLatch(getHeapId());
+            try {
+                nioLogger.log(NioLogger.LoggingLevel.TRANSPORT, session, "Returning heap to client, heapUrl = %s", subscription.getUri());
+                if (populated) {
+                    observer.onResult(new ExecutionResult(new ConnectedResponseImpl(heapState.getHeap(), heapState.addSubscription(ClientConnectedObjectManager.this, session, getHeapId(), subscription.getSubscriptionId()))));
+                    resultSent = true;
+                    initialPopulationsSucceeded.incrementAndGet();
+                    timeToPopulate.record(System.currentTimeMillis() - startTime);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warn("Error processing initial heap population, treating as a failure", e);
+            } finally {
+                if (!resultSent) {
+                    initialPopulationsFailed.incrementAndGet();
+                    nioLogger.log(NioLogger.LoggingLevel.TRANSPORT, session, "Didn't get initial population message for heap, heapUrl = %s", subscription.getUri());
+                    // we don't worry about the case where it was a preExisting heap since the population where it wasn't received will deal with it
+                    if (!preExistingHeap) {
+                        terminateSubscriptions(session, getHeapId(), Subscription.CloseReason.INTERNAL_ERROR);
                     }
-                }, "SubscriptionResponseHandler-InitialPopulation-" + initialPopulationThreadIdSource.incrementAndGet() + "-" + heapState.getHeapUri()).start();
+                    LOGGER.warn("Didn't get initial population message for heap id = " + getHeapId());
+                    observer.onResult(new ExecutionResult(new CougarClientException(ServerFaultCode.FrameworkError, "Didn't get initial population message for heap id = " + getHeapId())));
+                }
             }
         }
     }
 
+    @ManagedAttribute(description = "Subscriptions waiting for the initial population of their heap")
+    public int getInitialPopulationsAwaitingHeap() {
+        return initialPopulationsAwaitingHeap.get();
+    }
+
+    @ManagedAttribute(description = "Populated (or timed out) subscriptions queued for completion")
+    public int getInitialPopulationsQueued() {
+        return initialPopulationsQueued.get();
+    }
+
+    @ManagedAttribute
+    public long getInitialPopulationsSucceeded() {
+        return initialPopulationsSucceeded.get();
+    }
+
+    @ManagedAttribute
+    public long getInitialPopulationsFailed() {
+        return initialPopulationsFailed.get();
+    }
+
+    @ManagedAttribute(description = "Population batches run on the calling thread as the population executor was saturated")
+    public long getInitialPopulationsRunOnCaller() {
+        return initialPopulationsRunOnCaller.get();
+    }
+
+    @ManagedAttribute
+    public long getInitialPopulationBatches() {
+        return initialPopulationBatches.get();
+    }
+
+    @ManagedAttribute
+    public double getTimeToPopulateMeanMs() {
+        return timeToPopulate.snapshot().getMean();
+    }
+
+    @ManagedAttribute
+    public long getTimeToPopulate50thPercentileMs() {
+        return timeToPopulate.snapshot().getPercentile(50);
+    }
+
+    @ManagedAttribute
+    public long getTimeToPopulate99thPercentileMs() {
+        return timeToPopulate.snapshot().getPercentile(99);
+    }
+
+    @ManagedAttribute
+    public long getTimeToPopulateMaxMs() {
+        return timeToPopulate.snapshot().getMax();
+    }
+
     public void sessionTerminated(IoSession session) {
         terminateAllSubscriptions(session, Subscription.CloseReason.CONNECTION_CLOSED);
     }
@@ -330,6 +532,7 @@ public class ClientConnectedObjectManager {
                                                 if (latch != null) {
                                                     latch.countDown();
                                                 }
+                                                heaps.initialPopulationReceived(heapId);
                                             }
                                         }
                                     } catch (Exception e) {
@@ -490,6 +693,9 @@ public class ClientConnectedObjectManager {
         private Map<Long, CountDownLatch> initialLatches = new HashMap<Long, CountDownLatch>();
         private BlockingDeque<Long> heapsWithUpdates = new LinkedBlockingDeque<Long>();
         private AtomicLong queueLength = new AtomicLong();
+        private Map<Long, List<InitialPopulation>> pendingPopulations = new HashMap<Long, List<InitialPopulation>>();
+        private final Queue<InitialPopulation> completedPopulations = new ConcurrentLinkedQueue<InitialPopulation>();
+        private final AtomicBoolean populationBatchScheduled = new AtomicBoolean();
 
         // returns true if a new heap was added
         public boolean addHeap(long heapId, String uri) {
@@ -520,6 +726,59 @@ public class ClientConnectedObjectManager {
             }
         }
 
+        // returns whether the heap has been populated if that's already known, otherwise null, having registered the population to be completed later
+        Boolean addPendingPopulation(InitialPopulation population) {
+            heapSubMutationLock.lock();
+            try {
+                CountDownLatch latch = initialLatches.get(population.getHeapId());
+                if (latch == null) {
+                    return false;
+                }
+                if (latch.getCount() == 0) {
+                    return true;
+                }
+                List<InitialPopulation> pending = pendingPopulations.get(population.getHeapId());
+                if (pending == null) {
+                    pending = new ArrayList<InitialPopulation>();
+                    pendingPopulations.put(population.getHeapId(), pending);
+                }
+                pending.add(population);
+                return null;
+            } finally {
+                heapSubMutationLock.unlock();
+            }
+        }
+
+        void removePendingPopulation(InitialPopulation population) {
+            heapSubMutationLock.lock();
+            try {
+                List<InitialPopulation> pending = pendingPopulations.get(population.getHeapId());
+                if (pending != null) {
+                    pending.remove(population);
+                    if (pending.isEmpty()) {
+                        pendingPopulations.remove(population.getHeapId());
+                    }
+                }
+            } finally {
+                heapSubMutationLock.unlock();
+            }
+        }
+
+        void initialPopulationReceived(long heapId) {
+            List<InitialPopulation> pending;
+            heapSubMutationLock.lock();
+            try {
+                pending = pendingPopulations.remove(heapId);
+            } finally {
+                heapSubMutationLock.unlock();
+            }
+            if (pending != null) {
+                for (InitialPopulation population : pending) {
+                    population.complete(true);
+                }
+            }
+        }
+
         public HeapState getHeapState(long heapId) {
             return heapStates.get(heapId);
         }
@@ -545,6 +804,8 @@ public class ClientConnectedObjectManager {
                     state.terminateAllSubscriptions(reason);
                 }
                 initialLatches.remove(heapId);
+                // any populations still waiting will fail when they time out
+                pendingPopulations.remove(heapId);
             } finally {
                 heapSubMutationLock.unlock();
             }
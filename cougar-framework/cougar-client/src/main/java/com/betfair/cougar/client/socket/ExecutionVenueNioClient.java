@@ -23,6 +23,8 @@ import com.betfair.cougar.client.ClientCallContext;
 import com.betfair.cougar.client.api.ContextEmitter;
 import com.betfair.cougar.client.socket.jmx.ClientSocketTransportInfo;
 import com.betfair.cougar.client.socket.resolver.NetworkAddressResolver;
+import com.betfair.cougar.client.socket.selection.SessionSelectionStrategy;
+import com.betfair.cougar.client.socket.selection.SessionSelector;
 import com.betfair.cougar.core.api.client.AbstractClientTransport;
 import com.betfair.cougar.core.api.ev.*;
 import com.betfair.cougar.core.api.exception.CougarClientException;
@@ -120,6 +122,14 @@ public class ExecutionVenueNioClient extends AbstractClientTransport implements
         return sessionFactory;
     }
 
+    public void setSessionSelectionStrategy(SessionSelectionStrategy strategy) {
+        sessionFactory.setSessionSelector(strategy.newSelector());
+    }
+
+    public void setSessionSelector(SessionSelector sessionSelector) {
+        sessionFactory.setSessionSelector(sessionSelector);
+    }
+
     public void addListener(HandlerListener listener) {
         handlerListeners.add(listener);
     }
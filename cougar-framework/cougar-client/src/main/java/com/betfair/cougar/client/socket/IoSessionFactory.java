@@ -17,6 +17,8 @@
 package com.betfair.cougar.client.socket;
 
 import com.betfair.cougar.client.socket.resolver.NetworkAddressResolver;
+import com.betfair.cougar.client.socket.selection.RoundRobinSessionSelector;
+import com.betfair.cougar.client.socket.selection.SessionSelector;
 import com.betfair.cougar.netutil.nio.ClientHandshake;
 import com.betfair.cougar.netutil.nio.NioConfig;
 import com.betfair.cougar.netutil.nio.NioLogger;
@@ -37,7 +39,7 @@ import java.util.*;
  *
  */
 @ManagedResource
-public class IoSessionFactory {
+public class IoSessionFactory implements SessionSelector.Availability {
 
     private static final Logger log = LoggerFactory.getLogger(IoSessionFactory.class);
     private final NioLogger logger;
@@ -47,11 +49,13 @@ public class IoSessionFactory {
 
     private final SocketConnector socketConnector;
 
-    private final Object lock = new Object(); // a lock object to protect access to session list and a  counter
-    private volatile int counter = 0;
+    private final Object lock = new Object(); // a lock object to protect access to session list
 
     // Maintains a list of all endpoints to which connections are established
     private final Map<SocketAddress, IoSession> sessions = new TreeMap<SocketAddress, IoSession>(new AddressComparator());
+    // Copy of the established sessions, replaced whenever they change, so that selection needn't take the lock
+    private volatile IoSession[] sessionSnapshot = new IoSession[0];
+    private volatile SessionSelector sessionSelector = new RoundRobinSessionSelector();
 
     private final IoHandler ioHandler;
     private final IoFutureListener sessionClosedListener;
@@ -150,27 +154,21 @@ public class IoSessionFactory {
     }
 
     /**
-     * Rotates via list of currently established sessions
+     * Selects one of the currently established sessions using the configured session selector
      *
-     * @return an IO session
+     * @return an IO session, or null if none are available
      */
     public IoSession getSession() {
-        synchronized (lock) {
-            if (sessions.isEmpty()) {
-                return null;
-            } else {
-                final Object[] keys = sessions.keySet().toArray();
-                for (int i = 0; i < sessions.size(); i++) { //
-                    counter++;
-                    final int pos = Math.abs(counter % sessions.size());
-                    final IoSession session = sessions.get(keys[pos]);
-                    if (isAvailable(session)) {
-                        return session;
-                    }
-                }
-                return null;
-            }
+        final IoSession[] snapshot = sessionSnapshot;
+        if (snapshot.length == 0) {
+            return null;
         }
+        return sessionSelector.select(snapshot, this);
+    }
+
+    // must be called whilst holding the lock
+    private void sessionsChanged() {
+        sessionSnapshot = sessions.values().toArray(new IoSession[sessions.size()]);
     }
 
     /**
@@ -216,7 +214,8 @@ public class IoSessionFactory {
         }
     }
 
-    boolean isAvailable(IoSession session) {
+    @Override
+    public boolean isAvailable(IoSession session) {
         return (session.isConnected() // connected
                 && !session.isClosing() // close has not been initiated
                 && !session.containsAttribute(ProtocolMessage.ProtocolMessageType.SUSPEND.name()) // suspend message has not been received
@@ -246,6 +245,9 @@ public class IoSessionFactory {
         synchronized (lock) {
             final IoSession removed = sessions.remove(remoteAddress);
             sessionRemoved = (removed != null);
+            if (sessionRemoved) {
+                sessionsChanged();
+            }
         }
 
         if (sessionRemoved) {
@@ -323,6 +325,7 @@ public class IoSessionFactory {
                 if (session != null) {
                     synchronized (lock) {
                         sessions.put(socketAddress, session);
+                        sessionsChanged();
                         pendingConnections.remove(socketAddress);
                     }
                     return;
@@ -353,6 +356,19 @@ public class IoSessionFactory {
         this.reconnectInterval = reconnectInterval;
     }
 
+    public void setSessionSelector(SessionSelector sessionSelector) {
+        this.sessionSelector = sessionSelector;
+    }
+
+    public SessionSelector getSessionSelector() {
+        return sessionSelector;
+    }
+
+    @ManagedAttribute
+    public String getSessionSelectorName() {
+        return sessionSelector.getClass().getSimpleName();
+    }
+
     @ManagedAttribute
     public String getHosts() {
         return hosts;
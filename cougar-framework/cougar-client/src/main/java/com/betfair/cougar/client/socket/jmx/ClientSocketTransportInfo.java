@@ -24,6 +24,7 @@ import com.betfair.cougar.core.api.jmx.JMXHttpParser;
 import com.betfair.cougar.core.api.jmx.JMXHttpParserReader;
 import com.betfair.cougar.netutil.nio.HandlerListener;
 import com.betfair.cougar.netutil.nio.NioUtils;
+import com.betfair.cougar.netutil.nio.RequestResponseManager;
 import org.apache.mina.common.IoSession;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.InitializingBean;
@@ -128,7 +129,7 @@ public class ClientSocketTransportInfo implements JMXHttpParser, HandlerListener
         // --------------------------- Connection orientated view --------------------------------------
 
         result.append("<h3>Connection Breakdown</h3>\n");
-        result.append("<table border='1'><tr><th>Session id</th><th>Remote address</th><th>Heap count</th><th>Read queue depth</th><th></th></tr>\n");
+        result.append("<table border='1'><tr><th>Session id</th><th>Remote address</th><th>Heap count</th><th>Read queue depth</th><th>Outstanding requests</th><th>Response latency EWMA (ms)</th><th></th></tr>\n");
         // show a list of connections, by type (incoming/outgoing)
         // for each connection, show write queue depth
         for (IoSession session : sessions.values()) {
@@ -136,8 +137,12 @@ public class ClientSocketTransportInfo implements JMXHttpParser, HandlerListener
             ClientConnectedObjectManager.ConnectedHeaps heaps = connectedObjectManager.getHeapsForSession(session);
             int heapCount = heaps != null ? heaps.getHeapCount() : 0;
             long queueLength = heaps != null ? heaps.getQueueLength() : 0;
+            RequestResponseManager requestResponseManager = (RequestResponseManager) session.getAttribute(RequestResponseManager.SESSION_KEY);
+            int outstandingRequests = requestResponseManager != null ? requestResponseManager.getOutstandingRequestCount() : 0;
+            double latencyEwma = requestResponseManager != null ? requestResponseManager.getResponseLatencyEwma() : 0;
 
             result.append("<tr><td>").append(sessionId).append("</td><td>").append(session.getRemoteAddress()).append("</td><td>").append(heapCount).append("</td><td>").append(queueLength).append("</td>");
+            result.append("<td>").append(outstandingRequests).append("</td><td>").append(String.format("%.3f", latencyEwma)).append("</td>");
             if (heapCount != 0) {
                 result.append("<td><a href='").append(getPath()).append("?sessionId=").append(URLEncoder.encode(sessionId)).append("&detailedSession=").append(showDetailedSessionBreakdown).append("&detailedHeap=").append(showDetailedHeapBreakdown).append("&killLinks=").append(showKillLinks).append("'>Show connected objects</a></td>");
             }
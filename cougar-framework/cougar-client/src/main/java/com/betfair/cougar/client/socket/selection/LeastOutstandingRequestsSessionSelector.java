@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.client.socket.selection;
+
+import com.betfair.cougar.netutil.nio.RequestResponseManager;
+import org.apache.mina.common.IoSession;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Selects the available session with the fewest requests awaiting a response, so that a server which has stalled
+ * (e.g. in a long GC pause) stops being sent new requests while its peers are idle. The scan starts at a rotating
+ * offset so that ties are spread rather than always going to the first session.
+ */
+public class LeastOutstandingRequestsSessionSelector implements SessionSelector {
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public IoSession select(IoSession[] sessions, Availability availability) {
+        final int offset = (counter.incrementAndGet() & Integer.MAX_VALUE) % Math.max(1, sessions.length);
+        IoSession best = null;
+        int bestOutstanding = Integer.MAX_VALUE;
+        for (int i = 0; i < sessions.length; i++) {
+            final IoSession session = sessions[(offset + i) % sessions.length];
+            if (availability.isAvailable(session)) {
+                int outstanding = getOutstandingRequestCount(session);
+                if (outstanding < bestOutstanding) {
+                    best = session;
+                    bestOutstanding = outstanding;
+                    if (outstanding == 0) {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    static int getOutstandingRequestCount(IoSession session) {
+        RequestResponseManager manager = (RequestResponseManager) session.getAttribute(RequestResponseManager.SESSION_KEY);
+        return manager != null ? manager.getOutstandingRequestCount() : 0;
+    }
+}
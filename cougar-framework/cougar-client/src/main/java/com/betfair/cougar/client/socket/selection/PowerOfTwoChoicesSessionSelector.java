@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.client.socket.selection;
+
+import org.apache.mina.common.IoSession;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks two sessions at random and selects whichever of them has fewer requests awaiting a response. This gets
+ * most of the benefit of least outstanding requests selection, while only ever inspecting two sessions, and avoids
+ * every client piling on to the same momentarily least loaded server. Falls back to a full scan if neither choice
+ * is available.
+ */
+public class PowerOfTwoChoicesSessionSelector implements SessionSelector {
+
+    private final LeastOutstandingRequestsSessionSelector fallback = new LeastOutstandingRequestsSessionSelector();
+
+    @Override
+    public IoSession select(IoSession[] sessions, Availability availability) {
+        if (sessions.length < 2) {
+            return fallback.select(sessions, availability);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(sessions.length);
+        int second = random.nextInt(sessions.length - 1);
+        if (second >= first) {
+            second++;
+        }
+        IoSession a = sessions[first];
+        IoSession b = sessions[second];
+        boolean aAvailable = availability.isAvailable(a);
+        boolean bAvailable = availability.isAvailable(b);
+        if (aAvailable && bAvailable) {
+            return LeastOutstandingRequestsSessionSelector.getOutstandingRequestCount(a) <= LeastOutstandingRequestsSessionSelector.getOutstandingRequestCount(b) ? a : b;
+        }
+        if (aAvailable) {
+            return a;
+        }
+        if (bAvailable) {
+            return b;
+        }
+        return fallback.select(sessions, availability);
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.client.socket.selection;
+
+import org.apache.mina.common.IoSession;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rotates through the sessions, skipping any which aren't available.
+ */
+public class RoundRobinSessionSelector implements SessionSelector {
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public IoSession select(IoSession[] sessions, Availability availability) {
+        for (int i = 0; i < sessions.length; i++) {
+            final IoSession session = sessions[(counter.incrementAndGet() & Integer.MAX_VALUE) % sessions.length];
+            if (availability.isAvailable(session)) {
+                return session;
+            }
+        }
+        return null;
+    }
+}
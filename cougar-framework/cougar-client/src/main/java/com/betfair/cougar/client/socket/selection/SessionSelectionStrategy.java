@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.client.socket.selection;
+
+/**
+ * The session selection strategies available out of the box, so they may be chosen by name in configuration.
+ */
+public enum SessionSelectionStrategy {
+    RoundRobin {
+        @Override
+        public SessionSelector newSelector() {
+            return new RoundRobinSessionSelector();
+        }
+    },
+    LeastOutstandingRequests {
+        @Override
+        public SessionSelector newSelector() {
+            return new LeastOutstandingRequestsSessionSelector();
+        }
+    },
+    PowerOfTwoChoices {
+        @Override
+        public SessionSelector newSelector() {
+            return new PowerOfTwoChoicesSessionSelector();
+        }
+    };
+
+    public abstract SessionSelector newSelector();
+}
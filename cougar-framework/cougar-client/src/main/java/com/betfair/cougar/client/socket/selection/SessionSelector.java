@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.client.socket.selection;
+
+import org.apache.mina.common.IoSession;
+
+/**
+ * Chooses which of the currently established sessions a request should be sent over. Implementations are called
+ * concurrently from every requesting thread, so must be thread safe and should avoid locking.
+ */
+public interface SessionSelector {
+
+    /**
+     * Selects an available session from those supplied.
+     *
+     * @param sessions     a snapshot of the established sessions, which must not be modified
+     * @param availability decides whether a given session may be used
+     * @return the selected session, or null if none are available
+     */
+    public IoSession select(IoSession[] sessions, Availability availability);
+
+    public static interface Availability {
+        boolean isAvailable(IoSession session);
+    }
+}
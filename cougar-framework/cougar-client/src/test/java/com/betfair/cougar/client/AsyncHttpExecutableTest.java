@@ -33,7 +33,6 @@ import org.eclipse.jetty.client.api.Connection;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Response;
 import org.eclipse.jetty.client.api.Result;
-import org.eclipse.jetty.client.util.InputStreamResponseListener;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpVersion;
@@ -91,7 +90,7 @@ public class AsyncHttpExecutableTest extends AbstractHttpExecutableTest<Request>
     private void fireResponse(CapturingRequest request, int errorCode, String responseText, int resultSize, ObservableObserver observer, boolean successfulResponse) throws InterruptedException {
         Response.CompleteListener listener = request.awaitSend(1000, TimeUnit.MILLISECONDS);
         assertNotNull(listener);
-        InputStreamResponseListener responseListener = (InputStreamResponseListener) listener;
+        Response.Listener responseListener = (Response.Listener) listener;
 
         Result result = mock(Result.class);
         Response response = mock(Response.class);
@@ -189,6 +188,40 @@ public class AsyncHttpExecutableTest extends AbstractHttpExecutableTest<Request>
         assertEquals(34, ((ClientExecutionResult)actual).getResultSize());
     }
 
+    @Test
+    public void testOversizedResponseIsAborted() throws IOException, InterruptedException {
+        generateEV(tsd, null);
+        ((AsyncHttpExecutable) client).setMaxResponseSize(10);
+
+        final PassFailExecutionObserver observer = new PassFailExecutionObserver(false, true);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                client.execute(createEC(null, null, false), TestServiceDefinition.TEST_MIXED,
+                        new Object[] {TEST_TEXT, TEST_TEXT }, observer, ev, DefaultTimeConstraints.NO_CONSTRAINTS);
+            }
+        }).start();
+
+        Response.Listener responseListener = (Response.Listener) mockRequest.awaitSend(1000, TimeUnit.MILLISECONDS);
+        assertNotNull(responseListener);
+        Result result = mock(Result.class);
+        Response response = mock(Response.class);
+        when(result.getResponse()).thenReturn(response);
+        when(result.isFailed()).thenReturn(true);
+
+        responseListener.onHeaders(response);
+        responseListener.onContent(response, ByteBuffer.wrap(new byte[6]));
+        responseListener.onContent(response, ByteBuffer.wrap(new byte[6]));
+        responseListener.onComplete(result);
+
+        assertTrue(observer.getLatch().await(1000, TimeUnit.MILLISECONDS));
+        verify(response).abort(any(CougarClientException.class));
+        ExecutionResult actual = observer.getResult();
+        assertEquals(ExecutionResult.ResultType.Fault, actual.getResultType());
+        assertTrue(actual.getFault() instanceof CougarClientException);
+        assertTrue(actual.getFault().getMessage().contains("maximum response size of 10 bytes"));
+    }
+
     @Test
     public void shouldStartupAndShutdown() throws Exception {
         final AsyncHttpExecutable executable = new AsyncHttpExecutable(new TestServiceBindingDescriptor(),contextEmitter, tracer, Executors.newCachedThreadPool(), Executors.newCachedThreadPool());
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.client;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class ResponseContentChunksTest {
+
+    @Test
+    public void empty() throws IOException {
+        ResponseContentChunks chunks = new ResponseContentChunks();
+        chunks.add(ByteBuffer.allocate(0));
+        assertEquals(0, chunks.size());
+        assertEquals("", read(chunks.getInputStream()));
+    }
+
+    @Test
+    public void chunksReadBackInOrder() throws IOException {
+        ResponseContentChunks chunks = new ResponseContentChunks();
+        ByteBuffer reused = ByteBuffer.allocate(16);
+        for (String s : new String[] { "{\"a\":", "\"hello", "\"}" }) {
+            reused.clear();
+            reused.put(s.getBytes("UTF-8"));
+            reused.flip();
+            chunks.add(reused);
+        }
+        assertEquals(13, chunks.size());
+        assertEquals("{\"a\":\"hello\"}", read(chunks.getInputStream()));
+    }
+
+    private String read(InputStream in) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buf = new byte[4];
+        int read;
+        while ((read = in.read(buf)) != -1) {
+            baos.write(buf, 0, read);
+        }
+        return baos.toString("UTF-8");
+    }
+}
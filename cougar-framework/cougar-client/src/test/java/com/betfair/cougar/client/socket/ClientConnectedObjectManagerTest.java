@@ -212,6 +212,33 @@ public class ClientConnectedObjectManagerTest {
         assertFalse(sub1.equals(sub2));
     }
 
+    @Test
+    public void manySubscriptionsToDifferentHeapsOnOneSession() throws Exception {
+        IoSession session = new MyIoSession(String.valueOf(ioSessionId++));
+
+        int numHeaps = 100;
+        List<WaitingObserver> observers = new ArrayList<WaitingObserver>();
+        for (int i=1; i<=numHeaps; i++) {
+            WaitingObserver observer = new WaitingObserver();
+            observers.add(observer);
+            subject.handleSubscriptionResponse(session, new InvocationResponseImpl(new NewHeapSubscription(i, "sub" + i, "manySubscriptionsToDifferentHeapsOnOneSession-" + i)), observer);
+        }
+        assertEquals(numHeaps, subject.getInitialPopulationsAwaitingHeap());
+
+        for (int i=1; i<=numHeaps; i++) {
+            subject.applyDelta(session, new HeapDelta(i, 0, createUpdateList(createInitial())));
+        }
+
+        for (WaitingObserver observer : observers) {
+            waitForAndAssertNotFault(observer);
+            Subscription sub = getSubscriptionFrom(observer.getExecutionResult().getResult());
+            assertNotNull(sub);
+            assertNull(sub.getCloseReason());
+        }
+        assertEquals(0, subject.getInitialPopulationsAwaitingHeap());
+        assertEquals(0, subject.getInitialPopulationsQueued());
+    }
+
     @Test
     public void basicUpdate() throws Exception {
         NewHeapSubscription newHeapSubscription = new NewHeapSubscription(1, "sub1", "basicUpdate");
@@ -16,6 +16,7 @@
 
 package com.betfair.cougar.client.socket;
 
+import com.betfair.cougar.client.socket.selection.RoundRobinSessionSelector;
 import com.betfair.cougar.netutil.nio.message.ProtocolMessage;
 import com.betfair.cougar.util.JMXReportingThreadPoolExecutor;
 import org.apache.mina.common.IoSession;
@@ -103,6 +104,12 @@ public class IoSessionFactoryTest {
         final IoSession disconnectedSession = getDisconnectedSession();
         sessions.put(disconnectedSession.getRemoteAddress(), disconnectedSession);
         sessionsField.set(sessionFactory, sessions);
+        Field snapshotField = IoSessionFactory.class.getDeclaredField("sessionSnapshot");
+        snapshotField.setAccessible(true);
+        snapshotField.set(sessionFactory, sessions.values().toArray(new IoSession[sessions.size()]));
+        Field selectorField = IoSessionFactory.class.getDeclaredField("sessionSelector");
+        selectorField.setAccessible(true);
+        selectorField.set(sessionFactory, new RoundRobinSessionSelector());
         when(sessionFactory.getSession()).thenCallRealMethod();
         when(sessionFactory.isAvailable(any(IoSession.class))).thenCallRealMethod();
 
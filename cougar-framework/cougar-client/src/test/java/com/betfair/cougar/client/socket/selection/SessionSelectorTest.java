@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.client.socket.selection;
+
+import com.betfair.cougar.netutil.nio.RequestResponseManager;
+import org.apache.mina.common.IoSession;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Session selector tests
+ */
+public class SessionSelectorTest {
+
+    private final Set<IoSession> unavailable = new HashSet<IoSession>();
+
+    private final SessionSelector.Availability availability = new SessionSelector.Availability() {
+        @Override
+        public boolean isAvailable(IoSession session) {
+            return !unavailable.contains(session);
+        }
+    };
+
+    @Test
+    public void roundRobinRotatesAndSkipsUnavailable() {
+        IoSession a = session(0);
+        IoSession b = session(0);
+        IoSession c = session(0);
+        IoSession[] sessions = { a, b, c };
+        unavailable.add(b);
+
+        SessionSelector selector = new RoundRobinSessionSelector();
+        Set<IoSession> seen = new HashSet<IoSession>();
+        for (int i = 0; i < 6; i++) {
+            seen.add(selector.select(sessions, availability));
+        }
+        assertEquals(2, seen.size());
+        assertFalse(seen.contains(b));
+    }
+
+    @Test
+    public void noneAvailable() {
+        IoSession a = session(0);
+        IoSession b = session(0);
+        IoSession[] sessions = { a, b };
+        unavailable.add(a);
+        unavailable.add(b);
+
+        for (SessionSelectionStrategy strategy : SessionSelectionStrategy.values()) {
+            assertNull(strategy.name(), strategy.newSelector().select(sessions, availability));
+        }
+    }
+
+    @Test
+    public void leastOutstandingRequests() {
+        IoSession busy = session(2000);
+        IoSession quiet = session(3);
+        IoSession idleButUnavailable = session(0);
+        IoSession[] sessions = { busy, idleButUnavailable, quiet };
+        unavailable.add(idleButUnavailable);
+
+        SessionSelector selector = new LeastOutstandingRequestsSessionSelector();
+        for (int i = 0; i < 10; i++) {
+            assertSame(quiet, selector.select(sessions, availability));
+        }
+    }
+
+    @Test
+    public void powerOfTwoChoicesNeverPicksTheBusiest() {
+        IoSession busy = session(2000);
+        IoSession[] sessions = { busy, session(1), session(2) };
+
+        // whichever pair is chosen, the busy session loses to the other
+        SessionSelector selector = new PowerOfTwoChoicesSessionSelector();
+        for (int i = 0; i < 100; i++) {
+            IoSession selected = selector.select(sessions, availability);
+            assertNotSame(busy, selected);
+        }
+    }
+
+    @Test
+    public void powerOfTwoChoicesSingleSession() {
+        IoSession only = session(10);
+        assertSame(only, new PowerOfTwoChoicesSessionSelector().select(new IoSession[] { only }, availability));
+    }
+
+    private IoSession session(int outstandingRequests) {
+        RequestResponseManager manager = mock(RequestResponseManager.class);
+        when(manager.getOutstandingRequestCount()).thenReturn(outstandingRequests);
+        IoSession session = mock(IoSession.class);
+        when(session.getAttribute(RequestResponseManager.SESSION_KEY)).thenReturn(manager);
+        return session;
+    }
+}
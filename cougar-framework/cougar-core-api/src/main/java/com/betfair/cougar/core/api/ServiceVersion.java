@@ -16,9 +16,6 @@
 
 package com.betfair.cougar.core.api;
 
-import org.apache.commons.lang.builder.EqualsBuilder;
-import org.apache.commons.lang.builder.HashCodeBuilder;
-
 public class ServiceVersion {
     private final int major;
     private final int minor;
@@ -63,7 +60,7 @@ public class ServiceVersion {
     public boolean equals(Object obj) {
         if (obj instanceof ServiceVersion) {
             ServiceVersion other = (ServiceVersion)obj;
-            return new EqualsBuilder().append(major, other.major).append(minor, other.minor).isEquals();
+            return major == other.major && minor == other.minor;
         }
         return false;
 
@@ -71,6 +68,7 @@ public class ServiceVersion {
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder().append(major).append(minor).toHashCode();
+        // same value HashCodeBuilder would give us, without the garbage
+        return (17 * 37 + major) * 37 + minor;
     }
 }
@@ -17,11 +17,12 @@
 package com.betfair.cougar.core.api.ev;
 
 import com.betfair.cougar.core.api.ServiceVersion;
-import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedResource;
 
+import java.util.Objects;
+
 @ManagedResource
 public class OperationKey {
 
@@ -37,6 +38,9 @@ public class OperationKey {
 
     private final OperationKey localKey;
 
+    // keys are looked up on every request, so it's worth not recomputing this each time
+    private int hash;
+
 
     public OperationKey(OperationKey key, String namespace) {
         this (key.version, key.serviceName, key.operationName, key.type, namespace, key);
@@ -89,12 +93,17 @@ public class OperationKey {
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder()
-            .append(namespace)
-            .append(operationName)
-            .append(serviceName)
-            .append(version)
-            .toHashCode();
+        int h = hash;
+        if (h == 0) {
+            h = new HashCodeBuilder()
+                .append(namespace)
+                .append(operationName)
+                .append(serviceName)
+                .append(version)
+                .toHashCode();
+            hash = h;
+        }
+        return h;
     }
 
     @Override
@@ -104,12 +113,10 @@ public class OperationKey {
         }
         if (obj instanceof OperationKey) {
             OperationKey other = (OperationKey)obj;
-            return new EqualsBuilder()
-            .append(namespace, other.namespace)
-            .append(operationName, other.operationName)
-            .append(serviceName,other.serviceName)
-            .append(version, other.version)
-            .isEquals();
+            return Objects.equals(namespace, other.namespace)
+                && Objects.equals(operationName, other.operationName)
+                && Objects.equals(serviceName, other.serviceName)
+                && Objects.equals(version, other.version);
         }
         return false;
     }
@@ -58,4 +58,12 @@ public class PostMatchingInterceptor implements ExecutionPostProcessor {
     public void setMatcher(Matcher matcher) {
         this.matcher = matcher;
     }
+
+    public Matcher getMatcher() {
+        return matcher;
+    }
+
+    public ExecutionPostProcessor getPostProcessor() {
+        return postProcessor;
+    }
 }
@@ -59,6 +59,14 @@ public class PreMatchingInterceptor implements ExecutionPreProcessor {
         this.matcher = matcher;
     }
 
+    public Matcher getMatcher() {
+        return matcher;
+    }
+
+    public ExecutionPreProcessor getPreProcessor() {
+        return preProcessor;
+    }
+
     @Override
     public ExecutionRequirement getExecutionRequirement() {
         return preProcessor.getExecutionRequirement();
@@ -19,6 +19,7 @@ package com.betfair.cougar.core.api.tracing;
 
 import com.betfair.cougar.api.ExecutionContext;
 import com.betfair.cougar.api.RequestUUID;
+import com.betfair.cougar.api.ResponseCode;
 import com.betfair.cougar.core.api.ev.OperationKey;
 
 /**
@@ -46,6 +47,13 @@ public interface Tracer {
      */
     void end(RequestUUID uuid);
 
+    /**
+     * As {@link #end(RequestUUID)}, for transports which know the outcome of the request.
+     *
+     * @param responseCode the response code sent back to the caller
+     */
+    void end(RequestUUID uuid, ResponseCode responseCode);
+
     void startCall(RequestUUID uuid, RequestUUID subUuid, OperationKey operationKey);
 
     void endCall(RequestUUID uuid, RequestUUID subUuid, OperationKey operationKey);
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.core.api.transcription;
+
+import java.io.IOException;
+
+/**
+ * A generated binary codec for a single IDD data type. Fields are written in the fixed order declared by
+ * {@link #getParameters()} using compact primitive encodings, with no field names, type tags or reference tracking.
+ * <p/>
+ * Implementations are emitted by the code generator alongside each data type as
+ * <code>&lt;DataTypeName&gt;BinaryCodec</code> and are located via {@link BinaryCodecs}.
+ */
+public interface BinaryCodec<T extends Transcribable> {
+
+    Parameter[] getParameters();
+
+    void write(T value, BinaryCodecOutput out) throws IOException;
+
+    T read(BinaryCodecInput in) throws IOException;
+}
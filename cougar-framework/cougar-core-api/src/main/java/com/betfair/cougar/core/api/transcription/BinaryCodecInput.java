@@ -0,0 +1,362 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.core.api.transcription;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Reads values written by {@link BinaryCodecOutput}.
+ */
+public class BinaryCodecInput {
+
+    /**
+     * Supplies the values which the writer deferred to the enclosing encoding, in the order they were deferred.
+     */
+    public interface DeferredObjectSource {
+        Object readObject(ParameterType type) throws IOException;
+    }
+
+    private static final DeferredObjectSource NO_DEFERRED_OBJECTS = new DeferredObjectSource() {
+        @Override
+        public Object readObject(ParameterType type) throws IOException {
+            throw new IOException("No deferred objects available to read " + type.getImplementationClass().getName());
+        }
+    };
+
+    private final byte[] buf;
+    private int pos;
+    private final int limit;
+    private final DeferredObjectSource deferredObjects;
+
+    public BinaryCodecInput(byte[] buf) {
+        this(buf, NO_DEFERRED_OBJECTS);
+    }
+
+    public BinaryCodecInput(byte[] buf, DeferredObjectSource deferredObjects) {
+        this.buf = buf;
+        this.pos = 0;
+        this.limit = buf.length;
+        this.deferredObjects = deferredObjects;
+    }
+
+    public Boolean readBoolean() throws IOException {
+        switch (readRawByte()) {
+            case 0: return null;
+            case 1: return Boolean.FALSE;
+            case 2: return Boolean.TRUE;
+            default: throw new IOException("Invalid boolean encoding");
+        }
+    }
+
+    public Byte readByte() throws IOException {
+        return readPresence() ? readRawByte() : null;
+    }
+
+    public Integer readInt() throws IOException {
+        long l = readRawVarLong();
+        return l == 0 ? null : unZigZag((int) (l - 1));
+    }
+
+    public Long readLong() throws IOException {
+        return readPresence() ? unZigZag(readRawVarLong()) : null;
+    }
+
+    public Float readFloat() throws IOException {
+        return readPresence() ? Float.intBitsToFloat(readRawInt()) : null;
+    }
+
+    public Double readDouble() throws IOException {
+        return readPresence() ? Double.longBitsToDouble(readRawLong()) : null;
+    }
+
+    public Date readDate() throws IOException {
+        return readPresence() ? new Date(unZigZag(readRawVarLong())) : null;
+    }
+
+    public String readString() throws IOException {
+        int len = readLength();
+        if (len < 0) {
+            return null;
+        }
+        require(len);
+        String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+        pos += len;
+        return s;
+    }
+
+    public byte[] readBytes() throws IOException {
+        int len = readLength();
+        if (len < 0) {
+            return null;
+        }
+        require(len);
+        byte[] bytes = new byte[len];
+        System.arraycopy(buf, pos, bytes, 0, len);
+        pos += len;
+        return bytes;
+    }
+
+    public int readUnsignedVarInt() throws IOException {
+        return (int) readRawVarLong();
+    }
+
+    public long readVarLong() throws IOException {
+        return unZigZag(readRawVarLong());
+    }
+
+    /**
+     * Reads an enum written as its name, honouring the thread's enum hard failure mode.
+     */
+    public <T extends Enum<T>> T readEnum(Class<T> cls) throws IOException {
+        String name = readString();
+        return name != null ? EnumUtils.readEnum(cls, name) : null;
+    }
+
+    /**
+     * Reads a value of any transcribable parameter type, the mirror of {@link BinaryCodecOutput#writeValue}.
+     */
+    public Object readValue(ParameterType type) throws IOException {
+        if (BinaryCodecs.isInline(type)) {
+            return readInline(type);
+        }
+        return deferredObjects.readObject(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object readInline(ParameterType type) throws IOException {
+        switch (type.getType()) {
+            case BOOLEAN: return readBoolean();
+            case BYTE: return readByte();
+            case INT: return readInt();
+            case LONG: return readLong();
+            case FLOAT: return readFloat();
+            case DOUBLE: return readDouble();
+            case DATE: return readDate();
+            case STRING: return readString();
+            case ENUM:
+                String name = readString();
+                return name != null ? EnumUtils.readEnum(type.getImplementationClass(), name) : null;
+            case LIST:
+                if (type.getImplementationClass() == byte[].class) {
+                    return readBytes();
+                }
+                return readCollection(type.getComponentTypes()[0], false);
+            case SET:
+                return readCollection(type.getComponentTypes()[0], true);
+            case MAP:
+                return readMap(type.getComponentTypes()[0], type.getComponentTypes()[1]);
+            default:
+                throw new IOException("Unsupported parameter type " + type.getType());
+        }
+    }
+
+    /**
+     * Reads an inline value described only by its {@link BinaryCodecs#typeCode type code}, as used when the writer's
+     * layout differs from the reader's. Enums are returned as their names.
+     */
+    public Object readValue(String typeCode) throws IOException {
+        int[] pos = new int[1];
+        Object ret = readCoded(typeCode, pos);
+        if (pos[0] != typeCode.length()) {
+            throw new IOException("Malformed type code " + typeCode);
+        }
+        return ret;
+    }
+
+    private Object readCoded(String code, int[] codePos) throws IOException {
+        if (codePos[0] >= code.length()) {
+            throw new IOException("Malformed type code " + code);
+        }
+        char c = code.charAt(codePos[0]++);
+        switch (c) {
+            case 'Z': return readBoolean();
+            case 'B': return readByte();
+            case 'I': return readInt();
+            case 'J': return readLong();
+            case 'F': return readFloat();
+            case 'D': return readDouble();
+            case 'T': return readDate();
+            case 'S':
+            case 'E': return readString();
+            case 'Y': return readBytes();
+            case 'L':
+            case 'H': {
+                expect(code, codePos, '<');
+                int elementStart = codePos[0];
+                int size = readLength();
+                Collection<Object> coll = null;
+                if (size >= 0) {
+                    coll = c == 'H' ? new HashSet<Object>(capacity(size)) : new ArrayList<Object>(size);
+                    for (int i = 0; i < size; i++) {
+                        codePos[0] = elementStart;
+                        coll.add(readCoded(code, codePos));
+                    }
+                }
+                codePos[0] = elementStart;
+                skipCode(code, codePos);
+                expect(code, codePos, '>');
+                return coll;
+            }
+            case 'M': {
+                expect(code, codePos, '<');
+                int keyStart = codePos[0];
+                skipCode(code, codePos);
+                expect(code, codePos, ',');
+                int valueStart = codePos[0];
+                int size = readLength();
+                Map<Object, Object> map = null;
+                if (size >= 0) {
+                    map = new HashMap<>(capacity(size));
+                    for (int i = 0; i < size; i++) {
+                        codePos[0] = keyStart;
+                        Object key = readCoded(code, codePos);
+                        codePos[0] = valueStart;
+                        map.put(key, readCoded(code, codePos));
+                    }
+                }
+                codePos[0] = valueStart;
+                skipCode(code, codePos);
+                expect(code, codePos, '>');
+                return map;
+            }
+            default:
+                throw new IOException("Unexpected type code " + code);
+        }
+    }
+
+    private static void skipCode(String code, int[] codePos) throws IOException {
+        if (codePos[0] >= code.length()) {
+            throw new IOException("Malformed type code " + code);
+        }
+        char c = code.charAt(codePos[0]++);
+        if (c == 'L' || c == 'H') {
+            expect(code, codePos, '<');
+            skipCode(code, codePos);
+            expect(code, codePos, '>');
+        }
+        else if (c == 'M') {
+            expect(code, codePos, '<');
+            skipCode(code, codePos);
+            expect(code, codePos, ',');
+            skipCode(code, codePos);
+            expect(code, codePos, '>');
+        }
+    }
+
+    private static void expect(String code, int[] codePos, char expected) throws IOException {
+        if (codePos[0] >= code.length() || code.charAt(codePos[0]++) != expected) {
+            throw new IOException("Malformed type code " + code);
+        }
+    }
+
+    private Collection<Object> readCollection(ParameterType elementType, boolean set) throws IOException {
+        int size = readLength();
+        if (size < 0) {
+            return null;
+        }
+        Collection<Object> c = set ? new HashSet<Object>(capacity(size)) : new ArrayList<Object>(size);
+        for (int i = 0; i < size; i++) {
+            c.add(readInline(elementType));
+        }
+        return c;
+    }
+
+    private Map<Object, Object> readMap(ParameterType keyType, ParameterType valueType) throws IOException {
+        int size = readLength();
+        if (size < 0) {
+            return null;
+        }
+        Map<Object, Object> m = new HashMap<>(capacity(size));
+        for (int i = 0; i < size; i++) {
+            Object key = readInline(keyType);
+            m.put(key, readInline(valueType));
+        }
+        return m;
+    }
+
+    private static int capacity(int size) {
+        return Math.max((int) (size / .75f) + 1, 16);
+    }
+
+    /**
+     * @return the length, or -1 for null
+     */
+    private int readLength() throws IOException {
+        long l = readRawVarLong();
+        if (l > Integer.MAX_VALUE) {
+            throw new IOException("Invalid length " + l);
+        }
+        return (int) l - 1;
+    }
+
+    private boolean readPresence() throws IOException {
+        return readRawByte() != 0;
+    }
+
+    private byte readRawByte() throws IOException {
+        require(1);
+        return buf[pos++];
+    }
+
+    private int readRawInt() throws IOException {
+        require(4);
+        return ((buf[pos++] & 0xFF) << 24) | ((buf[pos++] & 0xFF) << 16) | ((buf[pos++] & 0xFF) << 8) | (buf[pos++] & 0xFF);
+    }
+
+    private long readRawLong() throws IOException {
+        return ((long) readRawInt() << 32) | (readRawInt() & 0xFFFFFFFFL);
+    }
+
+    private long readRawVarLong() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = readRawByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static int unZigZag(int i) {
+        return (i >>> 1) ^ -(i & 1);
+    }
+
+    private static long unZigZag(long l) {
+        return (l >>> 1) ^ -(l & 1);
+    }
+
+    private void require(int n) throws EOFException {
+        if (n < 0 || pos + n > limit) {
+            throw new EOFException();
+        }
+    }
+
+    public int remaining() {
+        return limit - pos;
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.core.api.transcription;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Growable buffer that {@link BinaryCodec}s write to.
+ * <p/>
+ * Integers, longs and dates are zig-zag varints. Nulls are folded into the value where there's spare encoding
+ * space (ints, strings, byte arrays, collections, booleans) and are otherwise written as a leading presence byte.
+ * Instances are not thread safe, but may be {@link #reset()} and reused.
+ */
+public class BinaryCodecOutput {
+
+    private byte[] buf;
+    private int count;
+    private final List<Object> deferred = new ArrayList<>();
+
+    public BinaryCodecOutput() {
+        this(256);
+    }
+
+    public BinaryCodecOutput(int initialCapacity) {
+        buf = new byte[initialCapacity];
+    }
+
+    public void writeBoolean(Boolean b) {
+        writeRawByte(b == null ? 0 : (b ? 2 : 1));
+    }
+
+    public void writeByte(Byte b) {
+        if (writePresence(b)) {
+            writeRawByte(b);
+        }
+    }
+
+    public void writeInt(Integer i) {
+        // shift the zig-zag encoding up by one, leaving 0 for null
+        writeRawVarLong(i == null ? 0 : (zigZag(i) & 0xFFFFFFFFL) + 1);
+    }
+
+    public void writeLong(Long l) {
+        if (writePresence(l)) {
+            writeRawVarLong(zigZag(l));
+        }
+    }
+
+    public void writeFloat(Float f) {
+        if (writePresence(f)) {
+            writeRawInt(Float.floatToIntBits(f));
+        }
+    }
+
+    public void writeDouble(Double d) {
+        if (writePresence(d)) {
+            writeRawLong(Double.doubleToLongBits(d));
+        }
+    }
+
+    public void writeDate(Date d) {
+        if (writePresence(d)) {
+            writeRawVarLong(zigZag(d.getTime()));
+        }
+    }
+
+    public void writeString(String s) {
+        if (s == null) {
+            writeRawVarLong(0);
+            return;
+        }
+        int len = s.length();
+        // optimistically assume ascii, falling back to a full utf-8 encode if not
+        ensureCapacity(len + 5);
+        int start = count;
+        writeRawVarLong(len + 1);
+        int pos = count;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                count = start;
+                writeBytes(s.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            buf[pos++] = (byte) c;
+        }
+        count = pos;
+    }
+
+    public void writeBytes(byte[] bytes) {
+        if (bytes == null) {
+            writeRawVarLong(0);
+            return;
+        }
+        writeRawVarLong(bytes.length + 1);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buf, count, bytes.length);
+        count += bytes.length;
+    }
+
+    /**
+     * Writes a non-null int which is expected to be small and non-negative, such as an id or a count.
+     */
+    public void writeUnsignedVarInt(int i) {
+        writeRawVarLong(i & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Writes a non-null long as a zig-zag varint, so that small values of either sign are compact.
+     */
+    public void writeVarLong(long l) {
+        writeRawVarLong(zigZag(l));
+    }
+
+    public void writeEnum(Enum<?> e) {
+        writeString(e != null ? e.name() : null);
+    }
+
+    /**
+     * Writes a value of any transcribable parameter type. Values whose type contains data types are not written
+     * here but queued in order as {@link #getDeferredObjects() deferred objects}, for the caller to write after
+     * this output using the enclosing encoding.
+     */
+    public void writeValue(Object value, ParameterType type) throws IOException {
+        if (BinaryCodecs.isInline(type)) {
+            writeInline(value, type);
+        }
+        else {
+            deferred.add(value);
+        }
+    }
+
+    private void writeInline(Object value, ParameterType type) throws IOException {
+        switch (type.getType()) {
+            case BOOLEAN: writeBoolean((Boolean) value); break;
+            case BYTE: writeByte((Byte) value); break;
+            case INT: writeInt((Integer) value); break;
+            case LONG: writeLong((Long) value); break;
+            case FLOAT: writeFloat((Float) value); break;
+            case DOUBLE: writeDouble((Double) value); break;
+            case DATE: writeDate((Date) value); break;
+            case STRING: writeString((String) value); break;
+            case ENUM: writeEnum((Enum<?>) value); break;
+            case LIST:
+            case SET:
+                if (type.getImplementationClass() == byte[].class) {
+                    writeBytes((byte[]) value);
+                }
+                else {
+                    writeCollection((Collection<?>) value, type.getComponentTypes()[0]);
+                }
+                break;
+            case MAP:
+                writeMap((Map<?, ?>) value, type.getComponentTypes()[0], type.getComponentTypes()[1]);
+                break;
+            default:
+                throw new IOException("Unsupported parameter type " + type.getType());
+        }
+    }
+
+    private void writeCollection(Collection<?> c, ParameterType elementType) throws IOException {
+        if (c == null) {
+            writeRawVarLong(0);
+            return;
+        }
+        writeRawVarLong(c.size() + 1);
+        for (Object o : c) {
+            writeInline(o, elementType);
+        }
+    }
+
+    private void writeMap(Map<?, ?> m, ParameterType keyType, ParameterType valueType) throws IOException {
+        if (m == null) {
+            writeRawVarLong(0);
+            return;
+        }
+        writeRawVarLong(m.size() + 1);
+        for (Map.Entry<?, ?> e : m.entrySet()) {
+            writeInline(e.getKey(), keyType);
+            writeInline(e.getValue(), valueType);
+        }
+    }
+
+    private boolean writePresence(Object o) {
+        writeRawByte(o != null ? 1 : 0);
+        return o != null;
+    }
+
+    private void writeRawByte(int b) {
+        ensureCapacity(1);
+        buf[count++] = (byte) b;
+    }
+
+    private void writeRawInt(int i) {
+        ensureCapacity(4);
+        buf[count++] = (byte) (i >>> 24);
+        buf[count++] = (byte) (i >>> 16);
+        buf[count++] = (byte) (i >>> 8);
+        buf[count++] = (byte) i;
+    }
+
+    private void writeRawLong(long l) {
+        writeRawInt((int) (l >>> 32));
+        writeRawInt((int) l);
+    }
+
+    private void writeRawVarLong(long l) {
+        ensureCapacity(10);
+        while ((l & ~0x7FL) != 0) {
+            buf[count++] = (byte) ((l & 0x7F) | 0x80);
+            l >>>= 7;
+        }
+        buf[count++] = (byte) l;
+    }
+
+    private static int zigZag(int i) {
+        return (i << 1) ^ (i >> 31);
+    }
+
+    private static long zigZag(long l) {
+        return (l << 1) ^ (l >> 63);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (count + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + extra));
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void reset() {
+        count = 0;
+        deferred.clear();
+    }
+
+    /**
+     * @return the values passed to {@link #writeValue} which weren't written inline, in the order they were written
+     */
+    public List<Object> getDeferredObjects() {
+        return deferred;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    public void writeTo(OutputStream os) throws IOException {
+        os.write(buf, 0, count);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.core.api.transcription;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Locates generated {@link BinaryCodec}s by naming convention (<code>Foo</code> -&gt; <code>FooBinaryCodec</code>) and
+ * describes how each parameter type is laid out in the binary encoding.
+ * <p/>
+ * Values whose type contains no data types are written inline by the codec. Anything else (nested data types and
+ * collections of them) is handed back to the enclosing transport encoding, so that every data type on the wire
+ * carries its own layout and peers generated from different minor versions of an IDD can still read each other.
+ */
+public final class BinaryCodecs {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BinaryCodecs.class);
+
+    static final String CODEC_SUFFIX = "BinaryCodec";
+
+    /** Type code for values which aren't written inline. */
+    public static final String DEFERRED_TYPE_CODE = "O";
+
+    private static final BinaryCodec<?> NO_CODEC = new BinaryCodec<Transcribable>() {
+        @Override
+        public Parameter[] getParameters() {
+            return new Parameter[0];
+        }
+        @Override
+        public void write(Transcribable value, BinaryCodecOutput out) {
+            throw new UnsupportedOperationException();
+        }
+        @Override
+        public Transcribable read(BinaryCodecInput in) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    private static final ConcurrentMap<Class<?>, BinaryCodec<?>> CODECS = new ConcurrentHashMap<>();
+
+    private BinaryCodecs() {
+    }
+
+    /**
+     * @return the generated codec for the given data type, or null if it has none
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Transcribable> BinaryCodec<T> forClass(Class<?> cls) {
+        BinaryCodec<?> codec = CODECS.get(cls);
+        if (codec == null) {
+            codec = load(cls);
+            BinaryCodec<?> existing = CODECS.putIfAbsent(cls, codec);
+            if (existing != null) {
+                codec = existing;
+            }
+        }
+        return codec != NO_CODEC ? (BinaryCodec<T>) codec : null;
+    }
+
+    /**
+     * @return true if values of this type are written inline, false if they're deferred to the enclosing encoding
+     */
+    public static boolean isInline(ParameterType type) {
+        switch (type.getType()) {
+            case LIST:
+            case SET:
+            case MAP:
+                if (type.getComponentTypes() == null) {
+                    return false;
+                }
+                for (ParameterType component : type.getComponentTypes()) {
+                    if (!isInline(component)) {
+                        return false;
+                    }
+                }
+                return true;
+            case OBJECT:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Describes the encoding of a parameter type, such that a reader can decode (or skip) a value without
+     * knowing the java type which wrote it.
+     */
+    public static String typeCode(ParameterType type) {
+        if (!isInline(type)) {
+            return DEFERRED_TYPE_CODE;
+        }
+        switch (type.getType()) {
+            case BOOLEAN: return "Z";
+            case BYTE: return "B";
+            case INT: return "I";
+            case LONG: return "J";
+            case FLOAT: return "F";
+            case DOUBLE: return "D";
+            case DATE: return "T";
+            case STRING: return "S";
+            case ENUM: return "E";
+            case LIST:
+                if (type.getImplementationClass() == byte[].class) {
+                    return "Y";
+                }
+                return "L<" + typeCode(type.getComponentTypes()[0]) + ">";
+            case SET:
+                return "H<" + typeCode(type.getComponentTypes()[0]) + ">";
+            case MAP:
+                return "M<" + typeCode(type.getComponentTypes()[0]) + "," + typeCode(type.getComponentTypes()[1]) + ">";
+            default:
+                throw new IllegalArgumentException("Unsupported parameter type " + type.getType());
+        }
+    }
+
+    private static BinaryCodec<?> load(Class<?> cls) {
+        if (!Transcribable.class.isAssignableFrom(cls)) {
+            return NO_CODEC;
+        }
+        String codecName = cls.getName() + CODEC_SUFFIX;
+        try {
+            Class<?> codecClass = Class.forName(codecName, true, cls.getClassLoader());
+            if (!BinaryCodec.class.isAssignableFrom(codecClass)) {
+                LOGGER.warn("Ignoring {} as it is not a {}", codecName, BinaryCodec.class.getSimpleName());
+                return NO_CODEC;
+            }
+            return (BinaryCodec<?>) codecClass.newInstance();
+        }
+        catch (ClassNotFoundException e) {
+            LOGGER.debug("No generated binary codec found for {}", cls.getName());
+            return NO_CODEC;
+        }
+        catch (InstantiationException | IllegalAccessException e) {
+            LOGGER.warn("Unable to instantiate binary codec {}", codecName, e);
+            return NO_CODEC;
+        }
+    }
+}
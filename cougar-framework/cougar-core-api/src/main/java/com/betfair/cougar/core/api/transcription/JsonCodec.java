@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.core.api.transcription;
+
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+
+/**
+ * A generated, reflection free Jackson serializer/deserializer pair for a single IDD data type.
+ * <p/>
+ * Implementations are emitted by the code generator alongside each data type as
+ * <code>&lt;DataTypeName&gt;JsonCodec</code> and are discovered by naming convention, so a data type which
+ * has no codec (e.g. one generated by an older plugin) simply falls back to bean introspection.
+ */
+public interface JsonCodec<T> {
+
+    JsonSerializer<T> createSerializer();
+
+    JsonDeserializer<T> createDeserializer();
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.core.api.transcription;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.deser.std.StringDeserializer;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Helpers shared by generated {@link JsonCodec} implementations. These mirror what Jackson's own bean
+ * (de)serializers do, so that generated codecs produce identical output and identical failures.
+ */
+public final class JsonCodecSupport {
+
+    private JsonCodecSupport() {
+    }
+
+    /**
+     * Builds the Jackson type for a parameter, using the same concrete collection types as the json unmarshaller.
+     */
+    public static JavaType javaType(final TypeFactory typeFactory, ParameterType parameterType) {
+        return parameterType.transform(new ParameterType.TransformingVisitor<JavaType>() {
+            @Override
+            public JavaType transformMapType(JavaType keyType, JavaType valueType) {
+                return typeFactory.constructMapType(HashMap.class, keyType, valueType);
+            }
+            @Override
+            public JavaType transformListType(JavaType elemType) {
+                return typeFactory.constructCollectionType(ArrayList.class, elemType);
+            }
+            @Override
+            public JavaType transformSetType(JavaType elemType) {
+                return typeFactory.constructCollectionType(HashSet.class, elemType);
+            }
+            @Override
+            public JavaType transformType(ParameterType.Type type, Class implementationClass) {
+                return typeFactory.uncheckedSimpleType(implementationClass);
+            }
+        });
+    }
+
+    /**
+     * Moves the parser onto the first field of an object, accepting either the start of the object or (as
+     * Jackson does for polymorphic/buffered content) a parser already positioned on the first field name.
+     *
+     * @return the current token, which is either a field name or the end of the object
+     */
+    public static JsonToken startObject(JsonParser jp, DeserializationContext ctxt, Class<?> type) throws IOException {
+        JsonToken t = jp.getCurrentToken();
+        if (t == JsonToken.START_OBJECT) {
+            t = jp.nextToken();
+        }
+        if (t != JsonToken.FIELD_NAME && t != JsonToken.END_OBJECT) {
+            throw ctxt.mappingException(type, t);
+        }
+        return t;
+    }
+
+    /**
+     * Reads the value the parser is positioned on, honouring the deserializer's null value.
+     */
+    public static Object readValue(JsonDeserializer<Object> deserializer, JsonParser jp, DeserializationContext ctxt) throws IOException {
+        if (jp.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return deserializer.getNullValue();
+        }
+        return deserializer.deserialize(jp, ctxt);
+    }
+
+    /**
+     * Reads a string value, taking the fast path for the common case and otherwise applying Jackson's own coercion rules.
+     */
+    public static String readString(JsonParser jp, DeserializationContext ctxt) throws IOException {
+        JsonToken t = jp.getCurrentToken();
+        if (t == JsonToken.VALUE_STRING) {
+            return jp.getText();
+        }
+        if (t == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        return StringDeserializer.instance.deserialize(jp, ctxt);
+    }
+
+    /**
+     * Rethrows a failure setting a field in the same shape as Jackson's bean deserializer would, so that
+     * callers which classify failures (e.g. enum deserialisation errors) see no difference.
+     */
+    public static void wrapAndThrow(Throwable t, Object bean, String fieldName, DeserializationContext ctxt) throws IOException {
+        while (t instanceof InvocationTargetException && t.getCause() != null) {
+            t = t.getCause();
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        boolean wrap = (ctxt == null) || ctxt.isEnabled(DeserializationFeature.WRAP_EXCEPTIONS);
+        if (t instanceof IOException) {
+            if (!wrap || !(t instanceof JsonProcessingException)) {
+                throw (IOException) t;
+            }
+        }
+        else if (!wrap) {
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            }
+        }
+        throw JsonMappingException.wrapWithPath(t, bean, fieldName);
+    }
+}
@@ -26,7 +26,7 @@ import java.util.Set;
  */
 public enum TranscribableParams {
 
-    EnumsWrittenAsStrings, MajorOnlyPackageNaming;
+    EnumsWrittenAsStrings, MajorOnlyPackageNaming, GeneratedBinaryCodecs, CompactHeapUpdates;
 
     private static Set<TranscribableParams> ALL_SET = Collections.unmodifiableSet(EnumSet.allOf(TranscribableParams.class));
     private static Set<TranscribableParams> NONE_SET = Collections.unmodifiableSet(EnumSet.noneOf(TranscribableParams.class));
@@ -30,10 +30,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 
 import java.util.*;
-import java.util.concurrent.DelayQueue;
-import java.util.concurrent.Delayed;
 import java.util.concurrent.Executor;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 
@@ -48,17 +45,13 @@ public class BaseExecutionVenue implements ExecutionVenue {
     private List<ExecutionPreProcessor> preProcessorList = new ArrayList<ExecutionPreProcessor>();
     private IdentityResolver identityResolver;
 
-    private DelayQueue<ExpiringObserver> expiringObservers = new DelayQueue<>();
+    private ExpiryScheduler expiryScheduler = new HashedWheelExpiryScheduler();
 
     protected Map<OperationKey, DefinedExecutable> registry = new HashMap<>();
 
     @Override
     public void registerOperation(String namespace, OperationDefinition def, Executable executable, ExecutionTimingRecorder recorder, long maxExecutionTime) {
 
-        if (isInterceptingSupported()) {
-            executable = new InterceptingExecutableWrapper(executable, preProcessorList, postProcessorList);
-        }
-
         OperationKey key = def.getOperationKey();
         if (namespace != null) {
             key = new OperationKey(key, namespace);
@@ -66,10 +59,18 @@ public class BaseExecutionVenue implements ExecutionVenue {
         if (registry.containsKey(key)) {
             throw new IllegalArgumentException("The Operation key "+key+" is already defined in the execution venue");
         }
+
+        InterceptingExecutableWrapper interceptors = null;
+        if (isInterceptingSupported()) {
+            interceptors = new InterceptingExecutableWrapper(executable, preProcessorList, postProcessorList, key);
+            executable = interceptors;
+        }
+
         registry.put(key,
                 new DefinedExecutable(
                         def,
                         executable,
+                        interceptors,
                         recorder,
                         maxExecutionTime));
         LOGGER.info("Registered operation: {}", key);
@@ -132,6 +133,8 @@ public class BaseExecutionVenue implements ExecutionVenue {
 
     @Override
     public void execute(final ExecutionContext ctx, final OperationKey key, final Object[] args, ExecutionObserver observer, TimeConstraints timeConstraints) {
+        // we only ever see one of our own expiring observers when we've come from the executor below, in which case the pre-queue processors have been run
+        final boolean preQueueExecuted = observer instanceof ExpiringObserver;
         final DefinedExecutable de = registry.get(key);
         if (de == null) {
             LOGGER.debug("Not request logging request to URI: {} as no operation was found", key.toString());
@@ -143,18 +146,22 @@ public class BaseExecutionVenue implements ExecutionVenue {
             if (expiryTime == Long.MAX_VALUE) {
                 expiryTime = 0;
             }
-            if (!(observer instanceof ExpiringObserver)) {
+            // nothing to guard against if there's no deadline
+            if (expiryTime != 0 && !preQueueExecuted) {
                 final ExpiringObserver expiringObserver = new ExpiringObserver(observer, expiryTime);
-                if (expiringObserver.expires()) {
-                    registerExpiringObserver(expiringObserver);
-                }
+                registerExpiringObserver(expiringObserver);
                 observer = expiringObserver;
             }
             observer = new ExecutionObserverWrapper(observer, de.recorder, key);
 
             try {
                 ExecutionContext contextToUse = resolveIdentitiesIfRequired(ctx);
-                de.exec.execute(contextToUse, key, args, observer, this, timeConstraints);
+                if (de.interceptors != null) {
+                    de.interceptors.execute(contextToUse, key, args, observer, this, timeConstraints, preQueueExecuted);
+                }
+                else {
+                    de.exec.execute(contextToUse, key, args, observer, this, timeConstraints);
+                }
             } catch (CougarException e) {
                 observer.onResult(new ExecutionResult(e));
             } catch (Exception e) {
@@ -164,9 +171,6 @@ public class BaseExecutionVenue implements ExecutionVenue {
                                 e)));
             }
         }
-        if (observer instanceof ExpiringObserver) {
-            deregisterExpiringObserver((ExpiringObserver) observer);
-        }
     }
 
     @Override
@@ -176,14 +180,12 @@ public class BaseExecutionVenue implements ExecutionVenue {
         }
 
         final DefinedExecutable de = registry.get(key);
-        final InterceptingExecutableWrapper interceptingExecutableWrapper = ExecutableWrapperUtils.findChild(InterceptingExecutableWrapper.class, de.exec);
-        // this has to be a new list since the InterceptionUtils.execute call below is allowed to (expected to even) mutate the second list passed in
-        final List<ExecutionPreProcessor> remainingProcessors = new ArrayList<>(preProcessorList);
+        final ExecutionPreProcessor[] preQueueProcessors = de != null && de.interceptors != null ? de.interceptors.getInterceptorChain().getPreQueue() : InterceptorChain.NO_PRE_PROCESSORS;
 
         final Runnable execution = new Runnable() {
             @Override
             public void run() {
-                long serverExpiryTime = de.maxExecutionTime == 0 ? Long.MAX_VALUE : System.currentTimeMillis() + de.maxExecutionTime;
+                long serverExpiryTime = de == null || de.maxExecutionTime == 0 ? Long.MAX_VALUE : System.currentTimeMillis() + de.maxExecutionTime;
                 long clientExpiryTimeCopy = timeConstraints.getExpiryTime() == null ? Long.MAX_VALUE : timeConstraints.getExpiryTime();
                 long expiryTime = Math.min(clientExpiryTimeCopy, serverExpiryTime);
                 if (expiryTime == Long.MAX_VALUE) {
@@ -197,55 +199,36 @@ public class BaseExecutionVenue implements ExecutionVenue {
                 executor.execute(new Runnable() {
                     @Override
                     public void run() {
-                        // this gets run on the executor thread, so will be visible in the wrapper when executed
-                        if (interceptingExecutableWrapper != null) {
-                            interceptingExecutableWrapper.setUnexecutedPreProcessorsForThisThread(remainingProcessors);
-                        }
                         execute(ctx, key, args, expiringObserver, timeConstraints);
                     }
                 });
             }
         };
 
-        InterceptionUtils.execute(preProcessorList, remainingProcessors, ExecutionRequirement.PRE_QUEUE, execution, ctx, key, args, observer);
+        InterceptionUtils.execute(preQueueProcessors, execution, ctx, key, args, observer);
     }
 
     protected void start() {
-        Thread t = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                processExpiredObservers();
-            }
-        }, "EV-ExecutableExpiryDetection");
-        t.setDaemon(true);
-        t.start();
-    }
-
-    private void processExpiredObservers() {
-        // this executes on a daemon thread so we can happily loop forever
-        while (true) {
-            try {
-                ExpiringObserver expired = expiringObservers.take();
-                expired.expire();
-            } catch (InterruptedException e) {
-                // ignore, just carry on round
-            }
-        }
+        expiryScheduler.start();
     }
 
     private void registerExpiringObserver(ExpiringObserver expiringObserver) {
-        expiringObservers.add(expiringObserver);
+        expiringObserver.timeout = expiryScheduler.schedule(expiringObserver, expiringObserver.expiryTime);
     }
 
     private void deregisterExpiringObserver(ExpiringObserver expiringObserver) {
-        expiringObservers.remove(expiringObserver);
+        ExpiryScheduler.ExpiryTimeout timeout = expiringObserver.timeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
     }
 
-    private class ExpiringObserver implements ExecutionObserver, Delayed {
+    private class ExpiringObserver implements ExecutionObserver, ExpiryScheduler.Expirable {
 
         private AtomicBoolean onResultCalled = new AtomicBoolean(false);
         private final ExecutionObserver observer;
         private final long expiryTime;
+        private volatile ExpiryScheduler.ExpiryTimeout timeout;
 
         private ExpiringObserver(final ExecutionObserver observer, final long expiryTime) {
             this.observer = observer;
@@ -259,28 +242,13 @@ public class BaseExecutionVenue implements ExecutionVenue {
         @Override
         public void onResult(ExecutionResult executionResult) {
             if (onResultCalled.compareAndSet(false, true)) {
+                // don't leave the timer hanging around until it would have fired
+                deregisterExpiringObserver(this);
                 observer.onResult(executionResult);
             }
         }
 
-        public int compareTo(ExpiringObserver o) {
-            long diff = expiryTime - o.expiryTime;
-            if (diff == 0) {
-                return 0;
-            }
-            return diff < 0 ? -1 : 1;
-        }
-
-        @Override
-        public long getDelay(TimeUnit unit) {
-            return unit.convert(expiryTime-System.currentTimeMillis(),TimeUnit.MILLISECONDS);
-        }
-
         @Override
-        public int compareTo(Delayed o) {
-            return compareTo((ExpiringObserver)o);
-        }
-
         public void expire() {
             if (onResultCalled.compareAndSet(false, true)) {
                 observer.onResult(new ExecutionResult(new CougarFrameworkException(ServerFaultCode.Timeout, "Executable did not complete in time")));
@@ -292,12 +260,14 @@ public class BaseExecutionVenue implements ExecutionVenue {
     static class DefinedExecutable {
         private final OperationDefinition def;
         private final Executable exec;
+        private final InterceptingExecutableWrapper interceptors;
         private final ExecutionTimingRecorder recorder;
         private final long maxExecutionTime;
 
-        public DefinedExecutable(final OperationDefinition def, final Executable exec, final ExecutionTimingRecorder recorder, final long maxExecutionTime) {
+        public DefinedExecutable(final OperationDefinition def, final Executable exec, final InterceptingExecutableWrapper interceptors, final ExecutionTimingRecorder recorder, final long maxExecutionTime) {
             this.def = def;
             this.exec = exec;
+            this.interceptors = interceptors;
             if (recorder != null) {
                 this.recorder = recorder;
             } else {
@@ -354,6 +324,25 @@ public class BaseExecutionVenue implements ExecutionVenue {
         this.postProcessorList = postProcessorList;
     }
 
+    public void setExpiryScheduler(ExpiryScheduler expiryScheduler) {
+        this.expiryScheduler = expiryScheduler;
+    }
+
+    @ManagedAttribute
+    public long getExpiryTimersRegistered() {
+        return expiryScheduler.getRegisteredCount();
+    }
+
+    @ManagedAttribute
+    public long getExpiryTimersCancelled() {
+        return expiryScheduler.getCancelledCount();
+    }
+
+    @ManagedAttribute
+    public long getExpiryTimersFired() {
+        return expiryScheduler.getFiredCount();
+    }
+
     public void setIdentityResolver(IdentityResolver identityResolver) {
         if (identityResolver != null) {
             this.identityResolver = identityResolver;
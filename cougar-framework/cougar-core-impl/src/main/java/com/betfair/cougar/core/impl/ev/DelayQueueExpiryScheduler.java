@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.core.impl.ev;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ExpiryScheduler backed by a single {@link DelayQueue} and a single expiry thread. Cancellation is O(n) in the
+ * number of outstanding expiries, so this is only intended as a fallback for {@link HashedWheelExpiryScheduler}.
+ */
+public class DelayQueueExpiryScheduler implements ExpiryScheduler {
+
+    private final DelayQueue<DelayedTimeout> expiringTimeouts = new DelayQueue<>();
+    private final AtomicBoolean started = new AtomicBoolean(false);
+
+    private final AtomicLong registered = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong fired = new AtomicLong();
+
+    @Override
+    public void start() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                processExpiredTimeouts();
+            }
+        }, "EV-ExecutableExpiryDetection");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void processExpiredTimeouts() {
+        // this executes on a daemon thread so we can happily loop forever
+        while (true) {
+            try {
+                DelayedTimeout expired = expiringTimeouts.take();
+                fired.incrementAndGet();
+                expired.expirable.expire();
+            } catch (InterruptedException e) {
+                // ignore, just carry on round
+            }
+        }
+    }
+
+    @Override
+    public ExpiryTimeout schedule(Expirable expirable, long expiryTime) {
+        DelayedTimeout timeout = new DelayedTimeout(expirable, expiryTime);
+        registered.incrementAndGet();
+        expiringTimeouts.add(timeout);
+        return timeout;
+    }
+
+    @Override
+    public long getRegisteredCount() {
+        return registered.get();
+    }
+
+    @Override
+    public long getCancelledCount() {
+        return cancelled.get();
+    }
+
+    @Override
+    public long getFiredCount() {
+        return fired.get();
+    }
+
+    private class DelayedTimeout implements Delayed, ExpiryTimeout {
+        private final Expirable expirable;
+        private final long expiryTime;
+
+        private DelayedTimeout(Expirable expirable, long expiryTime) {
+            this.expirable = expirable;
+            this.expiryTime = expiryTime;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (expiringTimeouts.remove(this)) {
+                cancelled.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expiryTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            long diff = expiryTime - ((DelayedTimeout) o).expiryTime;
+            if (diff == 0) {
+                return 0;
+            }
+            return diff < 0 ? -1 : 1;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.core.impl.ev;
+
+/**
+ * Schedules the expiry of in-flight executions. Implementations must support registration and cancellation
+ * from any thread and must call {@link Expirable#expire()} no earlier than the requested expiry time.
+ */
+public interface ExpiryScheduler {
+
+    /**
+     * Starts the scheduler. Calling this more than once has no effect.
+     */
+    void start();
+
+    /**
+     * Schedules the given expirable to be expired at the given time.
+     * @param expirable the item to expire
+     * @param expiryTime the absolute time, in ms since the epoch, at which the item expires
+     * @return a handle which may be used to cancel the expiry
+     */
+    ExpiryTimeout schedule(Expirable expirable, long expiryTime);
+
+    long getRegisteredCount();
+
+    long getCancelledCount();
+
+    long getFiredCount();
+
+    /**
+     * Something which may be expired by an {@link ExpiryScheduler}.
+     */
+    interface Expirable {
+        void expire();
+    }
+
+    /**
+     * Handle on a scheduled expiry.
+     */
+    interface ExpiryTimeout {
+        /**
+         * Cancels the expiry if it hasn't already fired.
+         * @return true if this call cancelled the expiry
+         */
+        boolean cancel();
+    }
+}
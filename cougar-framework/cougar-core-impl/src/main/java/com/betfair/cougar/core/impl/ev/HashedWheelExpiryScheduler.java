@@ -0,0 +1,275 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.core.impl.ev;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ExpiryScheduler implemented as a hashed timing wheel. Registration and cancellation are O(1) and lock free: new
+ * and cancelled timeouts are handed to the expiry thread via concurrent queues and only the expiry thread ever
+ * touches the wheel itself. Expiries fire within one tick of their requested time, never before it.
+ */
+public class HashedWheelExpiryScheduler implements ExpiryScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HashedWheelExpiryScheduler.class);
+
+    // bounds the work done transferring new timeouts on a single tick so a registration storm can't stall expiry
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+    private final long tickMillis;
+    private final int mask;
+    private final Bucket[] wheel;
+
+    private final Queue<WheelTimeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<WheelTimeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean started = new AtomicBoolean(false);
+
+    private final AtomicLong registered = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong fired = new AtomicLong();
+
+    private volatile long startTime;
+    // only accessed by the expiry thread
+    private long tick;
+
+    public HashedWheelExpiryScheduler() {
+        this(10, 512);
+    }
+
+    public HashedWheelExpiryScheduler(long tickMillis, int ticksPerWheel) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be greater than 0: " + tickMillis);
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("ticksPerWheel must be between 1 and 2^30: " + ticksPerWheel);
+        }
+        this.tickMillis = tickMillis;
+        int wheelSize = 1;
+        while (wheelSize < ticksPerWheel) {
+            wheelSize <<= 1;
+        }
+        this.mask = wheelSize - 1;
+        this.wheel = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.startTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public void start() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        startTime = System.currentTimeMillis();
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runWheel();
+            }
+        }, "EV-ExecutableExpiryDetection");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void runWheel() {
+        // this executes on a daemon thread so we can happily loop forever
+        while (true) {
+            long deadline = startTime + (tick + 1) * tickMillis;
+            long now = System.currentTimeMillis();
+            while (now < deadline) {
+                try {
+                    Thread.sleep(deadline - now);
+                } catch (InterruptedException e) {
+                    // ignore, just carry on round
+                }
+                now = System.currentTimeMillis();
+            }
+            try {
+                removeCancelledTimeouts();
+                transferPendingTimeouts();
+                wheel[(int) (tick & mask)].expireTimeouts();
+            } catch (RuntimeException e) {
+                LOGGER.error("Unexpected exception processing expiry tick", e);
+            }
+            tick++;
+        }
+    }
+
+    private void removeCancelledTimeouts() {
+        WheelTimeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferPendingTimeouts() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            WheelTimeout timeout = pendingTimeouts.poll();
+            if (timeout == null) {
+                break;
+            }
+            if (timeout.state != WheelTimeout.ST_INIT) {
+                // cancelled before it ever made it onto the wheel
+                continue;
+            }
+            long calculatedTick = Math.max(0, (timeout.expiryTime - startTime) / tickMillis);
+            timeout.remainingRounds = (calculatedTick - tick) / wheel.length;
+            // if it's already overdue then it goes in the current bucket and fires this tick
+            long ticks = Math.max(calculatedTick, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    @Override
+    public ExpiryTimeout schedule(Expirable expirable, long expiryTime) {
+        WheelTimeout timeout = new WheelTimeout(expirable, expiryTime);
+        registered.incrementAndGet();
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    @Override
+    public long getRegisteredCount() {
+        return registered.get();
+    }
+
+    @Override
+    public long getCancelledCount() {
+        return cancelled.get();
+    }
+
+    @Override
+    public long getFiredCount() {
+        return fired.get();
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    public int getTicksPerWheel() {
+        return wheel.length;
+    }
+
+    private final class WheelTimeout implements ExpiryTimeout {
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private final Expirable expirable;
+        private final long expiryTime;
+        volatile int state = ST_INIT;
+
+        // the following are only accessed by the expiry thread
+        private long remainingRounds;
+        private Bucket bucket;
+        private WheelTimeout next;
+        private WheelTimeout prev;
+
+        private WheelTimeout(Expirable expirable, long expiryTime) {
+            this.expirable = expirable;
+            this.expiryTime = expiryTime;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            cancelled.incrementAndGet();
+            cancelledTimeouts.add(this);
+            return true;
+        }
+
+        private void expire() {
+            if (STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                fired.incrementAndGet();
+                try {
+                    expirable.expire();
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Exception thrown whilst expiring execution", e);
+                }
+            }
+        }
+    }
+
+    private static final AtomicIntegerFieldUpdater<WheelTimeout> STATE_UPDATER = AtomicIntegerFieldUpdater.newUpdater(WheelTimeout.class, "state");
+
+    /**
+     * Doubly linked list of timeouts, only accessed from the expiry thread.
+     */
+    private static final class Bucket {
+        private WheelTimeout head;
+        private WheelTimeout tail;
+
+        private void add(WheelTimeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        private void remove(WheelTimeout timeout) {
+            WheelTimeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        private void expireTimeouts() {
+            WheelTimeout timeout = head;
+            while (timeout != null) {
+                WheelTimeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.state == WheelTimeout.ST_CANCELLED) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.core.impl.ev;
+
+import com.betfair.cougar.core.api.ev.ExecutionTimingRecorder;
+import com.betfair.cougar.util.stats.StripedHistogram;
+
+/**
+ * Records every call and failure into a latency histogram (in microseconds) as well as passing it on to
+ * another recorder.
+ */
+public class HistogramExecutionTimingRecorder implements ExecutionTimingRecorder {
+
+    private final ExecutionTimingRecorder delegate;
+    private final StripedHistogram histogram;
+
+    public HistogramExecutionTimingRecorder(ExecutionTimingRecorder delegate, StripedHistogram histogram) {
+        this.delegate = delegate;
+        this.histogram = histogram;
+    }
+
+    @Override
+    public void recordCall(double timeTakenMs) {
+        histogram.record((long) (timeTakenMs * 1000));
+        delegate.recordCall(timeTakenMs);
+    }
+
+    @Override
+    public void recordFailure(double timeTakenMs) {
+        histogram.record((long) (timeTakenMs * 1000));
+        delegate.recordFailure(timeTakenMs);
+    }
+}
@@ -24,32 +24,47 @@ import com.betfair.cougar.core.api.exception.CougarFrameworkException;
 import com.betfair.cougar.core.api.exception.CougarServiceException;
 import com.betfair.cougar.core.api.exception.ServerFaultCode;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class InterceptingExecutableWrapper implements ExecutableWrapper {
 
 	private final Executable exec;
 	private final List<ExecutionPreProcessor> preExecutionInterceptorList;
 	private final List<ExecutionPostProcessor> postExecutionInterceptorList;
+    private final OperationKey operationKey;
 
-    private Map<Thread, List<ExecutionPreProcessor>> unexecutedPreProcessorsByThread = new ConcurrentHashMap<>();
+    private volatile InterceptorChain interceptorChain;
 
 	public InterceptingExecutableWrapper(Executable exec, List<ExecutionPreProcessor> preExecutionInterceptorList, List<ExecutionPostProcessor> postExecutionInterceptorList) {
-		this.exec = exec;
-		this.preExecutionInterceptorList = preExecutionInterceptorList;
-		this.postExecutionInterceptorList = postExecutionInterceptorList;
+		this(exec, preExecutionInterceptorList, postExecutionInterceptorList, null);
 	}
 
+    /**
+     * @param operationKey the only operation this wrapper will execute, allowing operation key matchers to be resolved up front
+     */
+    InterceptingExecutableWrapper(Executable exec, List<ExecutionPreProcessor> preExecutionInterceptorList, List<ExecutionPostProcessor> postExecutionInterceptorList, OperationKey operationKey) {
+        this.exec = exec;
+        this.preExecutionInterceptorList = preExecutionInterceptorList;
+        this.postExecutionInterceptorList = postExecutionInterceptorList;
+        this.operationKey = operationKey;
+        this.interceptorChain = InterceptorChain.compile(preExecutionInterceptorList, postExecutionInterceptorList, operationKey);
+    }
+
 	@Override
 	public void execute(final ExecutionContext ctx, final OperationKey key, final Object[] args, final ExecutionObserver observer, final ExecutionVenue executionVenue, final TimeConstraints timeConstraints) {
+        execute(ctx, key, args, observer, executionVenue, timeConstraints, false);
+    }
+
+    /**
+     * @param preQueueExecuted whether the pre-queue processors from {@link #getInterceptorChain()} have already been run for this request
+     */
+    void execute(final ExecutionContext ctx, final OperationKey key, final Object[] args, final ExecutionObserver observer, final ExecutionVenue executionVenue, final TimeConstraints timeConstraints, boolean preQueueExecuted) {
+        final InterceptorChain chain = getInterceptorChain();
 
         final Runnable execution = new Runnable() {
             @Override
             public void run() {
-                ExecutionObserver newObserver = new PostProcessingInterceptorWrapper(observer, postExecutionInterceptorList, ctx, key, args);
+                ExecutionObserver newObserver = new PostProcessingInterceptorWrapper(observer, chain.getPostProcessors(), ctx, key, args);
 
                 try {
                     exec.execute(
@@ -70,18 +85,16 @@ public class InterceptingExecutableWrapper implements ExecutableWrapper {
             }
         };
 
-        List<ExecutionPreProcessor> unexecuted = unexecutedPreProcessorsByThread.get(Thread.currentThread());
-        if (unexecuted == null) {
-            // this has to be a new list since the InterceptionUtils.execute call below is allowed to (expected to even) mutate the second list passed in
-            unexecuted = new ArrayList<>(preExecutionInterceptorList);
-        }
+        InterceptionUtils.execute(preQueueExecuted ? chain.getPreExecuteAfterQueue() : chain.getPreExecute(), execution, ctx, key, args, observer);
+    }
 
-        try {
-            InterceptionUtils.execute(preExecutionInterceptorList, unexecuted, ExecutionRequirement.PRE_EXECUTE, execution, ctx, key, args, observer);
-        }
-        finally {
-            unexecutedPreProcessorsByThread.remove(Thread.currentThread());
+    InterceptorChain getInterceptorChain() {
+        InterceptorChain chain = interceptorChain;
+        if (!chain.isCompiledFrom(preExecutionInterceptorList, postExecutionInterceptorList)) {
+            chain = InterceptorChain.compile(preExecutionInterceptorList, postExecutionInterceptorList, operationKey);
+            interceptorChain = chain;
         }
+        return chain;
     }
 
     @Override
@@ -93,8 +106,4 @@ public class InterceptingExecutableWrapper implements ExecutableWrapper {
     public <T extends Executable> T findChild(Class<T> clazz) {
         return ExecutableWrapperUtils.findChild(clazz, this);
     }
-
-    public void setUnexecutedPreProcessorsForThisThread(List<ExecutionPreProcessor> remainingProcessors) {
-        unexecutedPreProcessorsByThread.put(Thread.currentThread(), remainingProcessors);
-    }
 }
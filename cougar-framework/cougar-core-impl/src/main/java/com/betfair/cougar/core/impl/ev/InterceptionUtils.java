@@ -20,7 +20,6 @@ import com.betfair.cougar.api.ExecutionContext;
 import com.betfair.cougar.api.fault.CougarApplicationException;
 import com.betfair.cougar.core.api.ev.ExecutionObserver;
 import com.betfair.cougar.core.api.ev.ExecutionPreProcessor;
-import com.betfair.cougar.core.api.ev.ExecutionRequirement;
 import com.betfair.cougar.core.api.ev.ExecutionResult;
 import com.betfair.cougar.core.api.ev.InterceptorResult;
 import com.betfair.cougar.core.api.ev.InterceptorState;
@@ -33,8 +32,6 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.logging.Level;
 
 /**
@@ -45,10 +42,14 @@ public class InterceptionUtils {
     private static final InterceptorResult CONTINUE = new InterceptorResult(InterceptorState.CONTINUE);
     private final static Logger LOGGER = LoggerFactory.getLogger(InterceptingExecutableWrapper.class);
 
-    public static void execute(List<ExecutionPreProcessor> preExecutionInterceptorList, List<ExecutionPreProcessor> unexecutedPreExecutionInterceptorList, ExecutionRequirement phase, Runnable executionBody, ExecutionContext ctx, OperationKey key, Object[] args,
+    /**
+     * Runs the given processors in order, and then the execution body if none of them prevented it.
+     * The processors are expected to be those already chosen for this phase (see {@link InterceptorChain}).
+     */
+    public static void execute(ExecutionPreProcessor[] preExecutionInterceptors, Runnable executionBody, ExecutionContext ctx, OperationKey key, Object[] args,
                         ExecutionObserver observer) {
 
-        InterceptorResult result = invokePreProcessingInterceptors(preExecutionInterceptorList, unexecutedPreExecutionInterceptorList, phase, ctx, key, args);
+        InterceptorResult result = invokePreProcessingInterceptors(preExecutionInterceptors, ctx, key, args);
 
         /**
          * Pre-processors can force ON_EXCEPTION or ON_RESULT without execution.
@@ -84,28 +85,23 @@ public class InterceptionUtils {
     }
 
 
-    private static InterceptorResult invokePreProcessingInterceptors(List<ExecutionPreProcessor> preExecutionInterceptorList, List<ExecutionPreProcessor> unexecutedPreExecutionInterceptorList, ExecutionRequirement phase, ExecutionContext ctx, OperationKey key, Object[] args) {
+    private static InterceptorResult invokePreProcessingInterceptors(ExecutionPreProcessor[] preExecutionInterceptors, ExecutionContext ctx, OperationKey key, Object[] args) {
         InterceptorResult result = CONTINUE;
 
-        List<ExecutionPreProcessor> toIterateOver = new ArrayList<>(preExecutionInterceptorList);
-        for (ExecutionPreProcessor pre : toIterateOver) {
-            ExecutionRequirement req = pre.getExecutionRequirement();
-            if (req == ExecutionRequirement.EVERY_OPPORTUNITY || req == phase || (req == ExecutionRequirement.EXACTLY_ONCE && unexecutedPreExecutionInterceptorList.contains(pre))) {
-                try {
-                    result = pre.invoke(ctx, key, args);
-                    unexecutedPreExecutionInterceptorList.remove(pre);
-                    if (result == null || result.getState() == null) {
-                        // defensive
-                        throw new IllegalStateException(pre.getName() +" did not return a valid InterceptorResult");
-                    }
-                } catch (Exception e) {
-                    LOGGER.error("Pre Processor " + pre.getName() + " has failed.", e);
-                    result = new InterceptorResult(InterceptorState.FORCE_ON_EXCEPTION, e);
-                    break;
-                }
-                if (result.getState().shouldAbortInterceptorChain()) {
-                    break;
+        for (ExecutionPreProcessor pre : preExecutionInterceptors) {
+            try {
+                result = pre.invoke(ctx, key, args);
+                if (result == null || result.getState() == null) {
+                    // defensive
+                    throw new IllegalStateException(pre.getName() +" did not return a valid InterceptorResult");
                 }
+            } catch (Exception e) {
+                LOGGER.error("Pre Processor " + pre.getName() + " has failed.", e);
+                result = new InterceptorResult(InterceptorState.FORCE_ON_EXCEPTION, e);
+                break;
+            }
+            if (result.getState().shouldAbortInterceptorChain()) {
+                break;
             }
         }
         return result;
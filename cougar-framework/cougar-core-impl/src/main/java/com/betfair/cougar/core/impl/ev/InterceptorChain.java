@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.core.impl.ev;
+
+import com.betfair.cougar.core.api.ev.ExecutionPostProcessor;
+import com.betfair.cougar.core.api.ev.ExecutionPreProcessor;
+import com.betfair.cougar.core.api.ev.ExecutionRequirement;
+import com.betfair.cougar.core.api.ev.OperationKey;
+import com.betfair.cougar.core.api.ev.processors.Matcher;
+import com.betfair.cougar.core.api.ev.processors.OperationKeyMatcher;
+import com.betfair.cougar.core.api.ev.processors.PostMatchingInterceptor;
+import com.betfair.cougar.core.api.ev.processors.PreMatchingInterceptor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The interceptors which apply to a single operation, split up front into the stages at which they run, so that
+ * executing a request is just a walk over an array.
+ * <p/>
+ * Since the pre-execute stage only ever runs if the pre-queue stage ran to completion, an
+ * {@link ExecutionRequirement#EXACTLY_ONCE} processor belongs to the pre-queue stage when the request was queued
+ * and to the pre-execute stage otherwise.
+ * <p/>
+ * Where an operation key is given, matching interceptors whose matcher only looks at the operation key are resolved
+ * once here: those which match are replaced by the interceptor they wrap, and those which don't are dropped.
+ */
+final class InterceptorChain {
+
+    static final ExecutionPreProcessor[] NO_PRE_PROCESSORS = new ExecutionPreProcessor[0];
+    static final ExecutionPostProcessor[] NO_POST_PROCESSORS = new ExecutionPostProcessor[0];
+
+    private final ExecutionPreProcessor[] preQueue;
+    private final ExecutionPreProcessor[] preExecuteAfterQueue;
+    private final ExecutionPreProcessor[] preExecute;
+    private final ExecutionPostProcessor[] postProcessors;
+    private final int preProcessorSourceSize;
+    private final int postProcessorSourceSize;
+
+    private InterceptorChain(ExecutionPreProcessor[] preQueue, ExecutionPreProcessor[] preExecuteAfterQueue, ExecutionPreProcessor[] preExecute,
+                             ExecutionPostProcessor[] postProcessors, int preProcessorSourceSize, int postProcessorSourceSize) {
+        this.preQueue = preQueue;
+        this.preExecuteAfterQueue = preExecuteAfterQueue;
+        this.preExecute = preExecute;
+        this.postProcessors = postProcessors;
+        this.preProcessorSourceSize = preProcessorSourceSize;
+        this.postProcessorSourceSize = postProcessorSourceSize;
+    }
+
+    /**
+     * @param key the operation the chain is for, or null if matchers should be left to run on each request
+     */
+    static InterceptorChain compile(List<ExecutionPreProcessor> preProcessors, List<ExecutionPostProcessor> postProcessors, OperationKey key) {
+        List<ExecutionPreProcessor> preQueue = new ArrayList<>();
+        List<ExecutionPreProcessor> preExecuteAfterQueue = new ArrayList<>();
+        List<ExecutionPreProcessor> preExecute = new ArrayList<>();
+        for (ExecutionPreProcessor pre : preProcessors) {
+            ExecutionPreProcessor resolved = resolve(pre, key);
+            if (resolved == null) {
+                continue;
+            }
+            ExecutionRequirement req = resolved.getExecutionRequirement();
+            if (req == ExecutionRequirement.PRE_QUEUE || req == ExecutionRequirement.EXACTLY_ONCE || req == ExecutionRequirement.EVERY_OPPORTUNITY) {
+                preQueue.add(resolved);
+            }
+            if (req == ExecutionRequirement.PRE_EXECUTE || req == ExecutionRequirement.EVERY_OPPORTUNITY) {
+                preExecuteAfterQueue.add(resolved);
+            }
+            if (req == ExecutionRequirement.PRE_EXECUTE || req == ExecutionRequirement.EXACTLY_ONCE || req == ExecutionRequirement.EVERY_OPPORTUNITY) {
+                preExecute.add(resolved);
+            }
+        }
+        List<ExecutionPostProcessor> post = new ArrayList<>();
+        for (ExecutionPostProcessor pp : postProcessors) {
+            ExecutionPostProcessor resolved = resolve(pp, key);
+            if (resolved != null) {
+                post.add(resolved);
+            }
+        }
+        return new InterceptorChain(
+                preQueue.toArray(NO_PRE_PROCESSORS),
+                preExecuteAfterQueue.toArray(NO_PRE_PROCESSORS),
+                preExecute.toArray(NO_PRE_PROCESSORS),
+                post.toArray(NO_POST_PROCESSORS),
+                preProcessors.size(), postProcessors.size());
+    }
+
+    private static ExecutionPreProcessor resolve(ExecutionPreProcessor pre, OperationKey key) {
+        if (key != null && pre instanceof PreMatchingInterceptor) {
+            PreMatchingInterceptor matching = (PreMatchingInterceptor) pre;
+            Matcher matcher = matching.getMatcher();
+            if (matcher == null) {
+                return resolve(matching.getPreProcessor(), key);
+            }
+            if (matcher instanceof OperationKeyMatcher) {
+                return ((OperationKeyMatcher) matcher).matches(key) ? resolve(matching.getPreProcessor(), key) : null;
+            }
+        }
+        return pre;
+    }
+
+    private static ExecutionPostProcessor resolve(ExecutionPostProcessor post, OperationKey key) {
+        if (key != null && post instanceof PostMatchingInterceptor) {
+            PostMatchingInterceptor matching = (PostMatchingInterceptor) post;
+            Matcher matcher = matching.getMatcher();
+            if (matcher == null) {
+                return resolve(matching.getPostProcessor(), key);
+            }
+            if (matcher instanceof OperationKeyMatcher) {
+                return ((OperationKeyMatcher) matcher).matches(key) ? resolve(matching.getPostProcessor(), key) : null;
+            }
+        }
+        return post;
+    }
+
+    /**
+     * Interceptors are registered by appending to the venue's lists, which can happen after an operation has been
+     * registered, so a chain is only good for as long as those lists haven't changed size.
+     */
+    boolean isCompiledFrom(List<ExecutionPreProcessor> preProcessors, List<ExecutionPostProcessor> postProcessors) {
+        return preProcessors.size() == preProcessorSourceSize && postProcessors.size() == postProcessorSourceSize;
+    }
+
+    /**
+     * Processors to run before a request is handed to an executor.
+     */
+    ExecutionPreProcessor[] getPreQueue() {
+        return preQueue;
+    }
+
+    /**
+     * Processors to run before execution of a request which has already been through {@link #getPreQueue()}.
+     */
+    ExecutionPreProcessor[] getPreExecuteAfterQueue() {
+        return preExecuteAfterQueue;
+    }
+
+    /**
+     * Processors to run before execution of a request which was executed directly.
+     */
+    ExecutionPreProcessor[] getPreExecute() {
+        return preExecute;
+    }
+
+    ExecutionPostProcessor[] getPostProcessors() {
+        return postProcessors;
+    }
+}
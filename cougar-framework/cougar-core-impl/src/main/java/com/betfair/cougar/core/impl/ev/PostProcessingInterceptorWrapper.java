@@ -36,7 +36,7 @@ public class PostProcessingInterceptorWrapper implements ExecutionObserver {
 
 	private final static Logger LOGGER = LoggerFactory.getLogger(PostProcessingInterceptorWrapper.class);
 	private ExecutionObserver observer;
-	private List<ExecutionPostProcessor> postProcessors;
+	private ExecutionPostProcessor[] postProcessors;
 	private ExecutionContext ctx;
 	private OperationKey key;
 	private Object[] args;
@@ -46,6 +46,14 @@ public class PostProcessingInterceptorWrapper implements ExecutionObserver {
 									final ExecutionContext ctx,
 									final OperationKey key,
 									final Object [] args) {//NOSONAR
+		this(observer, postProcessors.toArray(InterceptorChain.NO_POST_PROCESSORS), ctx, key, args);
+	}
+
+	PostProcessingInterceptorWrapper(	ExecutionObserver observer,
+									ExecutionPostProcessor[] postProcessors,
+									final ExecutionContext ctx,
+									final OperationKey key,
+									final Object [] args) {//NOSONAR
 
 		this.observer = observer;
 		this.postProcessors = postProcessors;
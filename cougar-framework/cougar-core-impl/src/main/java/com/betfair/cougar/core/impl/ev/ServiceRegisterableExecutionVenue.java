@@ -27,10 +27,12 @@ import com.betfair.cougar.core.api.ev.*;
 import com.betfair.cougar.core.api.security.IdentityResolverFactory;
 import com.betfair.cougar.core.api.tracing.Tracer;
 import com.betfair.cougar.core.impl.CougarInternalOperations;
+import com.betfair.cougar.core.impl.kpi.OperationLatencyMonitor;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.betfair.cougar.util.configuration.PropertyConfigurer;
+import com.betfair.cougar.util.stats.StripedHistogram;
 import com.betfair.tornjak.kpi.KPIMonitor;
 import com.betfair.tornjak.monitor.MonitorRegistry;
 import org.springframework.context.ApplicationEvent;
@@ -53,6 +55,7 @@ public class ServiceRegisterableExecutionVenue extends BaseExecutionVenue implem
     private IdentityResolverFactory identityResolverFactory;
     protected MonitorRegistry monitorRegistry;
     private Tracer tracer;
+    private OperationLatencyMonitor latencyMonitor;
 
     public void setIdentityResolverFactory(IdentityResolverFactory identityResolverFactory) {
         this.identityResolverFactory = identityResolverFactory;
@@ -78,6 +81,10 @@ public class ServiceRegisterableExecutionVenue extends BaseExecutionVenue implem
         return tracer;
     }
 
+    public void setLatencyMonitor(OperationLatencyMonitor latencyMonitor) {
+        this.latencyMonitor = latencyMonitor;
+    }
+
     private void registerServiceDefinition(String namespace, ServiceDefinition serviceDefinition, ExecutableResolver resolver) {
         String serviceStatName = getServiceStatName(namespace, serviceDefinition);
         for (OperationDefinition op : serviceDefinition.getOperationDefinitions()) {
@@ -87,11 +94,16 @@ public class ServiceRegisterableExecutionVenue extends BaseExecutionVenue implem
             if (LOGGER.isInfoEnabled() && timeoutValue != null) {
                 LOGGER.info("Setting timeout for "+namespacedOperationKey+" to "+timeoutValue+"ms");
             }
+            ExecutionTimingRecorder recorder = stats != null ? new ServiceOperationExecutionTimingRecorder(stats, serviceStatName, op.getOperationKey().getOperationName()) : new NullExecutionTimingRecorder();
+            StripedHistogram histogram = latencyMonitor != null ? latencyMonitor.getHistogram(serviceStatName, op.getOperationKey().getOperationName()) : null;
+            if (histogram != null) {
+                recorder = new HistogramExecutionTimingRecorder(recorder, histogram);
+            }
             registerOperation(
                 namespace,
                 op,
                 resolver.resolveExecutable(namespacedOperationKey, this),
-                stats != null ? new ServiceOperationExecutionTimingRecorder(stats, serviceStatName, op.getOperationKey().getOperationName()) : new NullExecutionTimingRecorder(), timeoutValue != null ? Long.parseLong(timeoutValue) : 0);
+                recorder, timeoutValue != null ? Long.parseLong(timeoutValue) : 0);
         }
     }
 
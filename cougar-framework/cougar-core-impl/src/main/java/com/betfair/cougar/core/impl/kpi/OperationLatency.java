@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.core.impl.kpi;
+
+import com.betfair.cougar.util.stats.HistogramSnapshot;
+import com.betfair.cougar.util.stats.StripedHistogram;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Latency percentiles for a single operation, in milliseconds. The plain attributes describe the last completed
+ * interval (see {@link OperationLatencyMonitor#setInterval(int)}), or everything recorded if intervals are disabled;
+ * the Total ones always describe everything since startup or the last reset.
+ */
+@ManagedResource
+public class OperationLatency {
+
+    private final String serviceName;
+    private final String operationName;
+    private final boolean intervals;
+    private final StripedHistogram histogram = new StripedHistogram();
+
+    public OperationLatency(String serviceName, String operationName, boolean intervals) {
+        this.serviceName = serviceName;
+        this.operationName = operationName;
+        this.intervals = intervals;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public String getOperationName() {
+        return operationName;
+    }
+
+    public StripedHistogram getHistogram() {
+        return histogram;
+    }
+
+    HistogramSnapshot getCurrent() {
+        return intervals ? histogram.getLastInterval() : histogram.snapshot();
+    }
+
+    private static double toMs(long micros) {
+        return micros / 1000.0;
+    }
+
+    @ManagedAttribute
+    public long getCount() {
+        return getCurrent().getCount();
+    }
+
+    @ManagedAttribute
+    public double getMean() {
+        return getCurrent().getMean() / 1000.0;
+    }
+
+    @ManagedAttribute
+    public double getP50() {
+        return toMs(getCurrent().getPercentile(50));
+    }
+
+    @ManagedAttribute
+    public double getP90() {
+        return toMs(getCurrent().getPercentile(90));
+    }
+
+    @ManagedAttribute
+    public double getP99() {
+        return toMs(getCurrent().getPercentile(99));
+    }
+
+    @ManagedAttribute
+    public double getP999() {
+        return toMs(getCurrent().getPercentile(99.9));
+    }
+
+    @ManagedAttribute
+    public double getMax() {
+        return toMs(getCurrent().getMax());
+    }
+
+    @ManagedAttribute
+    public long getTotalCount() {
+        return histogram.snapshot().getCount();
+    }
+
+    @ManagedAttribute
+    public double getTotalP99() {
+        return toMs(histogram.snapshot().getPercentile(99));
+    }
+
+    @ManagedAttribute
+    public double getTotalP999() {
+        return toMs(histogram.snapshot().getPercentile(99.9));
+    }
+
+    @ManagedAttribute
+    public double getTotalMax() {
+        return toMs(histogram.snapshot().getMax());
+    }
+
+    @ManagedOperation
+    public void reset() {
+        histogram.reset();
+    }
+
+    void appendRow(StringBuilder sb, HistogramSnapshot snapshot) {
+        sb.append("<td>").append(snapshot.getCount()).append("</td>");
+        sb.append("<td>").append(String.format("%.3f", snapshot.getMean() / 1000.0)).append("</td>");
+        for (double percentile : new double[] { 50, 90, 99, 99.9 }) {
+            sb.append("<td>").append(String.format("%.3f", toMs(snapshot.getPercentile(percentile)))).append("</td>");
+        }
+        sb.append("<td>").append(String.format("%.3f", toMs(snapshot.getMax()))).append("</td>");
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.core.impl.kpi;
+
+import com.betfair.cougar.core.api.jmx.JMXHttpParser;
+import com.betfair.cougar.core.api.jmx.JMXHttpParserReader;
+import com.betfair.cougar.util.jmx.JMXControl;
+import com.betfair.cougar.util.stats.StripedHistogram;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a latency histogram for every operation registered with the execution venue, client operations included,
+ * and rolls them over every interval seconds (or never, if the interval is 0). Each operation's percentiles are
+ * exported as an MBean named CoUGAR.latency:service=...,operation=... and all of them are listed at
+ * http://HOST:9999/administration/operationLatency.jsp
+ */
+@ManagedResource
+public class OperationLatencyMonitor implements JMXHttpParser {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OperationLatencyMonitor.class);
+
+    private final ConcurrentMap<String, OperationLatency> operations = new ConcurrentSkipListMap<>();
+
+    private boolean enabled = true;
+    private int interval = 60;
+    private JMXControl jmxControl;
+    private ScheduledExecutorService scheduler;
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @ManagedAttribute
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param interval the number of seconds between rolling each operation's histogram over, or 0 to only ever
+     *                 report cumulative latencies
+     */
+    public void setInterval(int interval) {
+        this.interval = interval;
+    }
+
+    @ManagedAttribute
+    public int getInterval() {
+        return interval;
+    }
+
+    public void setJmxControl(JMXControl jmxControl) {
+        this.jmxControl = jmxControl;
+    }
+
+    public void setJmxHttpParserReader(JMXHttpParserReader reader) {
+        reader.addCustomParser(this);
+    }
+
+    public synchronized void start() {
+        if (enabled && interval > 0 && scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "OperationLatencyMonitor");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            scheduler.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    roll();
+                }
+            }, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Returns the histogram to record the given operation's latencies into, or null if monitoring is disabled.
+     */
+    public StripedHistogram getHistogram(String serviceName, String operationName) {
+        if (!enabled) {
+            return null;
+        }
+        String key = serviceName + "/" + operationName;
+        OperationLatency latency = operations.get(key);
+        if (latency == null) {
+            OperationLatency newLatency = new OperationLatency(serviceName, operationName, interval > 0);
+            latency = operations.putIfAbsent(key, newLatency);
+            if (latency == null) {
+                latency = newLatency;
+                export(latency);
+            }
+        }
+        return latency.getHistogram();
+    }
+
+    private void export(OperationLatency latency) {
+        if (jmxControl != null) {
+            try {
+                jmxControl.registerMBean("CoUGAR.latency:service=" + latency.getServiceName() + ",operation=" + latency.getOperationName(), latency);
+            } catch (Exception e) {
+                LOGGER.warn("Unable to export latency MBean for {} {}", latency.getServiceName(), latency.getOperationName(), e);
+            }
+        }
+    }
+
+    void roll() {
+        for (OperationLatency latency : operations.values()) {
+            latency.getHistogram().roll();
+        }
+    }
+
+    @ManagedAttribute
+    public int getOperationCount() {
+        return operations.size();
+    }
+
+    @ManagedOperation
+    public void resetAll() {
+        for (OperationLatency latency : operations.values()) {
+            latency.reset();
+        }
+    }
+
+    @Override
+    public String getPath() {
+        return "operationLatency.jsp";
+    }
+
+    @Override
+    public String process(Map<String, String> params) {
+        boolean total = interval <= 0 || "true".equals(params.get("total"));
+
+        StringBuilder result = new StringBuilder();
+        result.append("<!DOCTYPE html>\n");
+        result.append("<html><body>\n");
+        if (interval > 0) {
+            if (total) {
+                result.append("<p align='center'>Showing all calls since startup or reset - <a href='").append(getPath()).append("?total=false'>show last ").append(interval).append("s</a></p>\n");
+            } else {
+                result.append("<p align='center'>Showing the last ").append(interval).append("s - <a href='").append(getPath()).append("?total=true'>show all calls</a></p>\n");
+            }
+        }
+        result.append("<table border='1'><tr><th>Service</th><th>Operation</th><th>Count</th><th>Mean (ms)</th><th>50% (ms)</th><th>90% (ms)</th><th>99% (ms)</th><th>99.9% (ms)</th><th>Max (ms)</th></tr>\n");
+        for (OperationLatency latency : operations.values()) {
+            result.append("<tr><td>").append(StringEscapeUtils.escapeHtml(latency.getServiceName())).append("</td><td>").append(StringEscapeUtils.escapeHtml(latency.getOperationName())).append("</td>");
+            latency.appendRow(result, total ? latency.getHistogram().snapshot() : latency.getHistogram().getLastInterval());
+            result.append("</tr>\n");
+        }
+        result.append("</table>\n");
+        result.append("</body></html>");
+        return result.toString();
+    }
+}
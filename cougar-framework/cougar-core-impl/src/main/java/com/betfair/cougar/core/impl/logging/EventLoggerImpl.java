@@ -26,6 +26,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.betfair.cougar.logging.EventLogDefinition;
 import com.betfair.cougar.logging.EventLoggingRegistry;
+import com.betfair.cougar.logging.async.AsyncEventLogWriter;
 import com.betfair.cougar.logging.records.EventLogRecord;
 
 @ManagedResource
@@ -33,11 +34,19 @@ public class EventLoggerImpl implements EventLogger {
 	private final static Logger LOGGER = LoggerFactory.getLogger(EventLoggerImpl.class);
 	private EventLoggingRegistry registry;
 	private boolean enabled = true;
+	private AsyncEventLogWriter asyncWriter;
 
 	public void setRegistry(EventLoggingRegistry registry) {
 		this.registry = registry;
 	}
 
+	/**
+	 * If set, events are handed to this writer rather than being rendered and written on the calling thread.
+	 */
+	public void setAsyncWriter(AsyncEventLogWriter asyncWriter) {
+		this.asyncWriter = asyncWriter;
+	}
+
 	@ManagedAttribute
 	public boolean isEnabled() {
 		return enabled;
@@ -56,17 +65,16 @@ public class EventLoggerImpl implements EventLogger {
 	@Override
 	public void logEvent(LoggableEvent loggableEvent, Object[] extensionFields) {
 		if (enabled) {
-		    EventLogRecord eventLogRecord = new EventLogRecord(loggableEvent, extensionFields);
-			logEventLogRecord(eventLogRecord);
-		}
-	}
-
-	private void logEventLogRecord(EventLogRecord eventLogRecord) {
-		EventLogDefinition invokableLogger = registry.getInvokableLogger(eventLogRecord.getLoggerName());
-		if (invokableLogger != null) {
-			LoggerFactory.getLogger(invokableLogger.getLogName()).info(eventLogRecord.getMessage());
-		} else {
-			throw new CougarFrameworkException("Logger "+eventLogRecord.getLoggerName()+" is not an event logger");
+			EventLogDefinition invokableLogger = registry.getInvokableLogger(loggableEvent.getLogName());
+			if (invokableLogger == null) {
+				throw new CougarFrameworkException("Logger "+loggableEvent.getLogName()+" is not an event logger");
+			}
+			if (asyncWriter != null) {
+				asyncWriter.log(invokableLogger.getLogName(), loggableEvent, extensionFields);
+			} else {
+				EventLogRecord eventLogRecord = new EventLogRecord(loggableEvent, extensionFields);
+				LoggerFactory.getLogger(invokableLogger.getLogName()).info(eventLogRecord.getMessage());
+			}
 		}
 	}
 
@@ -18,6 +18,8 @@
 package com.betfair.cougar.core.impl.tracing;
 
 import com.betfair.cougar.api.ExecutionContext;
+import com.betfair.cougar.api.RequestUUID;
+import com.betfair.cougar.api.ResponseCode;
 import com.betfair.cougar.core.api.tracing.Tracer;
 
 /**
@@ -25,6 +27,11 @@ import com.betfair.cougar.core.api.tracing.Tracer;
  */
 public abstract class AbstractTracer implements Tracer {
 
+    @Override
+    public void end(RequestUUID uuid, ResponseCode responseCode) {
+        end(uuid);
+    }
+
     @Override
     public void trace(ExecutionContext ctx, String msg, Object... args) {
         if (ctx.traceLoggingEnabled()) {
@@ -18,6 +18,7 @@
 package com.betfair.cougar.core.impl.tracing;
 
 import com.betfair.cougar.api.RequestUUID;
+import com.betfair.cougar.api.ResponseCode;
 import com.betfair.cougar.core.api.ev.OperationKey;
 import com.betfair.cougar.core.api.tracing.Tracer;
 
@@ -79,6 +80,13 @@ public class CompoundTracer extends AbstractTracer {
         }
     }
 
+    @Override
+    public void end(RequestUUID uuid, ResponseCode responseCode) {
+        for (Tracer t : tracers) {
+            t.end(uuid, responseCode);
+        }
+    }
+
     @Override
     public void startCall(RequestUUID uuid, RequestUUID subUuid, OperationKey key) {
         for (Tracer t : tracers) {
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.core.impl.ev;
+
+import com.betfair.cougar.api.ExecutionContext;
+import com.betfair.cougar.api.ExecutionContextImpl;
+import com.betfair.cougar.core.api.ServiceVersion;
+import com.betfair.cougar.core.api.ev.*;
+import com.betfair.cougar.core.api.transcription.Parameter;
+import com.betfair.cougar.core.api.transcription.ParameterType;
+import com.betfair.cougar.core.impl.DefaultTimeConstraints;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Holds the venue to a budget for the garbage it creates per synchronous request, so that allocations creeping back
+ * onto the request path get noticed. The executable, interceptors and observer here allocate nothing themselves, so
+ * everything counted is the venue's.
+ */
+public class BaseExecutionVenueAllocationTest {
+
+    private static final OperationKey KEY = new OperationKey(new ServiceVersion(1, 0), "SomeService", "someOperation");
+    private static final ExecutionResult RESULT = new ExecutionResult("result");
+    private static final InterceptorResult CONTINUE = new InterceptorResult(InterceptorState.CONTINUE);
+
+    private static final int WARMUP_CALLS = 20000;
+    private static final int MEASURED_CALLS = 10000;
+    private static final int MEASURED_RUNS = 5;
+
+    private com.sun.management.ThreadMXBean threadMXBean;
+    private ExecutionContext ctx = new ExecutionContextImpl();
+    private Object[] args = new Object[0];
+    private List<ExecutionPreProcessor> preProcessors = new ArrayList<>();
+    private List<ExecutionPostProcessor> postProcessors = new ArrayList<>();
+
+    private final ExecutionObserver observer = new ExecutionObserver() {
+        @Override
+        public void onResult(ExecutionResult executionResult) {
+        }
+    };
+
+    @Before
+    public void before() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void noInterceptors() {
+        assertWithinBudget(createVenue(), 64);
+    }
+
+    @Test
+    public void withInterceptors() {
+        for (int i=0; i<3; i++) {
+            preProcessors.add(new ContinuingPreProcessor());
+            postProcessors.add(new ContinuingPostProcessor());
+        }
+        assertWithinBudget(createVenue(), 160);
+    }
+
+    private BaseExecutionVenue createVenue() {
+        BaseExecutionVenue ev = new BaseExecutionVenue();
+        ev.setPreProcessors(preProcessors);
+        ev.setPostProcessors(postProcessors);
+        ev.registerOperation(null, new SimpleOperationDefinition(KEY, new Parameter[0], new ParameterType(Void.class, new ParameterType[0])),
+                new Executable() {
+                    @Override
+                    public void execute(ExecutionContext ctx, OperationKey key, Object[] args, ExecutionObserver observer, ExecutionVenue executionVenue, TimeConstraints timeConstraints) {
+                        observer.onResult(RESULT);
+                    }
+                }, new NullExecutionTimingRecorder(), 0);
+        return ev;
+    }
+
+    private void assertWithinBudget(BaseExecutionVenue ev, long bytesPerCall) {
+        for (int i=0; i<WARMUP_CALLS; i++) {
+            ev.execute(ctx, KEY, args, observer, DefaultTimeConstraints.NO_CONSTRAINTS);
+        }
+        // the compiler may still be catching up after warmup when other tests have kept it busy, so budget the best of
+        // a few runs rather than the first
+        long threadId = Thread.currentThread().getId();
+        long perCall = Long.MAX_VALUE;
+        for (int run=0; run<MEASURED_RUNS; run++) {
+            long before = threadMXBean.getThreadAllocatedBytes(threadId);
+            for (int i=0; i<MEASURED_CALLS; i++) {
+                ev.execute(ctx, KEY, args, observer, DefaultTimeConstraints.NO_CONSTRAINTS);
+            }
+            long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+            perCall = Math.min(perCall, allocated / MEASURED_CALLS);
+        }
+        assertTrue("Allocated " + perCall + " bytes per call, budget is " + bytesPerCall, perCall <= bytesPerCall);
+    }
+
+    private static class ContinuingPreProcessor implements ExecutionPreProcessor {
+        @Override
+        public ExecutionRequirement getExecutionRequirement() {
+            return ExecutionRequirement.EVERY_OPPORTUNITY;
+        }
+
+        @Override
+        public InterceptorResult invoke(ExecutionContext ctx, OperationKey key, Object[] args) {
+            return CONTINUE;
+        }
+
+        @Override
+        public String getName() {
+            return "pre";
+        }
+    }
+
+    private static class ContinuingPostProcessor implements ExecutionPostProcessor {
+        @Override
+        public InterceptorResult invoke(ExecutionContext ctx, OperationKey key, Object[] args, ExecutionResult result) {
+            return CONTINUE;
+        }
+
+        @Override
+        public String getName() {
+            return "post";
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.core.impl.ev;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ */
+public class HashedWheelExpirySchedulerTest {
+
+    @Test
+    public void expiresNoEarlierThanRequested() throws InterruptedException {
+        HashedWheelExpiryScheduler scheduler = new HashedWheelExpiryScheduler(5, 8);
+        scheduler.start();
+
+        final long expiryTime = System.currentTimeMillis() + 100;
+        final long[] expiredAt = new long[1];
+        final CountDownLatch latch = new CountDownLatch(1);
+        scheduler.schedule(new ExpiryScheduler.Expirable() {
+            @Override
+            public void expire() {
+                expiredAt[0] = System.currentTimeMillis();
+                latch.countDown();
+            }
+        }, expiryTime);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(expiredAt[0] >= expiryTime);
+        assertEquals(1, scheduler.getRegisteredCount());
+        assertEquals(1, scheduler.getFiredCount());
+        assertEquals(0, scheduler.getCancelledCount());
+    }
+
+    @Test
+    public void expiresAfterMultipleRotations() throws InterruptedException {
+        // wheel covers 8 * 5 = 40ms, so this needs several rounds
+        HashedWheelExpiryScheduler scheduler = new HashedWheelExpiryScheduler(5, 8);
+        scheduler.start();
+
+        final long expiryTime = System.currentTimeMillis() + 150;
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long[] expiredAt = new long[1];
+        scheduler.schedule(new ExpiryScheduler.Expirable() {
+            @Override
+            public void expire() {
+                expiredAt[0] = System.currentTimeMillis();
+                latch.countDown();
+            }
+        }, expiryTime);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(expiredAt[0] >= expiryTime);
+    }
+
+    @Test
+    public void cancelledTimeoutNeverFires() throws InterruptedException {
+        HashedWheelExpiryScheduler scheduler = new HashedWheelExpiryScheduler(5, 8);
+        scheduler.start();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        ExpiryScheduler.ExpiryTimeout timeout = scheduler.schedule(new ExpiryScheduler.Expirable() {
+            @Override
+            public void expire() {
+                latch.countDown();
+            }
+        }, System.currentTimeMillis() + 50);
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertFalse(latch.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, scheduler.getCancelledCount());
+        assertEquals(0, scheduler.getFiredCount());
+    }
+
+    @Test
+    public void cancelAfterExpiryHasNoEffect() throws InterruptedException {
+        HashedWheelExpiryScheduler scheduler = new HashedWheelExpiryScheduler(5, 8);
+        scheduler.start();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        ExpiryScheduler.ExpiryTimeout timeout = scheduler.schedule(new ExpiryScheduler.Expirable() {
+            @Override
+            public void expire() {
+                latch.countDown();
+            }
+        }, System.currentTimeMillis());
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertFalse(timeout.cancel());
+        assertEquals(0, scheduler.getCancelledCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidTick() {
+        new HashedWheelExpiryScheduler(0, 8);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.core.impl.ev;
+
+import com.betfair.cougar.core.api.ServiceVersion;
+import com.betfair.cougar.core.api.ev.ExecutionPostProcessor;
+import com.betfair.cougar.core.api.ev.ExecutionPreProcessor;
+import com.betfair.cougar.core.api.ev.ExecutionRequirement;
+import com.betfair.cougar.core.api.ev.OperationKey;
+import com.betfair.cougar.core.api.ev.processors.Matcher;
+import com.betfair.cougar.core.api.ev.processors.OperationKeyMatcher;
+import com.betfair.cougar.core.api.ev.processors.PostMatchingInterceptor;
+import com.betfair.cougar.core.api.ev.processors.PreMatchingInterceptor;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit test for InterceptorChain
+ */
+public class InterceptorChainTest {
+
+    private List<ExecutionPreProcessor> preProcessors;
+    private List<ExecutionPostProcessor> postProcessors;
+    private OperationKey key = new OperationKey(new ServiceVersion(1, 0), "SomeService", "someOperation");
+
+    @Before
+    public void before() {
+        preProcessors = new ArrayList<>();
+        postProcessors = new ArrayList<>();
+    }
+
+    private ExecutionPreProcessor pre(ExecutionRequirement req) {
+        ExecutionPreProcessor ret = mock(ExecutionPreProcessor.class);
+        when(ret.getExecutionRequirement()).thenReturn(req);
+        preProcessors.add(ret);
+        return ret;
+    }
+
+    @Test
+    public void stagesKeepRegistrationOrder() {
+        ExecutionPreProcessor preExecute = pre(ExecutionRequirement.PRE_EXECUTE);
+        ExecutionPreProcessor exactlyOnce = pre(ExecutionRequirement.EXACTLY_ONCE);
+        ExecutionPreProcessor preQueue = pre(ExecutionRequirement.PRE_QUEUE);
+        ExecutionPreProcessor every = pre(ExecutionRequirement.EVERY_OPPORTUNITY);
+
+        InterceptorChain chain = InterceptorChain.compile(preProcessors, postProcessors, key);
+
+        assertArrayEquals(new ExecutionPreProcessor[] { exactlyOnce, preQueue, every }, chain.getPreQueue());
+        assertArrayEquals(new ExecutionPreProcessor[] { preExecute, every }, chain.getPreExecuteAfterQueue());
+        assertArrayEquals(new ExecutionPreProcessor[] { preExecute, exactlyOnce, every }, chain.getPreExecute());
+    }
+
+    @Test
+    public void operationKeyMatchersResolved() {
+        ExecutionPreProcessor matched = mock(ExecutionPreProcessor.class);
+        when(matched.getExecutionRequirement()).thenReturn(ExecutionRequirement.EVERY_OPPORTUNITY);
+        ExecutionPreProcessor unmatched = mock(ExecutionPreProcessor.class);
+        when(unmatched.getExecutionRequirement()).thenReturn(ExecutionRequirement.EVERY_OPPORTUNITY);
+        ExecutionPostProcessor matchedPost = mock(ExecutionPostProcessor.class);
+
+        OperationKeyMatcher someService = new OperationKeyMatcher();
+        someService.setServiceName("Some*");
+        OperationKeyMatcher otherService = new OperationKeyMatcher();
+        otherService.setServiceName("OtherService");
+
+        PreMatchingInterceptor pmi1 = new PreMatchingInterceptor(matched);
+        pmi1.setMatcher(someService);
+        preProcessors.add(pmi1);
+        PreMatchingInterceptor pmi2 = new PreMatchingInterceptor(unmatched);
+        pmi2.setMatcher(otherService);
+        preProcessors.add(pmi2);
+        PostMatchingInterceptor postMatching = new PostMatchingInterceptor(matchedPost);
+        postMatching.setMatcher(someService);
+        postProcessors.add(postMatching);
+
+        InterceptorChain chain = InterceptorChain.compile(preProcessors, postProcessors, key);
+
+        assertArrayEquals(new ExecutionPreProcessor[] { matched }, chain.getPreQueue());
+        assertArrayEquals(new ExecutionPreProcessor[] { matched }, chain.getPreExecute());
+        assertArrayEquals(new ExecutionPostProcessor[] { matchedPost }, chain.getPostProcessors());
+    }
+
+    @Test
+    public void otherMatchersLeftToRunPerRequest() {
+        ExecutionPreProcessor delegate = mock(ExecutionPreProcessor.class);
+        when(delegate.getExecutionRequirement()).thenReturn(ExecutionRequirement.PRE_EXECUTE);
+        PreMatchingInterceptor pmi = new PreMatchingInterceptor(delegate);
+        pmi.setMatcher(mock(Matcher.class));
+        preProcessors.add(pmi);
+
+        InterceptorChain chain = InterceptorChain.compile(preProcessors, postProcessors, key);
+
+        assertArrayEquals(new ExecutionPreProcessor[] { pmi }, chain.getPreExecute());
+    }
+
+    @Test
+    public void noKeyLeavesMatchersAlone() {
+        OperationKeyMatcher otherService = new OperationKeyMatcher();
+        otherService.setServiceName("OtherService");
+        ExecutionPreProcessor delegate = mock(ExecutionPreProcessor.class);
+        when(delegate.getExecutionRequirement()).thenReturn(ExecutionRequirement.PRE_EXECUTE);
+        PreMatchingInterceptor pmi = new PreMatchingInterceptor(delegate);
+        pmi.setMatcher(otherService);
+        preProcessors.add(pmi);
+
+        InterceptorChain chain = InterceptorChain.compile(preProcessors, postProcessors, null);
+
+        assertArrayEquals(new ExecutionPreProcessor[] { pmi }, chain.getPreExecute());
+    }
+
+    @Test
+    public void staleOnceInterceptorsAdded() {
+        pre(ExecutionRequirement.PRE_QUEUE);
+        InterceptorChain chain = InterceptorChain.compile(preProcessors, postProcessors, key);
+        assertTrue(chain.isCompiledFrom(preProcessors, postProcessors));
+
+        pre(ExecutionRequirement.PRE_EXECUTE);
+        assertFalse(chain.isCompiledFrom(preProcessors, postProcessors));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.core.impl.kpi;
+
+import com.betfair.cougar.core.impl.ev.HistogramExecutionTimingRecorder;
+import com.betfair.cougar.core.api.ev.ExecutionTimingRecorder;
+import com.betfair.cougar.util.jmx.JMXControl;
+import com.betfair.cougar.util.stats.StripedHistogram;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class OperationLatencyMonitorTest {
+
+    @Test
+    public void oneHistogramPerOperation() {
+        JMXControl jmxControl = mock(JMXControl.class);
+        OperationLatencyMonitor monitor = new OperationLatencyMonitor();
+        monitor.setJmxControl(jmxControl);
+
+        StripedHistogram histogram = monitor.getHistogram("Baseline.v2.0", "testSimpleGet");
+        assertSame(histogram, monitor.getHistogram("Baseline.v2.0", "testSimpleGet"));
+        assertNotSame(histogram, monitor.getHistogram("Baseline.v2.0.client", "testSimpleGet"));
+        assertEquals(2, monitor.getOperationCount());
+
+        verify(jmxControl).registerMBean(eq("CoUGAR.latency:service=Baseline.v2.0,operation=testSimpleGet"), any(OperationLatency.class));
+        verify(jmxControl).registerMBean(eq("CoUGAR.latency:service=Baseline.v2.0.client,operation=testSimpleGet"), any(OperationLatency.class));
+    }
+
+    @Test
+    public void disabled() {
+        OperationLatencyMonitor monitor = new OperationLatencyMonitor();
+        monitor.setEnabled(false);
+        assertNull(monitor.getHistogram("Baseline.v2.0", "testSimpleGet"));
+    }
+
+    @Test
+    public void exportFailureDoesNotPreventRecording() {
+        JMXControl jmxControl = mock(JMXControl.class);
+        doThrow(new IllegalStateException("Unable to register MBean")).when(jmxControl).registerMBean(anyString(), any());
+        OperationLatencyMonitor monitor = new OperationLatencyMonitor();
+        monitor.setJmxControl(jmxControl);
+
+        assertNotNull(monitor.getHistogram("Baseline.v2.0", "testSimpleGet"));
+    }
+
+    @Test
+    public void recordsCallsAndFailures() {
+        OperationLatencyMonitor monitor = new OperationLatencyMonitor();
+        StripedHistogram histogram = monitor.getHistogram("Baseline.v2.0", "testSimpleGet");
+        ExecutionTimingRecorder delegate = mock(ExecutionTimingRecorder.class);
+        ExecutionTimingRecorder recorder = new HistogramExecutionTimingRecorder(delegate, histogram);
+
+        recorder.recordCall(1.5);
+        recorder.recordFailure(20);
+
+        verify(delegate).recordCall(1.5);
+        verify(delegate).recordFailure(20);
+        assertEquals(2, histogram.snapshot().getCount());
+        assertEquals(20000, histogram.snapshot().getMax(), 20000 * 0.03);
+    }
+
+    @Test
+    public void rollsEveryHistogram() {
+        OperationLatencyMonitor monitor = new OperationLatencyMonitor();
+        StripedHistogram get = monitor.getHistogram("Baseline.v2.0", "testSimpleGet");
+        StripedHistogram set = monitor.getHistogram("Baseline.v2.0", "testSimpleSet");
+        get.record(1000);
+        set.record(1000);
+        set.record(2000);
+
+        monitor.roll();
+        assertEquals(1, get.getLastInterval().getCount());
+        assertEquals(2, set.getLastInterval().getCount());
+
+        monitor.roll();
+        assertEquals(0, get.getLastInterval().getCount());
+        assertEquals(2, set.snapshot().getCount());
+    }
+
+    @Test
+    public void intervalAttributes() {
+        OperationLatency latency = new OperationLatency("Baseline.v2.0", "testSimpleGet", true);
+        for (int i=1; i<=100; i++) {
+            latency.getHistogram().record(i * 1000);
+        }
+        // nothing is reported for the interval until it's over
+        assertEquals(0, latency.getCount());
+        assertEquals(100, latency.getTotalCount());
+
+        latency.getHistogram().roll();
+        assertEquals(100, latency.getCount());
+        assertEquals(50.5, latency.getMean(), 0.001);
+        assertEquals(99, latency.getP99(), 99 * 0.03);
+        assertEquals(100, latency.getMax(), 100 * 0.03);
+    }
+
+    @Test
+    public void cumulativeWithoutInterval() {
+        OperationLatency latency = new OperationLatency("Baseline.v2.0", "testSimpleGet", false);
+        latency.getHistogram().record(5000);
+        assertEquals(1, latency.getCount());
+        assertEquals(5, latency.getP50(), 5 * 0.03);
+
+        latency.reset();
+        assertEquals(0, latency.getCount());
+        assertEquals(0, latency.getTotalCount());
+    }
+
+    @Test
+    public void httpPage() {
+        OperationLatencyMonitor monitor = new OperationLatencyMonitor();
+        monitor.getHistogram("Baseline.v2.0", "testSimpleGet").record(1000);
+        monitor.getHistogram("Baseline.v2.0", "<script>").record(1000);
+
+        String intervalPage = monitor.process(Collections.<String, String>emptyMap());
+        assertTrue(intervalPage, intervalPage.contains("<td>Baseline.v2.0</td><td>testSimpleGet</td><td>0</td>"));
+        assertTrue(intervalPage, intervalPage.contains("&lt;script&gt;"));
+
+        String totalPage = monitor.process(Collections.singletonMap("total", "true"));
+        assertTrue(totalPage, totalPage.contains("<td>Baseline.v2.0</td><td>testSimpleGet</td><td>1</td><td>1.000</td>"));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.marshalling.impl.databinding.json;
+
+import com.betfair.cougar.core.api.transcription.JsonCodec;
+import com.betfair.cougar.core.api.transcription.Transcribable;
+import com.fasterxml.jackson.core.Version;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.deser.Deserializers;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.Serializers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Jackson module which swaps bean introspection for the code generated {@link JsonCodec} of an IDD data type,
+ * where one exists. Codecs are found by naming convention (<code>Foo</code> -&gt; <code>FooJsonCodec</code>)
+ * so data types generated by an older plugin carry on using Jackson's bean (de)serializers.
+ */
+public class GeneratedJsonCodecModule extends SimpleModule {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GeneratedJsonCodecModule.class);
+
+    static final String CODEC_SUFFIX = "JsonCodec";
+
+    private static final JsonCodec<?> NO_CODEC = new JsonCodec<Object>() {
+        @Override
+        public JsonSerializer<Object> createSerializer() {
+            return null;
+        }
+        @Override
+        public JsonDeserializer<Object> createDeserializer() {
+            return null;
+        }
+    };
+
+    private final ConcurrentMap<Class<?>, JsonCodec<?>> codecs = new ConcurrentHashMap<>();
+
+    public GeneratedJsonCodecModule() {
+        super("GeneratedJsonCodecModule", new Version(1, 0, 0, null, null, null));
+    }
+
+    @Override
+    public void setupModule(SetupContext context) {
+        super.setupModule(context);
+        context.addSerializers(new Serializers.Base() {
+            @Override
+            public JsonSerializer<?> findSerializer(SerializationConfig config, JavaType type, BeanDescription beanDesc) {
+                JsonCodec<?> codec = findCodec(type.getRawClass());
+                return codec != null ? codec.createSerializer() : null;
+            }
+        });
+        context.addDeserializers(new Deserializers.Base() {
+            @Override
+            public JsonDeserializer<?> findBeanDeserializer(JavaType type, DeserializationConfig config, BeanDescription beanDesc) throws JsonMappingException {
+                JsonCodec<?> codec = findCodec(type.getRawClass());
+                return codec != null ? codec.createDeserializer() : null;
+            }
+        });
+    }
+
+    /**
+     * @return the generated codec for the given class, or null if it isn't a data type or has no codec
+     */
+    JsonCodec<?> findCodec(Class<?> cls) {
+        if (!Transcribable.class.isAssignableFrom(cls)) {
+            return null;
+        }
+        JsonCodec<?> codec = codecs.get(cls);
+        if (codec == null) {
+            codec = loadCodec(cls);
+            JsonCodec<?> existing = codecs.putIfAbsent(cls, codec);
+            if (existing != null) {
+                codec = existing;
+            }
+        }
+        return codec != NO_CODEC ? codec : null;
+    }
+
+    private JsonCodec<?> loadCodec(Class<?> cls) {
+        String codecName = cls.getName() + CODEC_SUFFIX;
+        try {
+            Class<?> codecClass = Class.forName(codecName, true, cls.getClassLoader());
+            if (!JsonCodec.class.isAssignableFrom(codecClass)) {
+                LOGGER.warn("Ignoring {} as it is not a {}", codecName, JsonCodec.class.getSimpleName());
+                return NO_CODEC;
+            }
+            LOGGER.debug("Using generated json codec {}", codecName);
+            return (JsonCodec<?>) codecClass.newInstance();
+        }
+        catch (ClassNotFoundException e) {
+            LOGGER.debug("No generated json codec found for {}, falling back to bean introspection", cls.getName());
+            return NO_CODEC;
+        }
+        catch (InstantiationException | IllegalAccessException e) {
+            LOGGER.warn("Unable to instantiate json codec {}, falling back to bean introspection", codecName, e);
+            return NO_CODEC;
+        }
+    }
+}
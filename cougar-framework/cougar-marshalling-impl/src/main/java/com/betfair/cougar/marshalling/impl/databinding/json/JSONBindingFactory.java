@@ -43,6 +43,7 @@ public class JSONBindingFactory implements DataBindingFactory {
     private boolean enableAfterburner = true;
     private boolean useOptimizedBeanDeserializer = true;
     private boolean useValueClassLoader = true;
+    private boolean useGeneratedCodecs = true;
 
     public JSONBindingFactory() {
 		LOGGER.info("Initialising JSONBindingFactory");
@@ -63,6 +64,9 @@ public class JSONBindingFactory implements DataBindingFactory {
             module.setUseValueClassLoader(useValueClassLoader);
             mapper.registerModule(module);
         }
+        if (useGeneratedCodecs) {
+            mapper.registerModule(new GeneratedJsonCodecModule());
+        }
 
         applyNumericRangeBugfixes(mapper);
 		return mapper;
@@ -122,6 +126,10 @@ public class JSONBindingFactory implements DataBindingFactory {
         this.useValueClassLoader = useValueClassLoader;
     }
 
+    public void setUseGeneratedCodecs(boolean useGeneratedCodecs) {
+        this.useGeneratedCodecs = useGeneratedCodecs;
+    }
+
     /**
      * A deserializer for Integer that properly checks whether the value is within range.
      * Needed because Jackson's StdDeserializer._parseInteger has a bug in it that allows underflow and overflow.
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.marshalling.impl.databinding.json;
+
+import com.betfair.cougar.core.api.ServiceVersion;
+import com.betfair.cougar.core.api.transcription.EnumDerialisationException;
+import com.betfair.cougar.core.api.transcription.EnumUtils;
+import com.betfair.cougar.core.api.transcription.JsonCodec;
+import com.betfair.cougar.core.api.transcription.JsonCodecSupport;
+import com.betfair.cougar.core.api.transcription.Parameter;
+import com.betfair.cougar.core.api.transcription.ParameterType;
+import com.betfair.cougar.core.api.transcription.Transcribable;
+import com.betfair.cougar.core.api.transcription.TranscribableParams;
+import com.betfair.cougar.core.api.transcription.TranscriptionInput;
+import com.betfair.cougar.core.api.transcription.TranscriptionOutput;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.ResolvableDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class GeneratedJsonCodecModuleTest {
+
+    @After
+    public void resetEnumHandling() {
+        EnumUtils.setHardFailureForThisThread(true);
+    }
+
+    @Test
+    public void codecFoundByNamingConvention() {
+        GeneratedJsonCodecModule module = new GeneratedJsonCodecModule();
+        assertTrue(module.findCodec(Coded.class) instanceof CodedJsonCodec);
+        assertSame(module.findCodec(Coded.class), module.findCodec(Coded.class));
+        assertNull(module.findCodec(Uncoded.class));
+        assertNull(module.findCodec(String.class));
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        ObjectMapper mapper = mapper(true);
+        Coded coded = coded("abc", 3, "RED", new Uncoded("inner"));
+
+        String json = mapper.writeValueAsString(coded);
+        assertEquals("{\"name\":\"abc\",\"count\":3,\"colour\":\"RED\",\"child\":{\"value\":\"inner\"},\"tags\":[\"x\",\"y\"]}", json);
+
+        Coded read = mapper.readValue(json, Coded.class);
+        assertEquals("abc", read.getName());
+        assertEquals(Integer.valueOf(3), read.getCount());
+        assertEquals(Colour.RED, read.getColour());
+        assertEquals("inner", read.getChild().getValue());
+        assertEquals(Arrays.asList("x", "y"), read.getTags());
+    }
+
+    @Test
+    public void sameJsonAsBeanIntrospection() throws IOException {
+        Coded coded = coded("abc", null, "BLUE", null);
+        assertEquals(mapper(false).readTree(mapper(false).writeValueAsString(coded)), mapper(true).readTree(mapper(true).writeValueAsString(coded)));
+    }
+
+    @Test
+    public void nullsAndUnknownFields() throws IOException {
+        Coded read = mapper(true).readValue("{\"unknown\":{\"a\":[1,2]},\"name\":null,\"count\":\"7\",\"colour\":null}", Coded.class);
+        assertNull(read.getName());
+        assertEquals(Integer.valueOf(7), read.getCount());
+        assertNull(read.getColour());
+    }
+
+    @Test
+    public void unrecognisedEnumHardFail() throws IOException {
+        EnumUtils.setHardFailureForThisThread(true);
+        try {
+            mapper(true).readValue("{\"colour\":\"GREEN\"}", Coded.class);
+            fail("Expected a JsonMappingException");
+        }
+        catch (JsonMappingException e) {
+            assertTrue(e.getCause() instanceof EnumDerialisationException);
+        }
+    }
+
+    @Test
+    public void unrecognisedEnumSoftFail() throws IOException {
+        EnumUtils.setHardFailureForThisThread(false);
+        Coded read = mapper(true).readValue("{\"colour\":\"GREEN\"}", Coded.class);
+        assertEquals(Colour.UNRECOGNIZED_VALUE, read.getColour());
+        assertEquals("GREEN", read.getRawColourValue());
+    }
+
+    private static ObjectMapper mapper(boolean useGeneratedCodecs) {
+        JSONBindingFactory factory = new JSONBindingFactory();
+        factory.setUseGeneratedCodecs(useGeneratedCodecs);
+        return factory.createBaseObjectMapper();
+    }
+
+    private static Coded coded(String name, Integer count, String colour, Uncoded child) {
+        Coded coded = new Coded();
+        coded.setName(name);
+        coded.setCount(count);
+        coded.setRawColourValue(colour);
+        coded.setChild(child);
+        coded.setTags(Arrays.asList("x", "y"));
+        return coded;
+    }
+
+    public enum Colour { RED, BLUE, UNRECOGNIZED_VALUE }
+
+    /**
+     * Shaped like a generated data type.
+     */
+    @JsonIgnoreProperties(ignoreUnknown=true)
+    public static class Coded extends AbstractTranscribable {
+        public static final Parameter[] PARAMETERS = new Parameter[] {
+            new Parameter("name", new ParameterType(String.class, null), false),
+            new Parameter("count", new ParameterType(Integer.class, null), false),
+            new Parameter("colour", new ParameterType(Colour.class, null), false),
+            new Parameter("child", new ParameterType(Uncoded.class, null), false),
+            new Parameter("tags", new ParameterType(List.class, new ParameterType[] { new ParameterType(String.class, null) }), false)
+        };
+
+        private String name;
+        private Integer count;
+        private Colour colour;
+        private String rawColourValue;
+        private Uncoded child;
+        private List<String> tags;
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+        public Integer getCount() { return count; }
+        public void setCount(Integer count) { this.count = count; }
+        @JsonIgnore
+        public Colour getColour() { return colour; }
+        public void setColour(Colour colour) { this.colour = colour; this.rawColourValue = colour != null ? colour.name() : null; }
+        @JsonProperty("colour")
+        public String getRawColourValue() { return rawColourValue; }
+        public void setRawColourValue(String colour) { this.colour = colour != null ? EnumUtils.readEnum(Colour.class, colour) : null; this.rawColourValue = colour; }
+        public Uncoded getChild() { return child; }
+        public void setChild(Uncoded child) { this.child = child; }
+        public List<String> getTags() { return tags; }
+        public void setTags(List<String> tags) { this.tags = tags; }
+
+        @JsonIgnore
+        public Parameter[] getParameters() { return PARAMETERS; }
+    }
+
+    /**
+     * Equivalent to what dataTypeJsonCodec.ftl generates for {@link Coded}.
+     */
+    public static class CodedJsonCodec implements JsonCodec<Coded> {
+        @Override
+        public JsonSerializer<Coded> createSerializer() {
+            return new Serializer();
+        }
+
+        @Override
+        public JsonDeserializer<Coded> createDeserializer() {
+            return new Deserializer();
+        }
+
+        private static class Serializer extends StdSerializer<Coded> implements ResolvableSerializer {
+            private JsonSerializer<Object> __countSerializer;
+            private JsonSerializer<Object> __childSerializer;
+            private JsonSerializer<Object> __tagsSerializer;
+
+            Serializer() {
+                super(Coded.class);
+            }
+
+            @Override
+            public void resolve(SerializerProvider provider) throws JsonMappingException {
+                __countSerializer = provider.findValueSerializer(JsonCodecSupport.javaType(provider.getTypeFactory(), Coded.PARAMETERS[1].getParameterType()), null);
+                __childSerializer = provider.findValueSerializer(JsonCodecSupport.javaType(provider.getTypeFactory(), Coded.PARAMETERS[3].getParameterType()), null);
+                __tagsSerializer = provider.findValueSerializer(JsonCodecSupport.javaType(provider.getTypeFactory(), Coded.PARAMETERS[4].getParameterType()), null);
+            }
+
+            @Override
+            public void serialize(Coded value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+                jgen.writeStartObject();
+                String __name = value.getName();
+                if (__name != null) {
+                    jgen.writeStringField("name", __name);
+                }
+                Object __count = value.getCount();
+                if (__count != null) {
+                    jgen.writeFieldName("count");
+                    __countSerializer.serialize(__count, jgen, provider);
+                }
+                String __colour = value.getRawColourValue();
+                if (__colour != null) {
+                    jgen.writeStringField("colour", __colour);
+                }
+                Object __child = value.getChild();
+                if (__child != null) {
+                    jgen.writeFieldName("child");
+                    __childSerializer.serialize(__child, jgen, provider);
+                }
+                Object __tags = value.getTags();
+                if (__tags != null) {
+                    jgen.writeFieldName("tags");
+                    __tagsSerializer.serialize(__tags, jgen, provider);
+                }
+                jgen.writeEndObject();
+            }
+        }
+
+        private static class Deserializer extends StdDeserializer<Coded> implements ResolvableDeserializer {
+            private JsonDeserializer<Object> __countDeserializer;
+            private JsonDeserializer<Object> __childDeserializer;
+            private JsonDeserializer<Object> __tagsDeserializer;
+
+            Deserializer() {
+                super(Coded.class);
+            }
+
+            @Override
+            public void resolve(DeserializationContext ctxt) throws JsonMappingException {
+                __countDeserializer = ctxt.findRootValueDeserializer(JsonCodecSupport.javaType(ctxt.getTypeFactory(), Coded.PARAMETERS[1].getParameterType()));
+                __childDeserializer = ctxt.findRootValueDeserializer(JsonCodecSupport.javaType(ctxt.getTypeFactory(), Coded.PARAMETERS[3].getParameterType()));
+                __tagsDeserializer = ctxt.findRootValueDeserializer(JsonCodecSupport.javaType(ctxt.getTypeFactory(), Coded.PARAMETERS[4].getParameterType()));
+            }
+
+            @Override
+            public Coded deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException {
+                Coded bean = new Coded();
+                for (JsonToken t = JsonCodecSupport.startObject(jp, ctxt, Coded.class); t == JsonToken.FIELD_NAME; t = jp.nextToken()) {
+                    String field = jp.getCurrentName();
+                    jp.nextToken();
+                    try {
+                        switch (field) {
+                            case "name":
+                                bean.setName(JsonCodecSupport.readString(jp, ctxt));
+                                break;
+                            case "count":
+                                bean.setCount((Integer) JsonCodecSupport.readValue(__countDeserializer, jp, ctxt));
+                                break;
+                            case "colour":
+                                bean.setRawColourValue(JsonCodecSupport.readString(jp, ctxt));
+                                break;
+                            case "child":
+                                bean.setChild((Uncoded) JsonCodecSupport.readValue(__childDeserializer, jp, ctxt));
+                                break;
+                            case "tags":
+                                bean.setTags((List<String>) JsonCodecSupport.readValue(__tagsDeserializer, jp, ctxt));
+                                break;
+                            default:
+                                jp.skipChildren();
+                        }
+                    }
+                    catch (Exception e) {
+                        JsonCodecSupport.wrapAndThrow(e, bean, field, ctxt);
+                    }
+                }
+                return bean;
+            }
+        }
+    }
+
+    /**
+     * A data type without a codec, as generated by an older plugin.
+     */
+    @JsonIgnoreProperties(ignoreUnknown=true)
+    public static class Uncoded extends AbstractTranscribable {
+        private String value;
+
+        public Uncoded() {
+        }
+
+        public Uncoded(String value) {
+            this.value = value;
+        }
+
+        public String getValue() { return value; }
+        public void setValue(String value) { this.value = value; }
+
+        @JsonIgnore
+        public Parameter[] getParameters() { return new Parameter[0]; }
+    }
+
+    public abstract static class AbstractTranscribable implements Transcribable {
+        public void transcribe(TranscriptionOutput out, Set<TranscribableParams> params, boolean client) throws Exception {
+        }
+
+        public void transcribe(TranscriptionInput in, Set<TranscribableParams> params, boolean client) throws Exception {
+        }
+
+        @JsonIgnore
+        public ServiceVersion getServiceVersion() {
+            return new ServiceVersion(1, 0);
+        }
+    }
+}
@@ -31,7 +31,7 @@ import com.betfair.cougar.transport.api.TransportCommand;
 import com.betfair.cougar.transport.api.TransportCommandProcessor;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicLong;
@@ -187,9 +187,7 @@ public abstract class AbstractCommandProcessor<T extends TransportCommand> imple
         }
 
         public final List<ExecutionCommand> resolveExecutionCommands() {
-			ArrayList<ExecutionCommand> list = new ArrayList<ExecutionCommand>();
-			list.add(resolveExecutionCommand(tracer));
-			return list;
+			return Collections.singletonList(resolveExecutionCommand(tracer));
 		}
 		public abstract ExecutionCommand resolveExecutionCommand(Tracer tracer);
 	}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.logging.async;
+
+import com.betfair.cougar.api.LoggableEvent;
+import com.betfair.cougar.logging.records.EventLogRecord;
+import org.slf4j.ILoggerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Takes event log writes off the request thread. Callers hand over the raw fields of an event, which
+ * go into a bounded {@link MpscRingBuffer}; a single writer thread then renders them into
+ * {@link EventLogRecord}s and writes them to their loggers in batches. What happens when the buffer
+ * is full is governed by the {@link FullBufferPolicy}.
+ * <p>
+ * If async writing is disabled, or the writer isn't running, events are rendered and written on the
+ * calling thread exactly as before.
+ */
+@ManagedResource
+public class AsyncEventLogWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncEventLogWriter.class);
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long SHUTDOWN_WAIT_MILLIS = 5000;
+
+    private ILoggerFactory loggerFactory = LoggerFactory.getILoggerFactory();
+
+    private boolean async = true;
+    private int capacity = 16384;
+    private int batchSize = 256;
+    private volatile FullBufferPolicy fullBufferPolicy = FullBufferPolicy.BLOCK;
+    private volatile long blockTimeout = 1000;
+    private volatile int sampleRate = 10;
+
+    private MpscRingBuffer<PendingEvent> buffer;
+    private Thread writerThread;
+    private volatile boolean running;
+    private volatile boolean writerParked;
+
+    private final AtomicLong sampleCounter = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong writtenEvents = new AtomicLong();
+    private final AtomicLong writtenBatches = new AtomicLong();
+    private final AtomicLong failedEvents = new AtomicLong();
+
+    public synchronized void start() {
+        if (!async || running) {
+            return;
+        }
+        buffer = new MpscRingBuffer<>(capacity);
+        running = true;
+        writerThread = new Thread(new Writer(), "EventLogWriter");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        LOGGER.info("Asynchronous event log writer started with capacity {}, batch size {} and {} policy",
+                buffer.capacity(), batchSize, fullBufferPolicy);
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(SHUTDOWN_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // anything a producer slipped in after the writer's final drain
+        if (!writerThread.isAlive()) {
+            List<PendingEvent> remaining = new ArrayList<>();
+            buffer.drainTo(remaining, Integer.MAX_VALUE);
+            writeBatch(remaining);
+        }
+    }
+
+    /**
+     * Logs an event to the named logger. The event's fields are captured on the calling thread, so
+     * it's safe to pass events which read from request state that is about to be recycled.
+     * @param logName the name of the (concrete) logger to write to
+     * @param event the event to log
+     * @param extensionFields extra fields to append to the event's own, may be null
+     * @return false if the event was discarded because the buffer was full
+     */
+    public boolean log(String logName, LoggableEvent event, Object[] extensionFields) {
+        PendingEvent pending = new PendingEvent(logName, event.getLogName(), event.getFieldsToLog(), extensionFields);
+        if (!running) {
+            write(pending);
+            return true;
+        }
+        if (enqueue(pending)) {
+            if (writerParked) {
+                LockSupport.unpark(writerThread);
+            }
+            return true;
+        }
+        droppedEvents.incrementAndGet();
+        return false;
+    }
+
+    private boolean enqueue(PendingEvent pending) {
+        switch (fullBufferPolicy) {
+            case SAMPLE:
+                if (buffer.size() >= buffer.capacity() / 2
+                        && sampleCounter.getAndIncrement() % Math.max(1, sampleRate) != 0) {
+                    return false;
+                }
+                return buffer.offer(pending);
+            case BLOCK:
+                if (buffer.offer(pending)) {
+                    return true;
+                }
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockTimeout);
+                do {
+                    LockSupport.unpark(writerThread);
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                    if (buffer.offer(pending)) {
+                        return true;
+                    }
+                } while (running && System.nanoTime() - deadline < 0);
+                return false;
+            default:
+                return buffer.offer(pending);
+        }
+    }
+
+    private void writeBatch(List<PendingEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        // render everything first so the loggers are only held for the writes themselves
+        String[] messages = new String[batch.size()];
+        for (int i = 0; i < messages.length; i++) {
+            PendingEvent pending = batch.get(i);
+            try {
+                messages[i] = new EventLogRecord(pending, pending.extensionFields).getMessage();
+            } catch (Exception e) {
+                failedEvents.incrementAndGet();
+                LOGGER.warn("Unable to render event for log {}", pending.logName, e);
+            }
+        }
+        for (int i = 0; i < messages.length; i++) {
+            if (messages[i] != null) {
+                PendingEvent pending = batch.get(i);
+                try {
+                    loggerFactory.getLogger(pending.logName).info(messages[i]);
+                    writtenEvents.incrementAndGet();
+                } catch (Exception e) {
+                    failedEvents.incrementAndGet();
+                    LOGGER.warn("Unable to write event to log {}", pending.logName, e);
+                }
+            }
+        }
+        writtenBatches.incrementAndGet();
+        batch.clear();
+    }
+
+    private void write(PendingEvent pending) {
+        loggerFactory.getLogger(pending.logName).info(new EventLogRecord(pending, pending.extensionFields).getMessage());
+        writtenEvents.incrementAndGet();
+    }
+
+    private class Writer implements Runnable {
+        @Override
+        public void run() {
+            List<PendingEvent> batch = new ArrayList<>(batchSize);
+            while (running || !buffer.isEmpty()) {
+                if (buffer.drainTo(batch, batchSize) > 0) {
+                    writeBatch(batch);
+                } else if (running) {
+                    writerParked = true;
+                    // re-check after advertising that we're parked, else a producer could miss us
+                    if (buffer.isEmpty()) {
+                        LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    }
+                    writerParked = false;
+                } else {
+                    // a producer has claimed a slot but not yet published into it
+                    Thread.yield();
+                }
+            }
+        }
+    }
+
+    /**
+     * The captured fields of an event awaiting the writer.
+     */
+    private static final class PendingEvent implements LoggableEvent {
+        private final String logName;
+        private final String eventLogName;
+        private final Object[] fields;
+        private final Object[] extensionFields;
+
+        private PendingEvent(String logName, String eventLogName, Object[] fields, Object[] extensionFields) {
+            this.logName = logName;
+            this.eventLogName = eventLogName;
+            this.fields = fields;
+            this.extensionFields = extensionFields;
+        }
+
+        @Override
+        public String getLogName() {
+            return eventLogName;
+        }
+
+        @Override
+        public Object[] getFieldsToLog() {
+            return fields;
+        }
+    }
+
+    public void setLoggerFactory(ILoggerFactory loggerFactory) {
+        this.loggerFactory = loggerFactory;
+    }
+
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    @ManagedAttribute
+    public boolean isAsync() {
+        return async;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @ManagedAttribute
+    public int getCapacity() {
+        return buffer != null ? buffer.capacity() : capacity;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @ManagedAttribute
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @ManagedAttribute
+    public String getFullBufferPolicy() {
+        return fullBufferPolicy.name();
+    }
+
+    @ManagedAttribute
+    public void setFullBufferPolicy(String fullBufferPolicy) {
+        this.fullBufferPolicy = FullBufferPolicy.valueOf(fullBufferPolicy.trim().toUpperCase());
+    }
+
+    @ManagedAttribute
+    public long getBlockTimeout() {
+        return blockTimeout;
+    }
+
+    @ManagedAttribute
+    public void setBlockTimeout(long blockTimeout) {
+        this.blockTimeout = blockTimeout;
+    }
+
+    @ManagedAttribute
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @ManagedAttribute
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    @ManagedAttribute
+    public boolean isRunning() {
+        return running;
+    }
+
+    @ManagedAttribute
+    public int getQueueDepth() {
+        return buffer != null ? buffer.size() : 0;
+    }
+
+    @ManagedAttribute
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    @ManagedAttribute
+    public long getWrittenEvents() {
+        return writtenEvents.get();
+    }
+
+    @ManagedAttribute
+    public long getWrittenBatches() {
+        return writtenBatches.get();
+    }
+
+    @ManagedAttribute
+    public long getFailedEvents() {
+        return failedEvents.get();
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.logging.async;
+
+/**
+ * What an {@link AsyncEventLogWriter} does with an event when its buffer can't take it.
+ */
+public enum FullBufferPolicy {
+    /** Discard the event immediately. */
+    DROP,
+    /** Wait for the writer to make room, up to the configured block timeout, then discard. */
+    BLOCK,
+    /**
+     * Once the buffer passes its high water mark keep only one in every sampleRate events,
+     * discarding the rest, and discard everything when it is completely full.
+     */
+    SAMPLE
+}
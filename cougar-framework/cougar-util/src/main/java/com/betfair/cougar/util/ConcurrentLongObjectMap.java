@@ -0,0 +1,227 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.util;
+
+import java.util.Collection;
+
+/**
+ * Concurrent map keyed on primitive longs, so that hot paths keyed on ids (such as correlation ids) don't need to box
+ * a Long for every put, get and remove. The map is split into independently locked segments, each of which is an
+ * open addressed hash table using linear probing. Null values are not supported.
+ */
+public class ConcurrentLongObjectMap<V> {
+
+    private static final int DEFAULT_SEGMENTS = 16;
+    private static final int DEFAULT_SEGMENT_CAPACITY = 16;
+
+    private final Segment<V>[] segments;
+    private final int segmentShift;
+
+    public ConcurrentLongObjectMap() {
+        this(DEFAULT_SEGMENTS);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentLongObjectMap(int concurrencyLevel) {
+        int numSegments = 1;
+        int bits = 0;
+        while (numSegments < concurrencyLevel) {
+            numSegments <<= 1;
+            bits++;
+        }
+        segments = new Segment[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            segments[i] = new Segment<>(DEFAULT_SEGMENT_CAPACITY);
+        }
+        // top bits pick the segment, bottom bits pick the slot within the segment
+        segmentShift = 32 - bits;
+    }
+
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("Null values are not supported");
+        }
+        int hash = hash(key);
+        return segmentFor(hash).put(key, hash, value);
+    }
+
+    public V get(long key) {
+        int hash = hash(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    public V remove(long key) {
+        int hash = hash(key);
+        return segmentFor(hash).remove(key, hash, null);
+    }
+
+    /**
+     * Removes the entry for the key only if it is currently mapped to the given value.
+     * @return true if the entry was removed
+     */
+    public boolean remove(long key, V value) {
+        int hash = hash(key);
+        return segmentFor(hash).remove(key, hash, value) != null;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Removes all entries from the map, adding their values to the given collection.
+     */
+    public void drainTo(Collection<? super V> values) {
+        for (Segment<V> segment : segments) {
+            segment.drainTo(values);
+        }
+    }
+
+    private Segment<V> segmentFor(int hash) {
+        return segments.length == 1 ? segments[0] : segments[hash >>> segmentShift];
+    }
+
+    private static int hash(long key) {
+        // murmur3 finalizer, ids are often sequential so we need to spread them across segments and slots
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private static final class Segment<V> {
+        private long[] keys;
+        private Object[] values;
+        private volatile int size;
+
+        private Segment(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized V get(long key, int hash) {
+            int mask = keys.length - 1;
+            for (int i = hash & mask; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return (V) values[i];
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized V put(long key, int hash, V value) {
+            int mask = keys.length - 1;
+            int i = hash & mask;
+            for (; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    V old = (V) values[i];
+                    values[i] = value;
+                    return old;
+                }
+            }
+            keys[i] = key;
+            values[i] = value;
+            size++;
+            // keep the load factor at or below 0.5 so probe sequences stay short
+            if (size * 2 > keys.length) {
+                resize();
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized V remove(long key, int hash, V expected) {
+            int mask = keys.length - 1;
+            for (int i = hash & mask; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    V old = (V) values[i];
+                    if (expected != null && expected != old) {
+                        return null;
+                    }
+                    deleteSlot(i);
+                    size--;
+                    return old;
+                }
+            }
+            return null;
+        }
+
+        private synchronized void drainTo(Collection<? super V> collection) {
+            if (size == 0) {
+                return;
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    @SuppressWarnings("unchecked")
+                    V value = (V) values[i];
+                    collection.add(value);
+                    values[i] = null;
+                }
+            }
+            size = 0;
+        }
+
+        // backward shift deletion, avoids the need for tombstones
+        private void deleteSlot(int slot) {
+            int mask = keys.length - 1;
+            int gap = slot;
+            int i = (slot + 1) & mask;
+            while (values[i] != null) {
+                int home = hash(keys[i]) & mask;
+                // move the entry back into the gap if the gap lies between its home slot and its current slot
+                if (((i - home) & mask) >= ((i - gap) & mask)) {
+                    keys[gap] = keys[i];
+                    values[gap] = values[i];
+                    gap = i;
+                }
+                i = (i + 1) & mask;
+            }
+            values[gap] = null;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Object[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] != null) {
+                    int i = hash(oldKeys[j]) & mask;
+                    while (values[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+    }
+}
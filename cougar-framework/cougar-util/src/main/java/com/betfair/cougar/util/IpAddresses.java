@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.util;
+
+/**
+ * Allocation free parsing of textual ip addresses, for use on per request paths.
+ */
+final class IpAddresses {
+
+    private IpAddresses() {
+    }
+
+    /**
+     * @return the address as an unsigned 32 bit value, or -1 if it's not in dotted quad notation
+     */
+    static long parseIPv4(String s, int from, int to) {
+        long result = 0;
+        int octets = 0;
+        int value = -1;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255) {
+                    return -1;
+                }
+            }
+            else if (c == '.' && value >= 0 && octets < 3) {
+                result = (result << 8) | value;
+                octets++;
+                value = -1;
+            }
+            else {
+                return -1;
+            }
+        }
+        if (value < 0 || octets != 3) {
+            return -1;
+        }
+        return (result << 8) | value;
+    }
+
+    /**
+     * Parses an ipv6 address, in any of the RFC 4291 text forms, returning one half of it. Java can't return both
+     * halves without allocating, and ipv6 addresses are short enough that parsing twice is the cheaper option.
+     * @throws IllegalArgumentException if the address is malformed
+     */
+    static long parseIPv6(String s, int from, int to, boolean lowHalf) {
+        int zone = s.indexOf('%', from);
+        if (zone >= 0 && zone < to) {
+            to = zone;
+        }
+
+        long headHi = 0, headLo = 0, tailHi = 0, tailLo = 0;
+        int headGroups = 0, tailGroups = 0;
+        boolean compressed = false;
+
+        int pos = from;
+        if (to - from >= 2 && s.charAt(from) == ':' && s.charAt(from + 1) == ':') {
+            compressed = true;
+            pos += 2;
+        }
+        while (pos < to) {
+            int groupEnd = pos;
+            boolean dotted = false;
+            while (groupEnd < to && s.charAt(groupEnd) != ':') {
+                dotted |= s.charAt(groupEnd) == '.';
+                groupEnd++;
+            }
+
+            long value;
+            int groups;
+            if (dotted && groupEnd == to) {
+                value = parseIPv4(s, pos, to);
+                groups = 2;
+            }
+            else {
+                value = parseHexGroup(s, pos, groupEnd);
+                groups = 1;
+            }
+            if (value < 0) {
+                throw invalid(s);
+            }
+
+            if (compressed) {
+                tailHi = (tailHi << (16 * groups)) | (tailLo >>> (64 - 16 * groups));
+                tailLo = (tailLo << (16 * groups)) | value;
+                tailGroups += groups;
+            }
+            else {
+                headHi = (headHi << (16 * groups)) | (headLo >>> (64 - 16 * groups));
+                headLo = (headLo << (16 * groups)) | value;
+                headGroups += groups;
+            }
+
+            if (groupEnd == to) {
+                break;
+            }
+            pos = groupEnd + 1;
+            if (pos < to && s.charAt(pos) == ':') {
+                if (compressed) {
+                    throw invalid(s);
+                }
+                compressed = true;
+                pos++;
+            }
+            else if (pos == to) {
+                throw invalid(s);
+            }
+        }
+
+        int groups = headGroups + tailGroups;
+        if (compressed ? groups > 7 : groups != 8) {
+            throw invalid(s);
+        }
+
+        // the head is followed by any compressed zeros and then the tail
+        int shift = 16 * (8 - headGroups);
+        if (headGroups == 0) {
+            headHi = headLo = 0;
+        }
+        else if (shift >= 64) {
+            headHi = headLo << (shift - 64);
+            headLo = 0;
+        }
+        else if (shift > 0) {
+            headHi = (headHi << shift) | (headLo >>> (64 - shift));
+            headLo <<= shift;
+        }
+        return lowHalf ? headLo | tailLo : headHi | tailHi;
+    }
+
+    private static long parseHexGroup(String s, int from, int to) {
+        if (to <= from || to - from > 4) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = Character.digit(s.charAt(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private static IllegalArgumentException invalid(String address) {
+        return new IllegalArgumentException("Invalid ip6Address: " + address);
+    }
+}
@@ -32,12 +32,26 @@ public class NetworkAddress {
 	 */
 	private final byte[] netmask;
 
+	// the above as unsigned 32 bit values, for testing membership without allocation
+	private final long networkBits;
+	private final long netmaskBits;
+
 	/**
 	 * For private use only, clients should use the static factory method
 	 */
 	private NetworkAddress(byte[] network, byte[] netmask) {//NOSONAR
 		this.network = network;
 		this.netmask = netmask;
+		this.networkBits = toBits(network);
+		this.netmaskBits = toBits(netmask);
+	}
+
+	private static long toBits(byte[] bytes) {
+		long bits = 0;
+		for (byte b : bytes) {
+			bits = (bits << 8) | toInt(b);
+		}
+		return bits;
 	}
 
     // for testing
@@ -76,18 +90,11 @@ public class NetworkAddress {
 	public boolean isAddressInNetwork(String address) {
 		boolean inNetwork = false;
 		if (address != null) {
-			byte[] addressBytes = parseDottedQuad(address);
-
-			byte[] networkPart = new byte[4];
-			for (int i=0; i<4; i++) {
-				networkPart[i] = (byte) (addressBytes[i] & netmask[i]);
+			long addressBits = IpAddresses.parseIPv4(address, 0, address.length());
+			if (addressBits < 0) {
+				throw new IllegalArgumentException("Address must be in dotted quad notation");
 			}
-
-			inNetwork = network[0] == networkPart[0] &&
-						network[1] == networkPart[1] &&
-						network[2] == networkPart[2] &&
-						network[3] == networkPart[3] ;
-
+			inNetwork = (addressBits & netmaskBits) == networkBits;
 		}
 		return inNetwork;
 	}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.util;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of ip4 and ip6 networks, compiled into binary prefix tries so that membership of an address is
+ * answered in at most prefix length steps, without allocation, however many networks there are.
+ * <p/>
+ * Networks may be given as ip4Address/netMask (e.g. 92.6.4.0/255.255.255.0), as CIDR blocks
+ * (e.g. 192.0.2.0/24 or 2001:db8::/32), or as single addresses. Netmasks must be contiguous. ip4 mapped ip6
+ * addresses (::ffff:192.0.2.1) are tested against the ip4 networks.
+ */
+public final class NetworkPrefixTrie {
+
+    public static final NetworkPrefixTrie EMPTY = new Builder(32).build(new Builder(128));
+
+    // child pointer marking the end of a network prefix, anything below it is a member
+    private static final int MATCH = -1;
+
+    private final Trie ip4;
+    private final Trie ip6;
+
+    private NetworkPrefixTrie(Trie ip4, Trie ip6) {
+        this.ip4 = ip4;
+        this.ip6 = ip6;
+    }
+
+    /**
+     * @throws IllegalArgumentException if any of the networks is malformed
+     */
+    public static NetworkPrefixTrie compile(Iterable<String> networks) {
+        Builder ip4 = new Builder(32);
+        Builder ip6 = new Builder(128);
+        for (String network : networks) {
+            String s = network.trim();
+            int slash = s.indexOf('/');
+            int addressEnd = slash >= 0 ? slash : s.length();
+            if (s.lastIndexOf(':', addressEnd) >= 0) {
+                int prefix = slash >= 0 ? parsePrefix(s.substring(slash + 1), 128) : 128;
+                ip6.insert(IpAddresses.parseIPv6(s, 0, addressEnd, false), IpAddresses.parseIPv6(s, 0, addressEnd, true), prefix);
+            }
+            else {
+                long address = IpAddresses.parseIPv4(s, 0, addressEnd);
+                if (address < 0) {
+                    throw new IllegalArgumentException("Address must be in dotted quad notation: " + network);
+                }
+                int prefix = 32;
+                if (slash >= 0) {
+                    String mask = s.substring(slash + 1);
+                    prefix = mask.indexOf('.') >= 0 ? toPrefix(mask) : parsePrefix(mask, 32);
+                }
+                ip4.insert(address << 32, 0, prefix);
+            }
+        }
+        return ip4.build(ip6);
+    }
+
+    /**
+     * @param address an ip4 address in dotted quad notation, or an ip6 address
+     * @return true if the address is in one of the networks
+     * @throws IllegalArgumentException if the address is malformed
+     */
+    public boolean contains(String address) {
+        int len = address.length();
+        if (address.indexOf(':') < 0) {
+            long ip = IpAddresses.parseIPv4(address, 0, len);
+            if (ip < 0) {
+                throw new IllegalArgumentException("Address must be in dotted quad notation");
+            }
+            return ip4.matches(ip << 32, 0);
+        }
+        long hi = IpAddresses.parseIPv6(address, 0, len, false);
+        long lo = IpAddresses.parseIPv6(address, 0, len, true);
+        if (hi == 0 && (lo >>> 32) == 0xFFFF) {
+            return ip4.matches(lo << 32, 0);
+        }
+        return ip6.matches(hi, lo);
+    }
+
+    private static int parsePrefix(String prefix, int max) {
+        int bits;
+        try {
+            bits = Integer.parseInt(prefix.trim());
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid prefix size: " + prefix);
+        }
+        if (bits < 0 || bits > max) {
+            throw new IllegalArgumentException("Invalid prefix size: " + prefix);
+        }
+        return bits;
+    }
+
+    private static int toPrefix(String netmask) {
+        long mask = IpAddresses.parseIPv4(netmask, 0, netmask.length());
+        if (mask < 0) {
+            throw new IllegalArgumentException("Netmask must be in dotted quad notation: " + netmask);
+        }
+        int bits = Long.bitCount(mask);
+        if (mask != ((0xFFFFFFFFL << (32 - bits)) & 0xFFFFFFFFL)) {
+            throw new IllegalArgumentException("Netmask must be contiguous: " + netmask);
+        }
+        return bits;
+    }
+
+    private static int bit(long hi, long lo, int i) {
+        return (int) ((i < 64 ? hi >>> (63 - i) : lo >>> (127 - i)) & 1);
+    }
+
+    /**
+     * Node n's children are at nodes[2n] and nodes[2n + 1], with 0 (the root, which is nobody's child) meaning none.
+     */
+    private static final class Trie {
+        private final int[] nodes;
+        private final int bits;
+        private final boolean matchAll;
+
+        private Trie(int[] nodes, int bits, boolean matchAll) {
+            this.nodes = nodes;
+            this.bits = bits;
+            this.matchAll = matchAll;
+        }
+
+        boolean matches(long hi, long lo) {
+            if (matchAll) {
+                return true;
+            }
+            int node = 0;
+            for (int i = 0; i < bits; i++) {
+                int next = nodes[2 * node + bit(hi, lo, i)];
+                if (next == MATCH) {
+                    return true;
+                }
+                if (next == 0) {
+                    return false;
+                }
+                node = next;
+            }
+            return false;
+        }
+    }
+
+    private static final class Builder {
+        private final int bits;
+        private int[] nodes = new int[64];
+        private int count = 1;
+        private boolean matchAll;
+
+        private Builder(int bits) {
+            this.bits = bits;
+        }
+
+        void insert(long hi, long lo, int prefix) {
+            if (prefix == 0) {
+                matchAll = true;
+                return;
+            }
+            int node = 0;
+            for (int i = 0; i < prefix; i++) {
+                int slot = 2 * node + bit(hi, lo, i);
+                int next = nodes[slot];
+                if (next == MATCH) {
+                    // already covered by a shorter prefix
+                    return;
+                }
+                if (i == prefix - 1) {
+                    // any longer prefixes below here are now redundant
+                    nodes[slot] = MATCH;
+                    return;
+                }
+                if (next == 0) {
+                    next = count++;
+                    if (2 * count > nodes.length) {
+                        nodes = Arrays.copyOf(nodes, nodes.length * 2);
+                    }
+                    nodes[slot] = next;
+                }
+                node = next;
+            }
+        }
+
+        Trie toTrie() {
+            return new Trie(Arrays.copyOf(nodes, 2 * count), bits, matchAll);
+        }
+
+        NetworkPrefixTrie build(Builder ip6) {
+            return new NetworkPrefixTrie(toTrie(), ip6.toTrie());
+        }
+    }
+}
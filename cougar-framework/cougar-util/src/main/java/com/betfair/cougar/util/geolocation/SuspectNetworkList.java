@@ -16,32 +16,37 @@
 
 package com.betfair.cougar.util.geolocation;
 
-import com.betfair.cougar.util.NetworkAddress;
+import com.betfair.cougar.util.NetworkPrefixTrie;
 
-import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.List;
 
 
 /**
  * A list of network addresses that are suspected to return incorrect geo ip details
+ * <p/>
+ * The list is compiled into a {@link NetworkPrefixTrie}, which is replaced as a whole when the list is changed, so
+ * checks made while it's being changed see either the old or the new list.
  */
 public class SuspectNetworkList {
 
-	private ArrayList<NetworkAddress> suspectNetworks = new ArrayList<NetworkAddress>();
-    private String strVal;
+	private volatile NetworkPrefixTrie suspectNetworks = NetworkPrefixTrie.EMPTY;
+    private volatile String strVal;
 
 	/**
 	 * @param networkAddresses comma separated list of network address each as ip4Address/netmask, where both ip4Address & netmask
-	 * are in dotted quad notation
+	 * are in dotted quad notation, or as a CIDR block (ip4 or ip6)
 	 */
 	public void setSuspectNetworks(String networkAddresses) {
-
+		List<String> networks = new ArrayList<String>();
 		if (networkAddresses != null) {
-			String[] networks = networkAddresses.split(",");
-			for (int i=0; i<networks.length; i++) {
-				suspectNetworks.add(NetworkAddress.parse(networks[i]));
+			for (String network : networkAddresses.split(",")) {
+				if (!network.trim().isEmpty()) {
+					networks.add(network);
+				}
 			}
 		}
+		suspectNetworks = NetworkPrefixTrie.compile(networks);
         strVal = networkAddresses;
 	}
 
@@ -50,17 +55,12 @@ public class SuspectNetworkList {
     }
 
     /**
-	 * test if the given ip address (in dotted quad notation) is in the range of one of the suspect networks
+	 * test if the given ip address (in dotted quad notation, or ip6) is in the range of one of the suspect networks
 	 * @param address
 	 * @return
 	 */
 	public boolean isSuspect(String address) {
-		for (NetworkAddress networkAddress : suspectNetworks) {
-			if (networkAddress.isAddressInNetwork(address)) {
-				return true;
-			}
-		}
-		return false;
+		return address != null && suspectNetworks.contains(address);
 	}
 
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.util.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock free exponentially weighted moving average. Each recorded value moves the average towards it by the
+ * configured weight, so recent values dominate and the influence of older ones decays geometrically.
+ */
+public class ExponentiallyWeightedMovingAverage {
+
+    private static final long UNSET = Double.doubleToLongBits(Double.NaN);
+
+    private final double weight;
+    private final AtomicLong average = new AtomicLong(UNSET);
+
+    /**
+     * @param weight the weight (greater than 0, at most 1) given to each newly recorded value
+     */
+    public ExponentiallyWeightedMovingAverage(double weight) {
+        if (weight <= 0 || weight > 1) {
+            throw new IllegalArgumentException("Weight must be in the range (0,1]: "+weight);
+        }
+        this.weight = weight;
+    }
+
+    public void record(double value) {
+        while (true) {
+            long currentBits = average.get();
+            double current = Double.longBitsToDouble(currentBits);
+            // the first value seeds the average rather than being decayed from zero
+            double next = currentBits == UNSET ? value : current + weight * (value - current);
+            if (average.compareAndSet(currentBits, Double.doubleToLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the current average, or 0 if nothing has been recorded yet.
+     */
+    public double get() {
+        long bits = average.get();
+        return bits == UNSET ? 0 : Double.longBitsToDouble(bits);
+    }
+}
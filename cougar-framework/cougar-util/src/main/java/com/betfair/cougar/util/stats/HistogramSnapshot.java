@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.util.stats;
+
+/**
+ * Immutable point in time copy of a {@link StripedHistogram}'s counts, from which percentiles are calculated.
+ * Snapshots can be subtracted from one another to give the values recorded between them.
+ */
+public final class HistogramSnapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+
+    HistogramSnapshot(long[] counts, long sum) {
+        this.counts = counts;
+        this.sum = sum;
+        long c = 0;
+        for (long bucketCount : counts) {
+            c += bucketCount;
+        }
+        this.count = c;
+    }
+
+    static HistogramSnapshot empty() {
+        return new HistogramSnapshot(new long[StripedHistogram.NUM_BUCKETS], 0);
+    }
+
+    /**
+     * Returns the values recorded since the given (earlier) snapshot of the same histogram.
+     */
+    public HistogramSnapshot minus(HistogramSnapshot earlier) {
+        long[] diff = new long[counts.length];
+        for (int i=0; i<counts.length; i++) {
+            diff[i] = counts[i] - earlier.counts[i];
+        }
+        return new HistogramSnapshot(diff, sum - earlier.sum);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns the largest value recorded, to within the histogram's precision.
+     */
+    public long getMax() {
+        for (int i=counts.length-1; i>=0; i--) {
+            if (counts[i] > 0) {
+                return StripedHistogram.highestValueInBucket(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the value below which the given percentile (0-100) of recorded values fall, to within the
+     * histogram's precision.
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int i=0; i<counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return StripedHistogram.highestValueInBucket(i);
+            }
+        }
+        return getMax();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.util.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock free histogram of non-negative values (typically latencies in microseconds) with HDR style log-linear
+ * buckets: each power of two range is split into 32 linear sub-buckets, so percentiles are accurate to within about
+ * 3% across the whole range.
+ * <p>
+ * To keep recording threads from contending on the same counters, values are recorded into one of a number of
+ * stripes selected by thread id, each allocated on first use. Stripes are only ever added to, and are merged when a
+ * snapshot is taken; intervals and resets are implemented by subtracting an earlier snapshot, so recording is never
+ * blocked or lost while they happen.
+ */
+public class StripedHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // values of 2^36 or more (about 19 hours in microseconds) are recorded in the last bucket
+    private static final int MAX_VALUE_BITS = 36;
+    static final long MAX_TRACKABLE_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    static final int NUM_BUCKETS = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    // the last slot of each stripe holds the sum of the values recorded into it
+    private static final int SUM_INDEX = NUM_BUCKETS;
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes;
+    private final int stripeMask;
+
+    private volatile HistogramSnapshot resetPoint = HistogramSnapshot.empty();
+    private volatile HistogramSnapshot intervalStart = HistogramSnapshot.empty();
+    private volatile HistogramSnapshot lastInterval = HistogramSnapshot.empty();
+
+    public StripedHistogram() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param stripes the number of stripes, rounded up to the next power of two
+     */
+    public StripedHistogram(int stripes) {
+        int count = Integer.highestOneBit(Math.max(1, stripes));
+        if (count < stripes) {
+            count <<= 1;
+        }
+        this.stripes = new AtomicReferenceArray<>(count);
+        this.stripeMask = count - 1;
+    }
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        } else if (value > MAX_TRACKABLE_VALUE) {
+            value = MAX_TRACKABLE_VALUE;
+        }
+        AtomicLongArray stripe = getStripe((int) Thread.currentThread().getId() & stripeMask);
+        stripe.incrementAndGet(bucketFor(value));
+        stripe.addAndGet(SUM_INDEX, value);
+    }
+
+    private AtomicLongArray getStripe(int index) {
+        AtomicLongArray stripe = stripes.get(index);
+        if (stripe == null) {
+            stripes.compareAndSet(index, null, new AtomicLongArray(NUM_BUCKETS + 1));
+            stripe = stripes.get(index);
+        }
+        return stripe;
+    }
+
+    static int bucketFor(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    static long lowestValueInBucket(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    }
+
+    static long highestValueInBucket(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return lowestValueInBucket(bucket) + (1L << shift) - 1;
+    }
+
+    private HistogramSnapshot merge() {
+        long[] counts = new long[NUM_BUCKETS];
+        long sum = 0;
+        for (int s=0; s<stripes.length(); s++) {
+            AtomicLongArray stripe = stripes.get(s);
+            if (stripe != null) {
+                sum += stripe.get(SUM_INDEX);
+                for (int i=0; i<NUM_BUCKETS; i++) {
+                    counts[i] += stripe.get(i);
+                }
+            }
+        }
+        return new HistogramSnapshot(counts, sum);
+    }
+
+    /**
+     * Returns everything recorded since creation or the last {@link #reset()}.
+     */
+    public HistogramSnapshot snapshot() {
+        return merge().minus(resetPoint);
+    }
+
+    /**
+     * Ends the current interval, making what was recorded during it available from {@link #getLastInterval()}.
+     */
+    public synchronized void roll() {
+        HistogramSnapshot now = merge();
+        lastInterval = now.minus(intervalStart);
+        intervalStart = now;
+    }
+
+    /**
+     * Returns what was recorded during the interval most recently ended by {@link #roll()}.
+     */
+    public HistogramSnapshot getLastInterval() {
+        return lastInterval;
+    }
+
+    /**
+     * Discards everything recorded so far, from both the cumulative and interval views.
+     */
+    public synchronized void reset() {
+        HistogramSnapshot now = merge();
+        resetPoint = now;
+        intervalStart = now;
+        lastInterval = HistogramSnapshot.empty();
+    }
+}
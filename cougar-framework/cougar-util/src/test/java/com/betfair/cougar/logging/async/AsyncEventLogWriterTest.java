@@ -0,0 +1,214 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.logging.async;
+
+import com.betfair.cougar.api.LoggableEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.slf4j.ILoggerFactory;
+import org.slf4j.Logger;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class AsyncEventLogWriterTest {
+
+    private Logger logger;
+    private AsyncEventLogWriter writer;
+
+    @Before
+    public void init() {
+        logger = mock(Logger.class);
+        ILoggerFactory loggerFactory = mock(ILoggerFactory.class);
+        when(loggerFactory.getLogger("TEST-LOG")).thenReturn(logger);
+
+        writer = new AsyncEventLogWriter();
+        writer.setLoggerFactory(loggerFactory);
+    }
+
+    @After
+    public void tearDown() {
+        writer.stop();
+    }
+
+    @Test
+    public void writesInlineWhenNotStarted() {
+        assertTrue(writer.log("TEST-LOG", new TestEvent("a", 1), new Object[] { true }));
+
+        verify(logger).info("a,1,Y");
+        assertEquals(1, writer.getWrittenEvents());
+        assertFalse(writer.isRunning());
+    }
+
+    @Test
+    public void writesOnWriterThreadInOrder() {
+        writer.start();
+        assertTrue(writer.isRunning());
+
+        for (int i = 0; i < 100; i++) {
+            writer.log("TEST-LOG", new TestEvent("e", i), null);
+        }
+        writer.stop();
+
+        InOrder inOrder = inOrder(logger);
+        for (int i = 0; i < 100; i++) {
+            inOrder.verify(logger).info("e,"+i);
+        }
+        assertEquals(100, writer.getWrittenEvents());
+        assertEquals(0, writer.getDroppedEvents());
+        assertEquals(0, writer.getQueueDepth());
+    }
+
+    @Test
+    public void fieldsCapturedOnCallingThread() {
+        writer.start();
+        TestEvent event = new TestEvent("before", 1);
+        CountDownLatch release = blockWriter();
+        writer.log("TEST-LOG", new TestEvent("blocker", 0), null);
+        writer.log("TEST-LOG", event, null);
+        event.name = "after";
+        release.countDown();
+        writer.stop();
+
+        verify(logger).info("before,1");
+    }
+
+    @Test
+    public void dropsWhenFull() throws Exception {
+        writer.setCapacity(4);
+        writer.setBatchSize(1);
+        writer.setFullBufferPolicy("drop");
+        writer.start();
+
+        CountDownLatch release = blockWriter();
+        writer.log("TEST-LOG", new TestEvent("blocker", 0), null);
+        waitForEmpty();
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(writer.log("TEST-LOG", new TestEvent("e", i), null));
+        }
+        assertEquals(4, writer.getQueueDepth());
+        assertFalse(writer.log("TEST-LOG", new TestEvent("e", 4), null));
+        assertEquals(1, writer.getDroppedEvents());
+
+        release.countDown();
+        writer.stop();
+        assertEquals(5, writer.getWrittenEvents());
+    }
+
+    @Test
+    public void blockGivesUpAfterTimeout() throws Exception {
+        writer.setCapacity(2);
+        writer.setBatchSize(1);
+        writer.setFullBufferPolicy("BLOCK");
+        writer.setBlockTimeout(50);
+        writer.start();
+
+        CountDownLatch release = blockWriter();
+        writer.log("TEST-LOG", new TestEvent("blocker", 0), null);
+        waitForEmpty();
+        assertTrue(writer.log("TEST-LOG", new TestEvent("e", 1), null));
+        assertTrue(writer.log("TEST-LOG", new TestEvent("e", 2), null));
+
+        long start = System.nanoTime();
+        assertFalse(writer.log("TEST-LOG", new TestEvent("e", 3), null));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(1, writer.getDroppedEvents());
+        release.countDown();
+    }
+
+    @Test
+    public void samplesAboveHighWaterMark() throws Exception {
+        writer.setCapacity(8);
+        writer.setBatchSize(1);
+        writer.setFullBufferPolicy("SAMPLE");
+        writer.setSampleRate(2);
+        writer.start();
+
+        CountDownLatch release = blockWriter();
+        writer.log("TEST-LOG", new TestEvent("blocker", 0), null);
+        waitForEmpty();
+
+        // below half full everything is kept
+        for (int i = 0; i < 4; i++) {
+            assertTrue(writer.log("TEST-LOG", new TestEvent("e", i), null));
+        }
+        // then only every other event until the buffer fills
+        int kept = 0;
+        for (int i = 0; i < 10; i++) {
+            if (writer.log("TEST-LOG", new TestEvent("s", i), null)) {
+                kept++;
+            }
+        }
+        assertEquals(4, kept);
+        assertEquals(8, writer.getQueueDepth());
+        assertEquals(6, writer.getDroppedEvents());
+        release.countDown();
+    }
+
+    /**
+     * Makes the writer thread stall on the next "blocker" event until the returned latch is released.
+     */
+    private CountDownLatch blockWriter() {
+        final CountDownLatch release = new CountDownLatch(1);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                release.await(5, TimeUnit.SECONDS);
+                return null;
+            }
+        }).when(logger).info(startsWith("blocker"));
+        return release;
+    }
+
+    private void waitForEmpty() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (writer.getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, writer.getQueueDepth());
+    }
+
+    private static class TestEvent implements LoggableEvent {
+        private String name;
+        private final int value;
+
+        private TestEvent(String name, int value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public String getLogName() {
+            return "TEST-LOG";
+        }
+
+        @Override
+        public Object[] getFieldsToLog() {
+            return new Object[] { name, value };
+        }
+    }
+}
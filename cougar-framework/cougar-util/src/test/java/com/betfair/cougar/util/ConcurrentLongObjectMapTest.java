@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentLongObjectMapTest {
+
+    @Test
+    public void putGetRemove() {
+        ConcurrentLongObjectMap<String> map = new ConcurrentLongObjectMap<>();
+        assertNull(map.put(1, "one"));
+        assertNull(map.put(2, "two"));
+        assertEquals("one", map.put(1, "uno"));
+        assertEquals("uno", map.get(1));
+        assertEquals(2, map.size());
+        assertEquals("two", map.remove(2));
+        assertNull(map.remove(2));
+        assertNull(map.get(2));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void conditionalRemove() {
+        ConcurrentLongObjectMap<String> map = new ConcurrentLongObjectMap<>();
+        String value = "one";
+        map.put(1, value);
+        assertFalse(map.remove(1, "another"));
+        assertTrue(map.remove(1, value));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void drainTo() {
+        ConcurrentLongObjectMap<Long> map = new ConcurrentLongObjectMap<>();
+        for (long l = 0; l < 1000; l++) {
+            map.put(l, l);
+        }
+        List<Long> values = new ArrayList<>();
+        map.drainTo(values);
+        assertEquals(1000, values.size());
+        assertEquals(0, map.size());
+        assertNull(map.get(500));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullValue() {
+        new ConcurrentLongObjectMap<String>().put(1, null);
+    }
+
+    @Test
+    public void matchesHashMap() {
+        // exercises resizing and backward shift deletion with lots of collisions
+        for (int concurrencyLevel : new int[] { 1, 16 }) {
+            ConcurrentLongObjectMap<Long> map = new ConcurrentLongObjectMap<>(concurrencyLevel);
+            Map<Long, Long> expected = new HashMap<>();
+            Random random = new Random(concurrencyLevel);
+            for (int i = 0; i < 200000; i++) {
+                long key = random.nextInt(2000);
+                switch (random.nextInt(3)) {
+                    case 0:
+                        assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+                        break;
+                    case 1:
+                        assertEquals(expected.remove(key), map.remove(key));
+                        break;
+                    default:
+                        assertEquals(expected.get(key), map.get(key));
+                }
+                assertEquals(expected.size(), map.size());
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class NetworkPrefixTrieTest {
+
+    @Test
+    public void netmaskNetworks() {
+        NetworkPrefixTrie trie = compile("64.12.96.0/255.255.224.0", "205.188.146.144/255.255.255.252");
+
+        assertTrue(trie.contains("64.12.96.0"));
+        assertTrue(trie.contains("64.12.127.255"));
+        assertFalse(trie.contains("64.12.64.0"));
+        assertFalse(trie.contains("64.12.128.0"));
+        assertTrue(trie.contains("205.188.146.147"));
+        assertFalse(trie.contains("205.188.146.148"));
+    }
+
+    @Test
+    public void cidrBlocksAndSingleAddresses() {
+        NetworkPrefixTrie trie = compile("10.0.0.0/8", "192.0.2.7");
+
+        assertTrue(trie.contains("10.255.0.1"));
+        assertFalse(trie.contains("11.0.0.0"));
+        assertTrue(trie.contains("192.0.2.7"));
+        assertFalse(trie.contains("192.0.2.6"));
+    }
+
+    @Test
+    public void hostBitsInNetworkAreIgnored() {
+        assertTrue(compile("64.12.100.1/255.255.224.0").contains("64.12.96.5"));
+    }
+
+    @Test
+    public void overlappingNetworks() {
+        NetworkPrefixTrie trie = compile("10.1.2.0/24", "10.0.0.0/8", "10.1.0.0/16");
+
+        assertTrue(trie.contains("10.1.2.3"));
+        assertTrue(trie.contains("10.200.0.1"));
+        assertFalse(trie.contains("9.255.255.255"));
+    }
+
+    @Test
+    public void matchAll() {
+        assertTrue(compile("0.0.0.0/0").contains("1.2.3.4"));
+        assertFalse(compile("0.0.0.0/0").contains("2001:db8::1"));
+        assertTrue(compile("::/0").contains("2001:db8::1"));
+    }
+
+    @Test
+    public void empty() {
+        assertFalse(NetworkPrefixTrie.EMPTY.contains("1.2.3.4"));
+        assertFalse(NetworkPrefixTrie.EMPTY.contains("::1"));
+    }
+
+    @Test
+    public void ip6Networks() {
+        NetworkPrefixTrie trie = compile("2001:db8::/32", "fe80::1/128");
+
+        assertTrue(trie.contains("2001:db8::1"));
+        assertTrue(trie.contains("2001:0db8:ffff:ffff:ffff:ffff:ffff:ffff"));
+        assertFalse(trie.contains("2001:db9::"));
+        assertTrue(trie.contains("fe80::1%eth0"));
+        assertFalse(trie.contains("fe80::2"));
+        assertFalse(trie.contains("1.2.3.4"));
+    }
+
+    @Test
+    public void ip4MappedAddressesMatchIp4Networks() {
+        NetworkPrefixTrie trie = compile("192.0.2.0/24");
+
+        assertTrue(trie.contains("::ffff:192.0.2.1"));
+        assertTrue(trie.contains("::ffff:c000:0201"));
+        assertFalse(trie.contains("::ffff:192.0.3.1"));
+    }
+
+    @Test
+    public void invalidNetworks() {
+        for (String network : Arrays.asList("64.12.96.0|255.255.224.0", "12.96.0/255.255.224.0", "256.12.96.0/8",
+                "64.12.96.0/255.0.255.0", "10.0.0.0/33", "2001:db8::/129", "2001:db8:::/32")) {
+            try {
+                compile(network);
+                fail("expected IllegalArgumentException for " + network);
+            }
+            catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void invalidAddresses() {
+        NetworkPrefixTrie trie = compile("10.0.0.0/8");
+        for (String address : Arrays.asList("10.0.0", "10.0.0.256", "10.0.0.0.0", "ten.0.0.0", "1:2:3", "1::2::3")) {
+            try {
+                trie.contains(address);
+                fail("expected IllegalArgumentException for " + address);
+            }
+            catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    private static NetworkPrefixTrie compile(String... networks) {
+        return NetworkPrefixTrie.compile(networks.length == 1 ? Collections.singletonList(networks[0]) : Arrays.asList(networks));
+    }
+}
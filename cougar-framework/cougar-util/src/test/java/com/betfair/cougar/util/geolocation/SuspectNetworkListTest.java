@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.util.geolocation;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class SuspectNetworkListTest {
+
+    @Test
+    public void suspect() {
+        SuspectNetworkList list = new SuspectNetworkList();
+        list.setSuspectNetworks("64.12.96.0/255.255.224.0,149.174.160.0/255.255.240.0,2001:db8::/32,");
+
+        assertTrue(list.isSuspect("64.12.100.1"));
+        assertTrue(list.isSuspect("149.174.175.255"));
+        assertTrue(list.isSuspect("2001:db8::1"));
+        assertFalse(list.isSuspect("149.174.176.0"));
+        assertFalse(list.isSuspect(null));
+    }
+
+    @Test
+    public void replacingTheListReplacesAllNetworks() {
+        SuspectNetworkList list = new SuspectNetworkList();
+        list.setSuspectNetworks("64.12.96.0/255.255.224.0");
+        list.setSuspectNetworks("10.0.0.0/8");
+
+        assertEquals("10.0.0.0/8", list.getSuspectNetworks());
+        assertFalse(list.isSuspect("64.12.100.1"));
+        assertTrue(list.isSuspect("10.1.1.1"));
+
+        list.setSuspectNetworks(null);
+        assertFalse(list.isSuspect("10.1.1.1"));
+    }
+}
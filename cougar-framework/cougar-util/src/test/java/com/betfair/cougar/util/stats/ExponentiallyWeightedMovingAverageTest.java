@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.util.stats;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExponentiallyWeightedMovingAverageTest {
+
+    @Test
+    public void empty() {
+        assertEquals(0, new ExponentiallyWeightedMovingAverage(0.5).get(), 0);
+    }
+
+    @Test
+    public void firstValueSeedsAverage() {
+        ExponentiallyWeightedMovingAverage ewma = new ExponentiallyWeightedMovingAverage(0.1);
+        ewma.record(40);
+        assertEquals(40, ewma.get(), 0);
+    }
+
+    @Test
+    public void movesTowardsRecentValues() {
+        ExponentiallyWeightedMovingAverage ewma = new ExponentiallyWeightedMovingAverage(0.5);
+        ewma.record(10);
+        ewma.record(20);
+        assertEquals(15, ewma.get(), 0.0001);
+        ewma.record(20);
+        assertEquals(17.5, ewma.get(), 0.0001);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroWeight() {
+        new ExponentiallyWeightedMovingAverage(0);
+    }
+}
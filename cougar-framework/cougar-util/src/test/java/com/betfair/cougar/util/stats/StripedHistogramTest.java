@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.util.stats;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StripedHistogramTest {
+
+    @Test
+    public void empty() {
+        HistogramSnapshot snapshot = new StripedHistogram().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getPercentile(99));
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getMean(), 0);
+    }
+
+    @Test
+    public void bucketBoundaries() {
+        // exact below 32
+        for (int i=0; i<32; i++) {
+            assertEquals(i, StripedHistogram.bucketFor(i));
+            assertEquals(i, StripedHistogram.highestValueInBucket(i));
+        }
+        // then each bucket covers 1/32 of its power of two range
+        assertEquals(32, StripedHistogram.bucketFor(32));
+        assertEquals(63, StripedHistogram.bucketFor(63));
+        assertEquals(64, StripedHistogram.bucketFor(64));
+        assertEquals(64, StripedHistogram.bucketFor(65));
+        assertEquals(65, StripedHistogram.bucketFor(66));
+        assertEquals(65, StripedHistogram.highestValueInBucket(64));
+        assertEquals(StripedHistogram.NUM_BUCKETS - 1, StripedHistogram.bucketFor(StripedHistogram.MAX_TRACKABLE_VALUE));
+        assertEquals(StripedHistogram.MAX_TRACKABLE_VALUE, StripedHistogram.highestValueInBucket(StripedHistogram.NUM_BUCKETS - 1));
+
+        for (int b=1; b<StripedHistogram.NUM_BUCKETS; b++) {
+            assertEquals(StripedHistogram.highestValueInBucket(b - 1) + 1, StripedHistogram.lowestValueInBucket(b));
+            assertEquals(b, StripedHistogram.bucketFor(StripedHistogram.lowestValueInBucket(b)));
+            assertEquals(b, StripedHistogram.bucketFor(StripedHistogram.highestValueInBucket(b)));
+        }
+    }
+
+    @Test
+    public void percentilesWithinThreePercent() {
+        StripedHistogram histogram = new StripedHistogram(4);
+        for (int i=1; i<=100000; i++) {
+            histogram.record(i);
+        }
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(100000, snapshot.getCount());
+        assertEquals(50000.5, snapshot.getMean(), 0.001);
+        assertWithin(50000, snapshot.getPercentile(50));
+        assertWithin(99000, snapshot.getPercentile(99));
+        assertWithin(99900, snapshot.getPercentile(99.9));
+        assertWithin(100000, snapshot.getMax());
+    }
+
+    @Test
+    public void outOfRangeValuesClamped() {
+        StripedHistogram histogram = new StripedHistogram(1);
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.getPercentile(50));
+        assertEquals(StripedHistogram.MAX_TRACKABLE_VALUE, snapshot.getMax());
+    }
+
+    @Test
+    public void intervals() {
+        StripedHistogram histogram = new StripedHistogram(1);
+        histogram.record(10);
+        histogram.record(20);
+        histogram.roll();
+        histogram.record(1000);
+
+        assertEquals(2, histogram.getLastInterval().getCount());
+        assertEquals(20, histogram.getLastInterval().getMax());
+        assertEquals(3, histogram.snapshot().getCount());
+
+        histogram.roll();
+        assertEquals(1, histogram.getLastInterval().getCount());
+        assertWithin(1000, histogram.getLastInterval().getMax());
+
+        histogram.roll();
+        assertEquals(0, histogram.getLastInterval().getCount());
+        assertEquals(3, histogram.snapshot().getCount());
+    }
+
+    @Test
+    public void reset() {
+        StripedHistogram histogram = new StripedHistogram(1);
+        histogram.record(10);
+        histogram.roll();
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+        assertEquals(0, histogram.getLastInterval().getCount());
+
+        histogram.record(5);
+        histogram.roll();
+        assertEquals(1, histogram.snapshot().getCount());
+        assertEquals(1, histogram.getLastInterval().getCount());
+    }
+
+    @Test
+    public void concurrentRecordingLosesNothing() throws Exception {
+        final StripedHistogram histogram = new StripedHistogram(2);
+        List<Thread> threads = new ArrayList<>();
+        for (int t=0; t<8; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i=0; i<10000; i++) {
+                        histogram.record(i % 100);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(80000, histogram.snapshot().getCount());
+        assertEquals(49.5, histogram.snapshot().getMean(), 0.001);
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual,
+                actual >= expected && actual <= expected * 1.03);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.modules.zipkin.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket used to cap the number of traces started per second. Implemented as a generic cell rate
+ * algorithm: a single theoretical arrival time is advanced by one emission interval per granted permit, and a permit
+ * is refused when that time runs further ahead of the clock than the burst allows. The bucket holds up to one second
+ * worth of permits.
+ */
+final class TraceRateLimiter {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final int permitsPerSecond;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+
+    private final AtomicLong theoreticalArrivalTime;
+
+    /**
+     * @param permitsPerSecond The sustained number of permits per second (must be positive)
+     * @param nowNanos         The current value of the nano clock
+     */
+    TraceRateLimiter(int permitsPerSecond, long nowNanos) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("Permits per second must be positive, got " + permitsPerSecond);
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.emissionIntervalNanos = Math.max(1, NANOS_PER_SECOND / permitsPerSecond);
+        this.burstToleranceNanos = emissionIntervalNanos * (permitsPerSecond - 1);
+        this.theoreticalArrivalTime = new AtomicLong(nowNanos);
+    }
+
+    int getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    /**
+     * Attempts to take one permit from the bucket.
+     *
+     * @param nowNanos The current value of the nano clock
+     * @return true if a permit was granted
+     */
+    boolean tryAcquire(long nowNanos) {
+        while (true) {
+            long tat = theoreticalArrivalTime.get();
+            if (tat - nowNanos > burstToleranceNanos) {
+                return false;
+            }
+            long next = Math.max(tat, nowNanos) + emissionIntervalNanos;
+            if (theoreticalArrivalTime.compareAndSet(tat, next)) {
+                return true;
+            }
+        }
+    }
+}
@@ -32,12 +32,17 @@ import java.lang.reflect.Field;
 import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.twitter.zipkin.gen.zipkinCoreConstants.*;
 
 /**
  * An emitter capable of emitting ZipkinData information to a ZipkinSpanCollector. ZipkinEmitter should be instantiated
  * per service, as it stores information about the service (attaching it to the emitted spans transparently).
+ * <p/>
+ * Annotations can either be emitted one by one, each one in its own span, or batched per span through
+ * {@link #openSpan}, {@link #addAnnotation(ZipkinAnnotationsStore, String)} and {@link #closeSpan}, in which case the
+ * collector only receives a single span once it has ended.
  *
  * @see com.betfair.cougar.modules.zipkin.api.ZipkinData
  */
@@ -56,6 +61,8 @@ public class ZipkinEmitter implements InitializingBean {
 
     private BlockingQueue<?> zipkinSpanCollectorInternalQueue;
 
+    private final AtomicLong emittedSpans = new AtomicLong();
+
     /**
      * Creates a new ZipkinEmitter. This constructor overload obtains the service IPv4 through
      * com.betfair.cougar.util.geolocation.RemoteAddressUtils.
@@ -149,6 +156,61 @@ public class ZipkinEmitter implements InitializingBean {
     public void emitAnnotations(@Nonnull ZipkinAnnotationsStore zipkinAnnotationsStore) {
         Objects.requireNonNull(zipkinAnnotationsStore);
         zipkinSpanCollector.collect(zipkinAnnotationsStore.generate());
+        emittedSpans.incrementAndGet();
+    }
+
+
+    // Batched emission methods
+
+    /**
+     * Starts collecting annotations for a span, beginning with a timestamped annotation. Nothing is sent to Zipkin
+     * until the span is closed.
+     *
+     * @param zipkinData Zipkin request data
+     * @param s          The first annotation of the span (e.g. Server Receive)
+     * @return the annotations store to which the span's annotations should be added
+     */
+    @Nonnull
+    public ZipkinAnnotationsStore openSpan(@Nonnull ZipkinData zipkinData, @Nonnull String s) {
+        Objects.requireNonNull(s);
+        return buildAnnotationsStore(zipkinData).addAnnotation(currentTimeMicros(), s);
+    }
+
+    /**
+     * Adds a timestamped annotation to a span opened through openSpan.
+     *
+     * @param zipkinAnnotationsStore The span's annotations store
+     * @param s                      The annotation to add
+     */
+    public void addAnnotation(@Nonnull ZipkinAnnotationsStore zipkinAnnotationsStore, @Nonnull String s) {
+        Objects.requireNonNull(s);
+        long timestampMicros = currentTimeMicros();
+        // annotations for a request may be added from more than one thread
+        synchronized (zipkinAnnotationsStore) {
+            zipkinAnnotationsStore.addAnnotation(timestampMicros, s);
+        }
+    }
+
+    /**
+     * Adds a final timestamped annotation to a span opened through openSpan, and emits the whole span to Zipkin.
+     *
+     * @param zipkinAnnotationsStore The span's annotations store
+     * @param s                      The last annotation of the span (e.g. Server Send)
+     */
+    public void closeSpan(@Nonnull ZipkinAnnotationsStore zipkinAnnotationsStore, @Nonnull String s) {
+        addAnnotation(zipkinAnnotationsStore, s);
+        synchronized (zipkinAnnotationsStore) {
+            emitAnnotations(zipkinAnnotationsStore);
+        }
+    }
+
+    /**
+     * Returns the current time, in microseconds, as used for annotation timestamps.
+     *
+     * @return the current time in microseconds
+     */
+    public long currentTimeMicros() {
+        return TimeUnit.MILLISECONDS.toMicros(clock.millis());
     }
 
 
@@ -161,8 +223,7 @@ public class ZipkinEmitter implements InitializingBean {
      * @param s          The annotation to emit
      */
     public void emitAnnotation(@Nonnull ZipkinData zipkinData, @Nonnull String s) {
-        long timestampMillis = clock.millis();
-        long timestampMicros = TimeUnit.MILLISECONDS.toMicros(timestampMillis);
+        long timestampMicros = currentTimeMicros();
 
         ZipkinAnnotationsStore store = prepareEmission(zipkinData, s).addAnnotation(timestampMicros, s);
         emitAnnotations(store);
@@ -296,4 +357,14 @@ public class ZipkinEmitter implements InitializingBean {
     public int getRemainingQueueCapacity() {
         return zipkinSpanCollectorInternalQueue != null ? zipkinSpanCollectorInternalQueue.remainingCapacity() : -1;
     }
+
+    /**
+     * Gets the number of spans handed to the ZipkinSpanCollector since startup.
+     *
+     * @return The number of emitted spans
+     */
+    @ManagedAttribute
+    public long getEmittedSpans() {
+        return emittedSpans.get();
+    }
 }
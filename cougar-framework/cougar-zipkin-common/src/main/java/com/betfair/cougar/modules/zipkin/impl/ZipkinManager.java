@@ -17,10 +17,12 @@
 package com.betfair.cougar.modules.zipkin.impl;
 
 import com.betfair.cougar.api.RequestUUID;
+import com.betfair.cougar.api.ResponseCode;
 import com.betfair.cougar.modules.zipkin.api.ZipkinDataBuilder;
 import com.betfair.cougar.modules.zipkin.api.ZipkinKeys;
 import com.betfair.cougar.modules.zipkin.api.ZipkinRequestUUID;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
 import org.springframework.jmx.export.annotation.ManagedResource;
 
 import javax.annotation.Nonnull;
@@ -28,12 +30,24 @@ import javax.annotation.Nullable;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Manages all Zipkin tracing config and operations. This is the class responsible for deciding whether a specific
  * request should be traced or not.
+ * <p/>
+ * Root requests are sampled in two stages. When the request UUID is created the operation is not known yet, so the
+ * request is provisionally sampled at the highest level configured for any operation. Once the operation has been
+ * resolved, {@link #confirmTrace(String)} keeps it with the probability needed to bring it down to that operation's
+ * own level, and charges it against the optional traces-per-second cap. Requests that were not sampled can still be
+ * traced when they end, if they took longer than the slow request threshold or, optionally, failed (see
+ * {@link #forceTrace()}).
  */
 @ManagedResource
 public class ZipkinManager {
@@ -43,9 +57,6 @@ public class ZipkinManager {
 
     private static final int HEX_RADIX = 16;
 
-    // Fast - Pseudo-random used for sampling
-    private static ThreadLocalRandom RANDOM = ThreadLocalRandom.current();
-
     // Can be arbitrarily slow (depends on the amount of entropy in the OS)
     // Used for long (complete 64-bit range) ID generation
     private static final ThreadLocal<SecureRandom> SECURE_RANDOM_TL = new ThreadLocal<SecureRandom>() {
@@ -55,7 +66,22 @@ public class ZipkinManager {
         }
     };
 
-    private int samplingLevel = 0;
+    private volatile int samplingLevel = 0;
+
+    private volatile Map<String, Integer> operationSamplingLevels = Collections.emptyMap();
+
+    // max(samplingLevel, operationSamplingLevels), used for the provisional sampling of root requests
+    private volatile int provisionalSamplingLevel = 0;
+
+    private volatile TraceRateLimiter rateLimiter;
+
+    private volatile long slowRequestThresholdMicros = 0;
+
+    private volatile boolean traceErrors = false;
+
+    private final AtomicLong sampledTraces = new AtomicLong();
+    private final AtomicLong rateLimitedTraces = new AtomicLong();
+    private final AtomicLong forcedTraces = new AtomicLong();
 
     static {
         SECURE_RANDOM_TL.set(new SecureRandom());
@@ -69,7 +95,95 @@ public class ZipkinManager {
     public boolean shouldTrace() {
         // with short circuit so we don't go through the random generation process if the Zipkin tracing is disabled
         // (samplingLevel == 0)
-        return samplingLevel > 0 && RANDOM.nextInt(MIN_LEVEL, MAX_LEVEL) < samplingLevel;
+        int level = provisionalSamplingLevel;
+        return level > 0 && nextSample(MAX_LEVEL) < level;
+    }
+
+    /**
+     * Confirms a provisionally sampled root request, now that its operation is known. The request is kept with
+     * probability operationLevel / provisionalLevel, so that overall it ends up being sampled at its operation's
+     * level, and is then subject to the traces-per-second cap, if any.
+     *
+     * @param operationName The operation name, as Service/operation
+     * @return true if the request should go on being traced
+     */
+    public boolean confirmTrace(@Nonnull String operationName) {
+        int level = getSamplingLevel(operationName);
+        int provisionalLevel = provisionalSamplingLevel;
+        if (level <= 0) {
+            return false;
+        }
+        if (level < provisionalLevel && nextSample(provisionalLevel) >= level) {
+            return false;
+        }
+        if (!acquireTracePermit()) {
+            rateLimitedTraces.incrementAndGet();
+            return false;
+        }
+        sampledTraces.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Decides whether an unsampled request which turned out to be slow or failed may still be traced. Forced traces bypass the
+     * sampling levels but are still subject to the traces-per-second cap, so a general slowdown can't flood the
+     * collector.
+     *
+     * @return true if the request should be traced
+     */
+    public boolean forceTrace() {
+        if (!acquireTracePermit()) {
+            rateLimitedTraces.incrementAndGet();
+            return false;
+        }
+        forcedTraces.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Whether requests which haven't been sampled should be kept as candidates for forced sampling.
+     */
+    public boolean isSlowRequestSamplingEnabled() {
+        return slowRequestThresholdMicros > 0;
+    }
+
+    /**
+     * Whether requests which haven't been sampled should be kept as candidates for forced sampling, because either
+     * slow or failed requests are to be traced.
+     */
+    public boolean isForcedSamplingEnabled() {
+        return isSlowRequestSamplingEnabled() || traceErrors;
+    }
+
+    /**
+     * Whether a request which ended with the given response code should be traced even if it was not sampled.
+     *
+     * @param responseCode The response code sent back to the caller, or null if not known
+     */
+    public boolean isTracedError(@Nullable ResponseCode responseCode) {
+        return traceErrors && responseCode != null && responseCode != ResponseCode.Ok;
+    }
+
+    /**
+     * Whether a request which took the given time should be traced even if it was not sampled.
+     *
+     * @param durationMicros The request duration, in microseconds
+     */
+    public boolean isSlowRequest(long durationMicros) {
+        long threshold = slowRequestThresholdMicros;
+        return threshold > 0 && durationMicros >= threshold;
+    }
+
+    private boolean acquireTracePermit() {
+        TraceRateLimiter limiter = rateLimiter;
+        return limiter == null || limiter.tryAcquire(System.nanoTime());
+    }
+
+    /**
+     * Draws a uniformly distributed int in [0, bound) from the current thread's random.
+     */
+    int nextSample(int bound) {
+        return ThreadLocalRandom.current().nextInt(bound);
     }
 
     /**
@@ -91,13 +205,176 @@ public class ZipkinManager {
      */
     @ManagedAttribute
     public void setSamplingLevel(int samplingLevel) {
-        if (samplingLevel >= MIN_LEVEL && samplingLevel <= MAX_LEVEL) {
-            this.samplingLevel = samplingLevel;
-        } else {
+        validateSamplingLevel(samplingLevel);
+        this.samplingLevel = samplingLevel;
+        updateProvisionalSamplingLevel();
+    }
+
+    /**
+     * Returns the sampling level which applies to an operation.
+     *
+     * @param operationName The operation name, as Service/operation
+     * @return the operation's own sampling level if one was set, the global sampling level otherwise
+     */
+    public int getSamplingLevel(@Nonnull String operationName) {
+        Integer level = operationSamplingLevels.get(operationName);
+        return level != null ? level : samplingLevel;
+    }
+
+    /**
+     * Returns the per-operation sampling levels, as a comma separated list of Service/operation=level.
+     */
+    @ManagedAttribute
+    public String getOperationSamplingLevels() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : operationSamplingLevels.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Sets per-operation sampling levels, overriding the global sampling level for those operations. The levels are
+     * given as a comma separated list of Service/operation=level, e.g. "Baseline/testSimpleGet=1000,Baseline/voidResponseOperation=0".
+     * An empty value clears all overrides.
+     *
+     * @param operationSamplingLevels The per-operation sampling levels
+     * @throws IllegalArgumentException if any entry is malformed or any level is off bounds
+     */
+    @ManagedAttribute
+    public void setOperationSamplingLevels(@Nullable String operationSamplingLevels) {
+        Map<String, Integer> levels = new HashMap<>();
+        if (operationSamplingLevels != null) {
+            for (String entry : operationSamplingLevels.split(",")) {
+                entry = entry.trim();
+                if (entry.isEmpty()) {
+                    continue;
+                }
+                int idx = entry.lastIndexOf('=');
+                if (idx <= 0 || idx == entry.length() - 1) {
+                    throw new IllegalArgumentException("Invalid operation sampling level '" + entry + "', expected Service/operation=level");
+                }
+                int level = Integer.parseInt(entry.substring(idx + 1).trim());
+                validateSamplingLevel(level);
+                levels.put(entry.substring(0, idx).trim(), level);
+            }
+        }
+        this.operationSamplingLevels = Collections.unmodifiableMap(levels);
+        updateProvisionalSamplingLevel();
+    }
+
+    /**
+     * Returns the maximum number of requests per second which will be traced, or 0 if there is no cap.
+     */
+    @ManagedAttribute
+    public int getMaxTracesPerSecond() {
+        TraceRateLimiter limiter = rateLimiter;
+        return limiter != null ? limiter.getPermitsPerSecond() : 0;
+    }
+
+    /**
+     * Caps the number of requests per second which will be traced, on top of the sampling levels. Up to a second's
+     * worth of traces may be started in a burst. Requests propagating a trace started upstream are never capped, so
+     * traces are not broken halfway.
+     *
+     * @param maxTracesPerSecond The cap, or 0 for no cap
+     */
+    @ManagedAttribute
+    public void setMaxTracesPerSecond(int maxTracesPerSecond) {
+        if (maxTracesPerSecond < 0) {
+            throw new IllegalArgumentException("Max traces per second must not be negative, got " + maxTracesPerSecond);
+        }
+        this.rateLimiter = maxTracesPerSecond > 0 ? new TraceRateLimiter(maxTracesPerSecond, System.nanoTime()) : null;
+    }
+
+    /**
+     * Returns the duration, in milliseconds, above which unsampled requests are traced anyway, or 0 if disabled.
+     */
+    @ManagedAttribute
+    public long getSlowRequestThresholdMillis() {
+        return TimeUnit.MICROSECONDS.toMillis(slowRequestThresholdMicros);
+    }
+
+    /**
+     * Sets the duration, in milliseconds, above which requests which were not sampled are traced anyway once they end.
+     * Setting it to 0 disables forced sampling of slow requests.
+     *
+     * @param slowRequestThresholdMillis The threshold, in milliseconds
+     */
+    @ManagedAttribute
+    public void setSlowRequestThresholdMillis(long slowRequestThresholdMillis) {
+        if (slowRequestThresholdMillis < 0) {
+            throw new IllegalArgumentException("Slow request threshold must not be negative, got " + slowRequestThresholdMillis);
+        }
+        this.slowRequestThresholdMicros = TimeUnit.MILLISECONDS.toMicros(slowRequestThresholdMillis);
+    }
+
+    /**
+     * Returns whether requests which failed are traced despite not being sampled.
+     */
+    @ManagedAttribute
+    public boolean isTraceErrors() {
+        return traceErrors;
+    }
+
+    /**
+     * Sets whether requests which were not sampled but failed are traced anyway once they end.
+     *
+     * @param traceErrors Whether to trace failed requests
+     */
+    @ManagedAttribute
+    public void setTraceErrors(boolean traceErrors) {
+        this.traceErrors = traceErrors;
+    }
+
+    /**
+     * Returns the number of root requests which were sampled.
+     */
+    @ManagedAttribute
+    public long getSampledTraces() {
+        return sampledTraces.get();
+    }
+
+    /**
+     * Returns the number of traces which were dropped because of the traces-per-second cap.
+     */
+    @ManagedAttribute
+    public long getDroppedTraces() {
+        return rateLimitedTraces.get();
+    }
+
+    /**
+     * Returns the number of slow or failed requests which were traced despite not being sampled.
+     */
+    @ManagedAttribute
+    public long getForcedTraces() {
+        return forcedTraces.get();
+    }
+
+    @ManagedOperation
+    public void resetCounters() {
+        sampledTraces.set(0);
+        rateLimitedTraces.set(0);
+        forcedTraces.set(0);
+    }
+
+    private static void validateSamplingLevel(int samplingLevel) {
+        if (samplingLevel < MIN_LEVEL || samplingLevel > MAX_LEVEL) {
             throw new IllegalArgumentException("Sampling level " + samplingLevel + " is not in the range [" + MIN_LEVEL + ";" + MAX_LEVEL + "[");
         }
     }
 
+    private void updateProvisionalSamplingLevel() {
+        int level = samplingLevel;
+        for (int operationLevel : operationSamplingLevels.values()) {
+            level = Math.max(level, operationLevel);
+        }
+        provisionalSamplingLevel = level;
+    }
+
     /**
      * Creates a new ZipkinRequestUUID. This method will generate any required Zipkin data if it does not exist (e.g. if
      * this invocation corresponds to the first request in the chain).
@@ -124,6 +401,8 @@ public class ZipkinManager {
         }
 
         ZipkinDataBuilder zipkinDataBuilder;
+        boolean root = false;
+        boolean provisional = false;
 
         if (traceId != null && spanId != null) {
             // a request with the fields is always traceable so we always propagate the tracing to the following calls
@@ -137,6 +416,7 @@ public class ZipkinManager {
 
         } else {
 
+            root = true;
             if (shouldTrace()) {
                 // starting point, we need to generate the ids if this request is to be sampled - we are the root
                 // nevertheless, if there are any flags we get them so we can act on them and pass them on to the
@@ -148,6 +428,8 @@ public class ZipkinManager {
                         .parentSpanId(null)
                         .flags(flags == null ? null : Long.valueOf(flags))
                         .port((short) port);
+                // the operation is not known yet, so this is only confirmed once it has been resolved
+                provisional = true;
 
             } else {
                 // otherwise leave them as null - this means Zipkin tracing will be disabled for this request
@@ -156,7 +438,15 @@ public class ZipkinManager {
 
         }
 
-        return new ZipkinRequestUUIDImpl(cougarUuid, zipkinDataBuilder);
+        ZipkinRequestUUIDImpl result = new ZipkinRequestUUIDImpl(cougarUuid, zipkinDataBuilder);
+        if (provisional) {
+            result.markSamplingPending();
+        }
+        if (root && isForcedSamplingEnabled()) {
+            // if it isn't sampled after all, it may still be traced should it turn out to be slow or fail
+            result.markForcedSamplingCandidate((short) port, flags == null ? null : Long.valueOf(flags));
+        }
+        return result;
     }
 
     /**
@@ -38,6 +38,18 @@ public class ZipkinRequestUUIDImpl implements ZipkinRequestUUID {
 
     private ZipkinDataBuilder zipkinDataBuilder;
 
+    // set on root requests whose sampling decision is only confirmed once the operation is known
+    private volatile boolean samplingPending;
+
+    // set on unsampled requests which may still be traced if they turn out to be slow
+    private Short forcedSamplingPort;
+    private Long forcedSamplingFlags;
+    private volatile String forcedSamplingSpanName;
+    private volatile long startTimestampMicros;
+
+    // annotations collected for this request's span, emitted together when the span ends
+    private volatile ZipkinAnnotationsStore annotationsStore;
+
     public ZipkinRequestUUIDImpl(@Nonnull RequestUUID cougarUuid) {
         this(cougarUuid, null);
     }
@@ -128,6 +140,86 @@ public class ZipkinRequestUUIDImpl implements ZipkinRequestUUID {
         }
     }
 
+    /**
+     * Marks this request as provisionally sampled, pending confirmation once the operation is known.
+     */
+    void markSamplingPending() {
+        samplingPending = true;
+    }
+
+    boolean isSamplingPending() {
+        return samplingPending;
+    }
+
+    /**
+     * Settles a pending sampling decision. Rejecting disables Zipkin tracing for this request, which must happen
+     * before its Zipkin data is built or any sub UUID is created.
+     *
+     * @param sampled whether the request was confirmed for tracing
+     */
+    void completeSampling(boolean sampled) {
+        samplingPending = false;
+        if (!sampled) {
+            zipkinDataBuilder = null;
+        }
+    }
+
+    /**
+     * Marks this (unsampled) request as a candidate for forced sampling once it ends.
+     *
+     * @param port  The port corresponding to the span
+     * @param flags The flags of the span
+     */
+    void markForcedSamplingCandidate(short port, @Nullable Long flags) {
+        this.forcedSamplingPort = port;
+        this.forcedSamplingFlags = flags;
+    }
+
+    boolean isForcedSamplingCandidate() {
+        return forcedSamplingPort != null;
+    }
+
+    /**
+     * Records when a forced sampling candidate started executing, and which operation it is for.
+     */
+    void recordStart(@Nonnull String spanName, long timestampMicros) {
+        this.forcedSamplingSpanName = spanName;
+        this.startTimestampMicros = timestampMicros;
+    }
+
+    long getStartTimestampMicros() {
+        return startTimestampMicros;
+    }
+
+    /**
+     * Builds Zipkin data for a forced sampling candidate, as the root of a new trace.
+     *
+     * @return the Zipkin data, or null if this request is not a candidate or never started
+     */
+    @Nullable
+    ZipkinData buildForcedZipkinData() {
+        if (forcedSamplingPort == null || forcedSamplingSpanName == null) {
+            return null;
+        }
+        return new ZipkinDataImpl.Builder()
+                .traceId(ZipkinManager.getRandomLong())
+                .spanId(ZipkinManager.getRandomLong())
+                .parentSpanId(null)
+                .flags(forcedSamplingFlags)
+                .port(forcedSamplingPort)
+                .spanName(forcedSamplingSpanName)
+                .build();
+    }
+
+    @Nullable
+    ZipkinAnnotationsStore getAnnotationsStore() {
+        return annotationsStore;
+    }
+
+    void setAnnotationsStore(@Nullable ZipkinAnnotationsStore annotationsStore) {
+        this.annotationsStore = annotationsStore;
+    }
+
     /**
      * Returns standard conforming Cougar UUID, letting you use your own generator without affecting Zipkin specific
      * fields.
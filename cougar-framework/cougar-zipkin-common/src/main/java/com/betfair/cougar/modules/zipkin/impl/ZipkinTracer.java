@@ -17,28 +17,60 @@
 package com.betfair.cougar.modules.zipkin.impl;
 
 import com.betfair.cougar.api.RequestUUID;
+import com.betfair.cougar.api.ResponseCode;
 import com.betfair.cougar.core.api.ev.OperationKey;
 import com.betfair.cougar.core.impl.tracing.AbstractTracer;
 import com.betfair.cougar.modules.zipkin.api.ZipkinData;
 import com.betfair.cougar.modules.zipkin.api.ZipkinRequestUUID;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.Objects;
 
+import static com.twitter.zipkin.gen.zipkinCoreConstants.*;
+
 /**
  * Zipkin tracer implementation.
+ * <p/>
+ * When annotations are batched, all annotations for a span are collected on the request UUID and sent to Zipkin as a
+ * single span when it ends (Server Send / Client Receive), rather than as one span per annotation. When a ZipkinManager
+ * is set, provisionally sampled root requests are confirmed here once their operation is known, and unsampled requests
+ * which turn out to be slow, or to have failed, are traced when they end.
  *
  * @see com.betfair.cougar.core.impl.tracing.AbstractTracer
  */
 public class ZipkinTracer extends AbstractTracer {
 
+    /**
+     * Binary annotation added to spans which were traced despite not being sampled.
+     */
+    public static final String FORCED_SAMPLING_ANNOTATION = "cougar.zipkin.forcedSampling";
+
     private ZipkinEmitter zipkinEmitter;
 
+    private ZipkinManager zipkinManager;
+
+    private boolean batchAnnotations;
+
     @Override
     public void start(RequestUUID uuid, OperationKey operationKey) {
+        if (uuid instanceof ZipkinRequestUUIDImpl && zipkinManager != null) {
+            ZipkinRequestUUIDImpl zipkinRequestUUID = (ZipkinRequestUUIDImpl) uuid;
+
+            if (zipkinRequestUUID.isSamplingPending()) {
+                zipkinRequestUUID.completeSampling(zipkinManager.confirmTrace(operationKey.toString(false)));
+            }
+            if (!zipkinRequestUUID.isZipkinTracingEnabled() && zipkinRequestUUID.isForcedSamplingCandidate()) {
+                zipkinRequestUUID.recordStart(operationKey.toString(), zipkinEmitter.currentTimeMicros());
+                return;
+            }
+        }
+
         ZipkinData zipkinData = buildZipkinDataIfEnabled(uuid, operationKey);
         if (zipkinData != null) {
-            zipkinEmitter.emitServerReceive(zipkinData);
+            if (!openSpan(uuid, zipkinData, SERVER_RECV)) {
+                zipkinEmitter.emitServerReceive(zipkinData);
+            }
         }
     }
 
@@ -46,7 +78,7 @@ public class ZipkinTracer extends AbstractTracer {
     public void trace(RequestUUID uuid, String msg) {
         ZipkinData zipkinData = getZipkinDataIfReady(uuid);
         if (zipkinData != null) {
-            emitAnnotation(zipkinData, msg);
+            emitAnnotation(uuid, zipkinData, msg);
         }
     }
 
@@ -54,7 +86,7 @@ public class ZipkinTracer extends AbstractTracer {
     public void trace(RequestUUID uuid, String msg, Object arg1) {
         ZipkinData zipkinData = getZipkinDataIfReady(uuid);
         if (zipkinData != null) {
-            emitAnnotation(zipkinData, msg, arg1);
+            emitAnnotation(uuid, zipkinData, msg, arg1);
         }
     }
 
@@ -62,7 +94,7 @@ public class ZipkinTracer extends AbstractTracer {
     public void trace(RequestUUID uuid, String msg, Object arg1, Object arg2) {
         ZipkinData zipkinData = getZipkinDataIfReady(uuid);
         if (zipkinData != null) {
-            emitAnnotation(zipkinData, msg, arg1, arg2);
+            emitAnnotation(uuid, zipkinData, msg, arg1, arg2);
         }
     }
 
@@ -70,7 +102,7 @@ public class ZipkinTracer extends AbstractTracer {
     public void trace(RequestUUID uuid, String msg, Object arg1, Object arg2, Object arg3) {
         ZipkinData zipkinData = getZipkinDataIfReady(uuid);
         if (zipkinData != null) {
-            emitAnnotation(zipkinData, msg, arg1, arg2, arg3);
+            emitAnnotation(uuid, zipkinData, msg, arg1, arg2, arg3);
         }
     }
 
@@ -78,15 +110,26 @@ public class ZipkinTracer extends AbstractTracer {
     public void trace(RequestUUID uuid, String msg, Object... args) {
         ZipkinData zipkinData = getZipkinDataIfReady(uuid);
         if (zipkinData != null) {
-            emitAnnotation(zipkinData, msg, args);
+            emitAnnotation(uuid, zipkinData, msg, args);
         }
     }
 
     @Override
     public void end(RequestUUID uuid) {
+        end(uuid, null);
+    }
+
+    @Override
+    public void end(RequestUUID uuid, ResponseCode responseCode) {
+        if (closeSpan(uuid, SERVER_SEND)) {
+            return;
+        }
+
         ZipkinData zipkinData = getZipkinDataIfReady(uuid);
         if (zipkinData != null) {
             zipkinEmitter.emitServerSend(zipkinData);
+        } else if (uuid instanceof ZipkinRequestUUIDImpl && zipkinManager != null) {
+            emitIfForced((ZipkinRequestUUIDImpl) uuid, responseCode);
         }
     }
 
@@ -94,18 +137,76 @@ public class ZipkinTracer extends AbstractTracer {
     public void startCall(RequestUUID uuid, RequestUUID subUuid, OperationKey operationKey) {
         ZipkinData zipkinData = buildZipkinDataIfEnabled(subUuid, operationKey);
         if (zipkinData != null) {
-            zipkinEmitter.emitClientSend(zipkinData);
+            if (!openSpan(subUuid, zipkinData, CLIENT_SEND)) {
+                zipkinEmitter.emitClientSend(zipkinData);
+            }
         }
     }
 
     @Override
     public void endCall(RequestUUID uuid, RequestUUID subUuid, OperationKey operationKey) {
+        if (closeSpan(subUuid, CLIENT_RECV)) {
+            return;
+        }
+
         ZipkinData zipkinData = getZipkinDataIfReady(subUuid);
         if (zipkinData != null) {
             zipkinEmitter.emitClientReceive(zipkinData);
         }
     }
 
+    private boolean openSpan(@Nonnull RequestUUID uuid, @Nonnull ZipkinData zipkinData, @Nonnull String annotation) {
+        if (batchAnnotations && uuid instanceof ZipkinRequestUUIDImpl) {
+            ((ZipkinRequestUUIDImpl) uuid).setAnnotationsStore(zipkinEmitter.openSpan(zipkinData, annotation));
+            return true;
+        }
+        return false;
+    }
+
+    private boolean closeSpan(@Nonnull RequestUUID uuid, @Nonnull String annotation) {
+        ZipkinAnnotationsStore store = getAnnotationsStore(uuid);
+        if (store != null) {
+            // end is called at most once, but make sure the span can't be emitted twice
+            ((ZipkinRequestUUIDImpl) uuid).setAnnotationsStore(null);
+            zipkinEmitter.closeSpan(store, annotation);
+            return true;
+        }
+        return false;
+    }
+
+    private void emitIfForced(@Nonnull ZipkinRequestUUIDImpl uuid, @Nullable ResponseCode responseCode) {
+        long startTimestampMicros = uuid.getStartTimestampMicros();
+        if (!uuid.isForcedSamplingCandidate() || startTimestampMicros == 0) {
+            return;
+        }
+
+        long endTimestampMicros = zipkinEmitter.currentTimeMicros();
+        String reason;
+        if (zipkinManager.isSlowRequest(endTimestampMicros - startTimestampMicros)) {
+            reason = "slow";
+        } else if (zipkinManager.isTracedError(responseCode)) {
+            reason = "error";
+        } else {
+            return;
+        }
+
+        if (zipkinManager.forceTrace()) {
+            ZipkinData zipkinData = uuid.buildForcedZipkinData();
+            if (zipkinData != null) {
+                ZipkinAnnotationsStore store = zipkinEmitter.buildAnnotationsStore(zipkinData)
+                        .addAnnotation(startTimestampMicros, SERVER_RECV)
+                        .addAnnotation(FORCED_SAMPLING_ANNOTATION, reason)
+                        .addAnnotation(endTimestampMicros, SERVER_SEND);
+                zipkinEmitter.emitAnnotations(store);
+            }
+        }
+    }
+
+    @Nullable
+    private static ZipkinAnnotationsStore getAnnotationsStore(@Nonnull RequestUUID uuid) {
+        return uuid instanceof ZipkinRequestUUIDImpl ? ((ZipkinRequestUUIDImpl) uuid).getAnnotationsStore() : null;
+    }
+
     private static ZipkinData getZipkinDataIfReady(@Nonnull RequestUUID uuid) {
         if (uuid instanceof ZipkinRequestUUID) {
             ZipkinRequestUUID zipkinRequestUUID = (ZipkinRequestUUID) uuid;
@@ -140,13 +241,34 @@ public class ZipkinTracer extends AbstractTracer {
         }
     }
 
-    private void emitAnnotation(@Nonnull ZipkinData zipkinData, String msg, Object... args) {
+    private void emitAnnotation(@Nonnull RequestUUID uuid, @Nonnull ZipkinData zipkinData, String msg, Object... args) {
         String s = String.format(msg, args);
-        zipkinEmitter.emitAnnotation(zipkinData, s);
+        ZipkinAnnotationsStore store = getAnnotationsStore(uuid);
+        if (store != null) {
+            zipkinEmitter.addAnnotation(store, s);
+        } else {
+            zipkinEmitter.emitAnnotation(zipkinData, s);
+        }
     }
 
     public void setZipkinEmitter(@Nonnull ZipkinEmitter zipkinEmitter) {
         Objects.requireNonNull(zipkinEmitter);
         this.zipkinEmitter = zipkinEmitter;
     }
+
+    /**
+     * Sets the manager used to confirm provisionally sampled requests and to force sampling of slow requests. Without
+     * it, sampling is decided solely when the request UUID is created.
+     */
+    public void setZipkinManager(@Nullable ZipkinManager zipkinManager) {
+        this.zipkinManager = zipkinManager;
+    }
+
+    /**
+     * Sets whether annotations should be collected per span and emitted once the span ends, instead of being emitted
+     * one by one.
+     */
+    public void setBatchAnnotations(boolean batchAnnotations) {
+        this.batchAnnotations = batchAnnotations;
+    }
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.modules.zipkin.impl;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TraceRateLimiterTest {
+
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test(expected = IllegalArgumentException.class)
+    public void TraceRateLimiter_WhenRateIsNotPositive_ShouldThrowIAE() {
+        new TraceRateLimiter(0, 0);
+    }
+
+    @Test
+    public void tryAcquire_ShouldAllowABurstOfOneSecond() {
+        TraceRateLimiter victim = new TraceRateLimiter(10, 0);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(victim.tryAcquire(0));
+        }
+        assertFalse(victim.tryAcquire(0));
+    }
+
+    @Test
+    public void tryAcquire_ShouldRefillAtTheConfiguredRate() {
+        TraceRateLimiter victim = new TraceRateLimiter(10, 0);
+
+        for (int i = 0; i < 10; i++) {
+            victim.tryAcquire(0);
+        }
+
+        assertFalse(victim.tryAcquire(ONE_SECOND / 20));
+        assertTrue(victim.tryAcquire(ONE_SECOND / 10));
+        assertFalse(victim.tryAcquire(ONE_SECOND / 10));
+    }
+
+    @Test
+    public void tryAcquire_ShouldNotAccumulateMoreThanOneSecondOfPermits() {
+        TraceRateLimiter victim = new TraceRateLimiter(10, 0);
+
+        long now = 60 * ONE_SECOND;
+        for (int i = 0; i < 10; i++) {
+            assertTrue(victim.tryAcquire(now));
+        }
+        assertFalse(victim.tryAcquire(now));
+    }
+}
@@ -30,7 +30,9 @@ import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -283,4 +285,29 @@ public class ZipkinEmitterTest {
 
         verify(zipkinSpanCollector).collect(expectedSpan);
     }
+
+    @Test
+    public void openSpan_ShouldNotEmitUntilSpanIsClosed() {
+
+        Annotation serverRecv = new Annotation(timestampMicros, zipkinCoreConstants.SERVER_RECV);
+        serverRecv.setHost(endpoint);
+        Annotation custom = new Annotation(timestampMicros, "Custom Annotation");
+        custom.setHost(endpoint);
+        Annotation serverSend = new Annotation(timestampMicros, zipkinCoreConstants.SERVER_SEND);
+        serverSend.setHost(endpoint);
+        List<BinaryAnnotation> binaryAnnotations = Collections.emptyList();
+
+        Span expectedSpan = new Span(traceId, spanName, spanId, Lists.newArrayList(serverRecv, custom, serverSend), binaryAnnotations);
+        expectedSpan.setParent_id(0);
+
+        ZipkinAnnotationsStore store = victim.openSpan(zipkinData, zipkinCoreConstants.SERVER_RECV);
+        victim.addAnnotation(store, "Custom Annotation");
+
+        verifyZeroInteractions(zipkinSpanCollector);
+
+        victim.closeSpan(store, zipkinCoreConstants.SERVER_SEND);
+
+        verify(zipkinSpanCollector).collect(expectedSpan);
+        assertEquals(1, victim.getEmittedSpans());
+    }
 }
@@ -17,26 +17,23 @@
 package com.betfair.cougar.modules.zipkin.impl;
 
 import com.betfair.cougar.api.RequestUUID;
+import com.betfair.cougar.api.ResponseCode;
 import com.betfair.cougar.modules.zipkin.api.ZipkinData;
 import com.betfair.cougar.modules.zipkin.api.ZipkinRequestUUID;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 
-import java.lang.reflect.Field;
 import java.math.BigInteger;
 import java.security.SecureRandom;
-import java.util.concurrent.ThreadLocalRandom;
 
 import static org.junit.Assert.*;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
 import static org.mockito.MockitoAnnotations.initMocks;
 
 public class ZipkinManagerTest {
 
-    @Mock
-    private ThreadLocalRandom threadLocalRandom;
-
     @Mock
     private SecureRandom secureRandom;
 
@@ -46,7 +43,7 @@ public class ZipkinManagerTest {
     @Mock
     private RequestUUID cougarUuid;
 
-    private ZipkinManager victim = new ZipkinManager();
+    private ZipkinManager victim = spy(new ZipkinManager());
 
     private String traceId = "123456789";
     private String spanId = "987654321";
@@ -56,12 +53,8 @@ public class ZipkinManagerTest {
     private int port = 9101;
 
     @Before
-    public void init() throws NoSuchFieldException, IllegalAccessException {
+    public void init() {
         initMocks(this);
-
-        Field randomField = ZipkinManager.class.getDeclaredField("RANDOM");
-        randomField.setAccessible(true);
-        randomField.set(ZipkinManager.class, threadLocalRandom);
     }
 
     @Test
@@ -77,7 +70,7 @@ public class ZipkinManagerTest {
 
         victim.setSamplingLevel(500);
 
-        when(threadLocalRandom.nextInt(0, 1000)).thenReturn(499);
+        doReturn(499).when(victim).nextSample(1000);
 
         assertTrue(victim.shouldTrace());
     }
@@ -87,7 +80,7 @@ public class ZipkinManagerTest {
 
         victim.setSamplingLevel(500);
 
-        when(threadLocalRandom.nextInt(0, 1000)).thenReturn(501);
+        doReturn(501).when(victim).nextSample(1000);
 
         assertFalse(victim.shouldTrace());
     }
@@ -170,7 +163,7 @@ public class ZipkinManagerTest {
 
         victim.setSamplingLevel(500);
 
-        when(threadLocalRandom.nextInt(0, 1000)).thenReturn(500);
+        doReturn(500).when(victim).nextSample(1000);
 
         ZipkinRequestUUID result = victim.createNewZipkinRequestUUID(cougarUuid, null, null, null, null, null, port);
 
@@ -183,7 +176,7 @@ public class ZipkinManagerTest {
 
         victim.setSamplingLevel(500);
 
-        when(threadLocalRandom.nextInt(0, 1000)).thenReturn(499);
+        doReturn(499).when(victim).nextSample(1000);
 
         ZipkinRequestUUID result = victim.createNewZipkinRequestUUID(cougarUuid, null, null, null, null, null, port);
 
@@ -197,4 +190,168 @@ public class ZipkinManagerTest {
         assertNull(resultingData.getFlags());
         assertEquals(port, resultingData.getPort());
     }
+
+    @Test
+    public void createNewZipkinRequestUUID_WhenRootRequestIsSampled_ShouldLeaveSamplingPending() {
+
+        victim.setSamplingLevel(500);
+
+        doReturn(499).when(victim).nextSample(1000);
+
+        ZipkinRequestUUIDImpl result = (ZipkinRequestUUIDImpl) victim.createNewZipkinRequestUUID(cougarUuid, null, null, null, null, null, port);
+
+        assertTrue(result.isSamplingPending());
+        assertFalse(result.isForcedSamplingCandidate());
+    }
+
+    @Test
+    public void createNewZipkinRequestUUID_WhenRequestIsAlreadyBeingTraced_ShouldNotLeaveSamplingPending() {
+
+        victim.setSlowRequestThresholdMillis(100);
+
+        ZipkinRequestUUIDImpl result = (ZipkinRequestUUIDImpl) victim.createNewZipkinRequestUUID(cougarUuid, traceId, spanId, parentSpanId, sampled, flags, port);
+
+        assertFalse(result.isSamplingPending());
+        assertFalse(result.isForcedSamplingCandidate());
+    }
+
+    @Test
+    public void createNewZipkinRequestUUID_WhenSlowRequestSamplingIsEnabled_ShouldMarkUnsampledRequestAsCandidate() {
+
+        victim.setSamplingLevel(500);
+        victim.setSlowRequestThresholdMillis(100);
+
+        doReturn(500).when(victim).nextSample(1000);
+
+        ZipkinRequestUUIDImpl result = (ZipkinRequestUUIDImpl) victim.createNewZipkinRequestUUID(cougarUuid, null, null, null, null, null, port);
+
+        assertFalse(result.isZipkinTracingEnabled());
+        assertTrue(result.isForcedSamplingCandidate());
+    }
+
+    @Test
+    public void createNewZipkinRequestUUID_WhenErrorSamplingIsEnabled_ShouldMarkUnsampledRequestAsCandidate() {
+
+        victim.setSamplingLevel(500);
+        victim.setTraceErrors(true);
+
+        doReturn(500).when(victim).nextSample(1000);
+
+        ZipkinRequestUUIDImpl result = (ZipkinRequestUUIDImpl) victim.createNewZipkinRequestUUID(cougarUuid, null, null, null, null, null, port);
+
+        assertFalse(result.isZipkinTracingEnabled());
+        assertTrue(result.isForcedSamplingCandidate());
+    }
+
+    @Test
+    public void isTracedError_ShouldOnlyMatchFailuresWhenEnabled() {
+
+        assertFalse(victim.isTracedError(ResponseCode.InternalError));
+
+        victim.setTraceErrors(true);
+
+        assertTrue(victim.isTracedError(ResponseCode.InternalError));
+        assertTrue(victim.isTracedError(ResponseCode.BadRequest));
+        assertFalse(victim.isTracedError(ResponseCode.Ok));
+        assertFalse(victim.isTracedError(null));
+    }
+
+    @Test
+    public void shouldTrace_WhenAnOperationHasAHigherLevel_ShouldSampleAtThatLevel() {
+
+        victim.setSamplingLevel(0);
+        victim.setOperationSamplingLevels("Baseline/testSimpleGet=200");
+
+        doReturn(199).when(victim).nextSample(1000);
+
+        assertTrue(victim.shouldTrace());
+    }
+
+    @Test
+    public void confirmTrace_WhenOperationHasTheHighestLevel_ShouldConfirm() {
+
+        victim.setSamplingLevel(10);
+        victim.setOperationSamplingLevels("Baseline/testSimpleGet=200");
+
+        assertTrue(victim.confirmTrace("Baseline/testSimpleGet"));
+        assertEquals(1, victim.getSampledTraces());
+    }
+
+    @Test
+    public void confirmTrace_WhenOperationHasALowerLevel_ShouldConfirmProportionally() {
+
+        victim.setSamplingLevel(50);
+        victim.setOperationSamplingLevels("Baseline/testSimpleGet=200");
+
+        doReturn(49).when(victim).nextSample(200);
+        assertTrue(victim.confirmTrace("Baseline/other"));
+
+        doReturn(50).when(victim).nextSample(200);
+        assertFalse(victim.confirmTrace("Baseline/other"));
+    }
+
+    @Test
+    public void confirmTrace_WhenOperationIsDisabled_ShouldNotConfirm() {
+
+        victim.setSamplingLevel(50);
+        victim.setOperationSamplingLevels("Baseline/testSimpleGet=0");
+
+        assertFalse(victim.confirmTrace("Baseline/testSimpleGet"));
+    }
+
+    @Test
+    public void confirmTrace_WhenMaxTracesPerSecondIsReached_ShouldDropTrace() {
+
+        victim.setSamplingLevel(1000);
+        victim.setMaxTracesPerSecond(2);
+
+        assertTrue(victim.confirmTrace("Baseline/testSimpleGet"));
+        assertTrue(victim.confirmTrace("Baseline/testSimpleGet"));
+        assertFalse(victim.confirmTrace("Baseline/testSimpleGet"));
+        assertEquals(2, victim.getSampledTraces());
+        assertEquals(1, victim.getDroppedTraces());
+    }
+
+    @Test
+    public void forceTrace_WhenMaxTracesPerSecondIsReached_ShouldDropTrace() {
+
+        victim.setMaxTracesPerSecond(1);
+
+        assertTrue(victim.forceTrace());
+        assertFalse(victim.forceTrace());
+        assertEquals(1, victim.getForcedTraces());
+        assertEquals(1, victim.getDroppedTraces());
+    }
+
+    @Test
+    public void isSlowRequest_ShouldCompareAgainstThreshold() {
+
+        assertFalse(victim.isSlowRequest(Long.MAX_VALUE));
+
+        victim.setSlowRequestThresholdMillis(100);
+
+        assertFalse(victim.isSlowRequest(99999));
+        assertTrue(victim.isSlowRequest(100000));
+    }
+
+    @Test
+    public void setOperationSamplingLevels_ShouldParseLevels() {
+
+        victim.setSamplingLevel(10);
+        victim.setOperationSamplingLevels(" Baseline/testSimpleGet = 1000 ,Baseline/voidResponseOperation=0");
+
+        assertEquals(1000, victim.getSamplingLevel("Baseline/testSimpleGet"));
+        assertEquals(0, victim.getSamplingLevel("Baseline/voidResponseOperation"));
+        assertEquals(10, victim.getSamplingLevel("Baseline/other"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setOperationSamplingLevels_WhenLevelIsOffBounds_ShouldThrowIAE() {
+        victim.setOperationSamplingLevels("Baseline/testSimpleGet=1001");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setOperationSamplingLevels_WhenEntryIsMalformed_ShouldThrowIAE() {
+        victim.setOperationSamplingLevels("Baseline/testSimpleGet");
+    }
 }
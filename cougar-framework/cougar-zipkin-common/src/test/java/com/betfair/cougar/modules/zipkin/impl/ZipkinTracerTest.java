@@ -16,6 +16,7 @@
 
 package com.betfair.cougar.modules.zipkin.impl;
 
+import com.betfair.cougar.api.ResponseCode;
 import com.betfair.cougar.core.api.ev.OperationKey;
 import com.betfair.cougar.modules.zipkin.api.ZipkinData;
 import org.junit.Before;
@@ -23,6 +24,7 @@ import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 
+import static com.twitter.zipkin.gen.zipkinCoreConstants.*;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -40,6 +42,9 @@ public class ZipkinTracerTest {
     @Mock
     private OperationKey operationKey;
 
+    @Mock
+    private ZipkinManager zipkinManager;
+
     @InjectMocks
     private ZipkinTracer victim = new ZipkinTracer();
 
@@ -255,4 +260,164 @@ public class ZipkinTracerTest {
 
         verifyZeroInteractions(zipkinEmitter);
     }
+
+    @Test
+    public void start_WhenSamplingIsPendingAndNotConfirmed_ShouldNotEmitAnything() {
+
+        when(operationKey.toString(false)).thenReturn("Baseline/testSimpleGet");
+        when(requestUUID.isSamplingPending()).thenReturn(true);
+        when(zipkinManager.confirmTrace("Baseline/testSimpleGet")).thenReturn(false);
+
+        victim.start(requestUUID, operationKey);
+
+        verify(requestUUID).completeSampling(false);
+        verifyZeroInteractions(zipkinEmitter);
+    }
+
+    @Test
+    public void start_WhenSamplingIsPendingAndConfirmed_ShouldEmitServerReceive() {
+
+        when(operationKey.toString(false)).thenReturn("Baseline/testSimpleGet");
+        when(requestUUID.isSamplingPending()).thenReturn(true);
+        when(zipkinManager.confirmTrace("Baseline/testSimpleGet")).thenReturn(true);
+        when(requestUUID.isZipkinTracingEnabled()).thenReturn(true);
+        when(requestUUID.getZipkinData()).thenReturn(zipkinData);
+
+        victim.start(requestUUID, operationKey);
+
+        verify(requestUUID).completeSampling(true);
+        verify(zipkinEmitter).emitServerReceive(zipkinData);
+    }
+
+    @Test
+    public void start_WhenRequestIsAForcedSamplingCandidate_ShouldRecordStart() {
+
+        when(operationKey.toString()).thenReturn("Baseline/v1.0/testSimpleGet");
+        when(requestUUID.isForcedSamplingCandidate()).thenReturn(true);
+        when(zipkinEmitter.currentTimeMicros()).thenReturn(1000L);
+
+        victim.start(requestUUID, operationKey);
+
+        verify(requestUUID).recordStart("Baseline/v1.0/testSimpleGet", 1000L);
+        verify(zipkinEmitter, never()).emitServerReceive(any(ZipkinData.class));
+    }
+
+    @Test
+    public void start_WhenBatchingAnnotations_ShouldOpenSpan() {
+        ZipkinAnnotationsStore store = new ZipkinAnnotationsStore(zipkinData);
+
+        victim.setBatchAnnotations(true);
+        when(requestUUID.isZipkinTracingEnabled()).thenReturn(true);
+        when(requestUUID.getZipkinData()).thenReturn(zipkinData);
+        when(zipkinEmitter.openSpan(zipkinData, SERVER_RECV)).thenReturn(store);
+
+        victim.start(requestUUID, operationKey);
+
+        verify(requestUUID).setAnnotationsStore(store);
+        verify(zipkinEmitter, never()).emitServerReceive(zipkinData);
+    }
+
+    @Test
+    public void trace_WhenBatchingAnnotations_ShouldAddAnnotationToSpan() {
+        ZipkinAnnotationsStore store = new ZipkinAnnotationsStore(zipkinData);
+        String msg = "Custom Annotation";
+
+        when(requestUUID.isZipkinTracingReady()).thenReturn(true);
+        when(requestUUID.getZipkinData()).thenReturn(zipkinData);
+        when(requestUUID.getAnnotationsStore()).thenReturn(store);
+
+        victim.trace(requestUUID, msg);
+
+        verify(zipkinEmitter).addAnnotation(store, msg);
+        verify(zipkinEmitter, never()).emitAnnotation(zipkinData, msg);
+    }
+
+    @Test
+    public void end_WhenBatchingAnnotations_ShouldCloseSpan() {
+        ZipkinAnnotationsStore store = new ZipkinAnnotationsStore(zipkinData);
+
+        when(requestUUID.getAnnotationsStore()).thenReturn(store);
+
+        victim.end(requestUUID);
+
+        verify(requestUUID).setAnnotationsStore(null);
+        verify(zipkinEmitter).closeSpan(store, SERVER_SEND);
+        verify(zipkinEmitter, never()).emitServerSend(any(ZipkinData.class));
+    }
+
+    @Test
+    public void endCall_WhenBatchingAnnotations_ShouldCloseSpan() {
+        ZipkinAnnotationsStore store = new ZipkinAnnotationsStore(zipkinData);
+
+        when(requestUUID.getAnnotationsStore()).thenReturn(store);
+
+        victim.endCall(null, requestUUID, null);
+
+        verify(zipkinEmitter).closeSpan(store, CLIENT_RECV);
+        verify(zipkinEmitter, never()).emitClientReceive(any(ZipkinData.class));
+    }
+
+    @Test
+    public void end_WhenUnsampledRequestIsSlow_ShouldEmitForcedSpan() {
+        ZipkinAnnotationsStore store = new ZipkinAnnotationsStore(zipkinData);
+
+        when(requestUUID.isForcedSamplingCandidate()).thenReturn(true);
+        when(requestUUID.getStartTimestampMicros()).thenReturn(1000L);
+        when(requestUUID.buildForcedZipkinData()).thenReturn(zipkinData);
+        when(zipkinEmitter.currentTimeMicros()).thenReturn(2001000L);
+        when(zipkinEmitter.buildAnnotationsStore(zipkinData)).thenReturn(store);
+        when(zipkinManager.isSlowRequest(2000000L)).thenReturn(true);
+        when(zipkinManager.forceTrace()).thenReturn(true);
+
+        victim.end(requestUUID);
+
+        verify(zipkinEmitter).emitAnnotations(store);
+    }
+
+    @Test
+    public void end_WhenUnsampledRequestIsNotSlow_ShouldNotEmitAnything() {
+
+        when(requestUUID.isForcedSamplingCandidate()).thenReturn(true);
+        when(requestUUID.getStartTimestampMicros()).thenReturn(1000L);
+        when(zipkinEmitter.currentTimeMicros()).thenReturn(2000L);
+        when(zipkinManager.isSlowRequest(1000L)).thenReturn(false);
+
+        victim.end(requestUUID);
+
+        verify(zipkinManager, never()).forceTrace();
+        verify(zipkinEmitter, never()).emitAnnotations(any(ZipkinAnnotationsStore.class));
+    }
+
+    @Test
+    public void end_WhenUnsampledRequestFailed_ShouldEmitForcedSpan() {
+        ZipkinAnnotationsStore store = new ZipkinAnnotationsStore(zipkinData);
+
+        when(requestUUID.isForcedSamplingCandidate()).thenReturn(true);
+        when(requestUUID.getStartTimestampMicros()).thenReturn(1000L);
+        when(requestUUID.buildForcedZipkinData()).thenReturn(zipkinData);
+        when(zipkinEmitter.currentTimeMicros()).thenReturn(2000L);
+        when(zipkinEmitter.buildAnnotationsStore(zipkinData)).thenReturn(store);
+        when(zipkinManager.isSlowRequest(1000L)).thenReturn(false);
+        when(zipkinManager.isTracedError(ResponseCode.InternalError)).thenReturn(true);
+        when(zipkinManager.forceTrace()).thenReturn(true);
+
+        victim.end(requestUUID, ResponseCode.InternalError);
+
+        verify(zipkinEmitter).emitAnnotations(store);
+    }
+
+    @Test
+    public void end_WhenUnsampledRequestSucceeded_ShouldNotEmitAnything() {
+
+        when(requestUUID.isForcedSamplingCandidate()).thenReturn(true);
+        when(requestUUID.getStartTimestampMicros()).thenReturn(1000L);
+        when(zipkinEmitter.currentTimeMicros()).thenReturn(2000L);
+        when(zipkinManager.isSlowRequest(1000L)).thenReturn(false);
+        when(zipkinManager.isTracedError(ResponseCode.Ok)).thenReturn(false);
+
+        victim.end(requestUUID, ResponseCode.Ok);
+
+        verify(zipkinManager, never()).forceTrace();
+        verify(zipkinEmitter, never()).emitAnnotations(any(ZipkinAnnotationsStore.class));
+    }
 }
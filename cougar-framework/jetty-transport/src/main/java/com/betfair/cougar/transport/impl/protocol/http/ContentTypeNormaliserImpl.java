@@ -24,24 +24,42 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.betfair.cougar.util.HeaderUtils;
 import com.betfair.cougar.util.MessageConstants;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.core.MediaType;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 
+/**
+ * Clients tend to send the same few Accept and Content-Type headers over and over, so successful negotiations are
+ * cached against the raw header value. Each cache is bounded by maxCacheSize: once full it is swapped for an empty
+ * one, so headers which only become hot later still get cached, without any locking or per-entry eviction on the
+ * request path.
+ */
+@ManagedResource
 public class ContentTypeNormaliserImpl implements ContentTypeNormaliser {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ContentTypeNormaliser.class);
     public static final String DEFAULT_ENCODING = "utf-8";
     private Map<String, MediaType> validContentTypes = new ConcurrentHashMap<String, MediaType>();
-    private List<MediaType> allContentTypes = Collections.synchronizedList(new ArrayList<MediaType>());
+    // replaced rather than modified, so negotiation can iterate it without locking
+    private volatile List<MediaType> allContentTypes = Collections.emptyList();
     private Set<String> validEncodings = Collections.synchronizedSet(new HashSet<String>());
     private String defaultResponseFormat;
 
+    private int maxCacheSize = 1024;
+    private final NegotiationCache<MediaType> responseMediaTypes = new NegotiationCache<>();
+    private final NegotiationCache<MediaType> requestMediaTypes = new NegotiationCache<>();
+    private final NegotiationCache<String> encodings = new NegotiationCache<>();
+
     @Override
-    public void addValidContentTypes(final Set<String> vct, MediaType normalisedContentType) {
+    public synchronized void addValidContentTypes(final Set<String> vct, MediaType normalisedContentType) {
         for (String ct : vct) {
             if (this.validContentTypes.containsKey(ct)) {
                 // this content type is already registered. Ensure it's mapped to the same preferred type
@@ -55,19 +73,32 @@ public class ContentTypeNormaliserImpl implements ContentTypeNormaliser {
             }
 
         }
-        allContentTypes.addAll(MediaTypeUtils.getMediaTypes(new ArrayList<String>(vct).toArray(new String[vct.size()])));
+        List<MediaType> newContentTypes = new ArrayList<MediaType>(allContentTypes);
+        newContentTypes.addAll(MediaTypeUtils.getMediaTypes(new ArrayList<String>(vct).toArray(new String[vct.size()])));
+        allContentTypes = Collections.unmodifiableList(newContentTypes);
+        clearCaches();
     }
 
     @Override
     public void addValidEncodings(final Set<String> validEncodings) {
         this.validEncodings.addAll(validEncodings);
+        encodings.clear();
     }
 
     @Override
     public MediaType getNormalisedResponseMediaType(HttpServletRequest request) {
+        String responseFormat = getResponseFormat(request);
+        MediaType responseMediaType = responseMediaTypes.get(responseFormat);
+        if (responseMediaType == null) {
+            responseMediaType = negotiateResponseMediaType(responseFormat);
+            responseMediaTypes.put(responseFormat, responseMediaType, maxCacheSize);
+        }
+        return responseMediaType;
+    }
+
+    private MediaType negotiateResponseMediaType(String responseFormat) {
         // Negotiate Response format
         MediaType responseMediaType;
-        String responseFormat = getResponseFormat(request);
         try {
             List<MediaType> acceptMT = MediaTypeUtils.parseMediaTypes(responseFormat);
 
@@ -112,30 +143,53 @@ public class ContentTypeNormaliserImpl implements ContentTypeNormaliser {
             if (contentType == null) {
                 throw new CougarValidationException(ServerFaultCode.ContentTypeNotValid, "Input content type was not specified for deserialisable response");
             }
-            MediaType requestMT;
-            try {
-                requestMT = MediaType.valueOf(contentType);
-            } catch (Exception e) {
-                throw new CougarValidationException(ServerFaultCode.MediaTypeParseFailure, "Input content type cannot be parsed: " + contentType,e);
-            }
-            if (requestMT.isWildcardType() || requestMT.isWildcardSubtype()) {
-                throw new CougarValidationException(ServerFaultCode.InvalidInputMediaType, "Input content type may not be wildcard: " + requestMT);
-            }
-            if (!MediaTypeUtils.isValid(allContentTypes, requestMT)) {
-                throw new CougarValidationException(ServerFaultCode.ContentTypeNotValid, "Input content type is not valid: " + requestMT);
-            }
-            String candidateContentType = requestMT.getType() + "/" + requestMT.getSubtype();
-            MediaType normalizedMediaType = validContentTypes.get(candidateContentType);
+            MediaType normalizedMediaType = requestMediaTypes.get(contentType);
             if (normalizedMediaType == null) {
-                throw new CougarValidationException(ServerFaultCode.FrameworkError, "Input content type " + contentType + " failed to find a normalized type using key " + candidateContentType);
+                normalizedMediaType = normaliseRequestMediaType(contentType);
+                requestMediaTypes.put(contentType, normalizedMediaType, maxCacheSize);
             }
             return normalizedMediaType;
         }
         return null;
     }
 
+    private MediaType normaliseRequestMediaType(String contentType) {
+        MediaType requestMT;
+        try {
+            requestMT = MediaType.valueOf(contentType);
+        } catch (Exception e) {
+            throw new CougarValidationException(ServerFaultCode.MediaTypeParseFailure, "Input content type cannot be parsed: " + contentType,e);
+        }
+        if (requestMT.isWildcardType() || requestMT.isWildcardSubtype()) {
+            throw new CougarValidationException(ServerFaultCode.InvalidInputMediaType, "Input content type may not be wildcard: " + requestMT);
+        }
+        if (!MediaTypeUtils.isValid(allContentTypes, requestMT)) {
+            throw new CougarValidationException(ServerFaultCode.ContentTypeNotValid, "Input content type is not valid: " + requestMT);
+        }
+        String candidateContentType = requestMT.getType() + "/" + requestMT.getSubtype();
+        MediaType normalizedMediaType = validContentTypes.get(candidateContentType);
+        if (normalizedMediaType == null) {
+            throw new CougarValidationException(ServerFaultCode.FrameworkError, "Input content type " + contentType + " failed to find a normalized type using key " + candidateContentType);
+        }
+        return normalizedMediaType;
+    }
+
     public void setDefaultResponseFormat(String defaultResponseFormat) {
         this.defaultResponseFormat = defaultResponseFormat;
+        responseMediaTypes.clear();
+    }
+
+    /**
+     * The most entries each of the negotiation caches will hold, 0 disables caching.
+     */
+    public void setMaxCacheSize(int maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+        clearCaches();
+    }
+
+    @ManagedAttribute
+    public int getMaxCacheSize() {
+        return maxCacheSize;
     }
 
     @Override
@@ -150,6 +204,18 @@ public class ContentTypeNormaliserImpl implements ContentTypeNormaliser {
         if (contentType == null || !contentType.contains(CHARSET)) {
             return DEFAULT_ENCODING;
         }
+        String encoding = encodings.get(contentType);
+        if (encoding == null) {
+            encoding = extractEncoding(contentType);
+            // only valid encodings are cached, so that an invalid one is still warned about each time
+            if (encoding != DEFAULT_ENCODING) {
+                encodings.put(contentType, encoding, maxCacheSize);
+            }
+        }
+        return encoding;
+    }
+
+    private String extractEncoding(final String contentType) {
         String encoding = null;
         try {
             encoding = contentType.substring(contentType.indexOf(CHARSET) + CHARSET.length());
@@ -164,4 +230,94 @@ public class ContentTypeNormaliserImpl implements ContentTypeNormaliser {
         return encoding;
     }
 
-}
\ No newline at end of file
+    @ManagedOperation
+    public void clearCaches() {
+        responseMediaTypes.clear();
+        requestMediaTypes.clear();
+        encodings.clear();
+    }
+
+    @ManagedAttribute
+    public long getResponseMediaTypeCacheHits() {
+        return responseMediaTypes.hits.get();
+    }
+
+    @ManagedAttribute
+    public long getResponseMediaTypeCacheMisses() {
+        return responseMediaTypes.misses.get();
+    }
+
+    @ManagedAttribute
+    public int getResponseMediaTypeCacheSize() {
+        return responseMediaTypes.size();
+    }
+
+    @ManagedAttribute
+    public long getRequestMediaTypeCacheHits() {
+        return requestMediaTypes.hits.get();
+    }
+
+    @ManagedAttribute
+    public long getRequestMediaTypeCacheMisses() {
+        return requestMediaTypes.misses.get();
+    }
+
+    @ManagedAttribute
+    public int getRequestMediaTypeCacheSize() {
+        return requestMediaTypes.size();
+    }
+
+    @ManagedAttribute
+    public long getEncodingCacheHits() {
+        return encodings.hits.get();
+    }
+
+    @ManagedAttribute
+    public long getEncodingCacheMisses() {
+        return encodings.misses.get();
+    }
+
+    @ManagedAttribute
+    public int getEncodingCacheSize() {
+        return encodings.size();
+    }
+
+    private static final class NegotiationCache<V> {
+        // the map and its size always go together, as a full or cleared cache is replaced rather than emptied
+        private final AtomicReference<ConcurrentHashMap<String, V>> entries = new AtomicReference<>(new ConcurrentHashMap<String, V>());
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+
+        V get(String key) {
+            V ret = key != null ? entries.get().get(key) : null;
+            if (ret != null) {
+                hits.incrementAndGet();
+            }
+            else {
+                misses.incrementAndGet();
+            }
+            return ret;
+        }
+
+        void put(String key, V value, int maxSize) {
+            if (key == null || maxSize <= 0) {
+                return;
+            }
+            ConcurrentHashMap<String, V> current = entries.get();
+            // the size check and insert aren't atomic, so a burst of distinct keys can overshoot by a few, which is fine
+            if (current.size() >= maxSize) {
+                ConcurrentHashMap<String, V> replacement = new ConcurrentHashMap<>();
+                current = entries.compareAndSet(current, replacement) ? replacement : entries.get();
+            }
+            current.putIfAbsent(key, value);
+        }
+
+        int size() {
+            return entries.get().size();
+        }
+
+        void clear() {
+            entries.set(new ConcurrentHashMap<String, V>());
+        }
+    }
+}
@@ -27,6 +27,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.betfair.cougar.logging.EventLogDefinition;
 import com.betfair.cougar.logging.EventLoggingRegistry;
+import com.betfair.cougar.logging.async.AsyncEventLogWriter;
 import com.betfair.cougar.logging.records.EventLogRecord;
 import com.betfair.cougar.transport.api.RequestLogger;
 import com.betfair.cougar.transport.api.protocol.http.HttpCommand;
@@ -50,6 +51,7 @@ public class HttpRequestLogger implements RequestLogger {
     private EventLoggingRegistry registry;
     private AtomicLong httpRequests = new AtomicLong();
     private List<String> headersToLog = new ArrayList<String>();
+    private AsyncEventLogWriter asyncWriter;
 
     private static ILoggerFactory loggerFactory = LoggerFactory.getILoggerFactory();
 
@@ -64,6 +66,13 @@ public class HttpRequestLogger implements RequestLogger {
         return ret;
     }
 
+    /**
+     * If set, access log entries are handed to this writer rather than being rendered and written on the request thread.
+     */
+    public void setAsyncWriter(AsyncEventLogWriter asyncWriter) {
+        this.asyncWriter = asyncWriter;
+    }
+
     @ManagedAttribute
     public boolean isLoggingEnabled() {
         return loggingEnabled;
@@ -136,12 +145,16 @@ public class HttpRequestLogger implements RequestLogger {
                             extraFields};
                 }
             };
-            EventLogRecord eventLogRecord = new EventLogRecord(le, null);
-            EventLogDefinition invokableLogger = registry.getInvokableLogger(eventLogRecord.getLoggerName());
-            if (invokableLogger != null) {
-                loggerFactory.getLogger(invokableLogger.getLogName()).info(eventLogRecord.getMessage());
+            EventLogDefinition invokableLogger = registry.getInvokableLogger(le.getLogName());
+            if (invokableLogger == null) {
+                throw new CougarFrameworkException("Logger "+le.getLogName()+" is not an event logger");
+            }
+            if (asyncWriter != null) {
+                // the fields are captured now, before the command is completed and its request recycled
+                asyncWriter.log(invokableLogger.getLogName(), le, null);
             } else {
-                throw new CougarFrameworkException("Logger "+eventLogRecord.getLoggerName()+" is not an event logger");
+                EventLogRecord eventLogRecord = new EventLogRecord(le, null);
+                loggerFactory.getLogger(invokableLogger.getLogName()).info(eventLogRecord.getMessage());
             }
         }
         httpRequests.incrementAndGet();
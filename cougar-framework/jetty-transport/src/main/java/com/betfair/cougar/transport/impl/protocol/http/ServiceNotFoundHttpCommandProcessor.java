@@ -73,7 +73,7 @@ public class ServiceNotFoundHttpCommandProcessor extends AbstractHttpCommandProc
         }
         finally {
             if (context != null && traceStarted) {
-                tracer.end(context.getRequestUUID());
+                tracer.end(context.getRequestUUID(), ResponseCode.NotFound);
             }
         }
     }
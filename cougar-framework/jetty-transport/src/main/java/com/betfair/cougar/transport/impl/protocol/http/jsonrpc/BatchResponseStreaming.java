@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.transport.impl.protocol.http.jsonrpc;
+
+/**
+ * Controls how the responses to a JSON-RPC batch call are written.
+ */
+public enum BatchResponseStreaming {
+    /**
+     * The response array is written in one go once every call in the batch has completed.
+     */
+    NONE,
+    /**
+     * Responses are written as soon as they and every response before them (in request order) are available. Only
+     * responses which are waiting on an earlier, slower call are held on the heap.
+     */
+    REQUEST_ORDER,
+    /**
+     * Responses are written as soon as each call completes, clients match them to requests by id (as permitted by the
+     * JSON-RPC 2.0 specification).
+     */
+    COMPLETION_ORDER
+}
@@ -29,6 +29,16 @@ public class JsonRpcRequest {
 	@JsonProperty
 	private String jsonrpc;
 
+	public JsonRpcRequest() {
+	}
+
+	public JsonRpcRequest(Object id, JsonNode params, String method, String jsonrpc) {
+		this.id = id;
+		this.params = params;
+		this.method = method;
+		this.jsonrpc = jsonrpc;
+	}
+
 	public Object getId() {
 		return id;
 	}
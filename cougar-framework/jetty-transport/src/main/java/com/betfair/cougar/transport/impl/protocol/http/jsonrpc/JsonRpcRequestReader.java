@@ -0,0 +1,302 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.transport.impl.protocol.http.jsonrpc;
+
+import com.betfair.cougar.core.api.transcription.EnumDerialisationException;
+import com.betfair.cougar.transport.impl.protocol.http.jsonrpc.JsonRpcOperationBinding.JsonRpcParam;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a JSON-RPC call (single or batch) in a single pass over the token stream. As soon as a request's method is
+ * known its params are bound straight into the operation's argument types, so no intermediate tree is built for the
+ * (usually much larger) params. The only exception is a request which specifies params before method, whose params
+ * are buffered as a tree until the method has been read.
+ * <p/>
+ * A failure to bind the params of one request doesn't prevent the rest of the call being read, the failure is held
+ * against the request and rethrown from {@link BoundRequest#getArgs()}, in the same form as
+ * {@link ObjectMapper#convertValue(Object, JavaType)} would have thrown it.
+ */
+public class JsonRpcRequestReader {
+
+    public interface BindingResolver {
+        /**
+         * @return the binding for the given method, or null if there isn't one
+         */
+        JsonRpcOperationBinding resolve(String method);
+    }
+
+    private final ObjectMapper mapper;
+    private final BindingResolver bindingResolver;
+
+    public JsonRpcRequestReader(ObjectMapper mapper, BindingResolver bindingResolver) {
+        this.mapper = mapper;
+        this.bindingResolver = bindingResolver;
+    }
+
+    /**
+     * Reads all the requests from the given stream.
+     * @return the requests read, and whether they were sent as a batch
+     */
+    public ReadResult read(InputStream is) throws IOException {
+        JsonParser parser = mapper.getFactory().createParser(is);
+        try {
+            JsonToken token = parser.nextToken();
+            List<BoundRequest> requests = new ArrayList<>();
+            boolean batch;
+            if (token == JsonToken.START_ARRAY) {
+                batch = true;
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    expect(parser, token, JsonToken.START_OBJECT);
+                    requests.add(readRequest(parser));
+                }
+            } else {
+                batch = false;
+                expect(parser, token, JsonToken.START_OBJECT);
+                requests.add(readRequest(parser));
+            }
+            return new ReadResult(requests, batch);
+        } finally {
+            parser.close();
+        }
+    }
+
+    private BoundRequest readRequest(JsonParser parser) throws IOException {
+        Object id = null;
+        String method = null;
+        String jsonrpc = null;
+        JsonNode bufferedParams = null;
+        JsonRpcOperationBinding binding = null;
+        Object[] args = null;
+        Exception bindFailure = null;
+        boolean paramsRead = false;
+
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_OBJECT) {
+            expect(parser, token, JsonToken.FIELD_NAME);
+            String field = parser.getCurrentName();
+            // the request object's context, captured before moving onto the value (which, for a container, would
+            // already be the value's own context), so a failed params read can be skipped back out to it
+            JsonStreamContext requestContext = parser.getParsingContext();
+            parser.nextToken();
+            if ("method".equals(field)) {
+                method = parser.getValueAsString();
+                if (method == null) {
+                    throw JsonMappingException.from(parser, "JSON-RPC method must be a string");
+                }
+                binding = bindingResolver.resolve(method);
+            } else if ("params".equals(field)) {
+                if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+                    // treated as if there were no params
+                    continue;
+                }
+                paramsRead = true;
+                if (method == null) {
+                    bufferedParams = mapper.readTree(parser);
+                } else if (binding == null) {
+                    parser.skipChildren();
+                } else {
+                    args = new Object[binding.getJsonRpcParams().length];
+                    try {
+                        readParams(parser, binding.getJsonRpcParams(), args);
+                    } catch (IllegalArgumentException e) {
+                        bindFailure = e;
+                        args = null;
+                        // the failure may have been anywhere within the params, so skip whatever's left of them
+                        // (up to and including their closing token) to carry on with the rest of the request
+                        while (parser.getParsingContext() != requestContext) {
+                            if (parser.nextToken() == null) {
+                                throw JsonMappingException.from(parser, "Unexpected end of input in JSON-RPC params");
+                            }
+                        }
+                    }
+                }
+            } else if ("id".equals(field)) {
+                id = mapper.readValue(parser, Object.class);
+            } else if ("jsonrpc".equals(field)) {
+                jsonrpc = parser.getValueAsString();
+            } else if (mapper.isEnabled(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)) {
+                throw JsonMappingException.from(parser, "Unrecognised field \"" + field + "\" in JSON-RPC request");
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (method == null) {
+            throw JsonMappingException.from(parser, "JSON-RPC request has no method");
+        }
+        JsonRpcRequest request = new JsonRpcRequest(id, bufferedParams, method, jsonrpc);
+        if (binding != null && bindFailure == null) {
+            if (!paramsRead) {
+                if (binding.getJsonRpcParams().length > 0) {
+                    bindFailure = new IllegalStateException("No params specified for " + method);
+                } else {
+                    args = new Object[0];
+                }
+            } else if (args == null) {
+                // params came before the method, so bind from the buffered tree
+                args = new Object[binding.getJsonRpcParams().length];
+                try {
+                    bindParams(bufferedParams, binding.getJsonRpcParams(), args);
+                } catch (IllegalArgumentException e) {
+                    bindFailure = e;
+                    args = null;
+                }
+            }
+        }
+        return new BoundRequest(request, binding, args, bindFailure);
+    }
+
+    private void readParams(JsonParser parser, JsonRpcParam[] paramDefs, Object[] args) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.START_ARRAY) {
+            int i = 0;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (i < paramDefs.length) {
+                    args[i] = readParam(parser, paramDefs[i]);
+                } else {
+                    parser.skipChildren();
+                }
+                i++;
+            }
+        } else if (token == JsonToken.START_OBJECT) {
+            while ((token = parser.nextToken()) != JsonToken.END_OBJECT) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                int index = indexOf(paramDefs, name);
+                if (index >= 0) {
+                    args[index] = readParam(parser, paramDefs[index]);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } else {
+            // params that are neither positional nor named can't be bound to anything
+            parser.skipChildren();
+            throw new IllegalArgumentException(JsonMappingException.from(parser, "JSON-RPC params must be an array or object"));
+        }
+    }
+
+    private Object readParam(JsonParser parser, JsonRpcParam paramDef) throws IOException {
+        JavaType javaType = paramDef.getJavaType();
+        Object value;
+        try {
+            value = mapper.readValue(parser, javaType);
+        } catch (JsonMappingException e) {
+            // match what convertValue would have thrown
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        checkNotUnrecognised(javaType, value);
+        return value;
+    }
+
+    private void bindParams(JsonNode params, JsonRpcParam[] paramDefs, Object[] args) {
+        for (int i=0; i<paramDefs.length; i++) {
+            JsonNode paramValue = params.isArray() ? params.get(i) : params.get(paramDefs[i].getName());
+            JavaType javaType = paramDefs[i].getJavaType();
+            args[i] = mapper.convertValue(paramValue, javaType);
+            checkNotUnrecognised(javaType, args[i]);
+        }
+    }
+
+    private void checkNotUnrecognised(JavaType javaType, Object value) {
+        // complex types are handled by the mapper, but for some reason, direct enums are not
+        if (javaType.isEnumType() && value != null && ((Enum)value).name().equals("UNRECOGNIZED_VALUE")) {
+            throw new IllegalArgumentException(new Exception(new EnumDerialisationException("UNRECOGNIZED_VALUE is not allowed as an input")));
+        }
+    }
+
+    private int indexOf(JsonRpcParam[] paramDefs, String name) {
+        for (int i=0; i<paramDefs.length; i++) {
+            if (paramDefs[i].getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw JsonMappingException.from(parser, "Expected " + expected + " but found " + actual);
+        }
+    }
+
+    public static class ReadResult {
+        private final List<BoundRequest> requests;
+        private final boolean batch;
+
+        private ReadResult(List<BoundRequest> requests, boolean batch) {
+            this.requests = requests;
+            this.batch = batch;
+        }
+
+        public List<BoundRequest> getRequests() {
+            return requests;
+        }
+
+        public boolean isBatch() {
+            return batch;
+        }
+    }
+
+    public static class BoundRequest {
+        private final JsonRpcRequest request;
+        private final JsonRpcOperationBinding binding;
+        private final Object[] args;
+        private final Exception bindFailure;
+
+        private BoundRequest(JsonRpcRequest request, JsonRpcOperationBinding binding, Object[] args, Exception bindFailure) {
+            this.request = request;
+            this.binding = binding;
+            this.args = args;
+            this.bindFailure = bindFailure;
+        }
+
+        public JsonRpcRequest getRequest() {
+            return request;
+        }
+
+        /**
+         * @return the binding for the requested method, or null if the method isn't bound
+         */
+        public JsonRpcOperationBinding getBinding() {
+            return binding;
+        }
+
+        /**
+         * @throws Exception if the params couldn't be bound to the operation's arguments
+         */
+        public Object[] getArgs() throws Exception {
+            if (bindFailure != null) {
+                throw bindFailure;
+            }
+            return args;
+        }
+    }
+}
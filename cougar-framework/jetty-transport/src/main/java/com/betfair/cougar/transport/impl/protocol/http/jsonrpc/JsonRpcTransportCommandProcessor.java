@@ -19,6 +19,10 @@ package com.betfair.cougar.transport.impl.protocol.http.jsonrpc;
 import java.io.IOException;
 import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -41,10 +45,8 @@ import com.betfair.cougar.core.impl.CougarInternalOperations;
 import com.betfair.cougar.core.impl.DefaultTimeConstraints;
 import com.betfair.cougar.marshalling.impl.databinding.json.JSONBindingFactory;
 import com.betfair.cougar.transport.api.DehydratedExecutionContextResolution;
-import com.fasterxml.jackson.databind.JavaType;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.type.TypeFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.betfair.cougar.transport.api.CommandResolver;
@@ -62,9 +64,9 @@ import com.betfair.cougar.transport.api.ExecutionCommand;
 import com.betfair.cougar.transport.api.TransportCommand;
 import com.betfair.cougar.transport.api.protocol.http.HttpCommand;
 import com.betfair.cougar.transport.api.protocol.http.ResponseCodeMapper;
-import com.betfair.cougar.transport.impl.protocol.http.jsonrpc.JsonRpcOperationBinding.JsonRpcParam;
 import com.betfair.cougar.util.stream.ByteCountingInputStream;
 import com.betfair.cougar.util.stream.ByteCountingOutputStream;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedResource;
 
 @ManagedResource
@@ -78,10 +80,15 @@ public class JsonRpcTransportCommandProcessor extends AbstractHttpCommandProcess
 	private static final int INTERNAL_ERROR = -32603;
 	private static final int SERVER_ERROR = -32099;
 
-	private static final JavaType BATCH_REQUEST_TYPE = TypeFactory.defaultInstance().constructCollectionType(ArrayList.class, JsonRpcRequest.class);
-	private static final JavaType SINGLE_REQUEST_TYPE = TypeFactory.defaultInstance().uncheckedSimpleType(JsonRpcRequest.class);
-
 	private ObjectMapper mapper;
+	private final JsonRpcRequestReader requestReader;
+    private BatchResponseStreaming batchResponseStreaming = BatchResponseStreaming.NONE;
+
+    private final AtomicLong streamedBatches = new AtomicLong();
+    private final AtomicLong streamedBatchCalls = new AtomicLong();
+    private final AtomicLong totalSlowestBatchCallNanos = new AtomicLong();
+    private final AtomicLong streamedBatchesWritten = new AtomicLong();
+    private final AtomicLong totalBatchTimeToFirstByteNanos = new AtomicLong();
 
 	private Map<String, JsonRpcOperationBinding> bindings = new HashMap<String, JsonRpcOperationBinding>();
 
@@ -107,6 +114,12 @@ public class JsonRpcTransportCommandProcessor extends AbstractHttpCommandProcess
         super(Protocol.JSON_RPC, contextResolution, requestTimeoutHeader);
         setName("JsonRpcTransportCommandProcessor");
         this.mapper = mapper;
+        this.requestReader = new JsonRpcRequestReader(mapper, new JsonRpcRequestReader.BindingResolver() {
+            @Override
+            public JsonRpcOperationBinding resolve(String method) {
+                return bindings.get(stripMinorVersionFromUri(method.toLowerCase()));
+            }
+        });
     }
 
 	public JsonRpcTransportCommandProcessor(DehydratedExecutionContextResolution contextResolution, String requestTimeoutHeader, JSONBindingFactory jsonBindingFactory) {
@@ -154,45 +167,43 @@ public class JsonRpcTransportCommandProcessor extends AbstractHttpCommandProcess
 		final List<ExecutionCommand> commands = new LinkedList<>();
 		final List<JsonRpcResponse> responses = new ArrayList<>();
 
-		JsonNode root;
 		ByteCountingInputStream iStream = null;
 		try {
 			iStream = createByteCountingInputStream(http.getRequest().getInputStream());
             try {
                 EnumUtils.setHardFailureForThisThread(hardFailEnumDeserialisation);
-                root = mapper.readTree(iStream);
+                // params are bound to their operation's arguments as the call is read
+                JsonRpcRequestReader.ReadResult read = requestReader.read(iStream);
                 final long bytesRead = iStream.getCount();
-                final boolean isBatch = root.isArray();
-                if (isBatch) {
-                    requests.addAll((List<JsonRpcRequest>)mapper.convertValue(root, BATCH_REQUEST_TYPE));
-                } else {
-                    JsonRpcRequest rpc = mapper.convertValue(root, SINGLE_REQUEST_TYPE);
-                    requests.add(rpc);
+                final boolean isBatch = read.isBatch();
+                for (JsonRpcRequestReader.BoundRequest bound : read.getRequests()) {
+                    requests.add(bound.getRequest());
                 }
 
                 if (requests.isEmpty()) {
                     writeErrorResponse(http, context, new CougarValidationException(ServerFaultCode.NoRequestsFound, "No Requests found in rpc call"), true);
                 } else {
                     final TimeConstraints realTimeConstraints = DefaultTimeConstraints.rebaseFromNewStartTime(context.getRequestTime(), readRawTimeConstraints(http.getRequest()));
-                    for (final JsonRpcRequest rpc : requests) {
-                        final JsonRpcOperationBinding binding = bindings.get(stripMinorVersionFromUri(rpc.getMethod().toLowerCase()));
+                    final StreamedBatchResponse streamed = isBatch && batchResponseStreaming != BatchResponseStreaming.NONE
+                            ? new StreamedBatchResponse(http, context, requests.size(), bytesRead, tracer) : null;
+                    for (int i=0; i<requests.size(); i++) {
+                        final int index = i;
+                        final JsonRpcRequestReader.BoundRequest bound = read.getRequests().get(i);
+                        final JsonRpcRequest rpc = bound.getRequest();
+                        final JsonRpcOperationBinding binding = bound.getBinding();
                         if (binding!=null) {
                             try {
-                                JsonRpcParam [] paramDefs = binding.getJsonRpcParams();
-                                final Object [] args = new Object[paramDefs.length];
-                                for (int i=0;i<paramDefs.length;i++) {
-                                    JsonNode paramValue = rpc.getParams().isArray() ? rpc.getParams().get(i) : rpc.getParams().get(paramDefs[i].getName());
-                                    JavaType javaType = paramDefs[i].getJavaType();
-                                    args[i] = mapper.convertValue(paramValue, javaType);
-                                    // complex types are handled by the mapper, but for some reason, direct enums are not
-                                    if (javaType.isEnumType() && args[i] != null && ((Enum)args[i]).name().equals("UNRECOGNIZED_VALUE")) {
-                                        throw new IllegalArgumentException(new Exception(new EnumDerialisationException("UNRECOGNIZED_VALUE is not allowed as an input")));
-                                    }
-                                }
+                                final Object [] args = bound.getArgs();
                                 commands.add(new ExecutionCommand() {//2nd: index 0, 3rd: index 1, 4th: index 2
                                     @Override
                                     public void onResult(ExecutionResult executionResult) {
                                         JsonRpcResponse response = buildExecutionResultResponse(rpc, executionResult);
+                                        if (streamed != null) {
+                                            // identities have been resolved by the time any command completes
+                                            streamed.release();
+                                            streamed.responseReady(index, response);
+                                            return;
+                                        }
                                         synchronized(responses) {
                                             responses.add(response);
                                             writeResponseIfComplete(http, context, isBatch, requests, responses, bytesRead, tracer);
@@ -213,19 +224,34 @@ public class JsonRpcTransportCommandProcessor extends AbstractHttpCommandProcess
                                     }
                                 });
                             } catch (Exception e) {
+                                JsonRpcResponse response;
                                 if (e instanceof IllegalArgumentException && e.getCause() != null && (e.getCause().getCause()==null || e.getCause().getCause() instanceof EnumDerialisationException)) {
-                                    responses.add(JsonRpcErrorResponse.buildErrorResponse(rpc, new JsonRpcError(INVALID_PARAMS, ServerFaultCode.ServerDeserialisationFailure.getDetail(), null)));
+                                    response = JsonRpcErrorResponse.buildErrorResponse(rpc, new JsonRpcError(INVALID_PARAMS, ServerFaultCode.ServerDeserialisationFailure.getDetail(), null));
                                 }
                                 else {
-                                    responses.add(JsonRpcErrorResponse.buildErrorResponse(rpc, new JsonRpcError(INVALID_PARAMS, ServerFaultCode.MandatoryNotDefined.getDetail(), null)));
+                                    response = JsonRpcErrorResponse.buildErrorResponse(rpc, new JsonRpcError(INVALID_PARAMS, ServerFaultCode.MandatoryNotDefined.getDetail(), null));
+                                }
+                                if (streamed != null) {
+                                    streamed.responseReady(index, response);
+                                } else {
+                                    responses.add(response);
+                                    writeResponseIfComplete(http, context, isBatch, requests, responses, bytesRead, tracer);
                                 }
-                                writeResponseIfComplete(http, context, isBatch, requests, responses, bytesRead, tracer);
                             }
                         } else {
-                            responses.add(JsonRpcErrorResponse.buildErrorResponse(rpc, new JsonRpcError(METHOD_NOT_FOUND, ServerFaultCode.NoSuchOperation.getDetail(), null)));
-                            writeResponseIfComplete(http, context, isBatch, requests, responses, bytesRead, tracer);
+                            JsonRpcResponse response = JsonRpcErrorResponse.buildErrorResponse(rpc, new JsonRpcError(METHOD_NOT_FOUND, ServerFaultCode.NoSuchOperation.getDetail(), null));
+                            if (streamed != null) {
+                                streamed.responseReady(index, response);
+                            } else {
+                                responses.add(response);
+                                writeResponseIfComplete(http, context, isBatch, requests, responses, bytesRead, tracer);
+                            }
                         }
                     }
+                    if (streamed != null && commands.isEmpty()) {
+                        // nothing is going to be executed, so nothing to wait for before writing
+                        streamed.release();
+                    }
                 }
             } catch (Exception ex) {
                 //This happens when there was a problem reading
@@ -342,7 +368,7 @@ public class JsonRpcTransportCommandProcessor extends AbstractHttpCommandProcess
 
             @Override
             public void onResult(ExecutionResult executionResult) {
-                tracer.end(requestUUID);
+                tracer.end(requestUUID, executionResult.isFault() ? executionResult.getFault().getResponseCode() : ResponseCode.Ok);
                 exec.onResult(executionResult);
             }
         };
@@ -440,34 +466,19 @@ public class JsonRpcTransportCommandProcessor extends AbstractHttpCommandProcess
         }
         finally {
             if (context != null && traceStarted) {
-                tracer.end(context.getRequestUUID());
+                tracer.end(context.getRequestUUID(), error.getResponseCode());
             }
         }
     }
 
  	public boolean writeResponseIfComplete(HttpCommand command, DehydratedExecutionContext context, boolean isBatch, List<JsonRpcRequest> requests, List<JsonRpcResponse> responses, long bytesRead, Tracer tracer) {
         if (requests.size()==responses.size()) {
+            ResponseCode responseCode = ResponseCode.Ok;
             try {
                 final HttpServletResponse response = command.getResponse();
-                final IdentityTokenResolver<HttpServletRequest,HttpServletResponse, X509Certificate[]> tokenResolver =
-                        (IdentityTokenResolver<HttpServletRequest,HttpServletResponse, X509Certificate[]>) command.getIdentityTokenResolver();
                 if (command.getStatus() == TransportCommand.CommandStatus.InProgress) {
                     try {
-                        ResponseCodeMapper.setResponseStatus(response, ResponseCode.Ok);
-                        if (context != null && context.getIdentity() != null && tokenResolver != null) {
-                            writeIdentity(context.getIdentityTokens(), new IdentityTokenIOAdapter() {
-                                @Override
-                                public void rewriteIdentityTokens(List<IdentityToken> identityTokens) {
-                                    tokenResolver.rewrite(identityTokens, response);
-                                }
-
-                                @Override
-                                public boolean isRewriteSupported() {
-                                    return tokenResolver.isRewriteSupported();
-                                }
-                            });
-                        }
-                        response.setContentType(MediaType.APPLICATION_JSON);
+                        prepareOkResponse(command, context);
                         ByteCountingOutputStream out = null;
                         try {
                             out = new ByteCountingOutputStream(response.getOutputStream());
@@ -482,7 +493,9 @@ public class JsonRpcTransportCommandProcessor extends AbstractHttpCommandProcess
                                 MediaType.APPLICATION_JSON_TYPE, ResponseCode.Ok);
 
                     } catch (Exception e) {
-                        writeErrorResponse(command, context, handleResponseWritingIOException(e, JsonRpcResponse.class), false); // it has been started but we'll call end below
+                        CougarException ce = handleResponseWritingIOException(e, JsonRpcResponse.class);
+                        responseCode = ce.getResponseCode();
+                        writeErrorResponse(command, context, ce, false); // it has been started but we'll call end below
                     } finally {
                         command.onComplete();
                     }
@@ -490,7 +503,7 @@ public class JsonRpcTransportCommandProcessor extends AbstractHttpCommandProcess
                 return true;
             }
             finally {
-                tracer.end(context.getRequestUUID());
+                tracer.end(context.getRequestUUID(), responseCode);
             }
         }
         else {
@@ -498,6 +511,206 @@ public class JsonRpcTransportCommandProcessor extends AbstractHttpCommandProcess
         }
     }
 
+    /**
+     * Writes the responses to a batch call to the client as they become available (as a chunked response) rather than
+     * holding all of them until the last call in the batch completes. Only one thread writes at a time, whichever
+     * thread completes a call while nobody else is writing takes over writing whatever can now be written.
+     */
+    private class StreamedBatchResponse {
+        private final HttpCommand command;
+        private final DehydratedExecutionContext context;
+        private final int width;
+        private final long bytesRead;
+        private final Tracer tracer;
+        private final long startNanos = System.nanoTime();
+
+        // one of these is used, depending on whether responses are written in request or completion order
+        private final AtomicReferenceArray<JsonRpcResponse> slots;
+        private final Queue<JsonRpcResponse> completed;
+
+        private final AtomicInteger drainsRequested = new AtomicInteger();
+        private volatile boolean released;
+        private volatile long lastResponseNanos;
+
+        // only touched by the thread currently draining
+        private int written;
+        private boolean finished;
+        private boolean notInProgress;
+        private CougarException failureBeforeFirstByte;
+        private boolean failedWhilstWriting;
+        private ByteCountingOutputStream out;
+        private JsonGenerator generator;
+        private long firstByteNanos;
+
+        private StreamedBatchResponse(HttpCommand command, DehydratedExecutionContext context, int width, long bytesRead, Tracer tracer) {
+            this.command = command;
+            this.context = context;
+            this.width = width;
+            this.bytesRead = bytesRead;
+            this.tracer = tracer;
+            if (batchResponseStreaming == BatchResponseStreaming.REQUEST_ORDER) {
+                slots = new AtomicReferenceArray<>(width);
+                completed = null;
+            } else {
+                slots = null;
+                completed = new ConcurrentLinkedQueue<>();
+            }
+        }
+
+        /**
+         * Nothing is written until this is called, since writing the first response also writes the identity tokens.
+         */
+        void release() {
+            if (!released) {
+                released = true;
+                drain();
+            }
+        }
+
+        void responseReady(int index, JsonRpcResponse response) {
+            // set before the response is visible to a writer, so it's up to date by the time the batch is finished
+            lastResponseNanos = System.nanoTime();
+            if (slots != null) {
+                slots.set(index, response);
+            } else {
+                completed.add(response);
+            }
+            drain();
+        }
+
+        private void drain() {
+            if (!released || drainsRequested.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            while (true) {
+                JsonRpcResponse next;
+                while ((next = takeNext()) != null) {
+                    write(next);
+                    written++;
+                }
+                if (written == width && !finished) {
+                    finished = true;
+                    finish();
+                }
+                missed = drainsRequested.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private JsonRpcResponse takeNext() {
+            if (slots == null) {
+                return completed.poll();
+            }
+            if (written == width) {
+                return null;
+            }
+            JsonRpcResponse ret = slots.get(written);
+            if (ret != null) {
+                // don't hold on to it once written
+                slots.set(written, null);
+            }
+            return ret;
+        }
+
+        private void write(JsonRpcResponse response) {
+            if (notInProgress || failureBeforeFirstByte != null || failedWhilstWriting) {
+                return;
+            }
+            if (generator == null) {
+                if (command.getStatus() != TransportCommand.CommandStatus.InProgress) {
+                    notInProgress = true;
+                    return;
+                }
+                try {
+                    prepareOkResponse(command, context);
+                    out = new ByteCountingOutputStream(command.getResponse().getOutputStream());
+                    generator = mapper.getFactory().createGenerator(out);
+                    generator.writeStartArray();
+                } catch (Exception e) {
+                    failureBeforeFirstByte = handleResponseWritingIOException(e, JsonRpcResponse.class);
+                    return;
+                }
+            }
+            try {
+                mapper.writeValue(generator, response);
+                generator.flush();
+                if (firstByteNanos == 0) {
+                    firstByteNanos = System.nanoTime();
+                }
+            } catch (Exception e) {
+                // too late to send an error response, the client will see a truncated array
+                failedWhilstWriting = true;
+                CougarException ce = handleResponseWritingIOException(e, JsonRpcResponse.class);
+                if (ce.getServerFaultCode() != ServerFaultCode.OutputChannelClosedCantWrite) {
+                    LOGGER.warn("Failed to write streamed JSON-RPC batch response", ce);
+                }
+            }
+        }
+
+        private void finish() {
+            try {
+                if (!notInProgress) {
+                    try {
+                        if (failureBeforeFirstByte != null) {
+                            closeStream(out);
+                            writeErrorResponse(command, context, failureBeforeFirstByte, false); // it has been started but we'll call end below
+                        } else {
+                            try {
+                                if (!failedWhilstWriting) {
+                                    generator.writeEndArray();
+                                    generator.flush();
+                                }
+                            } catch (Exception e) {
+                                handleResponseWritingIOException(e, JsonRpcResponse.class);
+                            } finally {
+                                closeStream(out);
+                            }
+                            logAccess(command,
+                                    context, bytesRead,
+                                    out.getCount(), MediaType.APPLICATION_JSON_TYPE,
+                                    MediaType.APPLICATION_JSON_TYPE, ResponseCode.Ok);
+                        }
+                    } finally {
+                        command.onComplete();
+                    }
+                }
+            } finally {
+                tracer.end(context.getRequestUUID(), failureBeforeFirstByte != null ? failureBeforeFirstByte.getResponseCode() : ResponseCode.Ok);
+                streamedBatches.incrementAndGet();
+                streamedBatchCalls.addAndGet(width);
+                totalSlowestBatchCallNanos.addAndGet(lastResponseNanos - startNanos);
+                if (firstByteNanos != 0) {
+                    streamedBatchesWritten.incrementAndGet();
+                    totalBatchTimeToFirstByteNanos.addAndGet(firstByteNanos - startNanos);
+                }
+            }
+        }
+    }
+
+    private void prepareOkResponse(HttpCommand command, DehydratedExecutionContext context) {
+        final HttpServletResponse response = command.getResponse();
+        final IdentityTokenResolver<HttpServletRequest,HttpServletResponse, X509Certificate[]> tokenResolver =
+                (IdentityTokenResolver<HttpServletRequest,HttpServletResponse, X509Certificate[]>) command.getIdentityTokenResolver();
+        ResponseCodeMapper.setResponseStatus(response, ResponseCode.Ok);
+        if (context != null && context.getIdentity() != null && tokenResolver != null) {
+            writeIdentity(context.getIdentityTokens(), new IdentityTokenIOAdapter() {
+                @Override
+                public void rewriteIdentityTokens(List<IdentityToken> identityTokens) {
+                    tokenResolver.rewrite(identityTokens, response);
+                }
+
+                @Override
+                public boolean isRewriteSupported() {
+                    return tokenResolver.isRewriteSupported();
+                }
+            });
+        }
+        response.setContentType(MediaType.APPLICATION_JSON);
+    }
+
     private JsonRpcResponse buildExecutionResultResponse(JsonRpcRequest rpc, ExecutionResult executionResult) {
         JsonRpcResponse response = null;
         if (executionResult.getResultType() == ExecutionResult.ResultType.Success) {
@@ -553,4 +766,36 @@ public class JsonRpcTransportCommandProcessor extends AbstractHttpCommandProcess
         }
         return jsonErrorCode;
     }
+
+    @ManagedAttribute
+    public String getBatchResponseStreaming() {
+        return batchResponseStreaming.name();
+    }
+
+    public void setBatchResponseStreaming(String batchResponseStreaming) {
+        this.batchResponseStreaming = BatchResponseStreaming.valueOf(batchResponseStreaming.trim().toUpperCase());
+    }
+
+    @ManagedAttribute
+    public long getStreamedBatches() {
+        return streamedBatches.get();
+    }
+
+    @ManagedAttribute
+    public double getAverageStreamedBatchWidth() {
+        long batches = streamedBatches.get();
+        return batches == 0 ? 0 : (double) streamedBatchCalls.get() / batches;
+    }
+
+    @ManagedAttribute
+    public double getAverageSlowestBatchCallMillis() {
+        long batches = streamedBatches.get();
+        return batches == 0 ? 0 : (double) totalSlowestBatchCallNanos.get() / batches / 1000000;
+    }
+
+    @ManagedAttribute
+    public double getAverageBatchTimeToFirstByteMillis() {
+        long batches = streamedBatchesWritten.get();
+        return batches == 0 ? 0 : (double) totalBatchTimeToFirstByteNanos.get() / batches / 1000000;
+    }
 }
@@ -36,8 +36,6 @@ import javax.ws.rs.core.MediaType;
 import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Enumeration;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * This class represents the binding between a rescript operation and an operation definition
@@ -93,16 +91,6 @@ public class RescriptOperationBinding {
             body = resolveBody(inputStream, mediaType, encoding);
         }
 
-        // jetty 9 handily gives back null when you specify a header with no value, whereas jetty 7 treated this as an empty string.. which we rely on
-        // so, we're going to list all the header names, and for each on if the value is null, add them to a set so we can query later..
-        Set<String> headersWithNullValues = new HashSet<>();
-        Enumeration<String> headerNames = request.getHeaderNames();
-        while (headerNames.hasMoreElements()) {
-            String header = headerNames.nextElement();
-            if (request.getHeader(header) == null) {
-                headersWithNullValues.add(header.toLowerCase());
-            }
-        }
         try {
             for (int i = 0; i < args.length; ++i) {
                 RescriptParamBindingDescriptor descriptor = paramBindings[i];
@@ -110,7 +98,11 @@ public class RescriptOperationBinding {
                 switch (descriptor.getSource()) {
                     case HEADER :
                         String key = descriptor.getName();
-                        args[i] = resolveArgument(headersWithNullValues.contains(key.toLowerCase()) ? "" : request.getHeader(key), param, descriptor, format);
+                        String value = request.getHeader(key);
+                        if (value == null && isHeaderPresent(request, key)) {
+                            value = "";
+                        }
+                        args[i] = resolveArgument(value, param, descriptor, format);
                         break;
                     case QUERY :
                         args[i] = resolveArgument(request.getParameter(descriptor.getName()), param, descriptor, format);
@@ -138,6 +130,18 @@ public class RescriptOperationBinding {
         return args;
     }
 
+    // jetty 9 handily gives back null when you specify a header with no value, whereas jetty 7 treated this as an empty string.. which we rely on
+    // so when we get a null back we check whether the header was actually sent, rather than listing every header on every request
+    private boolean isHeaderPresent(HttpServletRequest request, String name) {
+        Enumeration<String> headerNames = request.getHeaderNames();
+        while (headerNames.hasMoreElements()) {
+            if (name.equalsIgnoreCase(headerNames.nextElement())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public Object resolveArgument(String value, Parameter param, RescriptParamBindingDescriptor descriptor, String format) {
         if (value != null) {
             //We only support one generic type - no maps etc.
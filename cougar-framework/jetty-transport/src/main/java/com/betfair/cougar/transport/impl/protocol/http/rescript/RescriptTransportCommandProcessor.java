@@ -105,88 +105,101 @@ public class RescriptTransportCommandProcessor extends AbstractTerminateableHttp
 	@Override
 	protected CommandResolver<HttpCommand> createCommandResolver(final HttpCommand command, final Tracer tracer) {
         String uri = stripMinorVersionFromUri(command.getOperationPath());
-
-		final RescriptOperationBinding binding = bindings.get(uri);
-
-		return new SingleExecutionCommandResolver<HttpCommand>(tracer) {
-
-			private DehydratedExecutionContext context;
-			private ExecutionCommand executionCommand;
-
-			@Override
-			public DehydratedExecutionContext resolveExecutionContext() {
-
-				if (context == null) {
-                    context = RescriptTransportCommandProcessor.this.resolveExecutionContext(command, null);
-				}
-				return context;
-			}
-
-			@Override
-			public ExecutionCommand resolveExecutionCommand(Tracer tracer) {
-				if (binding!=null) {
-					if (executionCommand == null) {
-						executionCommand = RescriptTransportCommandProcessor.this.resolveExecutionCommand(
-								binding,
-								command,
-								resolveExecutionContext(),
-                                tracer);
-					}
-					return executionCommand;
-				}
-				throw new CougarValidationException(ServerFaultCode.NoSuchOperation,
-						"The request could not be resolved to an operation");
-			}
-		};
-
+		return new RescriptCommand(command, bindings.get(uri), tracer);
 	}
 
-	private ExecutionCommand resolveExecutionCommand(final RescriptOperationBinding binding, final HttpCommand command, final DehydratedExecutionContext context, final Tracer tracer) {
-		final MediaType requestMediaType = getContentTypeNormaliser().getNormalisedRequestMediaType(command.getRequest());
-		final String encoding = getContentTypeNormaliser().getNormalisedEncoding(command.getRequest());
-		ByteCountingInputStream iStream = null;
-		Object[] args = null;
-		try {
-			iStream = createByteCountingInputStream(command.getRequest().getInputStream());
-            EnumUtils.setHardFailureForThisThread(hardFailEnumDeserialisation);
-			args = binding.resolveArgs(command.getRequest(), iStream, requestMediaType, encoding);
-		} catch (IOException ioe) {
-			throw new CougarFrameworkException("Unable to resolve arguments for operation " + binding.getOperationKey(), ioe);
-		} finally {
-			try {
-                            if (iStream != null) {
-                                iStream.close();
-                            }
-			} catch (IOException ignored) {
-				ignored.printStackTrace();
-			}
-		}
-		final Object[] finalArgs = args;
-        final TimeConstraints realTimeConstraints = DefaultTimeConstraints.rebaseFromNewStartTime(context.getRequestTime(), readRawTimeConstraints(command.getRequest()));
-		final long bytesRead = iStream != null ? iStream.getCount() : 0;
-		return new ExecutionCommand() {
-            public Object[] getArgs() {
-                return finalArgs;
-            }
+    /**
+     * Resolves a single rescript request, and is also the command it resolves to, so that a request needs only the one
+     * object from us to get it into the execution venue.
+     */
+    private final class RescriptCommand extends SingleExecutionCommandResolver<HttpCommand> implements ExecutionCommand {
+
+        private final HttpCommand command;
+        private final RescriptOperationBinding binding;
+        private DehydratedExecutionContext context;
+        private boolean resolved;
+        private MediaType requestMediaType;
+        private Object[] args;
+        private TimeConstraints timeConstraints;
+        private long bytesRead;
+
+        private RescriptCommand(HttpCommand command, RescriptOperationBinding binding, Tracer tracer) {
+            super(tracer);
+            this.command = command;
+            this.binding = binding;
+        }
 
-            public OperationKey getOperationKey() {
-                return binding.getOperationKey();
+        @Override
+        public DehydratedExecutionContext resolveExecutionContext() {
+            if (context == null) {
+                context = RescriptTransportCommandProcessor.this.resolveExecutionContext(command, null);
             }
+            return context;
+        }
 
-            @Override
-            public TimeConstraints getTimeConstraints() {
-                return realTimeConstraints;
+        @Override
+        public ExecutionCommand resolveExecutionCommand(Tracer tracer) {
+            if (binding != null) {
+                if (!resolved) {
+                    resolveArgs(resolveExecutionContext());
+                    resolved = true;
+                }
+                return this;
             }
+            throw new CougarValidationException(ServerFaultCode.NoSuchOperation,
+                    "The request could not be resolved to an operation");
+        }
 
-            public void onResult(ExecutionResult executionResult) {
-                if (executionResult.getResultType() == ExecutionResult.ResultType.Success) {
-                    writeResponse(command, binding, executionResult.getResult(), context, requestMediaType, bytesRead);
-                } else if (executionResult.getResultType() == ExecutionResult.ResultType.Fault) {
-                    writeErrorResponse(command, executionResult.getFault(), context, requestMediaType, bytesRead, true);
+        private void resolveArgs(DehydratedExecutionContext context) {
+            requestMediaType = getContentTypeNormaliser().getNormalisedRequestMediaType(command.getRequest());
+            final String encoding = getContentTypeNormaliser().getNormalisedEncoding(command.getRequest());
+            ByteCountingInputStream iStream = null;
+            try {
+                // only a body is read from the stream, so there's nothing to count without one
+                if (binding.getBindingDescriptor().containsBodyData()) {
+                    iStream = createByteCountingInputStream(command.getRequest().getInputStream());
+                }
+                EnumUtils.setHardFailureForThisThread(hardFailEnumDeserialisation);
+                args = binding.resolveArgs(command.getRequest(), iStream, requestMediaType, encoding);
+            } catch (IOException ioe) {
+                throw new CougarFrameworkException("Unable to resolve arguments for operation " + binding.getOperationKey(), ioe);
+            } finally {
+                try {
+                    if (iStream != null) {
+                        iStream.close();
+                    }
+                } catch (IOException ignored) {
+                    ignored.printStackTrace();
                 }
             }
-        };
-	}
+            timeConstraints = DefaultTimeConstraints.rebaseFromNewStartTime(context.getRequestTime(), readRawTimeConstraints(command.getRequest()));
+            bytesRead = iStream != null ? iStream.getCount() : 0;
+        }
+
+        @Override
+        public Object[] getArgs() {
+            return args;
+        }
+
+        @Override
+        public OperationKey getOperationKey() {
+            return binding.getOperationKey();
+        }
+
+        @Override
+        public TimeConstraints getTimeConstraints() {
+            return timeConstraints;
+        }
+
+        @Override
+        public void onResult(ExecutionResult executionResult) {
+            if (executionResult.getResultType() == ExecutionResult.ResultType.Success) {
+                writeResponse(command, binding, executionResult.getResult(), context, requestMediaType, bytesRead);
+            } else if (executionResult.getResultType() == ExecutionResult.ResultType.Fault) {
+                writeErrorResponse(command, executionResult.getFault(), context, requestMediaType, bytesRead, true);
+            }
+        }
+    }
 
 	@Override
 	protected void writeErrorResponse(HttpCommand command, DehydratedExecutionContext context, CougarException error, boolean traceStarted) {
@@ -239,7 +252,7 @@ public class RescriptTransportCommandProcessor extends AbstractTerminateableHttp
         }
         finally {
             if (context != null && traceStarted) {
-                tracer.end(context.getRequestUUID());
+                tracer.end(context.getRequestUUID(), error.getResponseCode());
             }
         }
     }
@@ -247,6 +260,7 @@ public class RescriptTransportCommandProcessor extends AbstractTerminateableHttp
 
 	protected int writeResponse(HttpCommand command, RescriptOperationBinding binding,
 			Object result, DehydratedExecutionContext context, MediaType requestMediaType, long bytesRead) {
+        ResponseCode responseCode = ResponseCode.Ok;
         try {
             final HttpServletRequest request = command.getRequest();
             final HttpServletResponse response = command.getResponse();
@@ -254,6 +268,7 @@ public class RescriptTransportCommandProcessor extends AbstractTerminateableHttp
             if (command.getStatus() == TransportCommand.CommandStatus.InProgress) {
                 try {
                     if (result instanceof ResponseCode) {
+                        responseCode = (ResponseCode)result;
                         ResponseCodeMapper.setResponseStatus(response, ((ResponseCode)result));
                         logAccess(command,
                                 context, bytesRead,
@@ -308,7 +323,9 @@ public class RescriptTransportCommandProcessor extends AbstractTerminateableHttp
                         }
                     }
                 } catch (Exception e) {
-                    writeErrorResponse(command, context, handleResponseWritingIOException(e, result.getClass()), false); // it has been written, but we'll end in finally block below
+                    CougarException ce = handleResponseWritingIOException(e, result.getClass());
+                    responseCode = ce.getResponseCode();
+                    writeErrorResponse(command, context, ce, false); // it has been written, but we'll end in finally block below
                 } finally {
                     command.onComplete();
                 }
@@ -316,7 +333,7 @@ public class RescriptTransportCommandProcessor extends AbstractTerminateableHttp
             return 0;
         }
         finally {
-            tracer.end(context.getRequestUUID());
+            tracer.end(context.getRequestUUID(), responseCode);
         }
     }
 }
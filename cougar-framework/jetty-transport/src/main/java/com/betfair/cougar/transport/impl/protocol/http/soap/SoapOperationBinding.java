@@ -21,8 +21,10 @@ import com.betfair.cougar.core.api.ev.OperationKey;
 import com.betfair.cougar.transport.api.protocol.http.soap.SoapOperationBindingDescriptor;
 import com.betfair.cougar.transport.api.protocol.http.soap.SoapServiceBindingDescriptor;
 
-import javax.xml.transform.Source;
 import javax.xml.validation.Schema;
+import javax.xml.validation.Validator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class SoapOperationBinding {
 
@@ -31,6 +33,8 @@ public class SoapOperationBinding {
 	private final SoapOperationBindingDescriptor bindingDescriptor;
 	private final SoapServiceBindingDescriptor serviceBindingDescriptor;
     private final Schema schema;
+    // validators aren't thread safe, but are expensive to create, so are pooled and reused after a reset
+    private final Queue<Validator> validators = new ConcurrentLinkedQueue<Validator>();
 
 	public SoapOperationBinding(OperationDefinition operationDefinition,
 			SoapOperationBindingDescriptor bindingDescriptor,
@@ -62,4 +66,18 @@ public class SoapOperationBinding {
     public Schema getSchema() {
         return schema;
     }
+
+    /**
+     * Takes a validator for this binding's schema from the pool, creating one if none are free. It must be
+     * handed back via {@link #returnValidator(Validator)} once used.
+     */
+    public Validator borrowValidator() {
+        Validator validator = validators.poll();
+        return validator != null ? validator : schema.newValidator();
+    }
+
+    public void returnValidator(Validator validator) {
+        validator.reset();
+        validators.offer(validator);
+    }
 }
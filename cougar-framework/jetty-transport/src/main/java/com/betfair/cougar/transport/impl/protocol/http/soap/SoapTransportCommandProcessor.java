@@ -49,7 +49,7 @@ import com.betfair.cougar.util.stream.ByteCountingInputStream;
 import com.betfair.cougar.util.stream.ByteCountingOutputStream;
 import org.apache.axiom.om.OMAbstractFactory;
 import org.apache.axiom.om.OMElement;
-import org.apache.axiom.om.OMNamespace;
+import org.apache.axiom.om.OMFactory;
 import org.apache.axiom.om.OMNode;
 import org.apache.axiom.om.impl.traverse.OMChildrenNamespaceIterator;
 import org.apache.axiom.soap.*;
@@ -65,8 +65,10 @@ import javax.ws.rs.core.MediaType;
 import javax.xml.XMLConstants;
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.stax.StAXSource;
 import javax.xml.transform.stream.StreamSource;
@@ -89,6 +91,9 @@ public class SoapTransportCommandProcessor extends AbstractTerminateableHttpComm
     private static final String SECURITY_PREFIX = "sec";
     private static final String SECURITY_NAMESPACE = "http://www.betfair.com/security/";
     private static final String SECURITY_CREDENTIALS = "Credentials";
+    private static final String SOAP_PREFIX = "soapenv";
+    private static final String SOAP_NAMESPACE = "http://schemas.xmlsoap.org/soap/envelope/";
+    private static final String RESPONSE_ENCODING = "utf-8";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SoapTransportCommandProcessor.class);
 
@@ -97,10 +102,16 @@ public class SoapTransportCommandProcessor extends AbstractTerminateableHttpComm
     private boolean schemaValidationEnabled;
     private SchemaValidationFailureParser schemaValidationFailureParser;
 
+    // factories are expensive to locate but threadsafe once configured
+    private final XMLInputFactory inputFactory;
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
     public SoapTransportCommandProcessor(DehydratedExecutionContextResolution contextResolution, String requestTimeoutHeader, SchemaValidationFailureParser schemaValidationFailureParser) {
         super(Protocol.SOAP, contextResolution, requestTimeoutHeader);
         setName("SoapTransportCommandProcessor");
         this.schemaValidationFailureParser = schemaValidationFailureParser;
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
     }
 
     @ManagedAttribute
@@ -150,9 +161,7 @@ public class SoapTransportCommandProcessor extends AbstractTerminateableHttpComm
         ByteCountingInputStream in = null;
         try {
             in = createByteCountingInputStream(command.getRequest().getInputStream());
-            XMLInputFactory factory = XMLInputFactory.newInstance();
-            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
-            XMLStreamReader parser = factory.createXMLStreamReader(in);
+            XMLStreamReader parser = inputFactory.createXMLStreamReader(in);
             StAXSOAPModelBuilder builder = new StAXSOAPModelBuilder(parser);
             final SOAPHeader header = builder.getSOAPEnvelope().getHeader();
             final OMElement credentialElement = getCredentialElement(header);
@@ -165,9 +174,14 @@ public class SoapTransportCommandProcessor extends AbstractTerminateableHttpComm
             if (binding != null) {
 
                 if (schemaValidationEnabled) {
-                    Schema schema = binding.getSchema();
-                    Validator validator = schema.newValidator();
-                    validator.validate(new StAXSource(requestNode.getXMLStreamReader(true)));
+                    // the body is built as the validator pulls through it, so it's only parsed once
+                    Validator validator = binding.borrowValidator();
+                    try {
+                        validator.validate(new StAXSource(requestNode.getXMLStreamReader(true)));
+                    }
+                    finally {
+                        binding.returnValidator(validator);
+                    }
                 }
 
                 final ByteCountingInputStream finalIn = in;
@@ -339,15 +353,23 @@ public class SoapTransportCommandProcessor extends AbstractTerminateableHttpComm
         boolean logAccess = true;
         try {
             command.getResponse().setContentType(mediaType.toString());
+            // the envelope is only copied to the response once it's complete, so that if transcription fails
+            // part way through we can still send a clean fault rather than appending one to a half written envelope
+            ByteArrayOutputStream envelope = new ByteArrayOutputStream();
+            XMLStreamWriter writer = outputFactory.createXMLStreamWriter(envelope, RESPONSE_ENCODING);
+            writer.writeStartDocument(RESPONSE_ENCODING, "1.0");
+            writer.writeStartElement(SOAP_PREFIX, "Envelope", SOAP_NAMESPACE);
+            writer.writeNamespace(SOAP_PREFIX, SOAP_NAMESPACE);
+            writeHeaders(writer, command, context);
+            writer.writeStartElement(SOAP_PREFIX, "Body", SOAP_NAMESPACE);
+            writeError(writer, binding, error);
+            writeBody(writer, binding, result);
+            writer.writeEndElement();
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.close();
             out = new ByteCountingOutputStream(command.getResponse().getOutputStream());
-            SOAPFactory factory = OMAbstractFactory.getSOAP11Factory();
-            SOAPEnvelope envelope = factory.createSOAPEnvelope();
-            SOAPHeader header = factory.createSOAPHeader(envelope);
-            writeHeaders(factory, header, command, context);
-            SOAPBody body = factory.createSOAPBody(envelope);
-            writeError(factory, binding, body, error);
-            writeBody(factory, binding, body, result);
-            envelope.serialize(out);
+            envelope.writeTo(out);
             bytesWritten = out.getCount();
         } catch (Exception e) {
             CougarException ce = handleResponseWritingIOException(e, result.getClass());
@@ -372,22 +394,24 @@ public class SoapTransportCommandProcessor extends AbstractTerminateableHttpComm
                         mediaType,
                         error != null ? error.getResponseCode() : ResponseCode.Ok);
                 if (context != null) {
-                    tracer.end(context.getRequestUUID());
+                    tracer.end(context.getRequestUUID(), error != null ? error.getResponseCode() : ResponseCode.Ok);
                 }
             }
         }
     }
 
-    private void writeHeaders(final SOAPFactory factory, final SOAPHeader header, HttpCommand command, DehydratedExecutionContext context)
+    private void writeHeaders(XMLStreamWriter writer, HttpCommand command, DehydratedExecutionContext context)
             throws Exception {
         final SoapIdentityTokenResolver identityTokenResolver = (SoapIdentityTokenResolver) command.getIdentityTokenResolver();
         if (context != null && context.getIdentity() != null && identityTokenResolver != null) {
-
+            // token resolvers work in terms of axiom elements, so just the credentials block is built as a tree
+            final OMElement[] credentials = new OMElement[1];
             writeIdentity(context.getIdentityTokens(), new IdentityTokenIOAdapter() {
                 @Override
                 public void rewriteIdentityTokens(List<IdentityToken> identityTokens) {
-                    OMElement element = header.addHeaderBlock(SECURITY_CREDENTIALS, factory.createOMNamespace(SECURITY_NAMESPACE, SECURITY_PREFIX));
-                    identityTokenResolver.rewrite(identityTokens, element);
+                    OMFactory factory = OMAbstractFactory.getOMFactory();
+                    credentials[0] = factory.createOMElement(SECURITY_CREDENTIALS, factory.createOMNamespace(SECURITY_NAMESPACE, SECURITY_PREFIX));
+                    identityTokenResolver.rewrite(identityTokens, credentials[0]);
                 }
 
                 @Override
@@ -395,6 +419,12 @@ public class SoapTransportCommandProcessor extends AbstractTerminateableHttpComm
                     return identityTokenResolver.isRewriteSupported();
                 }
             });
+            // an empty header is omitted, as it was when serialised by axiom
+            if (credentials[0] != null) {
+                writer.writeStartElement(SOAP_PREFIX, "Header", SOAP_NAMESPACE);
+                credentials[0].serialize(writer);
+                writer.writeEndElement();
+            }
         }
     }
 
@@ -418,73 +448,78 @@ public class SoapTransportCommandProcessor extends AbstractTerminateableHttpComm
 
     }
 
-    private void writeBody(SOAPFactory factory, SoapOperationBinding binding, SOAPBody body, Object result)
+    private void writeBody(XMLStreamWriter writer, SoapOperationBinding binding, Object result)
             throws Exception {
         if (result != null) {
-            OMNamespace ns = factory.createOMNamespace(binding
-                    .getServiceBindingDescriptor().getNamespaceURI(), XMLConstants.DEFAULT_NS_PREFIX);
-            OMElement resultNode = factory.createOMElement(binding
-                    .getBindingDescriptor().getResponseName(), ns);
-            TranscriptionOutput out = new XMLTranscriptionOutput(resultNode, ns, factory);
+            String namespaceURI = binding.getServiceBindingDescriptor().getNamespaceURI();
+            writer.writeStartElement(XMLConstants.DEFAULT_NS_PREFIX, binding.getBindingDescriptor().getResponseName(), namespaceURI);
+            writer.writeDefaultNamespace(namespaceURI);
+            TranscriptionOutput out = new XMLTranscriptionOutput(writer, namespaceURI, XMLConstants.DEFAULT_NS_PREFIX);
             out.writeObject(result, new Parameter("response", binding.getOperationDefinition()
                     .getReturnType(), true), false);
-            body.addChild(resultNode);
+            writer.writeEndElement();
         }
     }
 
-    private void writeError(SOAPFactory factory, SoapOperationBinding binding, SOAPBody body, CougarException error) throws Exception {
+    private void writeError(XMLStreamWriter writer, SoapOperationBinding binding, CougarException error) throws Exception {
         if (error != null) {
-            SOAPFault soapFault = factory.createSOAPFault(body);
+            writer.writeStartElement(SOAP_PREFIX, "Fault", SOAP_NAMESPACE);
             if (error.getFault() != null) {
-                createFaultCode(factory, soapFault, error.getFault());
-                createFaultString(factory, soapFault, error.getFault());
-                createFaultDetail(factory, soapFault, error.getFault(), binding);
+                writeFaultCode(writer, error.getFault());
+                writeFaultString(writer, error.getFault());
+                writeFaultDetail(writer, error.getFault(), binding);
             }
+            writer.writeEndElement();
         }
     }
 
-    private void createFaultCode(SOAPFactory factory, SOAPFault soapFault, CougarFault fault) {
-        SOAPFaultCode code = factory.createSOAPFaultCode(soapFault);
-        code.setText(factory.getNamespace().getPrefix() + ":" + fault.getFaultCode().name());
+    private void writeFaultCode(XMLStreamWriter writer, CougarFault fault) throws XMLStreamException {
+        writeTextElement(writer, "faultcode", SOAP_PREFIX + ":" + fault.getFaultCode().name());
     }
 
-    private void createFaultString(SOAPFactory factory, SOAPFault soapFault, CougarFault fault) {
-        SOAPFaultReason reason = factory.createSOAPFaultReason(soapFault);
-        reason.setText(fault.getErrorCode());
+    private void writeFaultString(XMLStreamWriter writer, CougarFault fault) throws XMLStreamException {
+        writeTextElement(writer, "faultstring", fault.getErrorCode());
     }
 
-    private void createFaultDetail(SOAPFactory factory, SOAPFault soapFault, CougarFault fault, SoapOperationBinding binding) throws Exception {
-        SOAPFaultDetail soapFaultDetail = factory.createSOAPFaultDetail(soapFault);
+    private void writeFaultDetail(XMLStreamWriter writer, CougarFault fault, SoapOperationBinding binding) throws XMLStreamException {
+        writer.writeStartElement("detail");
         FaultDetail detail = fault.getDetail();
         if (detail != null) {
             List<String[]> faultMessages = detail.getFaultMessages();
 
             if (faultMessages != null && faultMessages.size() > 0) {
-                OMNamespace ns = factory.createOMNamespace(binding
-                        .getServiceBindingDescriptor().getNamespaceURI(), binding
-                        .getServiceBindingDescriptor().getNamespacePrefix());
-
+                String namespaceURI = binding.getServiceBindingDescriptor().getNamespaceURI();
+                String prefix = binding.getServiceBindingDescriptor().getNamespacePrefix();
 
-                OMElement faultNode = factory.createOMElement(detail.getFaultName(), ns);
+                writer.writeStartElement(prefix, detail.getFaultName(), namespaceURI);
+                writer.writeNamespace(prefix, namespaceURI);
                 for (String[] msg : faultMessages) {
-                    OMElement messageNode = factory.createOMElement(msg[0], ns);
-                    messageNode.setText(msg[1]);
-                    faultNode.addChild(messageNode);
+                    writer.writeStartElement(prefix, msg[0], namespaceURI);
+                    writeText(writer, msg[1]);
+                    writer.writeEndElement();
                 }
-                soapFaultDetail.addChild(faultNode);
+                writer.writeEndElement();
             }
 
             if (FaultController.getInstance().isDetailedFaults()) {
-                OMElement stackTrace = factory.createOMElement(new QName("trace"));
-                stackTrace.setText(detail.getStackTrace());
-                soapFaultDetail.addChild(stackTrace);
-
-                OMElement detailedMessage = factory.createOMElement(new QName("message"));
-                detailedMessage.setText(detail.getDetailMessage());
-                soapFaultDetail.addChild(detailedMessage);
+                writeTextElement(writer, "trace", detail.getStackTrace());
+                writeTextElement(writer, "message", detail.getDetailMessage());
             }
 
         }
+        writer.writeEndElement();
+    }
+
+    private void writeTextElement(XMLStreamWriter writer, String localName, String text) throws XMLStreamException {
+        writer.writeStartElement(localName);
+        writeText(writer, text);
+        writer.writeEndElement();
+    }
+
+    private void writeText(XMLStreamWriter writer, String text) throws XMLStreamException {
+        if (text != null) {
+            writer.writeCharacters(text);
+        }
     }
 
     /**
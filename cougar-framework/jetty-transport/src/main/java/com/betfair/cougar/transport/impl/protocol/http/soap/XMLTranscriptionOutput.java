@@ -23,51 +23,48 @@ import com.betfair.cougar.core.api.transcription.Transcribable;
 import com.betfair.cougar.core.api.transcription.TranscribableParams;
 import com.betfair.cougar.core.api.transcription.TranscriptionOutput;
 import com.betfair.cougar.util.dates.DateTimeUtility;
-import org.apache.axiom.om.OMElement;
-import org.apache.axiom.om.OMFactory;
-import org.apache.axiom.om.OMNamespace;
 import org.apache.axiom.util.base64.Base64Utils;
 
 import javax.xml.XMLConstants;
-import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 /**
- * Transcribes Transcribable java objects to XML.
+ * Transcribes Transcribable java objects to XML, writing straight to a stream rather than building an object model.
  *
  */
 @SuppressWarnings("unchecked")
 public class XMLTranscriptionOutput implements TranscriptionOutput {
 
-	private QName entryElementName;
-	private OMNamespace ns;
-	private OMFactory factory;
-	private OMElement currentNode;
-	private OMNamespace xsiNamespace;
+	private static final String XSI_PREFIX = "xsi";
+
+	private XMLStreamWriter writer;
+	private String namespaceURI;
+	private String prefix;
 
 	/**
-	 * Create an XMLTranscriptionOutput which will write transcibable objects to the specified
-	 * element with the specified namespace.
-	 * @param currentNode the XML element to transcribe the object to
-	 * @param ns the namespace that should be used
-	 * @param factory
+	 * Create an XMLTranscriptionOutput which will write transcibable objects as children of the
+	 * writer's current element, in the specified namespace.
+	 * @param writer the writer to transcribe the object to, which must already have bound the prefix
+	 * @param namespaceURI the namespace that should be used
+	 * @param prefix the prefix bound to the namespace
 	 */
-	public XMLTranscriptionOutput(OMElement currentNode, OMNamespace ns, OMFactory factory) {
-		this.ns = ns;
-		this.factory = factory;
-		this.currentNode = currentNode;
-		entryElementName = new QName(ns.getNamespaceURI(), "entry", ns.getPrefix());
-		xsiNamespace = factory.createOMNamespace(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "xsi");
+	public XMLTranscriptionOutput(XMLStreamWriter writer, String namespaceURI, String prefix) {
+		this.writer = writer;
+		this.namespaceURI = namespaceURI;
+		this.prefix = prefix;
 	}
 
 	@Override
 	public void writeObject(Object obj, Parameter param, boolean client) throws Exception {
 		if (obj != null || parameterIsNillable(param)) {
-			OMElement paramNode = factory.createOMElement(param.getName(), ns, currentNode);
-			writeObject(obj, param.getParameterType(), paramNode, client);
+			writeStartElement(param.getName());
+			writeObject(obj, param.getParameterType(), client);
+			writer.writeEndElement();
 		}
 	}
 
@@ -78,61 +75,68 @@ public class XMLTranscriptionOutput implements TranscriptionOutput {
 			|| param.getParameterType().getType() == ParameterType.Type.MAP;
 	}
 
-	private void writeObject(Object obj, ParameterType paramType, OMElement node, boolean client) throws Exception {
+	private void writeObject(Object obj, ParameterType paramType, boolean client) throws Exception {
 		if (obj == null) {
-			node.addAttribute("nil", "true", xsiNamespace);
+			writer.writeNamespace(XSI_PREFIX, XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI);
+			writer.writeAttribute(XSI_PREFIX, XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "nil", "true");
 		} else {
 			switch(paramType.getType()) {
 			case OBJECT:
-				//decend
-				OMElement _copy = currentNode;
-				currentNode = node;
-				//transcribe
+				//transcribe, children are written within the element we're in
                 if (paramType.getImplementationClass().equals(EnumWrapper.class)) {
-                    factory.createOMText(node, writeSimpleObjectString(obj, paramType.getComponentTypes()[0]));
+                    writer.writeCharacters(writeSimpleObjectString(obj, paramType.getComponentTypes()[0]));
                 }
                 else {
                     Transcribable t = (Transcribable)obj;
                     t.transcribe(this, TranscribableParams.getNone(), client);
-                    //ascend
-                    currentNode = _copy;
                 }
 				break;
 			case MAP:
 				Map map = (Map)obj;
                 for(Object obje:map.entrySet()){
                     Map.Entry e=(Map.Entry)obje;
-                    OMElement entryElement = factory.createOMElement("entry", ns, node);
-                    entryElement.addAttribute("key", writeSimpleObjectString(e.getKey(), paramType.getComponentTypes()[0]), null);
+                    writeStartElement("entry");
+                    writer.writeAttribute("key", writeSimpleObjectString(e.getKey(), paramType.getComponentTypes()[0]));
                     if (e.getValue() != null) {
-                        writeObject(e.getValue(), paramType.getComponentTypes()[1], factory.createOMElement(paramType.getComponentTypes()[1].getImplementationClass().getSimpleName(), ns, entryElement), client);
+                        writeStartElement(paramType.getComponentTypes()[1].getImplementationClass().getSimpleName());
+                        writeObject(e.getValue(), paramType.getComponentTypes()[1], client);
+                        writer.writeEndElement();
                     }
+                    writer.writeEndElement();
                 }
 				break;
 			case LIST:
 				if (paramType.getComponentTypes()[0].getType() == ParameterType.Type.BYTE) {
-					factory.createOMText(node, Base64Utils.encode((byte[])obj));
+					writer.writeCharacters(Base64Utils.encode((byte[])obj));
 				} else {
 					List list = (List)obj;
 					for (Object element : list) {
-						//create element node
-						writeObject(element, paramType.getComponentTypes()[0], factory.createOMElement(paramType.getComponentTypes()[0].getImplementationClass().getSimpleName(), ns, node), client);
+						writeCollectionElement(element, paramType.getComponentTypes()[0], client);
 					}
 				}
 				break;
 			case SET:
 				Set set = (Set)obj;
 				for (Object element : set) {
-					//create element node
-					writeObject(element, paramType.getComponentTypes()[0], factory.createOMElement(paramType.getComponentTypes()[0].getImplementationClass().getSimpleName(), ns, node), client);
+					writeCollectionElement(element, paramType.getComponentTypes()[0], client);
 				}
 				break;
 			default :
-				factory.createOMText(node, writeSimpleObjectString(obj, paramType));
+				writer.writeCharacters(writeSimpleObjectString(obj, paramType));
 			}
 		}
 	}
 
+	private void writeCollectionElement(Object element, ParameterType componentType, boolean client) throws Exception {
+		writeStartElement(componentType.getImplementationClass().getSimpleName());
+		writeObject(element, componentType, client);
+		writer.writeEndElement();
+	}
+
+	private void writeStartElement(String localName) throws XMLStreamException {
+		writer.writeStartElement(prefix, localName, namespaceURI);
+	}
+
 	private String writeSimpleObjectString(Object obj, ParameterType paramType) {
 		switch(paramType.getType()) {
 		case BOOLEAN:
@@ -179,7 +179,7 @@ public abstract class AbstractHttpCommandProcessorTest<CredentialContainer> {
                 @Override
                 public void describeTo(Description description) {
                 }
-            }));
+            }), any(ResponseCode.class));
         }
     }
 
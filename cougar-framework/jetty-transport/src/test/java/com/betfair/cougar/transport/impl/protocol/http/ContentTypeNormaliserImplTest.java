@@ -231,4 +231,85 @@ public class ContentTypeNormaliserImplTest {
 			assertEquals(ResponseCode.InternalError, cve.getResponseCode());
 		}
 	}
+
+	@Test
+	public void testResponseMediaTypeCached() {
+		when(request.getHeader(MessageConstants.ACCEPT_HEADER)).thenReturn("application/json");
+		MediaType first = ctn.getNormalisedResponseMediaType(request);
+		MediaType second = ctn.getNormalisedResponseMediaType(request);
+		assertSame(first, second);
+		assertEquals(MediaType.APPLICATION_JSON_TYPE, second);
+		assertEquals(1, ctn.getResponseMediaTypeCacheMisses());
+		assertEquals(1, ctn.getResponseMediaTypeCacheHits());
+		assertEquals(1, ctn.getResponseMediaTypeCacheSize());
+	}
+
+	@Test
+	public void testFailedNegotiationNotCached() {
+		when(request.getHeader(MessageConstants.ACCEPT_HEADER)).thenReturn("application/text");
+		for (int i=0; i<2; i++) {
+			try {
+				ctn.getNormalisedResponseMediaType(request);
+				fail("CougarValidationException should have been thrown");
+			} catch (CougarValidationException cve) {
+				assertEquals(ServerFaultCode.AcceptTypeNotValid, cve.getServerFaultCode());
+			}
+		}
+		assertEquals(0, ctn.getResponseMediaTypeCacheSize());
+		assertEquals(0, ctn.getResponseMediaTypeCacheHits());
+	}
+
+	@Test
+	public void testRequestMediaTypeAndEncodingCached() {
+		when(request.getContentType()).thenReturn("application/json; charset=utf-8");
+		when(request.getMethod()).thenReturn("POST");
+		for (int i=0; i<3; i++) {
+			assertEquals(MediaType.APPLICATION_JSON_TYPE, ctn.getNormalisedRequestMediaType(request));
+			assertEquals("utf-8", ctn.getNormalisedEncoding(request));
+		}
+		assertEquals(2, ctn.getRequestMediaTypeCacheHits());
+		assertEquals(1, ctn.getRequestMediaTypeCacheMisses());
+		assertEquals(2, ctn.getEncodingCacheHits());
+		assertEquals(1, ctn.getEncodingCacheMisses());
+	}
+
+	@Test
+	public void testCacheBounded() {
+		ctn.setMaxCacheSize(2);
+		for (String accept : new String[] { "application/xml", "application/json", "application/*" }) {
+			when(request.getHeader(MessageConstants.ACCEPT_HEADER)).thenReturn(accept);
+			ctn.getNormalisedResponseMediaType(request);
+		}
+		assertTrue(ctn.getResponseMediaTypeCacheSize() <= 2);
+
+		// still negotiated correctly once full
+		when(request.getHeader(MessageConstants.ACCEPT_HEADER)).thenReturn("application/*");
+		assertEquals(MediaType.APPLICATION_XML_TYPE, ctn.getNormalisedResponseMediaType(request));
+	}
+
+	@Test
+	public void testNewKeyCachedOnceFull() {
+		ctn.setMaxCacheSize(2);
+		for (String accept : new String[] { "application/xml", "application/json", "application/*" }) {
+			when(request.getHeader(MessageConstants.ACCEPT_HEADER)).thenReturn(accept);
+			ctn.getNormalisedResponseMediaType(request);
+		}
+		long hits = ctn.getResponseMediaTypeCacheHits();
+
+		when(request.getHeader(MessageConstants.ACCEPT_HEADER)).thenReturn("application/*");
+		assertEquals(MediaType.APPLICATION_XML_TYPE, ctn.getNormalisedResponseMediaType(request));
+		assertEquals(hits + 1, ctn.getResponseMediaTypeCacheHits());
+	}
+
+	@Test
+	public void testCacheClearedOnNewContentTypes() {
+		when(request.getHeader(MessageConstants.ACCEPT_HEADER)).thenReturn("application/json");
+		ctn.getNormalisedResponseMediaType(request);
+		assertEquals(1, ctn.getResponseMediaTypeCacheSize());
+
+		Set<String> validContentTypes = new HashSet<String>();
+		validContentTypes.add("application/octet-stream");
+		ctn.addValidContentTypes(validContentTypes, MediaType.APPLICATION_OCTET_STREAM_TYPE);
+		assertEquals(0, ctn.getResponseMediaTypeCacheSize());
+	}
 }
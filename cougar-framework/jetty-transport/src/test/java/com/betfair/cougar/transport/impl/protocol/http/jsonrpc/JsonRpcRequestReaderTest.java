@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.transport.impl.protocol.http.jsonrpc;
+
+import com.betfair.cougar.core.api.ServiceVersion;
+import com.betfair.cougar.core.api.ev.OperationKey;
+import com.betfair.cougar.core.api.ev.SimpleOperationDefinition;
+import com.betfair.cougar.core.api.transcription.Parameter;
+import com.betfair.cougar.core.api.transcription.ParameterType;
+import com.betfair.cougar.marshalling.impl.databinding.json.JSONBindingFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for @See JsonRpcRequestReader
+ */
+public class JsonRpcRequestReaderTest {
+
+    private static final OperationKey OP_KEY = new OperationKey(new ServiceVersion("v1.0"), "TestingService", "characterCount");
+
+    private JsonRpcRequestReader reader;
+
+    @Before
+    public void init() {
+        ObjectMapper mapper = new JSONBindingFactory().createBaseObjectMapper();
+        final JsonRpcOperationBinding binding = new JsonRpcOperationBinding(new SimpleOperationDefinition(OP_KEY,
+                new Parameter[] { new Parameter("message", ParameterType.create(String.class, null), true),
+                        new Parameter("count", ParameterType.create(Integer.class, null), true) },
+                ParameterType.create(Integer.class, null)));
+        reader = new JsonRpcRequestReader(mapper, new JsonRpcRequestReader.BindingResolver() {
+            @Override
+            public JsonRpcOperationBinding resolve(String method) {
+                return method.toLowerCase().startsWith("testingservice/v1") && method.toLowerCase().endsWith("/charactercount") ? binding : null;
+            }
+        });
+    }
+
+    private JsonRpcRequestReader.ReadResult read(String body) throws IOException {
+        return reader.read(new ByteArrayInputStream(body.getBytes("UTF-8")));
+    }
+
+    @Test
+    public void singlePositionalParams() throws Exception {
+        JsonRpcRequestReader.ReadResult result = read("{ \"jsonrpc\": \"2.0\", \"method\": \"TestingService/v1.0/characterCount\", \"params\": [\"Hello\", 333], \"id\": 1}");
+        assertFalse(result.isBatch());
+        assertEquals(1, result.getRequests().size());
+        JsonRpcRequestReader.BoundRequest bound = result.getRequests().get(0);
+        assertEquals(1, bound.getRequest().getId());
+        assertEquals("2.0", bound.getRequest().getJsonrpc());
+        assertNotNull(bound.getBinding());
+        assertArrayEquals(new Object[] { "Hello", 333 }, bound.getArgs());
+    }
+
+    @Test
+    public void namedParams() throws Exception {
+        JsonRpcRequestReader.ReadResult result = read("{ \"method\": \"TestingService/v1.0/characterCount\", \"params\": {\"count\": 4, \"message\": \"Hi\"}, \"id\": \"a\"}");
+        assertArrayEquals(new Object[] { "Hi", 4 }, result.getRequests().get(0).getArgs());
+    }
+
+    @Test
+    public void paramsBeforeMethod() throws Exception {
+        JsonRpcRequestReader.ReadResult result = read("{ \"params\": [\"Hello\", 5], \"id\": 1, \"method\": \"TestingService/v1.0/characterCount\"}");
+        assertArrayEquals(new Object[] { "Hello", 5 }, result.getRequests().get(0).getArgs());
+    }
+
+    @Test
+    public void unboundMethod() throws Exception {
+        JsonRpcRequestReader.ReadResult result = read("[{ \"method\": \"TestingService/v1.0/unknown\", \"params\": [{\"deep\": [1, 2, {}]}], \"id\": 1}]");
+        assertTrue(result.isBatch());
+        assertNull(result.getRequests().get(0).getBinding());
+        assertEquals("TestingService/v1.0/unknown", result.getRequests().get(0).getRequest().getMethod());
+    }
+
+    @Test
+    public void badParamsDontAffectRestOfBatch() throws Exception {
+        JsonRpcRequestReader.ReadResult result = read("[" +
+                "{ \"method\": \"TestingService/v1.0/characterCount\", \"params\": [\"Hello\", {\"not\": [\"an\", \"int\"]}, \"extra\"], \"id\": 1}," +
+                "{ \"method\": \"TestingService/v1.0/characterCount\", \"params\": [\"World\", 7], \"id\": 2}]");
+        List<JsonRpcRequestReader.BoundRequest> requests = result.getRequests();
+        assertEquals(2, requests.size());
+        try {
+            requests.get(0).getArgs();
+            fail("Expected binding failure");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(2, requests.get(1).getRequest().getId());
+        assertArrayEquals(new Object[] { "World", 7 }, requests.get(1).getArgs());
+    }
+
+    @Test
+    public void badScalarParamDoesntAffectRestOfBatch() throws Exception {
+        JsonRpcRequestReader.ReadResult result = read("[" +
+                "{ \"method\": \"TestingService/v1.0/characterCount\", \"params\": [\"Hello\", \"notAnInt\", [1, 2]], \"id\": 1}," +
+                "{ \"method\": \"TestingService/v1.0/characterCount\", \"params\": [\"World\", 7], \"id\": 2}]");
+        List<JsonRpcRequestReader.BoundRequest> requests = result.getRequests();
+        assertEquals(2, requests.size());
+        try {
+            requests.get(0).getArgs();
+            fail("Expected binding failure");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(2, requests.get(1).getRequest().getId());
+        assertArrayEquals(new Object[] { "World", 7 }, requests.get(1).getArgs());
+    }
+
+    @Test
+    public void badNamedParamsDontAffectRestOfRequest() throws Exception {
+        JsonRpcRequestReader.ReadResult result = read("[" +
+                "{ \"method\": \"TestingService/v1.0/characterCount\", \"params\": {\"count\": {\"not\": \"an int\"}, \"message\": \"Hi\"}, \"id\": 1, \"jsonrpc\": \"2.0\"}," +
+                "{ \"method\": \"TestingService/v1.0/characterCount\", \"params\": {\"message\": \"World\", \"count\": 7}, \"id\": 2}]");
+        List<JsonRpcRequestReader.BoundRequest> requests = result.getRequests();
+        assertEquals(2, requests.size());
+        try {
+            requests.get(0).getArgs();
+            fail("Expected binding failure");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(1, requests.get(0).getRequest().getId());
+        assertEquals("2.0", requests.get(0).getRequest().getJsonrpc());
+        assertArrayEquals(new Object[] { "World", 7 }, requests.get(1).getArgs());
+    }
+
+    @Test
+    public void missingParams() throws Exception {
+        JsonRpcRequestReader.ReadResult result = read("{ \"method\": \"TestingService/v1.0/characterCount\", \"id\": 1}");
+        try {
+            result.getRequests().get(0).getArgs();
+            fail("Expected binding failure");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void emptyBatch() throws Exception {
+        JsonRpcRequestReader.ReadResult result = read("[]");
+        assertTrue(result.isBatch());
+        assertTrue(result.getRequests().isEmpty());
+    }
+
+    @Test(expected = JsonProcessingException.class)
+    public void malformed() throws Exception {
+        read("[{ \"this is never gonna parse\"}]");
+    }
+
+    @Test(expected = JsonProcessingException.class)
+    public void noMethod() throws Exception {
+        read("{ \"params\": [], \"id\": 1}");
+    }
+}
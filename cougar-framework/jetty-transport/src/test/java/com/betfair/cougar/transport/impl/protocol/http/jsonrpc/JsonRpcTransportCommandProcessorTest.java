@@ -140,7 +140,7 @@ public class JsonRpcTransportCommandProcessorTest  {
 
         InOrder inOrder = inOrder(tracer);
         inOrder.verify(tracer, allowMoreStarts ? atLeast(calls.length+1) : times(calls.length+1)).start(startCaptor.capture(), opKeyCaptor.capture());
-        inOrder.verify(tracer, times(calls.length+1)).end(endCaptor.capture());
+        inOrder.verify(tracer, times(calls.length+1)).end(endCaptor.capture(), any(ResponseCode.class));
         List<RequestUUID> starts = new ArrayList<>(startCaptor.getAllValues());
         List<RequestUUID> ends = new ArrayList<>(endCaptor.getAllValues());
         if (allowMoreStarts) {
@@ -483,6 +483,110 @@ public class JsonRpcTransportCommandProcessorTest  {
         verifyTracerCalls();
     }
 
+    @Test
+    public void testStreamedBatchInRequestOrder() throws IOException {
+        bindOperations();
+        commandProcessor.setBatchResponseStreaming("REQUEST_ORDER");
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getScheme()).thenReturn("http");
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        IdentityTokenResolver tokenResolver = mock(IdentityTokenResolver.class);
+        HttpCommand mockedCommand = mock(HttpCommand.class);
+        RequestTimer mockTimer = mock(RequestTimer.class);
+
+        when(mockedCommand.getRequest()).thenReturn(request);
+        when(mockedCommand.getResponse()).thenReturn(response);
+        when(mockedCommand.getIdentityTokenResolver()).thenReturn(tokenResolver);
+        when(mockedCommand.getStatus()).thenReturn(TransportCommand.CommandStatus.InProgress);
+        when(mockedCommand.getTimer()).thenReturn(mockTimer);
+
+        String body="[{ \"method\": \"" + SERVICE_NAME + "/v1.0/" + OP_NAME  + "\", \"params\": [\"Hello\", 333], \"id\": \"1\"}," +
+                     "{ \"method\": \"" + SERVICE_NAME + "/v1.0/unknownOp\", \"params\": [], \"id\": \"2\"}," +
+                     "{ \"method\": \"" + SERVICE_NAME + "/v1.0/" + OP_NAME  + "\", \"params\": [\"World\", 444], \"id\": \"3\"}]";
+        TestInputStream tis = new TestInputStream(new ByteArrayInputStream(body.getBytes("UTF-8")));
+        when(request.getInputStream()).thenReturn(tis);
+
+        TestOutputStream tos = new TestOutputStream();
+        when(response.getOutputStream()).thenReturn(tos);
+
+        CommandResolver<HttpCommand> resolver = commandProcessor.createCommandResolver(mockedCommand, tracer);
+        Iterator<ExecutionCommand> iter = resolver.resolveExecutionCommands().iterator();
+        ExecutionCommand first = iter.next();
+        ExecutionCommand third = iter.next();
+        assertFalse(iter.hasNext());
+
+        // the unknown op has its response, but nothing is written before the commands start completing
+        assertEquals("", tos.getCapturedOutputStream());
+
+        // the last call completing can't be written until the first has been
+        third.onResult(new ExecutionResult(3));
+        assertEquals("", tos.getCapturedOutputStream());
+
+        first.onResult(new ExecutionResult(1));
+        List<Map> written = objectMapper.readValue(tos.getCapturedOutputStream(), List.class);
+        assertEquals(3, written.size());
+        assertEquals("1", written.get(0).get("id"));
+        assertEquals(1, written.get(0).get("result"));
+        assertEquals("2", written.get(1).get("id"));
+        assertEquals(-32601, ((Map) written.get(1).get("error")).get("code"));
+        assertEquals("3", written.get(2).get("id"));
+        assertEquals(3, written.get(2).get("result"));
+
+        verify(logger).logAccess(eq(mockedCommand), isA(ExecutionContext.class), anyLong(), anyLong(),
+                any(MediaType.class), any(MediaType.class), any(ResponseCode.class));
+        verify(mockedCommand).onComplete();
+        assertEquals(1, commandProcessor.getStreamedBatches());
+        assertEquals(3, commandProcessor.getAverageStreamedBatchWidth(), 0);
+
+        verifyTracerCalls();
+    }
+
+    @Test
+    public void testStreamedBatchInCompletionOrder() throws IOException {
+        bindOperations();
+        commandProcessor.setBatchResponseStreaming("completion_order");
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getScheme()).thenReturn("http");
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        HttpCommand mockedCommand = mock(HttpCommand.class);
+        RequestTimer mockTimer = mock(RequestTimer.class);
+
+        when(mockedCommand.getRequest()).thenReturn(request);
+        when(mockedCommand.getResponse()).thenReturn(response);
+        when(mockedCommand.getStatus()).thenReturn(TransportCommand.CommandStatus.InProgress);
+        when(mockedCommand.getTimer()).thenReturn(mockTimer);
+
+        String body="[{ \"method\": \"" + SERVICE_NAME + "/v1.0/" + OP_NAME  + "\", \"params\": [\"Hello\", 333], \"id\": \"1\"}," +
+                     "{ \"method\": \"" + SERVICE_NAME + "/v1.0/" + OP_NAME  + "\", \"params\": [\"World\", 444], \"id\": \"2\"}]";
+        TestInputStream tis = new TestInputStream(new ByteArrayInputStream(body.getBytes("UTF-8")));
+        when(request.getInputStream()).thenReturn(tis);
+
+        TestOutputStream tos = new TestOutputStream();
+        when(response.getOutputStream()).thenReturn(tos);
+
+        CommandResolver<HttpCommand> resolver = commandProcessor.createCommandResolver(mockedCommand, tracer);
+        Iterator<ExecutionCommand> iter = resolver.resolveExecutionCommands().iterator();
+        ExecutionCommand first = iter.next();
+        ExecutionCommand second = iter.next();
+
+        second.onResult(new ExecutionResult(2));
+        // written straight away, but the array isn't closed yet
+        String partial = tos.getCapturedOutputStream();
+        assertTrue(partial.startsWith("[{"));
+        assertTrue(partial.contains("\"2\""));
+        assertFalse(partial.endsWith("]"));
+
+        first.onResult(new ExecutionResult(1));
+        List<Map> written = objectMapper.readValue(tos.getCapturedOutputStream(), List.class);
+        assertEquals(2, written.size());
+        assertEquals("2", written.get(0).get("id"));
+        assertEquals("1", written.get(1).get("id"));
+
+        verifyTracerCalls();
+    }
+
     @Test
     public void testExceptionalResultUnBatched() throws IOException {
         bindOperations();
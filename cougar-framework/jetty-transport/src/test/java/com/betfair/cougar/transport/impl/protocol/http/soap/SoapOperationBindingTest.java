@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.transport.impl.protocol.http.soap;
+
+import com.betfair.cougar.core.api.ev.OperationDefinition;
+import org.junit.Test;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit test for SoapOperationBinding
+ */
+public class SoapOperationBindingTest {
+
+    private static final String SCHEMA = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"><xs:element name=\"a\" type=\"xs:string\"/></xs:schema>";
+
+    @Test
+    public void validatorsAreReused() throws Exception {
+        SoapOperationBinding binding = newBinding();
+
+        Validator first = binding.borrowValidator();
+        Validator second = binding.borrowValidator();
+        assertNotSame(first, second);
+
+        binding.returnValidator(first);
+        assertSame(first, binding.borrowValidator());
+    }
+
+    private SoapOperationBinding newBinding() throws Exception {
+        Schema schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(new StreamSource(new StringReader(SCHEMA)));
+        return new SoapOperationBinding(mock(OperationDefinition.class), null, null, schema);
+    }
+}
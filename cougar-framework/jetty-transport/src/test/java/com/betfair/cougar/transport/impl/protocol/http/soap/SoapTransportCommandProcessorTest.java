@@ -106,6 +106,7 @@ public class SoapTransportCommandProcessorTest extends AbstractHttpCommandProces
     private static final String externalEntityIn = "<!DOCTYPE foo [<!ELEMENT foo ANY ><!ENTITY xxe1 SYSTEM \"file:///etc/shadow\" >]> ";
     private static final String externalEntityInWithBody = externalEntityIn+"<VoidResponseRequest xmlns=\"http://www.betfair.com/soaptest\"><VoidReturnOpFirstParam>&foo;</VoidReturnOpFirstParam>";
     private static final String invalidInputFault = "<faultcode>soapenv:Client</faultcode><faultstring>DSC-0044</faultstring><detail />";
+    private static final String transcriptionFailureError = "<faultcode>soapenv:Server</faultcode><faultstring>DSC-0002</faultstring><detail />";
 
 	private static final OperationBindingDescriptor[] operationBindings = new OperationBindingDescriptor[] {
 		new SoapOperationBindingDescriptor(firstOpKey, "FirstTestOpRequest", "FirstTestOpResponse"),
@@ -500,6 +501,33 @@ public class SoapTransportCommandProcessorTest extends AbstractHttpCommandProces
         verifyTracerCalls(mapOpKey);
 	}
 
+    /**
+     * Tests that a failure part way through transcribing the result sends just a fault, not a partial response
+     * with a second envelope after it
+     * @throws Exception
+     */
+    @Test
+    public void testProcess_TranscriptionFailure() throws Exception {
+
+        // Set up the input
+        when(request.getInputStream()).thenReturn(
+                new TestServletInputStream(buildSoapMessage(null, mapOpIn, null, null)));
+        when(request.getScheme()).thenReturn("http");
+
+        // Resolve the input command
+        soapCommandProcessor.process(command);
+        assertEquals(1, ev.getInvokedCount());
+
+        // not a map, so transcription fails once the response element has been started
+        assertNotNull(ev.getObserver());
+        ev.getObserver().onResult(new ExecutionResult("not a map"));
+        assertEquals(CommandStatus.Complete, command.getStatus());
+        assertSoapyEquals(buildSoapMessage(null, null, transcriptionFailureError, null), testOut.getOutput());
+        verify(response).setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        verify(logger).logAccess(eq(command), isA(ExecutionContext.class), anyLong(), anyLong(),
+                                            any(MediaType.class), any(MediaType.class), any(ResponseCode.class));
+    }
+
 	/**
 	 * Tests List and Date parameters in and out
 	 * @throws Exception
@@ -76,15 +76,21 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 
@@ -143,6 +149,20 @@ public class JmsEventTransportImpl extends AbstractRegisterableTransport impleme
     private int threadPoolSize = 1;
     private JMXReportingThreadPoolExecutor threadPool = null;
 
+    // Publication pipeline: events are queued and sent by up to threadPoolSize publishers, in batches of up to
+    // publishBatchSize events gathered over at most publishBatchWindow ms. Batches of more than one event are
+    // sent on transacted sessions.
+    private int publishBatchSize = 1;
+    private long publishBatchWindow = 0;
+    private int maxPublishQueueSize = 10000;
+    private long publishQueueTimeout = 1000;
+    private BlockingQueue<PendingPublication> publishQueue;
+    private final AtomicInteger activePublishers = new AtomicInteger();
+    private final AtomicLong publishedEvents = new AtomicLong();
+    private final AtomicLong publishedBatches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong rejectedPublications = new AtomicLong();
+
 
     public JmsEventTransportImpl(ConnectionFactory connectionFactory) {
         this.connectionFactory = connectionFactory;
@@ -179,6 +199,7 @@ public class JmsEventTransportImpl extends AbstractRegisterableTransport impleme
         ctf.setDaemon(true);
         ctf.setThreadNamePrefix(getTransportName()+"-Publisher-");
         threadPool = new JMXReportingThreadPoolExecutor(threadPoolSize, threadPoolSize, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), ctf);
+        publishQueue = new ArrayBlockingQueue<PendingPublication>(maxPublishQueueSize);
     }
 
     public void initialiseExecutionContext() {
@@ -324,7 +345,7 @@ public class JmsEventTransportImpl extends AbstractRegisterableTransport impleme
      * advanced destination resolution, implement your own JMSDestinationResolver.  Note that obviously
      * both the publisher and consumer must arrive at the same destination name, so should be using the
      * same convention (since they're unlikely to be running in the same Cougar instance)
-     * The event will be published using a thread from the pool and its associated jms session
+     * The caller is blocked until the event (and the batch it was published in) has been sent.
      *
      * @param event
      * @throws com.betfair.cougar.core.api.exception.CougarException
@@ -338,7 +359,7 @@ public class JmsEventTransportImpl extends AbstractRegisterableTransport impleme
 
     /**
      * Publish the supplied event to the destination.
-     * The event will be published using a thread from the pool and its associated jms session
+     * The caller is blocked until the event (and the batch it was published in) has been sent.
      *
      * @param event
      * @throws com.betfair.cougar.core.api.exception.CougarException
@@ -346,81 +367,245 @@ public class JmsEventTransportImpl extends AbstractRegisterableTransport impleme
      */
     public void publish(Event event, String destinationName, EventServiceBindingDescriptor eventServiceBindingDescriptor) throws CougarException {
         try {
-            EventPublisherRunnable publisherRunnable = new EventPublisherRunnable(event, destinationName, eventServiceBindingDescriptor);
-            threadPool.execute(publisherRunnable); // Publish the event using a thread from the pool
-            publisherRunnable.lock();
-
-            if (!publisherRunnable.isSuccess()) { // If publication failed for any reason pass out the exception thrown
-                Exception e = publisherRunnable.getError();
-                LOGGER.error("Publication exception:", e);
-                throw new CougarFrameworkException("Sonic JMS publication exception", e);
-            }
+            publishAsync(event, destinationName, eventServiceBindingDescriptor, null).get();
+        } catch (ExecutionException ex) { // If publication failed for any reason pass out the exception thrown
+            LOGGER.error("Publication exception:", ex.getCause());
+            throw new CougarFrameworkException("Sonic JMS publication exception", ex.getCause());
         } catch (InterruptedException ex) { // Interrupted while waiting for event to be published
             LOGGER.error("Publication exception:", ex);
             throw new CougarFrameworkException("Sonic JMS publication exception", ex);
         }
     }
 
-    // Runnable object that emits an event using the jms session belonging to the thread running it
-    private class EventPublisherRunnable implements Runnable {
+    /**
+     * Publish the supplied event to the destination derived using the plugged destination resolver, without
+     * waiting for it to be sent.
+     *
+     * @return a future which completes once the batch containing the event has been sent (and committed if
+     * batching is enabled), or fails with the cause of the publication failure
+     * @see #publish(com.betfair.cougar.core.api.events.Event)
+     */
+    public Future<Void> publishAsync(Event event) {
+        return publishAsync(event, null);
+    }
 
-        private Event event;
-        private String destinationName;
-        private EventServiceBindingDescriptor descriptor;
-        private boolean success = false;
-        private Exception error;
-        private CountDownLatch publishLock;
+    /**
+     * Publish the supplied event to the destination derived using the plugged destination resolver, without
+     * waiting for it to be sent.  If supplied, the observer is called back from a publisher thread with an
+     * empty result on success, or a fault on failure.
+     *
+     * @see #publish(com.betfair.cougar.core.api.events.Event)
+     */
+    public Future<Void> publishAsync(Event event, ExecutionObserver observer) {
+        String destinationName = destinationResolver.resolveDestination(event.getClass(), null);
+        return publishAsync(event, destinationName, eventServiceBindingDescriptor, observer);
+    }
+
+    /**
+     * Queue the supplied event for publication to the destination. If the publication queue is full the caller is
+     * blocked for up to publishQueueTimeout milliseconds, after which the returned future is failed.
+     *
+     * @param observer optional observer to be called back once the outcome of the publication is known
+     */
+    public Future<Void> publishAsync(Event event, String destinationName, EventServiceBindingDescriptor eventServiceBindingDescriptor, ExecutionObserver observer) {
+        PendingPublication publication = new PendingPublication(event, destinationName, eventServiceBindingDescriptor, observer);
+        try {
+            if (!publishQueue.offer(publication, publishQueueTimeout, TimeUnit.MILLISECONDS)) {
+                rejectedPublications.incrementAndGet();
+                publication.failed(new CougarFrameworkException("Publication queue full, unable to queue event within "+publishQueueTimeout+"ms"));
+                return publication;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            publication.failed(ex);
+            return publication;
+        }
+        startPublisherIfRequired();
+        return publication;
+    }
 
-        public EventPublisherRunnable(Event event, String destinationName, EventServiceBindingDescriptor descriptor) {
+    // Publishers run on the thread pool only whilst there is work to do, so we start one whenever there's
+    // space for another and it has something to pick up
+    private void startPublisherIfRequired() {
+        while (!publishQueue.isEmpty()) {
+            int running = activePublishers.get();
+            if (running >= threadPoolSize) {
+                return;
+            }
+            if (activePublishers.compareAndSet(running, running + 1)) {
+                threadPool.execute(new BatchPublisher());
+                return;
+            }
+        }
+    }
+
+    // Drains the publication queue in batches, using the jms session belonging to the thread running it
+    private class BatchPublisher implements Runnable {
+        private final List<PendingPublication> batch = new ArrayList<PendingPublication>(publishBatchSize);
+
+        @Override
+        public void run() {
+            try {
+                while (fillBatch()) {
+                    publishBatch();
+                    batch.clear();
+                }
+            } finally {
+                activePublishers.decrementAndGet();
+                // something may have been queued between our last poll and the decrement
+                startPublisherIfRequired();
+            }
+        }
+
+        private boolean fillBatch() {
+            PendingPublication first = publishQueue.poll();
+            if (first == null) {
+                return false;
+            }
+            batch.add(first);
+            publishQueue.drainTo(batch, publishBatchSize - batch.size());
+            if (batch.size() < publishBatchSize && publishBatchWindow > 0) {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(publishBatchWindow);
+                try {
+                    while (batch.size() < publishBatchSize) {
+                        long remaining = deadline - System.nanoTime();
+                        PendingPublication next = remaining > 0 ? publishQueue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                        publishQueue.drainTo(batch, publishBatchSize - batch.size());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return true;
+        }
+
+        private void publishBatch() {
+            PublisherSession publisherSession = null;
+            boolean sent = false;
+            Exception failure = null;
+            try {
+                publisherSession = sessionManager.get();
+                Session session = publisherSession.getSession();
+                for (PendingPublication publication : batch) {
+                    MessageProducer messageProducer = publisherSession.getProducer(publication.destinationName);
+                    TextMessage textMessage = getEventMarshaller().marshallEvent(publication.descriptor, publication.event, session);
+                    messageProducer.send(textMessage, textMessage.getJMSDeliveryMode(), textMessage.getJMSPriority(), textMessage.getJMSExpiration());
+                }
+                if (publisherSession.isTransacted()) {
+                    session.commit();
+                }
+                sent = true;
+            } catch (Exception ex) { // Catch anything thrown from session creation, marshalling or publication
+                failure = ex;
+            } finally {
+                // every publication in the batch must be completed, or blocked publishers would wait forever
+                if (sent) {
+                    publishedEvents.addAndGet(batch.size());
+                    publishedBatches.incrementAndGet();
+                    for (PendingPublication publication : batch) {
+                        publication.succeeded();
+                    }
+                } else {
+                    failBatch(publisherSession, failure != null ? failure : new CougarFrameworkException("Sonic JMS publication aborted"));
+                }
+            }
+        }
+
+        // nothing in a failed batch is considered sent, and the session it was sent on can't be trusted after failure
+        private void failBatch(PublisherSession publisherSession, Exception e) {
+            failedBatches.incrementAndGet();
+            try {
+                if (publisherSession != null) {
+                    sessionManager.discard(publisherSession);
+                }
+            } finally {
+                for (PendingPublication publication : batch) {
+                    publication.failed(e);
+                }
+            }
+        }
+    }
+
+    // An event awaiting publication, doubling as the future handed back to the publishing caller
+    private static class PendingPublication implements Future<Void> {
+
+        private final Event event;
+        private final String destinationName;
+        private final EventServiceBindingDescriptor descriptor;
+        private final ExecutionObserver observer;
+        private final CountDownLatch publishLock = new CountDownLatch(1);
+        private volatile Exception error;
+
+        public PendingPublication(Event event, String destinationName, EventServiceBindingDescriptor descriptor, ExecutionObserver observer) {
             this.event = event;
             this.destinationName = destinationName;
             this.descriptor = descriptor;
-            publishLock = new CountDownLatch(1);
+            this.observer = observer;
         }
 
-        public boolean isSuccess() {
-            return success;
+        public void succeeded() {
+            publishLock.countDown();
+            notifyObserver(new ExecutionResult());
         }
 
-        public Exception getError() {
-            return error;
+        public void failed(Exception e) {
+            error = e;
+            publishLock.countDown();
+            if (observer != null) {
+                CougarException ce = e instanceof CougarException ? (CougarException) e : new CougarFrameworkException("Sonic JMS publication exception", e);
+                notifyObserver(new ExecutionResult(ce));
+            }
         }
 
-        public void lock() throws InterruptedException {
-            publishLock.await();
+        // a misbehaving observer mustn't stop the rest of its batch being completed
+        private void notifyObserver(ExecutionResult result) {
+            if (observer != null) {
+                try {
+                    observer.onResult(result);
+                } catch (Exception e) {
+                    LOGGER.error("Publication observer threw an exception", e);
+                }
+            }
         }
 
-        public void unlock() {
-            publishLock.countDown();
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
         }
 
         @Override
-        // Get the jms session belonging to the thread publishing this event
-        public void run() {
-            MessageProducer messageProducer = null;
-            try {
-                Session session = sessionManager.get();
-                Destination destination = createDestination(session, destinationName);
-                messageProducer = session.createProducer(destination);
-                TextMessage textMessage = getEventMarshaller().marshallEvent(descriptor, event, session);
-                messageProducer.send(textMessage, textMessage.getJMSDeliveryMode(), textMessage.getJMSPriority(), textMessage.getJMSExpiration());
-                success = true;
-            } catch (CougarFrameworkException cfe) { // Catch possible exception thrown from session creation
-                success = false;
-                error = cfe;
-            } catch (JMSException ex) { // Catch any other exception thrown during message publication
-                success = false;
-                error = ex;
-            } finally {
-                if (messageProducer != null) {
-                    try {
-                        messageProducer.close();
-                    } catch (JMSException e) {
-                        LOGGER.warn("Failed to close message producer", e);
-                    }
-                }
-                unlock();
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return publishLock.getCount() == 0;
+        }
+
+        @Override
+        public Void get() throws InterruptedException, ExecutionException {
+            publishLock.await();
+            return result();
+        }
+
+        @Override
+        public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!publishLock.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return result();
+        }
+
+        private Void result() throws ExecutionException {
+            if (error != null) {
+                throw new ExecutionException(error);
             }
+            return null;
         }
     }
 
@@ -661,13 +846,18 @@ public class JmsEventTransportImpl extends AbstractRegisterableTransport impleme
     }//SubscriptionMessageListener
 
     private class SessionManager {
-        private Map<Thread, Session> sessionMap = new ConcurrentHashMap<Thread, Session>();
-        public Session get() {
+        private Map<Thread, PublisherSession> sessionMap = new ConcurrentHashMap<Thread, PublisherSession>();
+        public PublisherSession get() {
             Thread t = Thread.currentThread();
-            Session s = sessionMap.get(t);
+            PublisherSession s = sessionMap.get(t);
             if (s == null) {
                 try {
-                    s = getConnection().createSession(false, acknowledgementMode);
+                    // batches are sent in a local transaction so that the commit confirms the whole batch
+                    boolean transacted = publishBatchSize > 1;
+                    Session session = transacted
+                            ? getConnection().createSession(true, Session.SESSION_TRANSACTED)
+                            : getConnection().createSession(false, acknowledgementMode);
+                    s = new PublisherSession(session, transacted);
                 } catch (JMSException ex) {
                     throw new CougarFrameworkException("Error Creating Session", ex);
                 }
@@ -676,11 +866,60 @@ public class JmsEventTransportImpl extends AbstractRegisterableTransport impleme
             return s;
         }
 
+        public void discard(PublisherSession s) {
+            sessionMap.remove(Thread.currentThread());
+            s.close();
+        }
+
         public void clear() {
             sessionMap.clear();
         }
     }//SessionManager
 
+    // A publishing thread's session, along with the producers it has created, one per destination
+    private class PublisherSession {
+        private final Session session;
+        private final boolean transacted;
+        private final Map<String, MessageProducer> producers = new HashMap<String, MessageProducer>();
+
+        public PublisherSession(Session session, boolean transacted) {
+            this.session = session;
+            this.transacted = transacted;
+        }
+
+        public Session getSession() {
+            return session;
+        }
+
+        public boolean isTransacted() {
+            return transacted;
+        }
+
+        public MessageProducer getProducer(String destinationName) throws JMSException {
+            MessageProducer producer = producers.get(destinationName);
+            if (producer == null) {
+                producer = session.createProducer(createDestination(session, destinationName));
+                producers.put(destinationName, producer);
+            }
+            return producer;
+        }
+
+        public void close() {
+            try {
+                if (transacted) {
+                    session.rollback();
+                }
+            } catch (JMSException e) {
+                LOGGER.warn("Failed to rollback session", e);
+            }
+            try {
+                session.close();
+            } catch (JMSException e) {
+                LOGGER.warn("Failed to close session", e);
+            }
+        }
+    }//PublisherSession
+
     private TopicSubscriberPingMonitor setupPingConsumer(String eventName, String destinationName, String subscriptionId, Session session) {
         TopicSubscriberPingMonitor ret = null;
         if (destinationType == DestinationType.Topic || destinationType == DestinationType.DurableTopic) {
@@ -790,6 +1029,74 @@ public class JmsEventTransportImpl extends AbstractRegisterableTransport impleme
         this.threadPoolSize = threadPoolSize;
     }
 
+    /**
+     * Maximum number of events sent per transaction. Defaults to 1, in which case events are sent
+     * individually on non-transacted sessions.
+     */
+    public void setPublishBatchSize(int publishBatchSize) {
+        if (publishBatchSize < 1) {
+            throw new IllegalArgumentException("publishBatchSize must be at least 1");
+        }
+        this.publishBatchSize = publishBatchSize;
+    }
+
+    public int getPublishBatchSize() {
+        return publishBatchSize;
+    }
+
+    /**
+     * Maximum time, in milliseconds, a publisher will wait for more events before sending a part filled batch.
+     */
+    public void setPublishBatchWindow(long publishBatchWindow) {
+        this.publishBatchWindow = publishBatchWindow;
+    }
+
+    public long getPublishBatchWindow() {
+        return publishBatchWindow;
+    }
+
+    /**
+     * Maximum number of events awaiting publication, must be set prior to the thread pool being initialised.
+     */
+    public void setMaxPublishQueueSize(int maxPublishQueueSize) {
+        this.maxPublishQueueSize = maxPublishQueueSize;
+    }
+
+    public int getMaxPublishQueueSize() {
+        return maxPublishQueueSize;
+    }
+
+    /**
+     * Time, in milliseconds, a publishing caller will wait for space on a full publication queue.
+     */
+    public void setPublishQueueTimeout(long publishQueueTimeout) {
+        this.publishQueueTimeout = publishQueueTimeout;
+    }
+
+    public long getPublishQueueTimeout() {
+        return publishQueueTimeout;
+    }
+
+    public int getPublishQueueSize() {
+        return publishQueue != null ? publishQueue.size() : 0;
+    }
+
+    public long getPublishedEvents() {
+        return publishedEvents.get();
+    }
+
+    public long getPublishedBatches() {
+        return publishedBatches.get();
+    }
+
+    public long getFailedBatches() {
+        return failedBatches.get();
+    }
+
+    public long getRejectedPublications() {
+        return rejectedPublications.get();
+    }
+
     public JMSEventMarshaller getEventMarshaller() {
         return eventMarshaller;
     }
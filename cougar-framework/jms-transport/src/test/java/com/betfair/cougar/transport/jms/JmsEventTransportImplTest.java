@@ -40,10 +40,12 @@ import com.betfair.cougar.transport.api.protocol.events.EventServiceBindingDescr
 import com.betfair.cougar.transport.api.protocol.events.jms.JMSDestinationResolver;
 import com.betfair.cougar.transport.jms.monitoring.ConnectionMonitor;
 import com.betfair.cougar.transport.jms.monitoring.TopicSubscriberPingMonitor;
+import com.betfair.cougar.util.configuration.PropertyConfigurer;
 import com.betfair.tornjak.monitor.Monitor;
 import com.betfair.tornjak.monitor.MonitorRegistry;
 import junit.framework.Assert;
 import org.hamcrest.Matcher;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -51,6 +53,8 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatcher;
 import org.mockito.Matchers;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import javax.jms.Connection;
 import javax.jms.ConnectionFactory;
@@ -67,6 +71,11 @@ import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static junit.framework.Assert.*;
 import static org.junit.Assert.assertEquals;
@@ -88,6 +97,7 @@ public class JmsEventTransportImplTest {
     private MessageConsumer mockedConsumer;
     private MonitorRegistry monitorRegistry;
     private Connection mockedConnection;
+    private MessageProducer mockedProducer;
 
     private ExecutionObserver inbredExecutionObserver = new ExecutionObserver() {
 
@@ -108,14 +118,18 @@ public class JmsEventTransportImplTest {
     };
 
     private static final String EVENT_NAME = "myDummyEvent";
+    private static final String EMIT_PING_PROPERTY = "cougar.jms.monitor." + EVENT_NAME + ".publisher.emitPing";
 
     @Before
     public void setup() throws Exception {
+        // pings are published through the same queue as the events under test, which would throw the counts out
+        PropertyConfigurer.getAllLoadedProperties().put(EMIT_PING_PROPERTY, "false");
+
         mockedConsumer = Mockito.mock(TopicSubscriber.class);
         mockedSession = Mockito.mock(Session.class);
         when(mockedSession.createConsumer((Destination)anyObject())).thenReturn(mockedConsumer);
 
-        MessageProducer mockedProducer = Mockito.mock(MessageProducer.class);
+        mockedProducer = Mockito.mock(MessageProducer.class);
         when(mockedSession.createProducer((Destination)anyObject())).thenReturn(mockedProducer);
 
         TopicSubscriber mockedTopicSubscriber = Mockito.mock(TopicSubscriber.class);
@@ -192,6 +206,11 @@ public class JmsEventTransportImplTest {
         };
     }
 
+    @After
+    public void tearDown() {
+        PropertyConfigurer.getAllLoadedProperties().remove(EMIT_PING_PROPERTY);
+    }
+
     private void setupDefaultMockedConnectionBehaviour() throws JMSException {
         when(mockedConnection.createSession(anyBoolean(), anyInt())).thenReturn(mockedSession);
     }
@@ -296,6 +315,147 @@ public class JmsEventTransportImplTest {
         } catch (CougarException ignored) {}
     }
 
+    @Test
+    public void testPublishAsyncBatchesIntoOneTransaction() throws Exception {
+        setupDefaultMockedConnectionBehaviour();
+        cut.setDestinationType(JmsEventTransportImpl.DestinationType.Queue);
+        cut.setPublishBatchSize(3);
+        cut.setPublishBatchWindow(10000);
+        cut.initThreadPool();
+        cut.notify(evsd);
+
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int i=0; i<3; i++) {
+            futures.add(cut.publishAsync(DummyEventImpl.BOBS_ADDRESS));
+        }
+        for (Future<Void> f : futures) {
+            f.get(5, TimeUnit.SECONDS);
+        }
+
+        verify(mockedConnection, times(1)).createSession(true, Session.SESSION_TRANSACTED);
+        verify(mockedSession, times(1)).createProducer((Destination) anyObject());
+        verify(mockedProducer, times(3)).send((TextMessage) anyObject(), anyInt(), anyInt(), anyLong());
+        verify(mockedSession, times(1)).commit();
+        assertEquals(3, cut.getPublishedEvents());
+        assertEquals(1, cut.getPublishedBatches());
+    }
+
+    @Test
+    public void testPublishAsyncFailureFailsWholeBatch() throws Exception {
+        setupDefaultMockedConnectionBehaviour();
+        when(mockedSession.getTransacted()).thenReturn(true);
+        doThrow(new JMSException("xx")).when(mockedSession).commit();
+        cut.setDestinationType(JmsEventTransportImpl.DestinationType.Queue);
+        cut.setPublishBatchSize(2);
+        cut.setPublishBatchWindow(10000);
+        cut.initThreadPool();
+        cut.notify(evsd);
+
+        final CountDownLatch observed = new CountDownLatch(1);
+        final AtomicReference<ExecutionResult> result = new AtomicReference<ExecutionResult>();
+        Future<Void> first = cut.publishAsync(DummyEventImpl.BOBS_ADDRESS);
+        cut.publishAsync(DummyEventImpl.BOBS_ADDRESS, new ExecutionObserver() {
+            @Override
+            public void onResult(ExecutionResult executionResult) {
+                result.set(executionResult);
+                observed.countDown();
+            }
+        });
+
+        try {
+            first.get(5, TimeUnit.SECONDS);
+            fail("An exception should have been thrown here");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof JMSException);
+        }
+        assertTrue(observed.await(5, TimeUnit.SECONDS));
+        assertTrue(result.get().isFault());
+        verify(mockedSession, times(1)).rollback();
+        verify(mockedSession, times(1)).close();
+        assertEquals(1, cut.getFailedBatches());
+        assertEquals(0, cut.getPublishedEvents());
+    }
+
+    @Test(timeout = 10000)
+    public void testPublishFailsWhenMarshallerThrowsRuntimeException() throws Exception {
+        setupDefaultMockedConnectionBehaviour();
+        JMSEventMarshaller marshaller = Mockito.mock(JMSEventMarshaller.class);
+        when(marshaller.marshallEvent((EventServiceBindingDescriptor) Matchers.anyObject(), (Event)anyObject(), (Session)anyObject())).thenThrow(new IllegalStateException("xx"));
+        cut.setEventMarshaller(marshaller);
+        cut.setDestinationType(JmsEventTransportImpl.DestinationType.Queue);
+        cut.initThreadPool();
+        cut.notify(evsd);
+
+        try {
+            cut.publish(DummyEventImpl.BOBS_ADDRESS);
+            fail("An exception should have been thrown here");
+        } catch (CougarException expected) {
+            assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(1, cut.getFailedBatches());
+    }
+
+    @Test
+    public void testPublishAsyncObserverFailureDoesntStallBatch() throws Exception {
+        setupDefaultMockedConnectionBehaviour();
+        cut.setDestinationType(JmsEventTransportImpl.DestinationType.Queue);
+        cut.setPublishBatchSize(2);
+        cut.setPublishBatchWindow(10000);
+        cut.initThreadPool();
+        cut.notify(evsd);
+
+        Future<Void> first = cut.publishAsync(DummyEventImpl.BOBS_ADDRESS, new ExecutionObserver() {
+            @Override
+            public void onResult(ExecutionResult executionResult) {
+                throw new IllegalStateException("bad observer");
+            }
+        });
+        Future<Void> second = cut.publishAsync(DummyEventImpl.BOBS_ADDRESS);
+
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(2, cut.getPublishedEvents());
+    }
+
+    @Test
+    public void testPublishAsyncRejectedWhenQueueFull() throws Exception {
+        setupDefaultMockedConnectionBehaviour();
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                sending.countDown();
+                release.await();
+                return null;
+            }
+        }).when(mockedProducer).send((TextMessage) anyObject(), anyInt(), anyInt(), anyLong());
+        cut.setDestinationType(JmsEventTransportImpl.DestinationType.Queue);
+        cut.setMaxPublishQueueSize(1);
+        cut.setPublishQueueTimeout(0);
+        cut.initThreadPool();
+        cut.notify(evsd);
+
+        Future<Void> inFlight = cut.publishAsync(DummyEventImpl.BOBS_ADDRESS);
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        Future<Void> queued = cut.publishAsync(DummyEventImpl.BOBS_ADDRESS);
+        Future<Void> rejected = cut.publishAsync(DummyEventImpl.BOBS_ADDRESS);
+
+        assertTrue(rejected.isDone());
+        try {
+            rejected.get();
+            fail("An exception should have been thrown here");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof CougarFrameworkException);
+        }
+        assertEquals(1, cut.getRejectedPublications());
+
+        release.countDown();
+        inFlight.get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+        assertEquals(2, cut.getPublishedEvents());
+    }
+
     @Test
     public void testOnMessage() throws JMSException {
         TopicSubscriberPingMonitor pingMonitor = mock(TopicSubscriberPingMonitor.class);
@@ -23,6 +23,10 @@ import com.betfair.cougar.netutil.nio.message.ResponseMessage;
 import org.apache.mina.common.IoSession;
 
 
+/**
+ * @deprecated use {@link FramedResponseOutputStream}, which avoids copying the payload before it is framed.
+ */
+@Deprecated
 public class ByteArrayOutputStreamWithIoSession extends ByteArrayOutputStream {
 
 	private final IoSession ioSession;
@@ -56,8 +56,10 @@ public class CougarProtocol extends IoFilterAdapter implements Exportable {
     public static final byte TRANSPORT_PROTOCOL_VERSION_START_TLS = 3;
     public static final byte TRANSPORT_PROTOCOL_VERSION_TIME_CONSTRAINTS = 4;
     public static final byte TRANSPORT_PROTOCOL_VERSION_COMPOUND_REQUEST_UUID = 5;
+    public static final byte TRANSPORT_PROTOCOL_VERSION_BINARY_CODECS = 6;
+    public static final byte TRANSPORT_PROTOCOL_VERSION_COMPACT_HEAP_UPDATES = 7;
     public static final byte TRANSPORT_PROTOCOL_VERSION_MIN_SUPPORTED = TRANSPORT_PROTOCOL_VERSION_CLIENT_ONLY_RPC;
-    public static final byte TRANSPORT_PROTOCOL_VERSION_MAX_SUPPORTED = TRANSPORT_PROTOCOL_VERSION_COMPOUND_REQUEST_UUID;
+    public static final byte TRANSPORT_PROTOCOL_VERSION_MAX_SUPPORTED = TRANSPORT_PROTOCOL_VERSION_COMPACT_HEAP_UPDATES;
     public static final byte TRANSPORT_PROTOCOL_VERSION_UNSUPPORTED = TRANSPORT_PROTOCOL_VERSION_MIN_SUPPORTED - 1;
 
     // these allow tests to force us to particular versions of the protocol, even invalid ones
@@ -108,6 +110,8 @@ public class CougarProtocol extends IoFilterAdapter implements Exportable {
         map[TRANSPORT_PROTOCOL_VERSION_START_TLS] =  Collections.unmodifiableSet(EnumSet.of(TranscribableParams.EnumsWrittenAsStrings, TranscribableParams.MajorOnlyPackageNaming));
         map[TRANSPORT_PROTOCOL_VERSION_TIME_CONSTRAINTS] =  Collections.unmodifiableSet(EnumSet.of(TranscribableParams.EnumsWrittenAsStrings, TranscribableParams.MajorOnlyPackageNaming));
         map[TRANSPORT_PROTOCOL_VERSION_COMPOUND_REQUEST_UUID] =  Collections.unmodifiableSet(EnumSet.of(TranscribableParams.EnumsWrittenAsStrings, TranscribableParams.MajorOnlyPackageNaming));
+        map[TRANSPORT_PROTOCOL_VERSION_BINARY_CODECS] =  Collections.unmodifiableSet(EnumSet.of(TranscribableParams.EnumsWrittenAsStrings, TranscribableParams.MajorOnlyPackageNaming, TranscribableParams.GeneratedBinaryCodecs));
+        map[TRANSPORT_PROTOCOL_VERSION_COMPACT_HEAP_UPDATES] =  Collections.unmodifiableSet(EnumSet.of(TranscribableParams.EnumsWrittenAsStrings, TranscribableParams.MajorOnlyPackageNaming, TranscribableParams.GeneratedBinaryCodecs, TranscribableParams.CompactHeapUpdates));
         transcribableParamsByProtocolVersion = map;
     }
 
@@ -138,9 +142,14 @@ public class CougarProtocol extends IoFilterAdapter implements Exportable {
     private final boolean requiresTls;
 
     private final long rpcTimeoutMillis;
+    private final RequestCoalescer requestCoalescer;
 
     public static CougarProtocol getClientInstance(NioLogger nioLogger, int keepAliveInterval, int keepAliveTimeout, SSLFilter sslFilter, boolean supportsTls, boolean requiresTls, long rpcTimeoutMillis) {
-        return new CougarProtocol(false, nioLogger, keepAliveInterval, keepAliveTimeout, sslFilter, supportsTls, requiresTls, rpcTimeoutMillis);
+        return getClientInstance(nioLogger, keepAliveInterval, keepAliveTimeout, sslFilter, supportsTls, requiresTls, rpcTimeoutMillis, null);
+    }
+
+    public static CougarProtocol getClientInstance(NioLogger nioLogger, int keepAliveInterval, int keepAliveTimeout, SSLFilter sslFilter, boolean supportsTls, boolean requiresTls, long rpcTimeoutMillis, RequestCoalescer requestCoalescer) {
+        return new CougarProtocol(false, nioLogger, keepAliveInterval, keepAliveTimeout, sslFilter, supportsTls, requiresTls, rpcTimeoutMillis, requestCoalescer);
     }
 
     public static CougarProtocol getServerInstance(NioLogger nioLogger, int keepAliveInterval, int keepAliveTimeout, SSLFilter sslFilter, boolean supportsTls, boolean requiresTls) {
@@ -148,6 +157,10 @@ public class CougarProtocol extends IoFilterAdapter implements Exportable {
     }
 
     protected CougarProtocol(boolean server, NioLogger nioLogger, int keepAliveInterval, int keepAliveTimeout, SSLFilter sslFilter, boolean supportsTls, boolean requiresTls, long rpcTimeoutMillis) {
+        this(server, nioLogger, keepAliveInterval, keepAliveTimeout, sslFilter, supportsTls, requiresTls, rpcTimeoutMillis, null);
+    }
+
+    protected CougarProtocol(boolean server, NioLogger nioLogger, int keepAliveInterval, int keepAliveTimeout, SSLFilter sslFilter, boolean supportsTls, boolean requiresTls, long rpcTimeoutMillis, RequestCoalescer requestCoalescer) {
         this.isServer = server;
         this.nioLogger = nioLogger;
         this.interval = keepAliveInterval;
@@ -156,6 +169,7 @@ public class CougarProtocol extends IoFilterAdapter implements Exportable {
         this.supportsTls = supportsTls;
         this.requiresTls = requiresTls;
         this.rpcTimeoutMillis = rpcTimeoutMillis;
+        this.requestCoalescer = requestCoalescer;
         export(nioLogger.getJmxControl());
     }
 
@@ -313,7 +327,7 @@ public class CougarProtocol extends IoFilterAdapter implements Exportable {
 
                     session.setAttribute(IS_SERVER_ATTR_NAME, false);
                     session.setAttribute(PROTOCOL_VERSION_ATTR_NAME, acceptMessage.getAcceptedVersion());
-                    session.setAttribute(RequestResponseManager.SESSION_KEY, new RequestResponseManagerImpl(session, nioLogger, rpcTimeoutMillis));
+                    session.setAttribute(RequestResponseManager.SESSION_KEY, new RequestResponseManagerImpl(session, nioLogger, rpcTimeoutMillis, requestCoalescer));
 
                     // if we're running version 3 or later then send our TLS request, otherwise we're done handshaking
                     if (acceptMessage.getAcceptedVersion() >= TRANSPORT_PROTOCOL_VERSION_START_TLS) {
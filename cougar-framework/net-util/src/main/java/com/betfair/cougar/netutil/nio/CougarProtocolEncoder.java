@@ -48,6 +48,9 @@ public class CougarProtocolEncoder extends ProtocolEncoderAdapter implements Exp
     private final AtomicLong suspendsSent = new AtomicLong();
     private final AtomicLong tlsRequestsSent = new AtomicLong();
     private final AtomicLong tlsResponsesSent = new AtomicLong();
+    private final AtomicLong responsesFramedInPlace = new AtomicLong();
+    private final AtomicLong payloadBytesCopied = new AtomicLong();
+    private final AtomicLong requestBatchesSent = new AtomicLong();
 
     public CougarProtocolEncoder(NioLogger nioLogger) {
         this.nioLogger = nioLogger;
@@ -94,6 +97,11 @@ public class CougarProtocolEncoder extends ProtocolEncoderAdapter implements Exp
                 ResponseMessage resp = (ResponseMessage) pm;
                 // backwards compatibility with version 1 protocol
                 ProtocolMessageType responseType = protocolVersion == CougarProtocol.TRANSPORT_PROTOCOL_VERSION_CLIENT_ONLY_RPC ? ProtocolMessageType.MESSAGE : ProtocolMessageType.MESSAGE_RESPONSE;
+                if (resp.isPreFramed()) {
+                    // already framed in place, nothing to copy
+                    buffer = resp.takeFrame(responseType);
+                    break;
+                }
                 buffer = NioUtils.createMessageHeader(resp.getPayload().length + 8, responseType);
                 buffer.putLong(resp.getCorrelationId());
                 buffer.put(resp.getPayload());
@@ -138,6 +146,21 @@ public class CougarProtocolEncoder extends ProtocolEncoderAdapter implements Exp
         return buffer;
     }
 
+    /**
+     * Frames every request in a batch, back to back, into a single buffer.
+     */
+    public static ByteBuffer encode(RequestBatch batch, byte protocolVersion) {
+        ProtocolMessageType reqMsgType = protocolVersion == CougarProtocol.TRANSPORT_PROTOCOL_VERSION_CLIENT_ONLY_RPC ? ProtocolMessageType.MESSAGE : ProtocolMessageType.MESSAGE_REQUEST;
+        ByteBuffer buffer = ByteBuffer.allocate(batch.getFramedLength());
+        for (RequestMessage req : batch.getRequests()) {
+            buffer.putInt(req.getPayload().length + 9);
+            buffer.put(reqMsgType.getMessageType());
+            buffer.putLong(req.getCorrelationId());
+            buffer.put(req.getPayload());
+        }
+        return buffer;
+    }
+
     public void encode(IoSession session, Object message, ProtocolEncoderOutput out) throws Exception {
         final ByteBuffer buffer;
         if (message instanceof ProtocolMessage) {
@@ -177,16 +200,23 @@ public class CougarProtocolEncoder extends ProtocolEncoderAdapter implements Exp
 
                 case MESSAGE_REQUEST:
                     messageRequestsSent.incrementAndGet();
+                    payloadBytesCopied.addAndGet(((RequestMessage) pm).getPayload().length);
                     nioLogger.log(ALL, session, "CougarProtocolEncoder: Writing message of length %s", (((RequestMessage) pm).getPayload().length + 8));
                     break;
                 case MESSAGE_RESPONSE:
                     messageRequestsSent.incrementAndGet();
-                    nioLogger.log(ALL, session, "CougarProtocolEncoder: Writing message of length %s", ((ResponseMessage) pm).getPayload().length);
+                    ResponseMessage resp = (ResponseMessage) pm;
+                    if (resp.isPreFramed()) {
+                        responsesFramedInPlace.incrementAndGet();
+                    } else {
+                        payloadBytesCopied.addAndGet(resp.getPayloadLength());
+                    }
+                    nioLogger.log(ALL, session, "CougarProtocolEncoder: Writing message of length %s", resp.getPayloadLength());
                     break;
 
                 case EVENT:
                     eventsSent.incrementAndGet();
-                    nioLogger.log(ALL, session, "CougarProtocolEncoder: Writing event of length %s", ((EventMessage) pm).getPayload().length);
+                    nioLogger.log(ALL, session, "CougarProtocolEncoder: Writing event of length %s", ((EventMessage) pm).getPayloadLength());
                     break;
                 case SUSPEND:
                     suspendsSent.incrementAndGet();
@@ -204,6 +234,19 @@ public class CougarProtocolEncoder extends ProtocolEncoderAdapter implements Exp
                     throw new IllegalArgumentException("Unknown ProtocolMessage [" + ((ProtocolMessage) message).getProtocolMessageType() + "] received");
 
             }
+        } else if (message instanceof RequestBatch) {
+            RequestBatch batch = (RequestBatch) message;
+            Byte version = (Byte) session.getAttribute(CougarProtocol.PROTOCOL_VERSION_ATTR_NAME);
+            if (version == null) {
+                version = CougarProtocol.TRANSPORT_PROTOCOL_VERSION_MIN_SUPPORTED;
+            }
+            nioLogger.log(PROTOCOL, session, "CougarProtocolEncoder: Writing batch of %s requests", batch.getRequests().size());
+            buffer = encode(batch, version);
+            requestBatchesSent.incrementAndGet();
+            messageRequestsSent.addAndGet(batch.getRequests().size());
+            for (RequestMessage req : batch.getRequests()) {
+                payloadBytesCopied.addAndGet(req.getPayload().length);
+            }
         } else {
             throw new IllegalArgumentException("Unknown message type " + message);
         }
@@ -276,4 +319,19 @@ public class CougarProtocolEncoder extends ProtocolEncoderAdapter implements Exp
     public long getTlsResponsesSent() {
         return tlsResponsesSent.get();
     }
+
+    @ManagedAttribute
+    public long getResponsesFramedInPlace() {
+        return responsesFramedInPlace.get();
+    }
+
+    @ManagedAttribute
+    public long getRequestBatchesSent() {
+        return requestBatchesSent.get();
+    }
+
+    @ManagedAttribute
+    public long getPayloadBytesCopied() {
+        return payloadBytesCopied.get();
+    }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.netutil.nio;
+
+import com.betfair.cougar.netutil.nio.message.ResponseMessage;
+import org.apache.mina.common.ByteBuffer;
+import org.apache.mina.common.IoSession;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a response payload straight into a pooled MINA buffer which already has room for the frame header, so that
+ * the encoder can hand the buffer to the socket without copying the payload again. Each flush sends whatever has been
+ * written since the last one as a single response.
+ */
+public class FramedResponseOutputStream extends OutputStream {
+
+    private static final int INITIAL_PAYLOAD_CAPACITY = 256;
+
+    private final IoSession ioSession;
+    private final long correlationId;
+    private ByteBuffer frame;
+    private boolean sent;
+
+    public FramedResponseOutputStream(IoSession ioSession, long correlationId) {
+        this.ioSession = ioSession;
+        this.correlationId = correlationId;
+    }
+
+    private ByteBuffer frame() {
+        if (frame == null) {
+            frame = ResponseMessage.allocateFrame(INITIAL_PAYLOAD_CAPACITY);
+        }
+        return frame;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        frame().put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        frame().put(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (frame == null && sent) {
+            return;
+        }
+        ResponseMessage message = new ResponseMessage(correlationId, frame());
+        frame = null;
+        sent = true;
+        ioSession.write(message);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (frame != null) {
+            frame.release();
+            frame = null;
+        }
+    }
+}
@@ -51,6 +51,7 @@ public class NioConfig {
     private boolean useDirectBuffersInMina = false;
     private long rpcTimeoutGranularityMillis = 100;
     private long rpcTimeoutMillis = 0; // 0 means disabled
+    private RequestCoalescer requestCoalescer; // client only, null means requests are never batched
 
     public NioConfig() {
     }
@@ -100,7 +101,7 @@ public class NioConfig {
             config.getFilterChain().addLast("protocol", CougarProtocol.getServerInstance(nioLogger, keepAliveInterval, keepAliveTimeout, null, false, false));
         }
         else {
-            config.getFilterChain().addLast("protocol", CougarProtocol.getClientInstance(nioLogger, keepAliveInterval, keepAliveTimeout, null, false, false, rpcTimeoutMillis));
+            config.getFilterChain().addLast("protocol", CougarProtocol.getClientInstance(nioLogger, keepAliveInterval, keepAliveTimeout, null, false, false, rpcTimeoutMillis, requestCoalescer));
         }
 
         config.setThreadModel(ThreadModel.MANUAL);
@@ -248,4 +249,12 @@ public class NioConfig {
     public void setRpcTimeoutMillis(long rpcTimeoutMillis) {
         this.rpcTimeoutMillis = rpcTimeoutMillis;
     }
+
+    public RequestCoalescer getRequestCoalescer() {
+        return requestCoalescer;
+    }
+
+    public void setRequestCoalescer(RequestCoalescer requestCoalescer) {
+        this.requestCoalescer = requestCoalescer;
+    }
 }
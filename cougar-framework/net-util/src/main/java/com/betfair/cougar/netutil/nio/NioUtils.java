@@ -19,13 +19,11 @@ package com.betfair.cougar.netutil.nio;
 import com.betfair.cougar.netutil.nio.message.EventMessage;
 import com.betfair.cougar.netutil.nio.message.ProtocolMessage;
 import com.betfair.cougar.transport.api.protocol.CougarObjectIOFactory;
-import com.betfair.cougar.transport.api.protocol.CougarObjectOutput;
 import com.betfair.cougar.netutil.nio.message.TLSResult;
 import org.apache.mina.common.ByteBuffer;
 import org.apache.mina.common.IoSession;
 import java.awt.*;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
@@ -77,12 +75,7 @@ public class NioUtils {
     }
 
     public static void writeEventMessageToSession(IoSession session, Object obj, CougarObjectIOFactory objectIOFactory) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        CougarObjectOutput out = objectIOFactory.newCougarObjectOutput(baos, CougarProtocol.getProtocolVersion(session));
-        out.writeObject(obj);
-        out.flush();
-
-        session.write(new EventMessage(baos.toByteArray()));
+        session.write(EventMessage.serialise(obj, objectIOFactory, CougarProtocol.getProtocolVersion(session)));
     }
 
     public static String getRemoteAddressUrl(IoSession session) {
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.netutil.nio;
+
+import com.betfair.cougar.netutil.nio.message.RequestBatch;
+import com.betfair.cougar.netutil.nio.message.RequestMessage;
+import org.apache.mina.common.IoSession;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces requests written by a client to a single session into one write, trading a small (configurable) amount
+ * of latency for far fewer writes (and so far fewer syscalls) under high request rates. A batch is written when the
+ * first request in it has waited for the batch window, or as soon as the batch reaches its size or byte limit,
+ * whichever comes first. Each request is still framed individually, so servers need no knowledge of batching and
+ * responses continue to be matched by correlation id.
+ * <p/>
+ * A batch window of zero (the default) disables batching entirely and requests are written as they are sent.
+ */
+@ManagedResource
+public class RequestCoalescer {
+
+    private long batchWindowMicros = 0;
+    private int maxBatchSize = 32;
+    private int maxBatchBytes = 65536;
+
+    private volatile ScheduledExecutorService flushScheduler;
+
+    private final AtomicLong batchesWritten = new AtomicLong();
+    private final AtomicLong requestsWritten = new AtomicLong();
+    private final AtomicLong flushesOnWindow = new AtomicLong();
+    private final AtomicLong flushesOnLimit = new AtomicLong();
+    private final AtomicLong totalCoalesceWaitNanos = new AtomicLong();
+
+    public boolean isEnabled() {
+        return batchWindowMicros > 0;
+    }
+
+    /**
+     * Creates the batcher used for all requests sent on the given session.
+     */
+    public SessionBatcher newBatcher(IoSession session) {
+        return new SessionBatcher(session);
+    }
+
+    private ScheduledExecutorService getFlushScheduler() {
+        if (flushScheduler == null) {
+            synchronized (this) {
+                if (flushScheduler == null) {
+                    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("RequestCoalescer-");
+                    threadFactory.setDaemon(true);
+                    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, threadFactory);
+                    // flushes are cheap and almost always redundant by the time they'd fire if a batch filled up
+                    executor.setRemoveOnCancelPolicy(true);
+                    flushScheduler = executor;
+                }
+            }
+        }
+        return flushScheduler;
+    }
+
+    public class SessionBatcher {
+        private final IoSession session;
+        private final Runnable flushTask = new Runnable() {
+            @Override
+            public void run() {
+                flush(true);
+            }
+        };
+
+        private List<RequestMessage> pending;
+        private int pendingBytes;
+        private long firstQueuedNanos;
+
+        private SessionBatcher(IoSession session) {
+            this.session = session;
+        }
+
+        public void write(RequestMessage req) {
+            boolean scheduleFlush = false;
+            synchronized (this) {
+                if (pending == null) {
+                    pending = new ArrayList<RequestMessage>(maxBatchSize);
+                    pendingBytes = 0;
+                    firstQueuedNanos = System.nanoTime();
+                    scheduleFlush = true;
+                }
+                pending.add(req);
+                pendingBytes += req.getPayload().length;
+                if (pending.size() >= maxBatchSize || pendingBytes >= maxBatchBytes) {
+                    flush(false);
+                    return;
+                }
+            }
+            if (scheduleFlush) {
+                getFlushScheduler().schedule(flushTask, batchWindowMicros, TimeUnit.MICROSECONDS);
+            }
+        }
+
+        /**
+         * Writes out anything pending, a stale timer firing for an already written batch simply flushes the
+         * following one a little early.
+         */
+        synchronized void flush(boolean onWindow) {
+            if (pending == null) {
+                return;
+            }
+            List<RequestMessage> toWrite = pending;
+            pending = null;
+
+            if (toWrite.size() == 1) {
+                session.write(toWrite.get(0));
+            } else {
+                session.write(new RequestBatch(toWrite));
+            }
+
+            batchesWritten.incrementAndGet();
+            requestsWritten.addAndGet(toWrite.size());
+            totalCoalesceWaitNanos.addAndGet(System.nanoTime() - firstQueuedNanos);
+            if (onWindow) {
+                flushesOnWindow.incrementAndGet();
+            } else {
+                flushesOnLimit.incrementAndGet();
+            }
+        }
+    }
+
+    public void shutdown() {
+        if (flushScheduler != null) {
+            flushScheduler.shutdown();
+        }
+    }
+
+    @ManagedAttribute
+    public long getBatchWindowMicros() {
+        return batchWindowMicros;
+    }
+
+    public void setBatchWindowMicros(long batchWindowMicros) {
+        this.batchWindowMicros = batchWindowMicros;
+    }
+
+    @ManagedAttribute
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @ManagedAttribute
+    public int getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    public void setMaxBatchBytes(int maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    @ManagedAttribute
+    public long getBatchesWritten() {
+        return batchesWritten.get();
+    }
+
+    @ManagedAttribute
+    public long getRequestsWritten() {
+        return requestsWritten.get();
+    }
+
+    @ManagedAttribute
+    public long getFlushesOnWindow() {
+        return flushesOnWindow.get();
+    }
+
+    @ManagedAttribute
+    public long getFlushesOnLimit() {
+        return flushesOnLimit.get();
+    }
+
+    @ManagedAttribute
+    public double getAverageBatchSize() {
+        long batches = batchesWritten.get();
+        return batches == 0 ? 0 : (double) requestsWritten.get() / batches;
+    }
+
+    @ManagedAttribute
+    public double getAverageCoalesceWaitMicros() {
+        long batches = batchesWritten.get();
+        return batches == 0 ? 0 : (double) totalCoalesceWaitNanos.get() / batches / 1000;
+    }
+}
@@ -31,6 +31,12 @@ public interface RequestResponseManager {
 
     int getOutstandingRequestCount();
 
+    /**
+     * Returns an exponentially weighted moving average of the time, in milliseconds, between sending a request
+     * and receiving its response, or 0 if no responses have been received yet.
+     */
+    double getResponseLatencyEwma();
+
     void sessionClosed(IoSession currentSession);
 
     void messageReceived(IoSession session, Object message);
@@ -16,6 +16,8 @@
 
 package com.betfair.cougar.netutil.nio;
 
+import com.betfair.cougar.util.ConcurrentLongObjectMap;
+import com.betfair.cougar.util.stats.ExponentiallyWeightedMovingAverage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.betfair.cougar.netutil.nio.message.RequestMessage;
@@ -24,13 +26,10 @@ import org.apache.mina.common.IoHandlerAdapter;
 import org.apache.mina.common.IoSession;
 
 import java.io.IOException;
-import java.util.HashSet;
 import java.util.LinkedList;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.logging.Level;
 
 /**
  *
@@ -41,32 +40,38 @@ public class RequestResponseManagerImpl extends IoHandlerAdapter implements Requ
 
     private final IoSession session;
     private AtomicLong correlationIdGenerator = new AtomicLong();
-    private Map<Long, WaitingResponseHandler> callbacks = new ConcurrentHashMap<Long, WaitingResponseHandler>();
+    private ConcurrentLongObjectMap<WaitingResponseHandler> callbacks = new ConcurrentLongObjectMap<WaitingResponseHandler>();
+    // since the timeout is the same for every request, send order is (near enough) expiry order
+    private Queue<WaitingResponseHandler> expiryQueue = new ConcurrentLinkedQueue<WaitingResponseHandler>();
     private volatile boolean broken = false;
     private NioLogger nioLogger;
     private long rpcTimeoutMillis; // 0 = disabled (by default)
+    private final RequestCoalescer.SessionBatcher batcher; // null = write each request as it's sent
+    // each response contributes a tenth, so roughly the last couple of dozen responses dominate the average
+    private final ExponentiallyWeightedMovingAverage responseLatency = new ExponentiallyWeightedMovingAverage(0.1);
 
     public RequestResponseManagerImpl(IoSession session, NioLogger nioLogger, long rpcTimeoutMillis) {
+        this(session, nioLogger, rpcTimeoutMillis, null);
+    }
+
+    public RequestResponseManagerImpl(IoSession session, NioLogger nioLogger, long rpcTimeoutMillis, RequestCoalescer requestCoalescer) {
         this.session = session;
         this.nioLogger = nioLogger;
         this.rpcTimeoutMillis = rpcTimeoutMillis;
+        this.batcher = requestCoalescer != null && requestCoalescer.isEnabled() ? requestCoalescer.newBatcher(session) : null;
     }
 
     public void checkForExpiredRequests() {
-        // do this in 2 steps so we don't need a lock around the map access
-        Set<Long> expiredCorrelationIds = new HashSet<Long>();
+        // only ever looks at requests which have expired, those which have already had a response are just discarded
         long now = System.currentTimeMillis();
-        for (Long key : callbacks.keySet()) {
-            WaitingResponseHandler handler = callbacks.get(key);
-            if (handler != null && handler.expiryTime < now) {
-                expiredCorrelationIds.add(key);
+        WaitingResponseHandler handler;
+        while ((handler = expiryQueue.peek()) != null && handler.expiryTime < now) {
+            if (!expiryQueue.remove(handler)) {
+                // someone else got there first
+                continue;
             }
-        }
-
-        for (Long key : expiredCorrelationIds) {
-            WaitingResponseHandler handler = callbacks.remove(key);
             // response might have come back in between
-            if (handler != null) {
+            if (callbacks.remove(handler.correlationId, handler)) {
                 handler.handler.timedOut();
             }
         }
@@ -77,14 +82,27 @@ public class RequestResponseManagerImpl extends IoHandlerAdapter implements Requ
         return callbacks.size();
     }
 
+    @Override
+    public double getResponseLatencyEwma() {
+        return responseLatency.get();
+    }
+
     @Override
     public long sendRequest(byte[] message, ResponseHandler handler) throws IOException {
         if (!broken) {
             long correlationId = correlationIdGenerator.incrementAndGet();
             RequestMessage req = new RequestMessage(correlationId, message);
-            callbacks.put(correlationId, new WaitingResponseHandler(getExpiryTime(), handler));
+            WaitingResponseHandler waitingHandler = new WaitingResponseHandler(correlationId, getExpiryTime(), handler);
+            callbacks.put(correlationId, waitingHandler);
+            if (rpcTimeoutMillis != 0) {
+                expiryQueue.add(waitingHandler);
+            }
 
-            session.write(req);
+            if (batcher != null) {
+                batcher.write(req);
+            } else {
+                session.write(req);
+            }
             return correlationId;
         }
         else {
@@ -105,7 +123,11 @@ public class RequestResponseManagerImpl extends IoHandlerAdapter implements Requ
         WaitingResponseHandler handler = callbacks.remove(resp.getCorrelationId());
         // could be null if it already timed out
         if (handler != null) {
-            handler.handler.responseReceived(resp);
+            responseLatency.record((System.nanoTime() - handler.sentNanos) / 1000000.0);
+            ResponseHandler responseHandler = handler.handler;
+            // the expiry queue may hold on to this until it would have expired, so don't keep the response handler alive
+            handler.handler = null;
+            responseHandler.responseReceived(resp);
         }
     }
 
@@ -123,8 +145,9 @@ public class RequestResponseManagerImpl extends IoHandlerAdapter implements Requ
     @Override
     public void sessionClosed(IoSession session) {
         broken = true;
-        final LinkedList<WaitingResponseHandler> callbackList = new LinkedList<WaitingResponseHandler>(callbacks.values());
-        callbacks.clear();
+        final LinkedList<WaitingResponseHandler> callbackList = new LinkedList<WaitingResponseHandler>();
+        callbacks.drainTo(callbackList);
+        expiryQueue.clear();
 
         for (WaitingResponseHandler handler : callbackList) {
             handler.handler.sessionClosed();
@@ -133,10 +156,13 @@ public class RequestResponseManagerImpl extends IoHandlerAdapter implements Requ
     }
 
     private class WaitingResponseHandler {
+        long correlationId;
         long expiryTime;
+        long sentNanos = System.nanoTime();
         ResponseHandler handler;
 
-        private WaitingResponseHandler(long expiryTime, ResponseHandler handler) {
+        private WaitingResponseHandler(long correlationId, long expiryTime, ResponseHandler handler) {
+            this.correlationId = correlationId;
             this.expiryTime = expiryTime;
             this.handler = handler;
         }
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.netutil.nio.connected;
+
+import com.betfair.cougar.core.api.transcription.BinaryCodecInput;
+import com.betfair.cougar.core.api.transcription.BinaryCodecOutput;
+import com.betfair.platform.virtualheap.NodeType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Compact encoding of the actions within an {@link Update}, used in place of transcribing each action when the
+ * protocol version supports it.
+ * <p/>
+ * Each action is written as an opcode followed by its fields as varints and strings. Runs of consecutive
+ * {@link SetScalar}s, which make up the bulk of most updates, are grouped under a single opcode with a count, and
+ * each carries only the difference from the previous field id and a type tagged value. Decoded actions are created
+ * with their heap representations, ready to be applied to the client's heap.
+ * <p/>
+ * Scalar values decode to the same types as they would through hessian, so characters are read as strings.
+ */
+public final class CompactUpdateCodec {
+
+    private static final int INSTALL_ROOT = 1;
+    private static final int INSTALL_FIELD = 2;
+    private static final int INSTALL_INDEX = 3;
+    private static final int REMOVE_CHILDREN = 4;
+    private static final int REMOVE_FIELD = 5;
+    private static final int REMOVE_INDEX = 6;
+    private static final int TERMINATE_HEAP = 7;
+    private static final int SET_SCALARS = 8;
+
+    private static final int VALUE_NULL = 0;
+    private static final int VALUE_FALSE = 1;
+    private static final int VALUE_TRUE = 2;
+    private static final int VALUE_INT = 3;
+    private static final int VALUE_LONG = 4;
+    private static final int VALUE_DOUBLE_MILLIS = 5;
+    private static final int VALUE_DOUBLE = 6;
+    private static final int VALUE_STRING = 7;
+    private static final int VALUE_DATE = 8;
+    private static final int VALUE_SHORT = 9;
+    private static final int VALUE_BYTE = 10;
+    private static final int VALUE_FLOAT = 11;
+
+    private CompactUpdateCodec() {
+    }
+
+    /**
+     * @return the encoded actions, or null if an action or value can't be compactly encoded, in which case the
+     * update should be transcribed as normal
+     */
+    public static byte[] encode(List<UpdateAction> actions) {
+        BinaryCodecOutput out = new BinaryCodecOutput();
+        int size = actions.size();
+        for (int i = 0; i < size; ) {
+            UpdateAction action = actions.get(i);
+            if (action instanceof SetScalar) {
+                int runEnd = i + 1;
+                while (runEnd < size && actions.get(runEnd) instanceof SetScalar) {
+                    runEnd++;
+                }
+                out.writeUnsignedVarInt(SET_SCALARS);
+                out.writeUnsignedVarInt(runEnd - i);
+                int lastId = 0;
+                for (; i < runEnd; i++) {
+                    SetScalar setScalar = (SetScalar) actions.get(i);
+                    out.writeVarLong((long) setScalar.getId() - lastId);
+                    lastId = setScalar.getId();
+                    if (!writeValue(setScalar.getValue(), out)) {
+                        return null;
+                    }
+                }
+                continue;
+            }
+
+            if (action instanceof InstallRoot) {
+                InstallRoot a = (InstallRoot) action;
+                out.writeUnsignedVarInt(INSTALL_ROOT);
+                out.writeUnsignedVarInt(a.getId());
+                out.writeEnum(a.getType());
+            }
+            else if (action instanceof InstallField) {
+                InstallField a = (InstallField) action;
+                out.writeUnsignedVarInt(INSTALL_FIELD);
+                out.writeUnsignedVarInt(a.getParentId());
+                out.writeUnsignedVarInt(a.getId());
+                out.writeString(a.getName());
+                out.writeEnum(a.getType());
+            }
+            else if (action instanceof InstallIndex) {
+                InstallIndex a = (InstallIndex) action;
+                out.writeUnsignedVarInt(INSTALL_INDEX);
+                out.writeUnsignedVarInt(a.getParentId());
+                out.writeUnsignedVarInt(a.getId());
+                out.writeUnsignedVarInt(a.getIndex());
+                out.writeEnum(a.getType());
+            }
+            else if (action instanceof RemoveChildren) {
+                out.writeUnsignedVarInt(REMOVE_CHILDREN);
+                out.writeUnsignedVarInt(((RemoveChildren) action).getId());
+            }
+            else if (action instanceof RemoveField) {
+                RemoveField a = (RemoveField) action;
+                out.writeUnsignedVarInt(REMOVE_FIELD);
+                out.writeUnsignedVarInt(a.getParentId());
+                out.writeUnsignedVarInt(a.getId());
+                out.writeString(a.getName());
+            }
+            else if (action instanceof RemoveIndex) {
+                RemoveIndex a = (RemoveIndex) action;
+                out.writeUnsignedVarInt(REMOVE_INDEX);
+                out.writeUnsignedVarInt(a.getParentId());
+                out.writeUnsignedVarInt(a.getId());
+                out.writeUnsignedVarInt(a.getIndex());
+            }
+            else if (action instanceof TerminateHeap) {
+                out.writeUnsignedVarInt(TERMINATE_HEAP);
+            }
+            else {
+                return null;
+            }
+            i++;
+        }
+        return out.toByteArray();
+    }
+
+    public static List<UpdateAction> decode(byte[] encoded) throws IOException {
+        BinaryCodecInput in = new BinaryCodecInput(encoded);
+        // a good guess for scalar heavy updates, which are the ones that matter
+        List<UpdateAction> actions = new ArrayList<UpdateAction>(Math.max(encoded.length / 3, 10));
+        while (in.remaining() > 0) {
+            int opcode = in.readUnsignedVarInt();
+            switch (opcode) {
+                case SET_SCALARS:
+                    int count = in.readUnsignedVarInt();
+                    int id = 0;
+                    for (int i = 0; i < count; i++) {
+                        id += (int) in.readVarLong();
+                        actions.add(new SetScalar(new com.betfair.platform.virtualheap.updates.SetScalar(id, readValue(in))));
+                    }
+                    break;
+                case INSTALL_ROOT:
+                    actions.add(new InstallRoot(new com.betfair.platform.virtualheap.updates.InstallRoot(
+                            in.readUnsignedVarInt(), readNodeType(in))));
+                    break;
+                case INSTALL_FIELD:
+                    actions.add(new InstallField(new com.betfair.platform.virtualheap.updates.InstallField(
+                            in.readUnsignedVarInt(), in.readUnsignedVarInt(), in.readString(), readNodeType(in))));
+                    break;
+                case INSTALL_INDEX:
+                    actions.add(new InstallIndex(new com.betfair.platform.virtualheap.updates.InstallIndex(
+                            in.readUnsignedVarInt(), in.readUnsignedVarInt(), in.readUnsignedVarInt(), readNodeType(in))));
+                    break;
+                case REMOVE_CHILDREN:
+                    // deallocated ids are only of use to the server, so as with transcription they're not sent
+                    actions.add(new RemoveChildren(in.readUnsignedVarInt(), null));
+                    break;
+                case REMOVE_FIELD:
+                    actions.add(new RemoveField(in.readUnsignedVarInt(), in.readUnsignedVarInt(), in.readString(), null));
+                    break;
+                case REMOVE_INDEX:
+                    actions.add(new RemoveIndex(in.readUnsignedVarInt(), in.readUnsignedVarInt(), in.readUnsignedVarInt(), null));
+                    break;
+                case TERMINATE_HEAP:
+                    actions.add(TerminateHeap.INSTANCE);
+                    break;
+                default:
+                    throw new IOException("Unrecognised update action opcode: " + opcode);
+            }
+        }
+        return actions;
+    }
+
+    private static NodeType readNodeType(BinaryCodecInput in) throws IOException {
+        return NodeType.valueOf(in.readString());
+    }
+
+    private static boolean writeValue(Object value, BinaryCodecOutput out) {
+        if (value == null) {
+            out.writeUnsignedVarInt(VALUE_NULL);
+        }
+        else if (value instanceof Integer) {
+            out.writeUnsignedVarInt(VALUE_INT);
+            out.writeVarLong((Integer) value);
+        }
+        else if (value instanceof Double) {
+            double d = (Double) value;
+            // prices and the like are usually exact in thousandths, which makes for a much shorter varint. round, as
+            // scaling up can leave them just short (1.001 * 1000 is 1000.9999999999999)
+            long millis = Math.round(d * 1000);
+            if (Double.doubleToRawLongBits(millis / 1000.0) == Double.doubleToRawLongBits(d)) {
+                out.writeUnsignedVarInt(VALUE_DOUBLE_MILLIS);
+                out.writeVarLong(millis);
+            }
+            else {
+                out.writeUnsignedVarInt(VALUE_DOUBLE);
+                out.writeDouble(d);
+            }
+        }
+        else if (value instanceof Float) {
+            out.writeUnsignedVarInt(VALUE_FLOAT);
+            out.writeFloat((Float) value);
+        }
+        else if (value instanceof Short) {
+            out.writeUnsignedVarInt(VALUE_SHORT);
+            out.writeVarLong((Short) value);
+        }
+        else if (value instanceof Byte) {
+            out.writeUnsignedVarInt(VALUE_BYTE);
+            out.writeVarLong((Byte) value);
+        }
+        else if (value instanceof Long) {
+            out.writeUnsignedVarInt(VALUE_LONG);
+            out.writeVarLong((Long) value);
+        }
+        else if (value instanceof String || value instanceof Character) {
+            out.writeUnsignedVarInt(VALUE_STRING);
+            out.writeString(value.toString());
+        }
+        else if (value instanceof Boolean) {
+            out.writeUnsignedVarInt((Boolean) value ? VALUE_TRUE : VALUE_FALSE);
+        }
+        else if (value instanceof Date) {
+            out.writeUnsignedVarInt(VALUE_DATE);
+            out.writeVarLong(((Date) value).getTime());
+        }
+        else {
+            return false;
+        }
+        return true;
+    }
+
+    private static Object readValue(BinaryCodecInput in) throws IOException {
+        int tag = in.readUnsignedVarInt();
+        switch (tag) {
+            case VALUE_NULL: return null;
+            case VALUE_FALSE: return Boolean.FALSE;
+            case VALUE_TRUE: return Boolean.TRUE;
+            case VALUE_INT: return (int) in.readVarLong();
+            case VALUE_LONG: return in.readVarLong();
+            case VALUE_DOUBLE_MILLIS: return in.readVarLong() / 1000.0;
+            case VALUE_DOUBLE: return in.readDouble();
+            case VALUE_STRING: return in.readString();
+            case VALUE_DATE: return new Date(in.readVarLong());
+            case VALUE_SHORT: return (short) in.readVarLong();
+            case VALUE_BYTE: return (byte) in.readVarLong();
+            case VALUE_FLOAT: return in.readFloat();
+            default: throw new IOException("Unrecognised scalar value tag: " + tag);
+        }
+    }
+}
@@ -100,6 +100,14 @@ public class InstallField extends AbstractUpdateAction {
         return heapRepresentation;
     }
 
+    public int getParentId() {
+        return parentId;
+    }
+
+    public NodeType getType() {
+        return type;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -101,6 +101,14 @@ public class InstallIndex extends AbstractUpdateAction {
         return heapRepresentation;
     }
 
+    public int getParentId() {
+        return parentId;
+    }
+
+    public NodeType getType() {
+        return type;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -82,6 +82,14 @@ public class InstallRoot extends AbstractUpdateAction {
         return heapRepresentation;
     }
 
+    public int getId() {
+        return id;
+    }
+
+    public NodeType getType() {
+        return type;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
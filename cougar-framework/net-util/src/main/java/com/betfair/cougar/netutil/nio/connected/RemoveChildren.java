@@ -78,6 +78,10 @@ public class RemoveChildren extends AbstractUpdateAction {
         return heapRepresentation;
     }
 
+    public int getId() {
+        return id;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -88,6 +88,18 @@ public class RemoveField extends AbstractUpdateAction {
         return heapRepresentation;
     }
 
+    public int getParentId() {
+        return parentId;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
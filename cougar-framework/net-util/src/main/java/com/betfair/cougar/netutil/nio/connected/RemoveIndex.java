@@ -89,6 +89,18 @@ public class RemoveIndex extends AbstractUpdateAction {
         return heapRepresentation;
     }
 
+    public int getParentId() {
+        return parentId;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
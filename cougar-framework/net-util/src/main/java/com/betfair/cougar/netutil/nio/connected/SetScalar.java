@@ -82,6 +82,14 @@ public class SetScalar extends AbstractUpdateAction {
         return heapRepresentation;
     }
 
+    public int getId() {
+        return id;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.netutil.nio.hessian;
+
+import com.betfair.cougar.core.api.transcription.BinaryCodec;
+import com.betfair.cougar.core.api.transcription.BinaryCodecs;
+import com.betfair.cougar.core.api.transcription.Parameter;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The hessian class definition used for objects written with a {@link BinaryCodec}.
+ * <p/>
+ * The first field is a marker carrying a fingerprint of the layout, and the remaining fields describe each
+ * parameter as <code>name:typeCode</code>. This makes the class definition a few dozen bytes longer than the field
+ * name list written for normally transcribed objects, but hessian only writes it once per stream, and it lets a reader
+ * whose own layout differs (i.e. one generated from a different minor version of the idd) decode by field name instead.
+ */
+class BinaryCodecLayout {
+
+    static final String MARKER_PREFIX = "$binaryCodec#";
+
+    private static final ConcurrentHashMap<Class, BinaryCodecLayout> layouts = new ConcurrentHashMap<Class, BinaryCodecLayout>();
+
+    private final String[] fields;
+
+    private BinaryCodecLayout(Parameter[] parameters) {
+        fields = new String[parameters.length + 1];
+        long fingerprint = 0xcbf29ce484222325L;
+        for (int i = 0; i < parameters.length; i++) {
+            String field = parameters[i].getName() + ":" + BinaryCodecs.typeCode(parameters[i].getParameterType());
+            fields[i + 1] = field;
+            // FNV-1a
+            for (int j = 0; j < field.length(); j++) {
+                fingerprint ^= field.charAt(j);
+                fingerprint *= 0x100000001b3L;
+            }
+            fingerprint ^= ';';
+            fingerprint *= 0x100000001b3L;
+        }
+        fields[0] = MARKER_PREFIX + Long.toHexString(fingerprint);
+    }
+
+    static BinaryCodecLayout forCodec(BinaryCodec<?> codec) {
+        BinaryCodecLayout layout = layouts.get(codec.getClass());
+        if (layout == null) {
+            layout = new BinaryCodecLayout(codec.getParameters());
+            layouts.putIfAbsent(codec.getClass(), layout);
+        }
+        return layout;
+    }
+
+    static boolean isBinaryEncoded(Object[] fields) {
+        return fields.length > 0 && fields[0] instanceof String && ((String) fields[0]).startsWith(MARKER_PREFIX);
+    }
+
+    String[] getFields() {
+        return fields;
+    }
+
+    /**
+     * @return true if the writer of the given class definition used the same layout as this one
+     */
+    boolean matches(Object[] classDefinitionFields) {
+        return classDefinitionFields.length == fields.length && fields[0].equals(classDefinitionFields[0]);
+    }
+
+    static String getName(String field) {
+        return field.substring(0, field.indexOf(':'));
+    }
+
+    static String getTypeCode(String field) {
+        return field.substring(field.indexOf(':') + 1);
+    }
+}
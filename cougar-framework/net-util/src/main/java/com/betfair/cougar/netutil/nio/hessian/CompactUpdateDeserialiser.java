@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.netutil.nio.hessian;
+
+import com.betfair.cougar.netutil.nio.connected.CompactUpdateCodec;
+import com.betfair.cougar.netutil.nio.connected.Update;
+import com.caucho.hessian.io.AbstractDeserializer;
+import com.caucho.hessian.io.AbstractHessianInput;
+import com.caucho.hessian.io.Deserializer;
+
+import java.io.IOException;
+
+/**
+ * Deserialiser for updates written by {@link CompactUpdateSerialiser}, passing those which were transcribed as normal
+ * to the delegate.
+ */
+public class CompactUpdateDeserialiser extends AbstractDeserializer {
+
+    private final Class<? extends Update> cls;
+    private final Deserializer delegate;
+
+    public CompactUpdateDeserialiser(Class<? extends Update> cls, Deserializer delegate) {
+        this.cls = cls;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Object readObject(AbstractHessianInput in, Object[] fields) throws IOException {
+        if (fields.length != 1 || !CompactUpdateSerialiser.COMPACT_ACTIONS_FIELD.equals(fields[0])) {
+            return delegate.readObject(in, fields);
+        }
+
+        try {
+            Update update = cls.newInstance();
+            update.setActions(CompactUpdateCodec.decode(in.readBytes()));
+            return update;
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.netutil.nio.hessian;
+
+import com.betfair.cougar.netutil.nio.connected.CompactUpdateCodec;
+import com.betfair.cougar.netutil.nio.connected.Update;
+import com.caucho.hessian.io.AbstractHessianOutput;
+import com.caucho.hessian.io.Serializer;
+
+import java.io.IOException;
+
+/**
+ * Writes an {@link Update} as a hessian object with a single binary field holding its actions encoded by
+ * {@link CompactUpdateCodec}. Updates holding anything the codec can't encode are passed to the delegate.
+ * <p/>
+ * As with binary codecs, compactly written updates don't take part in hessian reference tracking.
+ */
+public class CompactUpdateSerialiser implements Serializer {
+
+    static final String COMPACT_ACTIONS_FIELD = "$compactActions";
+
+    private final Serializer delegate;
+
+    public CompactUpdateSerialiser(Serializer delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void writeObject(Object obj, AbstractHessianOutput out) throws IOException {
+        byte[] encoded = CompactUpdateCodec.encode(((Update) obj).getActions());
+        if (encoded == null) {
+            delegate.writeObject(obj, out);
+            return;
+        }
+
+        String className = obj.getClass().getName();
+        int ref = out.writeObjectBegin(className);
+        if (ref < 0) {
+            out.writeInt(1);
+            out.writeString(COMPACT_ACTIONS_FIELD);
+            out.writeObjectBegin(className);
+        }
+        out.writeBytes(encoded);
+    }
+}
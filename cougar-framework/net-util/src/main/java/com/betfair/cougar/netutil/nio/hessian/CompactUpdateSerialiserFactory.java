@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.netutil.nio.hessian;
+
+import com.betfair.cougar.core.api.transcription.TranscribableParams;
+import com.betfair.cougar.netutil.nio.connected.Update;
+import com.caucho.hessian.io.AbstractSerializerFactory;
+import com.caucho.hessian.io.Deserializer;
+import com.caucho.hessian.io.HessianProtocolException;
+import com.caucho.hessian.io.Serializer;
+
+import java.util.Set;
+
+/**
+ * Where the protocol version supports it, connected object updates are written using
+ * {@link com.betfair.cougar.netutil.nio.connected.CompactUpdateCodec} rather than transcribing each action. Must be
+ * added ahead of the {@link TranscribableSerialiserFactory}.
+ */
+public class CompactUpdateSerialiserFactory extends AbstractSerializerFactory {
+
+    private Set<TranscribableParams> transcriptionParams;
+    private boolean client;
+
+    public CompactUpdateSerialiserFactory(Set<TranscribableParams> transcriptionParams, boolean client) {
+        this.transcriptionParams = transcriptionParams;
+        this.client = client;
+    }
+
+    @Override
+    public Deserializer getDeserializer(Class cls) throws HessianProtocolException {
+        if (transcriptionParams.contains(TranscribableParams.CompactHeapUpdates) && Update.class.isAssignableFrom(cls)) {
+            return new CompactUpdateDeserialiser(cls, new TranscribableDeserialiser(cls, transcriptionParams, client));
+        }
+        return null;
+    }
+
+    @Override
+    public Serializer getSerializer(Class cls) throws HessianProtocolException {
+        if (transcriptionParams.contains(TranscribableParams.CompactHeapUpdates) && Update.class.isAssignableFrom(cls)) {
+            return new CompactUpdateSerialiser(new TranscribableSerialiser(transcriptionParams, client));
+        }
+        return null;
+    }
+}
@@ -39,6 +39,7 @@ public class HessianObjectIOFactory implements CougarObjectIOFactory {
             Set<TranscribableParams> transcriptionParams = CougarProtocol.getTranscribableParamSet(b);
             CougarSerializerFactory csf = CougarSerializerFactory.createInstance(transcriptionParams);
             csf.setAllowNonSerializable(true);
+            csf.addFactory(new CompactUpdateSerialiserFactory(transcriptionParams, client));
             csf.addFactory(new TranscribableSerialiserFactory(transcriptionParams, client));
             csf.addFactory(new EnumSerialiserFactory(transcriptionParams));
             csf.addFactory(new FaultDetailSerialiserFactory(transcriptionParams));
@@ -21,7 +21,11 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+import com.betfair.cougar.core.api.transcription.BinaryCodec;
+import com.betfair.cougar.core.api.transcription.BinaryCodecInput;
+import com.betfair.cougar.core.api.transcription.BinaryCodecs;
 import com.betfair.cougar.core.api.transcription.Parameter;
+import com.betfair.cougar.core.api.transcription.ParameterType;
 import com.betfair.cougar.core.api.transcription.Transcribable;
 import com.betfair.cougar.core.api.transcription.TranscribableParams;
 import com.betfair.cougar.core.api.transcription.TranscriptionInput;
@@ -47,6 +51,10 @@ public class TranscribableDeserialiser extends AbstractDeserializer {
     @Override
 	public Object readObject(AbstractHessianInput in, Object[] fields) throws IOException {
 
+        if (BinaryCodecLayout.isBinaryEncoded(fields)) {
+            return readBinary(in, fields);
+        }
+
 		try {
 
 			Transcribable o = cls.newInstance();
@@ -81,4 +89,63 @@ public class TranscribableDeserialiser extends AbstractDeserializer {
 		}
 
 	}
+
+    private Object readBinary(final AbstractHessianInput in, Object[] fields) throws IOException {
+        BinaryCodecInput bci = new BinaryCodecInput(in.readBytes(), new BinaryCodecInput.DeferredObjectSource() {
+            @Override
+            public Object readObject(ParameterType type) throws IOException {
+                return in.readObject(type.getImplementationClass());
+            }
+        });
+
+        try {
+            BinaryCodec<Transcribable> codec = BinaryCodecs.forClass(cls);
+            if (codec != null && BinaryCodecLayout.forCodec(codec).matches(fields)) {
+                return codec.read(bci);
+            }
+
+            // the writer's layout differs from ours, so match fields up by name as we would for a hessian transcribed object
+            Transcribable o = cls.newInstance();
+
+            Map<String, Parameter> paramMap = new HashMap<String, Parameter>();
+            for (Parameter param : o.getParameters()) {
+                paramMap.put(param.getName(), param);
+            }
+
+            final Map<String, Object> fieldValues = new HashMap<String, Object>();
+            for (int i = 1; i < fields.length; i++) {
+                String name = BinaryCodecLayout.getName((String) fields[i]);
+                String typeCode = BinaryCodecLayout.getTypeCode((String) fields[i]);
+                Parameter param = paramMap.get(name);
+                if (BinaryCodecs.DEFERRED_TYPE_CODE.equals(typeCode)) {
+                    Object value = in.readObject(param != null ? param.getParameterType().getImplementationClass() : null);
+                    if (param != null) {
+                        fieldValues.put(name, value);
+                    }
+                }
+                else if (param != null && typeCode.equals(BinaryCodecs.typeCode(param.getParameterType()))) {
+                    // enums are transcribed from their names
+                    ParameterType type = param.getParameterType();
+                    fieldValues.put(name, type.getType() == ParameterType.Type.ENUM ? bci.readString() : bci.readValue(type));
+                }
+                else {
+                    // unknown to us, or of an incompatible type
+                    bci.readValue(typeCode);
+                }
+            }
+
+            o.transcribe(new TranscriptionInput() {
+                @Override
+                public <T> T readObject(Parameter param, boolean client) throws Exception {
+                    return (T) fieldValues.get(param.getName());
+                }
+            }, transcriptionParams, client);
+            return o;
+
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
 }
@@ -20,6 +20,9 @@ import java.io.IOException;
 import java.util.Set;
 
 import com.betfair.cougar.core.api.ServiceVersion;
+import com.betfair.cougar.core.api.transcription.BinaryCodec;
+import com.betfair.cougar.core.api.transcription.BinaryCodecOutput;
+import com.betfair.cougar.core.api.transcription.BinaryCodecs;
 import com.betfair.cougar.core.api.transcription.Parameter;
 import com.betfair.cougar.core.api.transcription.Transcribable;
 import com.betfair.cougar.core.api.transcription.TranscribableParams;
@@ -32,6 +35,9 @@ import com.caucho.hessian.io.Serializer;
  * it will write via the getParameters method, and write <b>only</b> those fields in the order declared
  * </p>
  * data type classes generated from idd conform to the above restrictions
+ * </p>
+ * where the protocol version supports it, data types with a generated {@link BinaryCodec} instead write their simple fields as a single
+ * binary value, followed by any nested data types, which avoids both per-field hessian encoding and reference tracking. see {@link BinaryCodecLayout}
  */
 public class TranscribableSerialiser implements Serializer {
 
@@ -46,6 +52,14 @@ public class TranscribableSerialiser implements Serializer {
     @Override
 	public void writeObject(Object obj, final AbstractHessianOutput out) throws IOException {
 		try {
+            if (transcriptionParams.contains(TranscribableParams.GeneratedBinaryCodecs)) {
+                BinaryCodec<Transcribable> codec = BinaryCodecs.forClass(obj.getClass());
+                if (codec != null) {
+                    writeWithCodec((Transcribable) obj, codec, out);
+                    return;
+                }
+            }
+
 			if (out.addRef(obj)) {
 				return;
 			}
@@ -83,6 +97,26 @@ public class TranscribableSerialiser implements Serializer {
 
 	}
 
+    private void writeWithCodec(Transcribable transcribable, BinaryCodec<Transcribable> codec, AbstractHessianOutput out) throws IOException {
+        // codec support implies MajorOnlyPackageNaming, so no class name migration is needed
+        String className = transcribable.getClass().getName();
+        int ref = out.writeObjectBegin(className);
+        if (ref < 0) {
+            String[] fields = BinaryCodecLayout.forCodec(codec).getFields();
+            out.writeInt(fields.length);
+            for (String field : fields) {
+                out.writeString(field);
+            }
+            out.writeObjectBegin(className);
+        }
+        BinaryCodecOutput bco = new BinaryCodecOutput();
+        codec.write(transcribable, bco);
+        out.writeBytes(bco.toByteArray());
+        for (Object deferred : bco.getDeferredObjects()) {
+            out.writeObject(deferred);
+        }
+    }
+
 	private void transcribe(final AbstractHessianOutput out, Transcribable transcribable, boolean client) throws IOException {
 		try {
 			transcribable.transcribe(new TranscriptionOutput() {
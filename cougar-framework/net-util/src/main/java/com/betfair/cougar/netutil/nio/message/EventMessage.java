@@ -18,29 +18,74 @@ package com.betfair.cougar.netutil.nio.message;
 
 import com.betfair.cougar.netutil.nio.CougarProtocol;
 import com.betfair.cougar.netutil.nio.CougarProtocolEncoder;
+import com.betfair.cougar.transport.api.protocol.CougarObjectIOFactory;
+import com.betfair.cougar.transport.api.protocol.CougarObjectOutput;
 import org.apache.mina.common.ByteBuffer;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
 
+/**
+ * An event message. The framed form of an event is the same for every protocol version which supports events, so it
+ * is only ever framed once and the same underlying buffer is then shared by every session this message is written to.
+ */
 public class EventMessage extends AbstractMessage implements ProtocolMessage {
 
-    private Map<Byte, ByteBuffer> serialisedForms = new HashMap<Byte, ByteBuffer>();
-    private byte[] payload;
+    private static final int HEADER_LENGTH = 5;
+    private static final int INITIAL_FRAME_CAPACITY = 256;
+
+    private volatile ByteBuffer framed;
+    private volatile byte[] payload;
+    private final int payloadLength;
 
     public EventMessage(byte[] payload) {//NOSONAR
         this.payload = payload;
-        serialise();
+        this.payloadLength = payload.length;
     }
 
-    private void serialise() {
-        for (byte b=CougarProtocol.TRANSPORT_PROTOCOL_VERSION_MIN_SUPPORTED; b<=CougarProtocol.TRANSPORT_PROTOCOL_VERSION_MAX_SUPPORTED; b++) {
-            serialisedForms.put(b, CougarProtocolEncoder.encode(this, b));
-        }
+    private EventMessage(ByteBuffer framed) {
+        this.framed = framed;
+        this.payloadLength = framed.position() - HEADER_LENGTH;
+    }
+
+    /**
+     * Serialises the given object directly into a framed buffer, avoiding any intermediate copies of the payload.
+     */
+    public static EventMessage serialise(Object obj, CougarObjectIOFactory objectIOFactory, byte protocolVersion) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(INITIAL_FRAME_CAPACITY);
+        buffer.setAutoExpand(true);
+        // length is filled in once we know it
+        buffer.putInt(0);
+        buffer.put(ProtocolMessage.ProtocolMessageType.EVENT.getMessageType());
+        CougarObjectOutput out = objectIOFactory.newCougarObjectOutput(buffer.asOutputStream(), protocolVersion);
+        out.writeObject(obj);
+        out.flush();
+        buffer.putInt(0, buffer.position() - 4);
+        return new EventMessage(buffer);
     }
 
     public byte[] getPayload() {
-        return payload;
+        byte[] ret = payload;
+        if (ret == null) {
+            // only expected for diagnostics on the sending side
+            ByteBuffer dup = framed.duplicate();
+            dup.flip();
+            dup.position(HEADER_LENGTH);
+            ret = new byte[payloadLength];
+            dup.get(ret);
+            payload = ret;
+        }
+        return ret;
+    }
+
+    public int getPayloadLength() {
+        return payloadLength;
+    }
+
+    /**
+     * @return the number of bytes this message occupies on the wire, including the header
+     */
+    public int getFramedLength() {
+        return payloadLength + HEADER_LENGTH;
     }
 
     @Override
@@ -50,6 +95,15 @@ public class EventMessage extends AbstractMessage implements ProtocolMessage {
 
     @Override
     public ByteBuffer getSerialisedForm(byte protocolVersion) {
-        return serialisedForms.get(protocolVersion).duplicate();
+        if (protocolVersion < CougarProtocol.TRANSPORT_PROTOCOL_VERSION_BIDIRECTION_RPC) {
+            return null;
+        }
+        ByteBuffer ret = framed;
+        if (ret == null) {
+            // benign race, worst case we frame it twice
+            ret = CougarProtocolEncoder.encode(this, protocolVersion);
+            framed = ret;
+        }
+        return ret.duplicate();
     }
-}
\ No newline at end of file
+}
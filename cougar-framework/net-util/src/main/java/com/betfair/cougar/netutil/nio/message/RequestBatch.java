@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.netutil.nio.message;
+
+import java.util.List;
+
+/**
+ * A set of requests to be written to a session in a single write. Each request is framed exactly as if written on its
+ * own, one after the other, so the receiving end sees nothing different and still replies per correlation id.
+ */
+public class RequestBatch {
+
+    private final List<RequestMessage> requests;
+
+    public RequestBatch(List<RequestMessage> requests) {
+        this.requests = requests;
+    }
+
+    public List<RequestMessage> getRequests() {
+        return requests;
+    }
+
+    public int getFramedLength() {
+        int ret = 0;
+        for (RequestMessage req : requests) {
+            // 4 byte length, 1 byte type and 8 byte correlation id
+            ret += 13 + req.getPayload().length;
+        }
+        return ret;
+    }
+}
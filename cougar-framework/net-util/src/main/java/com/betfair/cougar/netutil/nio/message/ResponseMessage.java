@@ -16,23 +16,88 @@
 
 package com.betfair.cougar.netutil.nio.message;
 
+import org.apache.mina.common.ByteBuffer;
+
 /**
  *
  */
 public class ResponseMessage extends AbstractMessage implements ProtocolMessage {
 
+    // length (4) + message type (1) + correlation id (8)
+    public static final int FRAME_HEADER_LENGTH = 13;
+
     private byte[] payload;
     private long correlationId;
+    private ByteBuffer frame;
+    private final int payloadLength;
 
     public ResponseMessage(long correlationId, byte[] payload) {//NOSONAR
         this.correlationId = correlationId;
         this.payload = payload;
+        this.payloadLength = payload.length;
+    }
+
+    /**
+     * Creates a response whose payload has already been written into a frame obtained from {@link #allocateFrame(int)},
+     * so that it can be written to the wire without being copied again. Such a response may only be written once.
+     */
+    public ResponseMessage(long correlationId, ByteBuffer frame) {
+        this.correlationId = correlationId;
+        this.frame = frame;
+        this.payloadLength = frame.position() - FRAME_HEADER_LENGTH;
+        frame.putInt(0, payloadLength + 9);
+        frame.putLong(5, correlationId);
+    }
+
+    /**
+     * Allocates a buffer (from MINA's buffer pool) with space reserved for the header, ready for the payload to be
+     * written into it.
+     */
+    public static ByteBuffer allocateFrame(int initialPayloadCapacity) {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_LENGTH + initialPayloadCapacity);
+        frame.setAutoExpand(true);
+        frame.position(FRAME_HEADER_LENGTH);
+        return frame;
     }
 
-    public byte[] getPayload() {
+    public boolean isPreFramed() {
+        return payload == null;
+    }
+
+    /**
+     * Hands over the pre-framed form of this message, with the message type set. MINA releases the buffer back to its
+     * pool once written, hence this may only be called once.
+     */
+    public synchronized ByteBuffer takeFrame(ProtocolMessageType messageType) {
+        if (frame == null) {
+            throw new IllegalStateException("Pre-framed response "+correlationId+" has already been written");
+        }
+        ByteBuffer ret = frame;
+        frame = null;
+        ret.put(4, messageType.getMessageType());
+        return ret;
+    }
+
+    public synchronized byte[] getPayload() {
+        if (payload == null) {
+            if (frame == null) {
+                throw new IllegalStateException("Pre-framed response "+correlationId+" has already been written");
+            }
+            // only expected for diagnostics on the sending side
+            ByteBuffer dup = frame.duplicate();
+            dup.flip();
+            dup.position(FRAME_HEADER_LENGTH);
+            byte[] ret = new byte[payloadLength];
+            dup.get(ret);
+            return ret;
+        }
         return payload;
     }
 
+    public int getPayloadLength() {
+        return payloadLength;
+    }
+
     @Override
     public ProtocolMessageType getProtocolMessageType() {
         return ProtocolMessageType.MESSAGE_RESPONSE;
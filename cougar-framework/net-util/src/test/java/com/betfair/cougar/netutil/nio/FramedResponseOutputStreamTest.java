@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.netutil.nio;
+
+import com.betfair.cougar.netutil.nio.message.ProtocolMessage.ProtocolMessageType;
+import com.betfair.cougar.netutil.nio.message.ResponseMessage;
+import org.apache.mina.common.ByteBuffer;
+import org.apache.mina.common.IoSession;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ *
+ */
+public class FramedResponseOutputStreamTest {
+
+    @Test
+    public void framedInPlaceMatchesCopiedEncoding() throws Exception {
+        byte[] payload = new byte[1000];
+        for (int i=0; i<payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        IoSession session = mock(IoSession.class);
+        FramedResponseOutputStream out = new FramedResponseOutputStream(session, 1234L);
+        out.write(payload, 0, 10);
+        out.write(payload[10]);
+        out.write(payload, 11, payload.length - 11);
+        out.flush();
+
+        ArgumentCaptor<ResponseMessage> captor = ArgumentCaptor.forClass(ResponseMessage.class);
+        verify(session).write(captor.capture());
+        ResponseMessage framed = captor.getValue();
+        assertEquals(1234L, framed.getCorrelationId());
+        assertEquals(payload.length, framed.getPayloadLength());
+        assertArrayEquals(payload, framed.getPayload());
+
+        for (byte version = CougarProtocol.TRANSPORT_PROTOCOL_VERSION_MIN_SUPPORTED; version <= CougarProtocol.TRANSPORT_PROTOCOL_VERSION_MAX_SUPPORTED; version++) {
+            ResponseMessage copied = new ResponseMessage(1234L, payload);
+            assertArrayEquals(toBytes(copied.getSerialisedForm(version)), toBytes(copy(framed).getSerialisedForm(version)));
+        }
+    }
+
+    @Test
+    public void preFramedResponseCanOnlyBeWrittenOnce() throws Exception {
+        IoSession session = mock(IoSession.class);
+        FramedResponseOutputStream out = new FramedResponseOutputStream(session, 1L);
+        out.write(new byte[] { 1, 2, 3 });
+        out.flush();
+
+        ArgumentCaptor<ResponseMessage> captor = ArgumentCaptor.forClass(ResponseMessage.class);
+        verify(session).write(captor.capture());
+        captor.getValue().takeFrame(ProtocolMessageType.MESSAGE_RESPONSE);
+        try {
+            captor.getValue().takeFrame(ProtocolMessageType.MESSAGE_RESPONSE);
+            fail("Expected IllegalStateException");
+        }
+        catch (IllegalStateException ise) {
+            // expected
+        }
+    }
+
+    @Test
+    public void emptyResponseStillSentOnFirstFlushOnly() throws Exception {
+        IoSession session = mock(IoSession.class);
+        FramedResponseOutputStream out = new FramedResponseOutputStream(session, 1L);
+        out.flush();
+        out.flush();
+
+        ArgumentCaptor<ResponseMessage> captor = ArgumentCaptor.forClass(ResponseMessage.class);
+        verify(session, times(1)).write(captor.capture());
+        assertEquals(0, captor.getValue().getPayloadLength());
+    }
+
+    // re-frames the payload of a pre-framed response, since each can only be written once
+    private ResponseMessage copy(ResponseMessage framed) throws Exception {
+        IoSession session = mock(IoSession.class);
+        FramedResponseOutputStream out = new FramedResponseOutputStream(session, framed.getCorrelationId());
+        out.write(framed.getPayload());
+        out.flush();
+        ArgumentCaptor<ResponseMessage> captor = ArgumentCaptor.forClass(ResponseMessage.class);
+        verify(session).write(captor.capture());
+        return captor.getValue();
+    }
+
+    private byte[] toBytes(ByteBuffer buffer) {
+        buffer.flip();
+        byte[] ret = new byte[buffer.remaining()];
+        buffer.get(ret);
+        return ret;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.netutil.nio;
+
+import com.betfair.cougar.netutil.nio.message.RequestBatch;
+import com.betfair.cougar.netutil.nio.message.RequestMessage;
+import org.apache.mina.common.ByteBuffer;
+import org.apache.mina.common.IoSession;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ */
+public class RequestCoalescerTest {
+
+    private RequestCoalescer coalescer = new RequestCoalescer();
+
+    @After
+    public void after() {
+        coalescer.shutdown();
+    }
+
+    @Test
+    public void disabledWritesEachRequest() throws IOException {
+        IoSession session = mock(IoSession.class);
+        RequestResponseManagerImpl impl = new RequestResponseManagerImpl(session, new NioLogger("ALL"), 0, coalescer);
+
+        impl.sendRequest(new byte[1], mock(RequestResponseManager.ResponseHandler.class));
+        impl.sendRequest(new byte[1], mock(RequestResponseManager.ResponseHandler.class));
+
+        verify(session, times(2)).write(any(RequestMessage.class));
+        assertEquals(0, coalescer.getBatchesWritten());
+    }
+
+    @Test
+    public void flushesWhenBatchFull() throws IOException {
+        coalescer.setBatchWindowMicros(10000000); // 10s, never going to fire
+        coalescer.setMaxBatchSize(3);
+        IoSession session = mock(IoSession.class);
+        RequestResponseManagerImpl impl = new RequestResponseManagerImpl(session, new NioLogger("ALL"), 0, coalescer);
+
+        impl.sendRequest(new byte[1], mock(RequestResponseManager.ResponseHandler.class));
+        impl.sendRequest(new byte[1], mock(RequestResponseManager.ResponseHandler.class));
+        verify(session, never()).write(any());
+
+        impl.sendRequest(new byte[1], mock(RequestResponseManager.ResponseHandler.class));
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(session, times(1)).write(captor.capture());
+        assertTrue(captor.getValue() instanceof RequestBatch);
+        assertEquals(3, ((RequestBatch) captor.getValue()).getRequests().size());
+        assertEquals(1, coalescer.getFlushesOnLimit());
+    }
+
+    @Test
+    public void flushesWhenBatchBytesExceeded() throws IOException {
+        coalescer.setBatchWindowMicros(10000000);
+        coalescer.setMaxBatchBytes(100);
+        IoSession session = mock(IoSession.class);
+        RequestResponseManagerImpl impl = new RequestResponseManagerImpl(session, new NioLogger("ALL"), 0, coalescer);
+
+        impl.sendRequest(new byte[60], mock(RequestResponseManager.ResponseHandler.class));
+        verify(session, never()).write(any());
+        impl.sendRequest(new byte[60], mock(RequestResponseManager.ResponseHandler.class));
+        verify(session, times(1)).write(any(RequestBatch.class));
+    }
+
+    @Test
+    public void flushesAfterWindow() throws IOException {
+        coalescer.setBatchWindowMicros(1000);
+        IoSession session = mock(IoSession.class);
+        RequestResponseManagerImpl impl = new RequestResponseManagerImpl(session, new NioLogger("ALL"), 0, coalescer);
+
+        impl.sendRequest(new byte[1], mock(RequestResponseManager.ResponseHandler.class));
+
+        // a lone request is written as is
+        verify(session, timeout(5000)).write(any(RequestMessage.class));
+        assertEquals(1, coalescer.getFlushesOnWindow());
+        assertEquals(1, coalescer.getRequestsWritten());
+    }
+
+    @Test
+    public void batchFramedAsIndividualRequests() {
+        RequestMessage first = new RequestMessage(1, new byte[] { 1, 2, 3 });
+        RequestMessage second = new RequestMessage(2, new byte[] { 4 });
+        ByteBuffer batched = CougarProtocolEncoder.encode(new RequestBatch(Arrays.asList(first, second)), CougarProtocol.TRANSPORT_PROTOCOL_VERSION_MAX_SUPPORTED);
+        ByteBuffer one = CougarProtocolEncoder.encode(first, CougarProtocol.TRANSPORT_PROTOCOL_VERSION_MAX_SUPPORTED);
+        ByteBuffer two = CougarProtocolEncoder.encode(second, CougarProtocol.TRANSPORT_PROTOCOL_VERSION_MAX_SUPPORTED);
+
+        batched.flip();
+        one.flip();
+        two.flip();
+        assertEquals(one.remaining() + two.remaining(), batched.remaining());
+        for (ByteBuffer expected : new ByteBuffer[] { one, two }) {
+            while (expected.hasRemaining()) {
+                assertEquals(expected.get(), batched.get());
+            }
+        }
+    }
+}
@@ -26,6 +26,7 @@ import java.util.concurrent.TimeUnit;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -72,6 +73,45 @@ public class RequestResponseManagerImplTest {
         // just want no exceptions
     }
 
+    @Test
+    public void onlyExpiredRequestsTimeOut() throws IOException, InterruptedException {
+        IoSession session = mock(IoSession.class);
+        NioLogger logger = new NioLogger("ALL");
+        RequestResponseManagerImpl impl = new RequestResponseManagerImpl(session, logger, 50);
+
+        WaitableResponseHandler answered = new WaitableResponseHandler();
+        long answeredId = impl.sendRequest(new byte[0], answered);
+        WaitableResponseHandler expiring = new WaitableResponseHandler();
+        impl.sendRequest(new byte[0], expiring);
+        impl.messageReceived(session, new ResponseMessage(answeredId, new byte[0]));
+
+        Thread.sleep(60); // 60ms > 50ms
+        WaitableResponseHandler notYetExpired = new WaitableResponseHandler();
+        impl.sendRequest(new byte[0], notYetExpired);
+
+        impl.checkForExpiredRequests();
+
+        expiring.await(10, TimeUnit.SECONDS);
+        assertEquals(WaitableResponseHandler.ResponseType.Response, answered.getResponseType());
+        assertEquals(WaitableResponseHandler.ResponseType.Timeout, expiring.getResponseType());
+        assertNull(notYetExpired.getResponseType());
+        assertEquals(1, impl.getOutstandingRequestCount());
+    }
+
+    @Test
+    public void responseLatencyTracked() throws IOException, InterruptedException {
+        IoSession session = mock(IoSession.class);
+        NioLogger logger = new NioLogger("ALL");
+        RequestResponseManagerImpl impl = new RequestResponseManagerImpl(session, logger, 0);
+        assertEquals(0, impl.getResponseLatencyEwma(), 0);
+
+        long correlationId = impl.sendRequest(new byte[0], new WaitableResponseHandler());
+        Thread.sleep(5);
+        impl.messageReceived(session, new ResponseMessage(correlationId, new byte[0]));
+
+        assertTrue(impl.getResponseLatencyEwma() >= 5);
+    }
+
     private static class WaitableResponseHandler implements RequestResponseManager.ResponseHandler {
         private CountDownLatch latch = new CountDownLatch(1);
 
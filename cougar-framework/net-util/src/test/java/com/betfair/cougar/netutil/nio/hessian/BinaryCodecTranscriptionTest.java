@@ -0,0 +1,338 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.netutil.nio.hessian;
+
+import com.betfair.cougar.core.api.ServiceVersion;
+import com.betfair.cougar.core.api.transcription.BinaryCodec;
+import com.betfair.cougar.core.api.transcription.BinaryCodecInput;
+import com.betfair.cougar.core.api.transcription.BinaryCodecOutput;
+import com.betfair.cougar.core.api.transcription.EnumUtils;
+import com.betfair.cougar.core.api.transcription.Parameter;
+import com.betfair.cougar.core.api.transcription.ParameterType;
+import com.betfair.cougar.core.api.transcription.Transcribable;
+import com.betfair.cougar.core.api.transcription.TranscribableEnum;
+import com.betfair.cougar.core.api.transcription.TranscribableParams;
+import com.betfair.cougar.core.api.transcription.TranscriptionInput;
+import com.betfair.cougar.core.api.transcription.TranscriptionOutput;
+import com.betfair.cougar.netutil.nio.CougarProtocol;
+import com.betfair.cougar.transport.api.protocol.CougarObjectOutput;
+import com.caucho.hessian.io.Hessian2Output;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class BinaryCodecTranscriptionTest {
+
+    private HessianObjectIOFactory factory = new HessianObjectIOFactory(false);
+
+    @Test
+    public void roundTripWithCodec() throws Exception {
+        Parent read = (Parent) read(write(parent(), CougarProtocol.TRANSPORT_PROTOCOL_VERSION_BINARY_CODECS), CougarProtocol.TRANSPORT_PROTOCOL_VERSION_BINARY_CODECS);
+        assertParent(read);
+    }
+
+    @Test
+    public void olderProtocolUsesHessian() throws Exception {
+        byte[] hessian = write(parent(), CougarProtocol.TRANSPORT_PROTOCOL_VERSION_COMPOUND_REQUEST_UUID);
+        byte[] binary = write(parent(), CougarProtocol.TRANSPORT_PROTOCOL_VERSION_BINARY_CODECS);
+        assertFalse(new String(hessian, "ISO-8859-1").contains(BinaryCodecLayout.MARKER_PREFIX));
+        assertTrue(new String(binary, "ISO-8859-1").contains(BinaryCodecLayout.MARKER_PREFIX));
+        assertParent((Parent) read(hessian, CougarProtocol.TRANSPORT_PROTOCOL_VERSION_COMPOUND_REQUEST_UUID));
+    }
+
+    @Test
+    public void repeatedObjectsShareClassDefinition() throws Exception {
+        Parent parent = parent();
+        parent.setChildren(Arrays.asList(new Child("a"), new Child("b"), new Child("c")));
+        Parent read = (Parent) read(write(parent, CougarProtocol.TRANSPORT_PROTOCOL_VERSION_BINARY_CODECS), CougarProtocol.TRANSPORT_PROTOCOL_VERSION_BINARY_CODECS);
+        assertEquals(3, read.getChildren().size());
+        assertEquals("c", read.getChildren().get(2).getName());
+    }
+
+    @Test
+    public void differentLayoutReadByName() throws Exception {
+        // as written by a peer generated from another minor version, with an extra field and without most of ours
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Hessian2Output out = new Hessian2Output(baos);
+        assertTrue(out.writeObjectBegin(Parent.class.getName()) < 0);
+        out.writeInt(4);
+        out.writeString(BinaryCodecLayout.MARKER_PREFIX + "0");
+        out.writeString("extra:M<S,L<I>>");
+        out.writeString("name:S");
+        out.writeString("child:O");
+        out.writeObjectBegin(Parent.class.getName());
+        BinaryCodecOutput bco = new BinaryCodecOutput();
+        bco.writeValue(Collections.singletonMap("x", Arrays.asList(1, 2)), new ParameterType(Map.class, new ParameterType[] {
+                new ParameterType(String.class, null), new ParameterType(List.class, new ParameterType[] { new ParameterType(Integer.class, null) })}));
+        bco.writeString("bob");
+        out.writeBytes(bco.toByteArray());
+        out.writeObject(null);
+        out.close();
+
+        Parent read = (Parent) read(baos.toByteArray(), CougarProtocol.TRANSPORT_PROTOCOL_VERSION_BINARY_CODECS);
+        assertEquals("bob", read.getName());
+        assertNull(read.getId());
+        assertNull(read.getChild());
+    }
+
+    @Test
+    public void unrecognisedEnumSoftFail() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Hessian2Output out = new Hessian2Output(baos);
+        out.writeObjectBegin(Parent.class.getName());
+        out.writeInt(2);
+        out.writeString(BinaryCodecLayout.MARKER_PREFIX + "0");
+        out.writeString("side:E");
+        out.writeObjectBegin(Parent.class.getName());
+        BinaryCodecOutput bco = new BinaryCodecOutput();
+        bco.writeString("MIDDLE");
+        out.writeBytes(bco.toByteArray());
+        out.close();
+
+        EnumUtils.setHardFailureForThisThread(false);
+        try {
+            Parent read = (Parent) read(baos.toByteArray(), CougarProtocol.TRANSPORT_PROTOCOL_VERSION_BINARY_CODECS);
+            assertEquals(Side.UNRECOGNIZED_VALUE, read.getSide());
+            assertEquals("MIDDLE", read.getRawSideValue());
+        }
+        finally {
+            EnumUtils.setHardFailureForThisThread(true);
+        }
+    }
+
+    private byte[] write(Object o, byte protocolVersion) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        CougarObjectOutput out = factory.newCougarObjectOutput(baos, protocolVersion);
+        out.writeObject(o);
+        out.close();
+        return baos.toByteArray();
+    }
+
+    private Object read(byte[] bytes, byte protocolVersion) throws Exception {
+        return factory.newCougarObjectInput(new ByteArrayInputStream(bytes), protocolVersion).readObject();
+    }
+
+    private static Parent parent() {
+        Parent parent = new Parent();
+        parent.setId(-12345678901L);
+        parent.setName("pärent");
+        parent.setSide(Side.LAY);
+        parent.setCounts(Arrays.asList(1, null, -300));
+        parent.setChild(new Child("only"));
+        return parent;
+    }
+
+    private static void assertParent(Parent read) {
+        assertEquals(Long.valueOf(-12345678901L), read.getId());
+        assertEquals("pärent", read.getName());
+        assertEquals(Side.LAY, read.getSide());
+        assertEquals(Arrays.asList(1, null, -300), read.getCounts());
+        assertEquals("only", read.getChild().getName());
+        assertNull(read.getChildren());
+    }
+
+    public enum Side implements TranscribableEnum {
+        BACK, LAY, UNRECOGNIZED_VALUE;
+
+        @Override
+        public ServiceVersion getServiceVersion() {
+            return new ServiceVersion(1, 0);
+        }
+    }
+
+    public abstract static class AbstractTranscribable implements Transcribable {
+        @Override
+        public void transcribe(TranscriptionOutput out, Set<TranscribableParams> params, boolean client) throws Exception {
+            for (Parameter p : getParameters()) {
+                out.writeObject(get(p.getName()), p, client);
+            }
+        }
+
+        @Override
+        public void transcribe(TranscriptionInput in, Set<TranscribableParams> params, boolean client) throws Exception {
+            for (Parameter p : getParameters()) {
+                set(p.getName(), in.readObject(p, client));
+            }
+        }
+
+        @Override
+        public ServiceVersion getServiceVersion() {
+            return new ServiceVersion(1, 0);
+        }
+
+        abstract Object get(String name);
+
+        abstract void set(String name, Object value);
+    }
+
+    public static class Parent extends AbstractTranscribable {
+        public static final Parameter[] PARAMETERS = new Parameter[] {
+            new Parameter("id", new ParameterType(Long.class, null), false),
+            new Parameter("name", new ParameterType(String.class, null), false),
+            new Parameter("side", new ParameterType(Side.class, null), false),
+            new Parameter("counts", new ParameterType(List.class, new ParameterType[] { new ParameterType(Integer.class, null) }), false),
+            new Parameter("child", new ParameterType(Child.class, null), false),
+            new Parameter("children", new ParameterType(List.class, new ParameterType[] { new ParameterType(Child.class, null) }), false)
+        };
+
+        private Long id;
+        private String name;
+        private Side side;
+        private String rawSideValue;
+        private List<Integer> counts;
+        private Child child;
+        private List<Child> children;
+
+        public Long getId() { return id; }
+        public void setId(Long id) { this.id = id; }
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+        public Side getSide() { return side; }
+        public void setSide(Side side) { this.side = side; this.rawSideValue = side != null ? side.name() : null; }
+        public String getRawSideValue() { return rawSideValue; }
+        public void setRawSideValue(String side) { this.side = side != null ? EnumUtils.readEnum(Side.class, side) : null; this.rawSideValue = side; }
+        public List<Integer> getCounts() { return counts; }
+        public void setCounts(List<Integer> counts) { this.counts = counts; }
+        public Child getChild() { return child; }
+        public void setChild(Child child) { this.child = child; }
+        public List<Child> getChildren() { return children; }
+        public void setChildren(List<Child> children) { this.children = children; }
+
+        @Override
+        public Parameter[] getParameters() {
+            return PARAMETERS;
+        }
+
+        @Override
+        Object get(String name) {
+            switch (name) {
+                case "id": return id;
+                case "name": return this.name;
+                case "side": return side != null ? side.name() : null;
+                case "counts": return counts;
+                case "child": return child;
+                default: return children;
+            }
+        }
+
+        @Override
+        void set(String name, Object value) {
+            switch (name) {
+                case "id": id = (Long) value; break;
+                case "name": this.name = (String) value; break;
+                case "side": setRawSideValue((String) value); break;
+                case "counts": counts = (List<Integer>) value; break;
+                case "child": child = (Child) value; break;
+                default: children = (List<Child>) value;
+            }
+        }
+    }
+
+    /**
+     * Equivalent to what dataTypeBinaryCodec.ftl generates for {@link Parent}.
+     */
+    public static class ParentBinaryCodec implements BinaryCodec<Parent> {
+        @Override
+        public Parameter[] getParameters() {
+            return Parent.PARAMETERS;
+        }
+
+        @Override
+        public void write(Parent value, BinaryCodecOutput out) throws IOException {
+            out.writeLong(value.getId());
+            out.writeString(value.getName());
+            out.writeEnum(value.getSide());
+            out.writeValue(value.getCounts(), Parent.PARAMETERS[3].getParameterType());
+            out.writeValue(value.getChild(), Parent.PARAMETERS[4].getParameterType());
+            out.writeValue(value.getChildren(), Parent.PARAMETERS[5].getParameterType());
+        }
+
+        @Override
+        public Parent read(BinaryCodecInput in) throws IOException {
+            Parent bean = new Parent();
+            bean.setId(in.readLong());
+            bean.setName(in.readString());
+            bean.setRawSideValue(in.readString());
+            bean.setCounts((List<Integer>) in.readValue(Parent.PARAMETERS[3].getParameterType()));
+            bean.setChild((Child) in.readValue(Parent.PARAMETERS[4].getParameterType()));
+            bean.setChildren((List<Child>) in.readValue(Parent.PARAMETERS[5].getParameterType()));
+            return bean;
+        }
+    }
+
+    public static class Child extends AbstractTranscribable {
+        public static final Parameter[] PARAMETERS = new Parameter[] {
+            new Parameter("name", new ParameterType(String.class, null), false)
+        };
+
+        private String name;
+
+        public Child() {
+        }
+
+        public Child(String name) {
+            this.name = name;
+        }
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+
+        @Override
+        public Parameter[] getParameters() {
+            return PARAMETERS;
+        }
+
+        @Override
+        Object get(String name) {
+            return this.name;
+        }
+
+        @Override
+        void set(String name, Object value) {
+            this.name = (String) value;
+        }
+    }
+
+    public static class ChildBinaryCodec implements BinaryCodec<Child> {
+        @Override
+        public Parameter[] getParameters() {
+            return Child.PARAMETERS;
+        }
+
+        @Override
+        public void write(Child value, BinaryCodecOutput out) throws IOException {
+            out.writeString(value.getName());
+        }
+
+        @Override
+        public Child read(BinaryCodecInput in) throws IOException {
+            Child bean = new Child();
+            bean.setName(in.readString());
+            return bean;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.netutil.nio.hessian;
+
+import com.betfair.cougar.netutil.nio.CougarProtocol;
+import com.betfair.cougar.netutil.nio.HeapDelta;
+import com.betfair.cougar.netutil.nio.connected.InitialUpdate;
+import com.betfair.cougar.netutil.nio.connected.InstallField;
+import com.betfair.cougar.netutil.nio.connected.InstallIndex;
+import com.betfair.cougar.netutil.nio.connected.InstallRoot;
+import com.betfair.cougar.netutil.nio.connected.RemoveChildren;
+import com.betfair.cougar.netutil.nio.connected.RemoveField;
+import com.betfair.cougar.netutil.nio.connected.RemoveIndex;
+import com.betfair.cougar.netutil.nio.connected.SetScalar;
+import com.betfair.cougar.netutil.nio.connected.TerminateHeap;
+import com.betfair.cougar.netutil.nio.connected.Update;
+import com.betfair.cougar.netutil.nio.connected.UpdateAction;
+import com.betfair.cougar.transport.api.protocol.CougarObjectOutput;
+import com.betfair.platform.virtualheap.NodeType;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CompactUpdateSerialiserTest {
+
+    private static final byte COMPACT = CougarProtocol.TRANSPORT_PROTOCOL_VERSION_COMPACT_HEAP_UPDATES;
+    private static final byte PREVIOUS = CougarProtocol.TRANSPORT_PROTOCOL_VERSION_BINARY_CODECS;
+
+    private HessianObjectIOFactory factory = new HessianObjectIOFactory(false);
+
+    @Test
+    public void allActionsRoundTrip() throws Exception {
+        List<UpdateAction> actions = new ArrayList<UpdateAction>();
+        actions.add(new InstallRoot(0, NodeType.OBJECT));
+        actions.add(new InstallField(0, 1, "prices", NodeType.LIST));
+        actions.add(new InstallIndex(1, 2, 0, NodeType.SCALAR));
+        actions.add(new SetScalar(2, 1.01d));
+        actions.add(new InstallField(0, 3, "name", NodeType.SCALAR));
+        actions.add(new SetScalar(3, "mårket"));
+        actions.add(new RemoveIndex(1, 2, 0, null));
+        actions.add(new RemoveField(0, 3, "name", null));
+        actions.add(new RemoveChildren(1, null));
+        actions.add(TerminateHeap.INSTANCE);
+
+        HeapDelta read = roundTrip(delta(new InitialUpdate(update(actions))), COMPACT);
+        assertTrue(read.getUpdates().get(0) instanceof InitialUpdate);
+        assertEquals(actions, read.getUpdates().get(0).getActions());
+        assertTrue(read.containsFirstUpdate());
+        assertTrue(read.containsHeapTermination());
+    }
+
+    @Test
+    public void scalarValuesDecodeAsThroughHessian() throws Exception {
+        Date date = new Date();
+        List<UpdateAction> actions = Arrays.<UpdateAction>asList(
+                new SetScalar(10, null), new SetScalar(11, true), new SetScalar(12, false),
+                new SetScalar(13, 42), new SetScalar(14, (short) -7), new SetScalar(15, (byte) 3),
+                new SetScalar(16, Long.MIN_VALUE), new SetScalar(17, 2.5f), new SetScalar(18, Math.PI),
+                new SetScalar(20, Double.NaN), new SetScalar(21, 'x'),
+                new SetScalar(22, date), new SetScalar(5, 1000000.001d));
+
+        List<UpdateAction> viaHessian = roundTrip(delta(update(actions)), PREVIOUS).getUpdates().get(0).getActions();
+        List<UpdateAction> compact = roundTrip(delta(update(actions)), COMPACT).getUpdates().get(0).getActions();
+        assertEquals(viaHessian, compact);
+        for (int i = 0; i < compact.size(); i++) {
+            Object expected = ((SetScalar) viaHessian.get(i)).getValue();
+            Object actual = ((SetScalar) compact.get(i)).getValue();
+            assertEquals(expected != null ? expected.getClass() : null, actual != null ? actual.getClass() : null);
+        }
+    }
+
+    @Test
+    public void scalarUpdatesAreSmaller() throws Exception {
+        List<UpdateAction> actions = new ArrayList<UpdateAction>();
+        for (int i = 1; i <= 100; i++) {
+            // prices in thousandths, some of which come out just under a whole number of thousandths when scaled
+            actions.add(new SetScalar(i * 3, 1 + i / 1000d));
+        }
+        HeapDelta delta = delta(update(actions));
+        int compact = write(delta, COMPACT).length;
+        int hessian = write(delta, PREVIOUS).length;
+        // both carry the same class definitions for the delta itself, so the saving is all in the actions
+        assertTrue("compact " + compact + " vs hessian " + hessian, compact * 3 < hessian * 2);
+    }
+
+    @Test
+    public void unsupportedValueFallsBackToTranscription() throws Exception {
+        List<UpdateAction> actions = Arrays.<UpdateAction>asList(new SetScalar(1, 5), new SetScalar(2, new ArrayList<String>(Arrays.asList("a"))));
+        HeapDelta read = roundTrip(delta(update(actions)), COMPACT);
+        assertEquals(actions, read.getUpdates().get(0).getActions());
+    }
+
+    private static Update update(List<UpdateAction> actions) {
+        Update u = new Update();
+        u.setActions(actions);
+        return u;
+    }
+
+    private static HeapDelta delta(Update... updates) {
+        return new HeapDelta(1L, 2L, new ArrayList<Update>(Arrays.asList(updates)));
+    }
+
+    private byte[] write(Object o, byte protocolVersion) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        CougarObjectOutput out = factory.newCougarObjectOutput(baos, protocolVersion);
+        out.writeObject(o);
+        out.close();
+        return baos.toByteArray();
+    }
+
+    private HeapDelta roundTrip(HeapDelta delta, byte protocolVersion) throws Exception {
+        return (HeapDelta) factory.newCougarObjectInput(new ByteArrayInputStream(write(delta, protocolVersion)), protocolVersion).readObject();
+    }
+}
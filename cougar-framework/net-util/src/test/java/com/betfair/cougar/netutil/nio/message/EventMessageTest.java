@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.betfair.cougar.netutil.nio.message;
+
+import com.betfair.cougar.netutil.nio.CougarProtocol;
+import com.betfair.cougar.netutil.nio.hessian.HessianObjectIOFactory;
+import com.betfair.cougar.transport.api.protocol.CougarObjectInput;
+import org.apache.mina.common.ByteBuffer;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class EventMessageTest {
+
+    private HessianObjectIOFactory ioFactory = new HessianObjectIOFactory(false);
+
+    @Test
+    public void serialiseProducesSameFrameAsPayloadConstructor() throws Exception {
+        EventMessage serialised = EventMessage.serialise("some event", ioFactory, CougarProtocol.TRANSPORT_PROTOCOL_VERSION_MAX_SUPPORTED);
+        EventMessage fromPayload = new EventMessage(serialised.getPayload());
+
+        assertEquals(fromPayload.getFramedLength(), serialised.getFramedLength());
+        assertArrayEquals(toBytes(fromPayload.getSerialisedForm(CougarProtocol.TRANSPORT_PROTOCOL_VERSION_MAX_SUPPORTED)),
+                toBytes(serialised.getSerialisedForm(CougarProtocol.TRANSPORT_PROTOCOL_VERSION_MAX_SUPPORTED)));
+
+        CougarObjectInput in = ioFactory.newCougarObjectInput(new ByteArrayInputStream(serialised.getPayload()), CougarProtocol.TRANSPORT_PROTOCOL_VERSION_MAX_SUPPORTED);
+        assertEquals("some event", in.readObject());
+    }
+
+    @Test
+    public void serialisedFormIsSharedNotConsumed() throws Exception {
+        EventMessage message = EventMessage.serialise("some event", ioFactory, CougarProtocol.TRANSPORT_PROTOCOL_VERSION_MAX_SUPPORTED);
+        // each session write flips its own view, which mustn't affect anyone else's
+        byte[] first = toBytes(message.getSerialisedForm(CougarProtocol.TRANSPORT_PROTOCOL_VERSION_MAX_SUPPORTED));
+        byte[] second = toBytes(message.getSerialisedForm(CougarProtocol.TRANSPORT_PROTOCOL_VERSION_MAX_SUPPORTED));
+        assertArrayEquals(first, second);
+        assertEquals(message.getFramedLength(), first.length);
+        assertEquals(message.getPayloadLength() + 1, ByteBuffer.wrap(first).getInt());
+    }
+
+    @Test
+    public void notSupportedBeforeBidirectionalRpc() {
+        EventMessage message = new EventMessage(new byte[10]);
+        assertNull(message.getSerialisedForm(CougarProtocol.TRANSPORT_PROTOCOL_VERSION_CLIENT_ONLY_RPC));
+    }
+
+    private byte[] toBytes(ByteBuffer buffer) {
+        // as CougarProtocolEncoder does
+        buffer.flip();
+        byte[] ret = new byte[buffer.remaining()];
+        buffer.get(ret);
+        return ret;
+    }
+}
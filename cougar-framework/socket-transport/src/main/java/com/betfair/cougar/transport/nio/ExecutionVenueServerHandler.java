@@ -96,7 +96,7 @@ public class ExecutionVenueServerHandler extends IoHandlerAdapter implements Exp
         else if (message instanceof RequestMessage) {
             RequestMessage req = (RequestMessage) message;
 
-            final CougarObjectOutput out = objectIOFactory.newCougarObjectOutput(new ByteArrayOutputStreamWithIoSession(session, req.getCorrelationId()), CougarProtocol.getProtocolVersion(session));
+            final CougarObjectOutput out = objectIOFactory.newCougarObjectOutput(new FramedResponseOutputStream(session, req.getCorrelationId()), CougarProtocol.getProtocolVersion(session));
             final CougarObjectInput in = objectIOFactory.newCougarObjectInput(new ByteArrayInputStream(req.getPayload()), CougarProtocol.getProtocolVersion(session));
             final String remoteAddress = ((InetSocketAddress) session.getRemoteAddress()).getAddress().getHostAddress();
             final SocketTransportCommandImpl command = new SocketTransportRPCCommandImpl(in, out, remoteAddress, session);
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.transport.socket;
+
+import com.betfair.cougar.netutil.nio.connected.SetScalar;
+import com.betfair.cougar.netutil.nio.connected.Update;
+import com.betfair.cougar.netutil.nio.connected.UpdateAction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Heap deltas held back for a single slow session on a single heap, merged into one update.
+ * <p/>
+ * Scalar sets to a node replace any earlier set to the same node, provided no structural change (anything other than
+ * a scalar set) has happened in between, so a session that falls behind on a ticking heap costs memory in proportion
+ * to the number of nodes changed rather than the number of changes.
+ * <p/>
+ * Because the merged update is sent as one delta the session's update ids run behind the heap's, the difference is
+ * tracked here as the id offset. Not thread safe, guarded by the owning heap state's update lock.
+ */
+public class ConflatedHeapUpdates {
+
+    private final List<UpdateAction> pendingActions = new ArrayList<UpdateAction>();
+    // index into pendingActions of the latest scalar set to each node since the last structural change
+    private final Map<Integer, Integer> scalarSetIndices = new HashMap<Integer, Integer>();
+    private long pendingUpdateId;
+    private boolean pending;
+    private long idOffset;
+    private long actionsConflated;
+
+    /**
+     * Holds back a batch of updates which the heap sent with the given update id.
+     */
+    public void hold(long heapUpdateId, List<Update> updates) {
+        if (pending) {
+            // this batch's update id is absorbed into the pending delta
+            idOffset++;
+        } else {
+            pendingUpdateId = heapUpdateId - idOffset;
+            pending = true;
+        }
+        for (Update u : updates) {
+            for (UpdateAction action : u.getActions()) {
+                if (action instanceof SetScalar) {
+                    Integer id = ((SetScalar) action).getId();
+                    Integer previous = scalarSetIndices.get(id);
+                    if (previous != null) {
+                        pendingActions.set(previous, action);
+                        actionsConflated++;
+                        continue;
+                    }
+                    scalarSetIndices.put(id, pendingActions.size());
+                } else {
+                    scalarSetIndices.clear();
+                }
+                pendingActions.add(action);
+            }
+        }
+    }
+
+    public boolean hasPending() {
+        return pending;
+    }
+
+    public int getPendingActionCount() {
+        return pendingActions.size();
+    }
+
+    /**
+     * The update id the session expects for the pending delta.
+     */
+    public long getPendingUpdateId() {
+        return pendingUpdateId;
+    }
+
+    /**
+     * Number of update ids the session is behind the heap.
+     */
+    public long getIdOffset() {
+        return idOffset;
+    }
+
+    /**
+     * Total number of actions dropped because a later scalar set superseded them.
+     */
+    public long getActionsConflated() {
+        return actionsConflated;
+    }
+
+    /**
+     * Takes everything held back as a single update, leaving this buffer empty.
+     */
+    public Update drain() {
+        Update ret = new Update();
+        ret.setActions(new ArrayList<UpdateAction>(pendingActions));
+        pendingActions.clear();
+        scalarSetIndices.clear();
+        pending = false;
+        return ret;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.transport.socket;
+
+/**
+ * How heap deltas are pushed to a session whose write queue has backed up.
+ */
+public enum ConflationMode {
+    /**
+     * Every delta is written to every session, regardless of how far behind it is.
+     */
+    NONE,
+    /**
+     * Deltas for a slow session are held back and merged into a single delta, which is sent once the session has
+     * caught up. Repeated scalar sets to the same node are collapsed to the latest value.
+     */
+    MERGE;
+
+    public static ConflationMode fromString(String s) {
+        try {
+            return valueOf(s.trim().toUpperCase());
+        } catch (IllegalArgumentException iae) {
+            throw new IllegalArgumentException("Unrecognised conflation mode: " + s);
+        }
+    }
+}
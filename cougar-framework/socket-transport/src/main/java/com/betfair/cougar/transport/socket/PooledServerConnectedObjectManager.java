@@ -33,8 +33,9 @@ import com.betfair.cougar.netutil.nio.connected.InitialUpdate;
 import com.betfair.cougar.netutil.nio.connected.TerminateHeap;
 import com.betfair.cougar.netutil.nio.connected.Update;
 import com.betfair.cougar.netutil.nio.message.EventMessage;
+import com.betfair.cougar.netutil.nio.monitoring.SessionWriteQueueMonitor;
+import com.betfair.cougar.netutil.nio.monitoring.SessionWriteQueueMonitoring;
 import com.betfair.cougar.transport.api.protocol.CougarObjectIOFactory;
-import com.betfair.cougar.transport.api.protocol.CougarObjectOutput;
 import com.betfair.cougar.transport.api.protocol.socket.NewHeapSubscription;
 import com.betfair.cougar.util.UUIDGeneratorImpl;
 import com.betfair.platform.virtualheap.Heap;
@@ -43,9 +44,10 @@ import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedOperation;
 import org.springframework.jmx.export.annotation.ManagedResource;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -62,22 +64,34 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
     private EventLogger eventLogger;
     private NioLogger nioLogger;
 
-    private BlockingDeque<String> heapsWaitingForUpdate = new LinkedBlockingDeque<String>();
-
-    // mods of these 2 for writes were handled. removals are more problematic.. so let's into a r/w lock over their interactions
-    private ReentrantLock subTermLock = new ReentrantLock();
-    private Map<String, HeapState> heapStates = new HashMap<String, HeapState>();
-    private Map<Long, String> heapUris = new HashMap<Long, String>();
-    private Map<IoSession, Multiset<String>> heapsByClient = new HashMap<IoSession, Multiset<String>>();
+    // registries are safe to read without a lock, a heap's own state is guarded by its update lock and
+    // the per-client multisets are guarded by clientHeapsLock, which is never held across heap traversal or io
+    private ReentrantLock clientHeapsLock = new ReentrantLock();
+    private ConcurrentMap<String, HeapState> heapStates = new ConcurrentHashMap<String, HeapState>();
+    private ConcurrentMap<Long, String> heapUris = new ConcurrentHashMap<Long, String>();
+    private ConcurrentMap<IoSession, Multiset<String>> heapsByClient = new ConcurrentHashMap<IoSession, Multiset<String>>();
 
     private AtomicLong heapIdGenerator = new AtomicLong(0);
+    private final AtomicLong heapDeltaBytesSerialised = new AtomicLong();
+    private final AtomicLong heapDeltaBytesShared = new AtomicLong();
     private CougarObjectIOFactory objectIOFactory;
 
     private int numProcessingThreads;
-    private List<ConnectedObjectPusher> pushers = new ArrayList<ConnectedObjectPusher>();
+    // each heap is pinned to one pusher for its lifetime, so its updates are pushed in order by a single thread
+    private volatile ConnectedObjectPusher[] pushers = new ConnectedObjectPusher[0];
 
     private int maxUpdateActionsPerMessage;
 
+    private ConflationMode defaultConflationMode = ConflationMode.NONE;
+    private Map<String, ConflationMode> conflationOverrides = new HashMap<String, ConflationMode>();
+    private long conflationWriteQueueThreshold = 1000;
+    private int maxConflatedActions = 100000;
+    private long conflationFlushInterval = 100;
+    private final AtomicLong deltasConflated = new AtomicLong();
+    private final AtomicLong conflatedDeltasSent = new AtomicLong();
+    private final AtomicLong conflatedActionsDropped = new AtomicLong();
+    private final AtomicLong conflationOverflows = new AtomicLong();
+
     private UUIDGenerator uuidGenerator = new UUIDGeneratorImpl();
 
     private Thread shutdownHook = new Thread(new Runnable() {
@@ -102,21 +116,17 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
         return heapsByClient;
     }
 
-    BlockingDeque<String> getHeapsWaitingForUpdate() {
-        return heapsWaitingForUpdate;
-    }
-
     // used for monitoring
     public List<String> getHeapsForSession(IoSession session) {
         List<String> ret = new ArrayList<String>();
         try {
-            subTermLock.lock();
+            clientHeapsLock.lock();
             Multiset<String> s = heapsByClient.get(session);
             if (s != null) {
                 ret.addAll(s.keySet());
             }
         } finally {
-            subTermLock.unlock();
+            clientHeapsLock.unlock();
         }
         return ret;
     }
@@ -146,11 +156,55 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
         this.maxUpdateActionsPerMessage = maxUpdateActionsPerMessage;
     }
 
+    public void setDefaultConflationMode(String defaultConflationMode) {
+        this.defaultConflationMode = ConflationMode.fromString(defaultConflationMode);
+    }
+
+    /**
+     * Per heap or per operation conflation modes, as a comma separated list of key=mode pairs, where the key is
+     * either a heap uri or an operation name in the form service/operation (prefixed with namespace: if the service
+     * is namespaced). A heap uri takes precedence over the operation that created the heap.
+     */
+    public void setConflationOverrides(String conflationOverrides) {
+        Map<String, ConflationMode> overrides = new HashMap<String, ConflationMode>();
+        if (conflationOverrides != null) {
+            for (String entry : conflationOverrides.split(",")) {
+                if (entry.trim().length() == 0) {
+                    continue;
+                }
+                int sep = entry.lastIndexOf('=');
+                if (sep < 1) {
+                    throw new IllegalArgumentException("Invalid conflation override, expected key=mode: " + entry);
+                }
+                overrides.put(entry.substring(0, sep).trim(), ConflationMode.fromString(entry.substring(sep + 1)));
+            }
+        }
+        this.conflationOverrides = overrides;
+    }
+
+    public void setConflationWriteQueueThreshold(long conflationWriteQueueThreshold) {
+        this.conflationWriteQueueThreshold = conflationWriteQueueThreshold;
+    }
+
+    public void setMaxConflatedActions(int maxConflatedActions) {
+        this.maxConflatedActions = maxConflatedActions;
+    }
+
+    public void setConflationFlushInterval(long conflationFlushInterval) {
+        this.conflationFlushInterval = conflationFlushInterval;
+    }
+
     public void start() {
+        if (numProcessingThreads < 1) {
+            throw new IllegalStateException("numProcessingThreads must be at least 1, was " + numProcessingThreads);
+        }
+        ConnectedObjectPusher[] newPushers = new ConnectedObjectPusher[numProcessingThreads];
         for (int i = 0; i < numProcessingThreads; i++) {
-            ConnectedObjectPusher pusher = new ConnectedObjectPusher();
-            pushers.add(pusher);
-            new Thread(pusher, "ConnectedObjectPusher-" + (i + 1)).start();
+            newPushers[i] = new ConnectedObjectPusher();
+        }
+        pushers = newPushers;
+        for (int i = 0; i < newPushers.length; i++) {
+            new Thread(newPushers[i], "ConnectedObjectPusher-" + (i + 1)).start();
         }
         Runtime.getRuntime().addShutdownHook(shutdownHook);
     }
@@ -167,13 +221,8 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
     private void terminateAllSubscriptions(Subscription.CloseReason reason) {
         if (heapsByClient != null) {
             List<IoSession> sessions;
-            try {
-                subTermLock.lock();
-                // take a copy in case it's being modified as we shutdown
-                sessions = new ArrayList<IoSession>(heapsByClient.keySet());
-            } finally {
-                subTermLock.unlock();
-            }
+            // take a copy in case it's being modified as we shutdown
+            sessions = new ArrayList<IoSession>(heapsByClient.keySet());
 
             for (IoSession session : sessions) {
                 terminateSubscriptions(session, reason);
@@ -181,15 +230,40 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
         }
     }
 
-    // note, you must have the subterm lock before calling this method
-    private HeapState processHeapStateCreation(final ConnectedResponse result, final String heapUri) {
-        if (!subTermLock.isHeldByCurrentThread()) {
-            throw new IllegalStateException("You must have the subTermLock before calling this method");
+    /**
+     * Queues a change for the given heap, signalling the heap's pusher only if it isn't already waiting to be pushed.
+     */
+    private void queueChange(HeapState heapState, QueuedHeapChange change) {
+        heapState.getQueuedChanges().add(change);
+        signalPusher(heapState);
+    }
+
+    private void signalPusher(HeapState heapState) {
+        if (heapState.markDirty()) {
+            heapState.getPusher().heapDirty(heapState);
         }
-        final HeapState newState = new HeapState(result.getHeap());
-        // we're safe to lock this out of normal order as the HeapState isn't visible to other threads until the
-        // end of this block. We have to have the lock before we make it visible..
+    }
+
+    private ConnectedObjectPusher pusherFor(long heapId) {
+        ConnectedObjectPusher[] currentPushers = pushers;
+        if (currentPushers.length == 0) {
+            throw new IllegalStateException("Connected object manager has not been started");
+        }
+        return currentPushers[(int) (heapId % currentPushers.length)];
+    }
+
+    // the returned state is locked and already visible to other threads, who will block on its update lock
+    // until the caller has finished with it
+    private HeapState processHeapStateCreation(final ConnectedResponse result, final String heapUri, final OperationDefinition operationDefinition) {
+        final HeapState newState = new HeapState(result.getHeap(), conflationModeFor(heapUri, operationDefinition));
+        // we're safe to lock this out of normal order as the HeapState isn't visible to other threads until it's
+        // put in the map. We have to have the lock before we make it visible..
         newState.getUpdateLock().lock();
+        if (heapStates.putIfAbsent(heapUri, newState) != null) {
+            // someone beat us to it
+            newState.getUpdateLock().unlock();
+            return null;
+        }
         // new heap for this transport
         UpdateProducingHeapListener listener = new UpdateProducingHeapListener() {
 
@@ -201,14 +275,13 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
                     if (u.getActions().contains(TerminateHeap.INSTANCE)) {
                         newState.getQueuedChanges().add(new HeapTermination());
                     }
-                    heapsWaitingForUpdate.add(heapUri);
+                    signalPusher(newState);
                 }
             }
         };
         newState.setHeapListener(listener);
-        result.getHeap().addListener(listener, false);
-        heapStates.put(heapUri, newState);
         heapUris.put(newState.getHeapId(), heapUri);
+        result.getHeap().addListener(listener, false);
         return newState;
     }
 
@@ -217,61 +290,27 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
         final String heapUri = result.getHeap().getUri();
         HeapState heapState = null;
         try {
-            boolean readyToContinue = false;
-
-            while (!readyToContinue) {
-                // only need this lock to modify the heapStates map, we need the state lock to modify the contained state later..
-                subTermLock.lock();
-                heapState = heapStates.get(heapUri);
-                boolean wasNewHeapState = heapState == null;
-                if (wasNewHeapState) {
-                    heapState = processHeapStateCreation(result, heapUri);
-                    readyToContinue = true;
+            while (heapState == null) {
+                HeapState existing = heapStates.get(heapUri);
+                if (existing == null) {
+                    // returns null if someone else created the state in the meantime, in which case we go round again
+                    heapState = processHeapStateCreation(result, heapUri, operationDefinition);
                 }
-                // for existing heaps we lock in the same way as usual
                 else {
-                    // we have to release this lock now so we can get them in the right order, otherwise we could deadlock
-                    // this is safe since we know that at this moment in time there is a live heap state for this heapuri
-                    subTermLock.unlock();
-
-                    // between these 2 calls one of 3 things can happen:
-                    // 1: nothing
-                    // 2: the last subscriber to the heap state unsubscribes and the heap state is removed
-                    // 3: the last subscriber goes away and someone else comes through at the right moment and recreates it (less likely)
-
-                    // in the last case we need to just keep looping until we know for certain it hasn't happened...
-                    // what we need is a unique heapstate instance id which we can compare to... (AtomicLong should be sufficient)
-
-                    // now get them in the right order
-                    heapState.getUpdateLock().lock();
-                    subTermLock.lock();
-
-
-                    // so, in case 2 above the heap is now not in the map.. in which case we're going to subscribe to something just as it goes..
-                    // so, lets do that new state check once more
-                    if (!heapStates.containsKey(heapUri)) {
-                        heapState = processHeapStateCreation(result, heapUri);
-                        readyToContinue = true;
+                    existing.getUpdateLock().lock();
+                    // between the get and the lock, the last subscriber to the heap may have gone away, and possibly
+                    // someone else has recreated it. either way we need to go round again until we hold the lock on
+                    // the live state for this uri
+                    if (!existing.isTerminated() && heapStates.get(heapUri) == existing) {
+                        heapState = existing;
                     }
-                    // ok, so it's still there, now we need to check if it's the same one..
                     else {
-                        HeapState latestState = heapStates.get(heapUri);
-                        // case 1 above
-                        if (latestState.getInstanceId() == heapState.getInstanceId()) {
-                            readyToContinue = true;
-                        }
-                        // case 3 above
-                        else {
-                            // this shouldn't matter anymore as we've got a lock on a dead heap
-                            heapState.getUpdateLock().unlock();
-                            // reset our check state and go back round until we're happy
-                            heapState = latestState;
-                        }
+                        existing.getUpdateLock().unlock();
                     }
                 }
             }
 
-            // right, now we've got both locks, in the right order and we've definitely got a heap state which everyone else can also get/has got
+            // right, now we've got the update lock and we've definitely got a heap state which everyone else can also get/has got
 
             final HeapState finalHeapState = heapState;
             // hmm,
@@ -288,12 +327,6 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
                         return;
                     }
 
-                    Multiset<String> heapsForThisClient = heapsByClient.get(command.getSession());
-                    if (heapsForThisClient == null) {
-                        heapsForThisClient = new Multiset<String>();
-                        heapsByClient.put(command.getSession(), heapsForThisClient);
-                    }
-
                     long heapId = finalHeapState.getHeapId();
 
                     final String subscriptionId = finalHeapState.addSubscription(connectedObjectLogExtension, subscription, command.getSession());
@@ -307,8 +340,19 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
                             finalHeapState.logSubscriptionEnd(subscriptionId, connectedObjectLogExtension, reason);
                         }
                     });
-                    boolean newHeapDefinition = heapsForThisClient.count(heapUri) == 0;
-                    heapsForThisClient.add(heapUri);
+                    boolean newHeapDefinition;
+                    try {
+                        clientHeapsLock.lock();
+                        Multiset<String> heapsForThisClient = heapsByClient.get(command.getSession());
+                        if (heapsForThisClient == null) {
+                            heapsForThisClient = new Multiset<String>();
+                            heapsByClient.put(command.getSession(), heapsForThisClient);
+                        }
+                        newHeapDefinition = heapsForThisClient.count(heapUri) == 0;
+                        heapsForThisClient.add(heapUri);
+                    } finally {
+                        clientHeapsLock.unlock();
+                    }
 
                     NewHeapSubscription response;
                     if (newHeapDefinition) {
@@ -328,15 +372,14 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
 
                     if (newHeapDefinition) {
                         // then add the sub initialisation to the update queue
-                        finalHeapState.getQueuedChanges().add(new QueuedHeapChange(new QueuedSubscription(command.getSession(), new InitialUpdate(u))));
-                        heapsWaitingForUpdate.add(heapUri);
+                        queueChange(finalHeapState, new QueuedHeapChange(new QueuedSubscription(command.getSession(), new InitialUpdate(u))));
                     }
                 }
             });
         } finally {
-            subTermLock.unlock();
-            assert heapState != null;
-            heapState.getUpdateLock().unlock();
+            if (heapState != null) {
+                heapState.getUpdateLock().unlock();
+            }
         }
     }
 
@@ -355,6 +398,11 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
      * Terminates a single subscription to a single heap
      */
     public void terminateSubscription(IoSession session, String heapUri, String subscriptionId, Subscription.CloseReason reason) {
+        // unknown heap, or one that's already been torn down
+        if (heapUri == null) {
+            nioLogger.log(NioLogger.LoggingLevel.TRANSPORT, session, "Ignoring termination of subscription %s to unknown heap", subscriptionId);
+            return;
+        }
         Lock heapUpdateLock = null;
         try {
             HeapState state = heapStates.get(heapUri);
@@ -362,7 +410,6 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
                 heapUpdateLock = state.getUpdateLock();
                 heapUpdateLock.lock();
             }
-            subTermLock.lock();
 
             if (state != null) {
                 if (!state.isTerminated()) {
@@ -391,15 +438,8 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
                 }
             }
 
-            Multiset<String> heapsForSession = heapsByClient.get(session);
-            if (heapsForSession != null) {
-                heapsForSession.remove(heapUri);
-                if (heapsForSession.isEmpty()) {
-                    terminateSubscriptions(session, reason);
-                }
-            }
+            removeHeapForSession(session, heapUri, false);
         } finally {
-            subTermLock.unlock();
             if (heapUpdateLock != null) {
                 heapUpdateLock.unlock();
             }
@@ -423,7 +463,6 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
                 heapUpdateLock = state.getUpdateLock();
                 heapUpdateLock.lock();
             }
-            subTermLock.lock();
 
             if (state != null) {
                 if (!state.isTerminated()) {
@@ -434,19 +473,35 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
                 }
             }
 
+            removeHeapForSession(session, heapUri, true);
+        } finally {
+            if (heapUpdateLock != null) {
+                heapUpdateLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes one (or all) references to a heap from a session's multiset, dropping the session's entry once it's empty
+     */
+    private void removeHeapForSession(IoSession session, String heapUri, boolean allReferences) {
+        try {
+            clientHeapsLock.lock();
             Multiset<String> heapsForSession = heapsByClient.get(session);
             if (heapsForSession != null) {
-                nioLogger.log(NioLogger.LoggingLevel.TRANSPORT, session, "Terminating subscription on %s heaps", heapsForSession.keySet().size());
-                heapsForSession.removeAll(heapUri);
+                if (allReferences) {
+                    nioLogger.log(NioLogger.LoggingLevel.TRANSPORT, session, "Terminating subscription on %s heaps", heapsForSession.keySet().size());
+                    heapsForSession.removeAll(heapUri);
+                }
+                else {
+                    heapsForSession.remove(heapUri);
+                }
                 if (heapsForSession.isEmpty()) {
-                    terminateSubscriptions(session, reason);
+                    heapsByClient.remove(session, heapsForSession);
                 }
             }
         } finally {
-            subTermLock.unlock();
-            if (heapUpdateLock != null) {
-                heapUpdateLock.unlock();
-            }
+            clientHeapsLock.unlock();
         }
     }
 
@@ -454,16 +509,19 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
      * Terminates all subscriptions for a given client
      */
     private void terminateSubscriptions(IoSession session, Subscription.CloseReason reason) {
-        Multiset<String> heapsForThisClient;
+        List<String> heapsForThisClient = null;
         try {
-            subTermLock.lock();
-            heapsForThisClient = heapsByClient.remove(session);
+            clientHeapsLock.lock();
+            Multiset<String> heaps = heapsByClient.remove(session);
+            if (heaps != null) {
+                heapsForThisClient = new ArrayList<String>(heaps.keySet());
+            }
         } finally {
-            subTermLock.unlock();
+            clientHeapsLock.unlock();
         }
 
         if (heapsForThisClient != null) {
-            for (String s : heapsForThisClient.keySet()) {
+            for (String s : heapsForThisClient) {
                 terminateSubscriptions(session, s, reason);
             }
         }
@@ -477,10 +535,9 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
         if (state != null) {
             try {
                 state.getUpdateLock().lock();
-                subTermLock.lock();
                 // if someone got here first, don't bother doing the work
                 if (!state.isTerminated()) {
-                    heapStates.remove(heapUri);
+                    heapStates.remove(heapUri, state);
                     heapUris.remove(state.getHeapId());
                     List<IoSession> sessions = state.getSessions();
                     for (IoSession session : sessions) {
@@ -491,7 +548,6 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
                     state.removeListener();
                 }
             } finally {
-                subTermLock.unlock();
                 state.getUpdateLock().unlock();
             }
         }
@@ -499,19 +555,33 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
 
     private class ConnectedObjectPusher implements Runnable {
         private volatile boolean running = true;
+        // each heap appears here at most once at a time, courtesy of its dirty flag
+        private final BlockingQueue<HeapState> dirtyHeaps = new LinkedBlockingQueue<HeapState>();
+        // only ever touched by this pusher's thread
+        private final Set<HeapState> heapsWithHeldDeltas = new HashSet<HeapState>();
+
+        void heapDirty(HeapState heapState) {
+            dirtyHeaps.add(heapState);
+        }
+
+        int getNumDirtyHeaps() {
+            return dirtyHeaps.size();
+        }
 
         public void run() {
             try {
                 while (running) {
                     try {
-                        String uri = heapsWaitingForUpdate.pollFirst(1000, TimeUnit.MILLISECONDS);
-                        if (uri == null) {
-                            continue;
+                        HeapState heapState = dirtyHeaps.poll(heapsWithHeldDeltas.isEmpty() ? 1000 : conflationFlushInterval, TimeUnit.MILLISECONDS);
+                        if (!heapsWithHeldDeltas.isEmpty()) {
+                            flushAllHeldDeltas();
                         }
-                        HeapState heapState = heapStates.get(uri);
                         if (heapState == null) {
                             continue;
                         }
+                        // clear before we drain, so that any change queued after this point signals us again
+                        heapState.clearDirty();
+                        String uri = heapState.getHeap().getUri();
                         Lock lock = heapState.getUpdateLock();
                         // make sure noone else tries to send later updates while we're preparing this one..
                         lock.lock();
@@ -588,24 +658,10 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
                                             numActionsThisMessage += actionsThisUpdate;
                                         }
 
-                                        // we really only want to serialise this once per protocol version (given that serialisation can change by protocol version)
-                                        Set<Byte> protocolVersions = new HashSet<Byte>();
-                                        for (IoSession session : heapState.getSessions()) {
-                                            protocolVersions.add(CougarProtocol.getProtocolVersion(session));
-                                        }
-                                        Map<Byte, EventMessage> serialisedUpdatesByProtocolVersion = new HashMap<Byte, EventMessage>();
                                         long updateId = heapState.getNextUpdateId();
-                                        for (Byte version : protocolVersions) {
-                                            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                                            CougarObjectOutput out = objectIOFactory.newCougarObjectOutput(baos, version);
-                                            out.writeObject(new HeapDelta(heapState.getHeapId(), updateId, updatesThisBatch));
-                                            out.flush();
-                                            serialisedUpdatesByProtocolVersion.put(version, new EventMessage(baos.toByteArray()));
-                                        }
-                                        // now write these out for each session
-                                        for (IoSession session : heapState.getSessions()) {
-                                            nioLogger.log(NioLogger.LoggingLevel.TRANSPORT, session, "Sending heap delta of size %s and with updateId = %s for heapId = %s", updatesThisBatch.size(), updateId, heapState.getHeapId());
-                                            session.write(serialisedUpdatesByProtocolVersion.get(CougarProtocol.getProtocolVersion(session)));
+                                        boolean containsTermination = updatesThisBatch.get(updatesThisBatch.size() - 1).getActions().contains(TerminateHeap.INSTANCE);
+                                        if (pushBatch(heapState, updateId, updatesThisBatch, containsTermination)) {
+                                            heapsWithHeldDeltas.add(heapState);
                                         }
 
                                         numQueuedHeapChangesSent += updatesThisBatch.size();
@@ -637,11 +693,135 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
             }
         }
 
+        private void flushAllHeldDeltas() {
+            Iterator<HeapState> it = heapsWithHeldDeltas.iterator();
+            while (it.hasNext()) {
+                HeapState heapState = it.next();
+                Lock lock = heapState.getUpdateLock();
+                lock.lock();
+                try {
+                    if (heapState.isTerminated() || !flushHeldDeltas(heapState)) {
+                        it.remove();
+                    }
+                } catch (Exception e) {
+                    LOGGER.error("error sending held updates", e);
+                    it.remove();
+                    terminateSubscriptions(heapState.getHeap().getUri(), INTERNAL_ERROR);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
         public void stop() {
             running = false;
         }
     }
 
+    /**
+     * Writes a batch of updates to every session on a heap, holding it back for sessions which are conflating and
+     * currently slow. Must be called with the heap's update lock held.
+     *
+     * @return true if any session now has deltas held back
+     */
+    private boolean pushBatch(HeapState heapState, long updateId, List<Update> updates, boolean forceFlush) throws IOException {
+        // we really only want to serialise this once per protocol version (given that serialisation can change by protocol version),
+        // and per update id offset, which is always zero for sessions which have never been conflated
+        Map<Long, EventMessage> serialisedUpdates = new HashMap<Long, EventMessage>();
+        long bytesSerialised = 0;
+        long bytesWritten = 0;
+        boolean anyHeld = false;
+        boolean conflating = heapState.getConflationMode() != ConflationMode.NONE;
+        for (IoSession session : heapState.getSessions()) {
+            byte version = CougarProtocol.getProtocolVersion(session);
+            long idOffset = 0;
+            if (conflating) {
+                ConflatedHeapUpdates held = heapState.getConflatedUpdates(session);
+                if (!forceFlush && isSlow(session)) {
+                    held.hold(updateId, updates);
+                    deltasConflated.incrementAndGet();
+                    nioLogger.log(NioLogger.LoggingLevel.TRANSPORT, session, "Holding back heap delta with updateId = %s for heapId = %s, %s actions now held", updateId, heapState.getHeapId(), held.getPendingActionCount());
+                    if (held.getPendingActionCount() > maxConflatedActions) {
+                        conflationOverflows.incrementAndGet();
+                        nioLogger.log(NioLogger.LoggingLevel.SESSION, session, "Session exceeded max conflated actions of %s for heapId = %s, closing session", maxConflatedActions, heapState.getHeapId());
+                        session.close();
+                    }
+                    anyHeld = true;
+                    continue;
+                }
+                writeHeldDeltas(heapState, session, held);
+                idOffset = held.getIdOffset();
+            }
+            Long key = (idOffset << 8) | (version & 0xff);
+            EventMessage message = serialisedUpdates.get(key);
+            if (message == null) {
+                // serialised straight into a framed buffer which is then shared by every session on this version
+                message = EventMessage.serialise(new HeapDelta(heapState.getHeapId(), updateId - idOffset, updates), objectIOFactory, version);
+                serialisedUpdates.put(key, message);
+                bytesSerialised += message.getFramedLength();
+            }
+            nioLogger.log(NioLogger.LoggingLevel.TRANSPORT, session, "Sending heap delta of size %s and with updateId = %s for heapId = %s", updates.size(), updateId - idOffset, heapState.getHeapId());
+            session.write(message);
+            bytesWritten += message.getFramedLength();
+        }
+        heapDeltaBytesSerialised.addAndGet(bytesSerialised);
+        heapDeltaBytesShared.addAndGet(Math.max(0, bytesWritten - bytesSerialised));
+        return anyHeld;
+    }
+
+    /**
+     * Writes held back deltas to any sessions which have caught up. Must be called with the heap's update lock held.
+     *
+     * @return true if any session still has deltas held back
+     */
+    private boolean flushHeldDeltas(HeapState heapState) throws IOException {
+        boolean anyHeld = false;
+        for (IoSession session : heapState.getSessions()) {
+            ConflatedHeapUpdates held = heapState.getConflatedUpdatesIfPresent(session);
+            if (held != null && held.hasPending()) {
+                if (!isSlow(session)) {
+                    writeHeldDeltas(heapState, session, held);
+                } else {
+                    anyHeld = true;
+                }
+            }
+        }
+        return anyHeld;
+    }
+
+    private void writeHeldDeltas(HeapState heapState, IoSession session, ConflatedHeapUpdates held) throws IOException {
+        if (!held.hasPending()) {
+            return;
+        }
+        long updateId = held.getPendingUpdateId();
+        long actionsConflatedBefore = held.getActionsConflated();
+        Update merged = held.drain();
+        nioLogger.log(NioLogger.LoggingLevel.TRANSPORT, session, "Sending conflated heap delta of %s actions with updateId = %s for heapId = %s", merged.getActions().size(), updateId, heapState.getHeapId());
+        EventMessage message = EventMessage.serialise(new HeapDelta(heapState.getHeapId(), updateId, Collections.singletonList(merged)), objectIOFactory, CougarProtocol.getProtocolVersion(session));
+        session.write(message);
+        conflatedDeltasSent.incrementAndGet();
+        conflatedActionsDropped.addAndGet(held.getActionsConflated() - actionsConflatedBefore);
+        heapDeltaBytesSerialised.addAndGet(message.getFramedLength());
+    }
+
+    private boolean isSlow(IoSession session) {
+        return getWriteQueueDepth(session) > conflationWriteQueueThreshold;
+    }
+
+    // package private so tests can simulate slow sessions
+    long getWriteQueueDepth(IoSession session) {
+        SessionWriteQueueMonitor monitor = SessionWriteQueueMonitoring.getSessionMonitor(NioUtils.getSessionId(session));
+        return monitor != null ? monitor.getQueueDepth() : 0;
+    }
+
+    private ConflationMode conflationModeFor(String heapUri, OperationDefinition operationDefinition) {
+        ConflationMode mode = conflationOverrides.get(heapUri);
+        if (mode == null && operationDefinition != null && operationDefinition.getOperationKey() != null) {
+            mode = conflationOverrides.get(operationDefinition.getOperationKey().getLocalKey().toString(false));
+        }
+        return mode != null ? mode : defaultConflationMode;
+    }
+
     @Override
     public void sessionOpened(IoSession session) {
     }
@@ -736,26 +916,24 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
         private final Map<String, SubscriptionDetails> subscriptions = new HashMap<String, SubscriptionDetails>();
         private final Map<IoSession, List<String>> sessionSubscriptions = new HashMap<IoSession, List<String>>();
         private final long instanceId = heapStateInstanceIdSource.incrementAndGet();
+        private final AtomicBoolean dirty = new AtomicBoolean();
+        private final ConnectedObjectPusher pusher;
+        private final ConflationMode conflationMode;
+        // only populated for conflating heaps, guarded by the update lock
+        private final Map<IoSession, ConflatedHeapUpdates> conflatedUpdates = new HashMap<IoSession, ConflatedHeapUpdates>();
 
         @Override
         public SortedMap<String, List<String>> getSubscriptionIdsBySessionId() {
             SortedMap<String, List<String>> ret = new TreeMap<String, List<String>>();
             try {
                 updateLock.lock();
-                subTermLock.lock();
 
                 for (IoSession key : sessionSubscriptions.keySet()) {
                     String sessionId = NioUtils.getSessionId(key);
-                    ret.put(sessionId, sessionSubscriptions.get(key));
+                    ret.put(sessionId, new ArrayList<String>(sessionSubscriptions.get(key)));
                 }
             } finally {
-                // make damn certain both locks are unlocked
-                try {
-                    updateLock.unlock();
-                }
-                finally {
-                    subTermLock.unlock();
-                }
+                updateLock.unlock();
             }
 
             return ret;
@@ -776,9 +954,43 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
             return sessions.size();
         }
 
-        public HeapState(Heap heap) {
+        public HeapState(Heap heap, ConflationMode conflationMode) {
             this.heap = heap;
+            this.conflationMode = conflationMode;
             heapId = heapIdGenerator.incrementAndGet();
+            pusher = pusherFor(heapId);
+        }
+
+        public ConflationMode getConflationMode() {
+            return conflationMode;
+        }
+
+        public ConflatedHeapUpdates getConflatedUpdates(IoSession session) {
+            ConflatedHeapUpdates ret = conflatedUpdates.get(session);
+            if (ret == null) {
+                ret = new ConflatedHeapUpdates();
+                conflatedUpdates.put(session, ret);
+            }
+            return ret;
+        }
+
+        public ConflatedHeapUpdates getConflatedUpdatesIfPresent(IoSession session) {
+            return conflatedUpdates.get(session);
+        }
+
+        public ConnectedObjectPusher getPusher() {
+            return pusher;
+        }
+
+        /**
+         * @return true if the heap wasn't already marked dirty, in which case the caller must signal the pusher
+         */
+        public boolean markDirty() {
+            return dirty.compareAndSet(false, true);
+        }
+
+        public void clearDirty() {
+            dirty.set(false);
         }
 
         public Queue<QueuedHeapChange> getQueuedChanges() {
@@ -809,6 +1021,7 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
 
         public void removeSession(IoSession session) {
             sessions.remove(session);
+            conflatedUpdates.remove(session);
         }
 
         public void setHeapListener(UpdateProducingHeapListener listener) {
@@ -873,6 +1086,7 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
 
         public void terminateSubscriptions(IoSession session, Subscription.CloseReason reason) {
             sessions.remove(session);
+            conflatedUpdates.remove(session);
             // find each Subscription object for this session and delete all the subs
             List<String> ids = sessionSubscriptions.remove(session);
             if (ids != null) {
@@ -990,6 +1204,50 @@ public class PooledServerConnectedObjectManager implements ServerConnectedObject
         return -1;
     }
 
+    @ManagedAttribute(description = "Bytes of heap deltas serialised, each batch is serialised once per protocol version")
+    public long getHeapDeltaBytesSerialised() {
+        return heapDeltaBytesSerialised.get();
+    }
+
+    @ManagedAttribute(description = "Bytes of heap deltas written to sessions by sharing an already serialised buffer rather than copying")
+    public long getHeapDeltaBytesShared() {
+        return heapDeltaBytesShared.get();
+    }
+
+    @ManagedAttribute(description = "Number of heap deltas held back from slow sessions for conflation")
+    public long getDeltasConflated() {
+        return deltasConflated.get();
+    }
+
+    @ManagedAttribute(description = "Number of merged heap deltas sent to sessions once they caught up")
+    public long getConflatedDeltasSent() {
+        return conflatedDeltasSent.get();
+    }
+
+    @ManagedAttribute(description = "Number of update actions not sent because a later update to the same node superseded them")
+    public long getConflatedActionsDropped() {
+        return conflatedActionsDropped.get();
+    }
+
+    @ManagedAttribute(description = "Number of sessions closed because they fell too far behind even with conflation")
+    public long getConflationOverflows() {
+        return conflationOverflows.get();
+    }
+
+    @ManagedAttribute(description = "Default conflation mode for heaps with no override")
+    public String getDefaultConflationMode() {
+        return defaultConflationMode.name();
+    }
+
+    @ManagedAttribute(description = "Number of heaps with changes waiting to be pushed, across all pusher threads")
+    public int getNumHeapsWaitingForUpdate() {
+        int ret = 0;
+        for (ConnectedObjectPusher pusher : pushers) {
+            ret += pusher.getNumDirtyHeaps();
+        }
+        return ret;
+    }
+
     @ManagedAttribute(description = "Number of pusher threads")
     public int getNumProcessingThreads() {
         return numProcessingThreads;
@@ -17,6 +17,7 @@
 package com.betfair.cougar.transport.socket;
 
 import com.betfair.cougar.api.DehydratedExecutionContext;
+import com.betfair.cougar.api.ResponseCode;
 import com.betfair.cougar.core.api.*;
 import com.betfair.cougar.core.api.ev.ConnectedResponse;
 import com.betfair.cougar.core.api.ev.ExecutionResult;
@@ -265,6 +266,7 @@ public class SocketTransportCommandProcessor extends AbstractCommandProcessor<So
 
     protected boolean writeSuccessResponse(SocketTransportRPCCommand command, ExecutionResult result, DehydratedExecutionContext context) {
         CougarObjectOutput out = command.getOutput();
+        ResponseCode responseCode = ResponseCode.Ok;
         try {
             synchronized (out) {
                 marshaller.writeInvocationResponse(new InvocationResponseImpl(result.getResult(), null), out, CougarProtocol.getProtocolVersion(command.getSession()));
@@ -273,10 +275,11 @@ public class SocketTransportCommandProcessor extends AbstractCommandProcessor<So
             return true;
         } catch (Exception e) {
             LOGGER.error("Unable to stream response to client", e);
+            responseCode = ResponseCode.CantWriteToSocket;
             return false;
         } finally {
             decrementOutstandingRequests();
-            tracer.end(context.getRequestUUID());
+            tracer.end(context.getRequestUUID(), responseCode);
         }
 
     }
@@ -298,7 +301,7 @@ public class SocketTransportCommandProcessor extends AbstractCommandProcessor<So
             } finally {
                 decrementOutstandingRequests();
                 if (traceStarted && context != null) {
-                    tracer.end(context.getRequestUUID());
+                    tracer.end(context.getRequestUUID(), e.getResponseCode());
                 }
             }
         } else {
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015, Simon Matić Langford
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.betfair.cougar.transport.socket;
+
+import com.betfair.cougar.netutil.nio.connected.InstallField;
+import com.betfair.cougar.netutil.nio.connected.InstallRoot;
+import com.betfair.cougar.netutil.nio.connected.SetScalar;
+import com.betfair.cougar.netutil.nio.connected.Update;
+import com.betfair.cougar.netutil.nio.connected.UpdateAction;
+import com.betfair.platform.virtualheap.NodeType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConflatedHeapUpdatesTest {
+
+    @Test
+    public void nothingPendingInitially() {
+        ConflatedHeapUpdates subject = new ConflatedHeapUpdates();
+        assertFalse(subject.hasPending());
+        assertEquals(0, subject.getIdOffset());
+        assertEquals(0, subject.getPendingActionCount());
+    }
+
+    @Test
+    public void repeatedScalarSetsCollapse() {
+        ConflatedHeapUpdates subject = new ConflatedHeapUpdates();
+        subject.hold(5, updates(new SetScalar(1, 1), new SetScalar(2, "a")));
+        subject.hold(6, updates(new SetScalar(1, 2)));
+        subject.hold(7, updates(new SetScalar(1, 3), new SetScalar(2, "b")));
+
+        assertEquals(2, subject.getPendingActionCount());
+        assertEquals(3, subject.getActionsConflated());
+        Update merged = subject.drain();
+        assertEquals(Arrays.<UpdateAction>asList(new SetScalar(1, 3), new SetScalar(2, "b")), merged.getActions());
+    }
+
+    @Test
+    public void structuralChangesAreBarriers() {
+        ConflatedHeapUpdates subject = new ConflatedHeapUpdates();
+        subject.hold(1, updates(new InstallRoot(0, NodeType.OBJECT), new InstallField(0, 1, "value", NodeType.SCALAR), new SetScalar(1, 1)));
+        subject.hold(2, updates(new InstallField(0, 2, "other", NodeType.SCALAR), new SetScalar(1, 2), new SetScalar(1, 3)));
+
+        Update merged = subject.drain();
+        assertEquals(Arrays.<UpdateAction>asList(
+                new InstallRoot(0, NodeType.OBJECT),
+                new InstallField(0, 1, "value", NodeType.SCALAR),
+                new SetScalar(1, 1),
+                new InstallField(0, 2, "other", NodeType.SCALAR),
+                new SetScalar(1, 3)), merged.getActions());
+    }
+
+    @Test
+    public void updateIdsStayContiguousForTheSession() {
+        ConflatedHeapUpdates subject = new ConflatedHeapUpdates();
+        // heap sends 10, 11 and 12 whilst the session is slow, which go out as one delta with id 10
+        subject.hold(10, updates(new SetScalar(1, 1)));
+        subject.hold(11, updates(new SetScalar(1, 2)));
+        subject.hold(12, updates(new SetScalar(1, 3)));
+        assertEquals(10, subject.getPendingUpdateId());
+        subject.drain();
+        assertFalse(subject.hasPending());
+        // so heap update 13 is the session's 11th
+        assertEquals(2, subject.getIdOffset());
+        assertEquals(11, 13 - subject.getIdOffset());
+
+        // and it happens again, heap sends 14 and 15, session should see a single delta with id 12
+        subject.hold(14, updates(new SetScalar(1, 4)));
+        subject.hold(15, updates(new SetScalar(1, 5)));
+        assertEquals(12, subject.getPendingUpdateId());
+        subject.drain();
+        assertEquals(13, 16 - subject.getIdOffset());
+    }
+
+    @Test
+    public void modeParsing() {
+        assertEquals(ConflationMode.MERGE, ConflationMode.fromString(" merge"));
+        assertEquals(ConflationMode.NONE, ConflationMode.fromString("NONE"));
+        try {
+            ConflationMode.fromString("smart");
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException iae) {
+            // expected
+        }
+    }
+
+    private List<Update> updates(UpdateAction... actions) {
+        Update u = new Update();
+        u.setActions(new ArrayList<UpdateAction>(Arrays.asList(actions)));
+        return Collections.singletonList(u);
+    }
+}
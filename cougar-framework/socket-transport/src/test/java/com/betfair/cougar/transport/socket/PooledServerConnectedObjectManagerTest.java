@@ -50,11 +50,12 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.util.*;
-import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static com.betfair.platform.virtualheap.projection.ProjectorFactory.objectProjector;
 import static junit.framework.Assert.*;
@@ -103,7 +104,7 @@ public class PooledServerConnectedObjectManagerTest {
             }
         });
         cougarOutput = new ExpectingOutput(1000L);
-        doReturn(cougarOutput).when(ioFactory).newCougarObjectOutput(any(ByteArrayOutputStream.class),anyByte());
+        doReturn(cougarOutput).when(ioFactory).newCougarObjectOutput(any(OutputStream.class),anyByte());
         subject.start();
     }
 
@@ -221,6 +222,59 @@ public class PooledServerConnectedObjectManagerTest {
         assertEquals("secondHeap", response1.getUri());
     }
 
+    @Test
+    public void heapSignalledOnceWhilstUpdatesQueued() throws Exception {
+        SocketTransportCommandProcessor commandProcessor = mock(SocketTransportCommandProcessor.class);
+        when(commandProcessor.writeSuccessResponse(any(SocketTransportRPCCommand.class), any(ExecutionResult.class), any(DehydratedExecutionContext.class))).thenReturn(true);
+
+        SocketTransportRPCCommand command = mock(SocketTransportRPCCommand.class);
+        MyIoSession session = new MyIoSession(String.valueOf(ioSessionId++));
+        session.setAttribute(CougarProtocol.PROTOCOL_VERSION_ATTR_NAME, CougarProtocol.TRANSPORT_PROTOCOL_VERSION_MAX_SUPPORTED);
+        when(command.getSession()).thenReturn(session);
+
+        DehydratedExecutionContext requestContext = mock(DehydratedExecutionContext.class);
+
+        MutableHeap heap = new MutableHeap("heapSignalledOnceWhilstUpdatesQueued");
+        Subscription sub = mock(Subscription.class);
+        OperationDefinition operationDefinition = mock(OperationDefinition.class);
+
+        subject.addSubscription(commandProcessor, command, new ConnectedResponseImpl(heap, sub), operationDefinition, requestContext, null);
+
+        // stop the pusher from draining this heap whilst we generate a load of updates
+        ReentrantLock heapStateLock = (ReentrantLock) subject.getHeapStates().get("heapSignalledOnceWhilstUpdatesQueued").getUpdateLock();
+        heapStateLock.lock();
+        try {
+            setHeapValue(heap, 0);
+            // once the pusher is parked on the lock it has already taken this heap off its queue and cleared the
+            // dirty flag, so from here on only our own updates can put it back, and it can't be drained
+            long timeout = System.currentTimeMillis() + 2000L;
+            while (!heapStateLock.hasQueuedThreads() && System.currentTimeMillis() < timeout) {
+                Thread.sleep(10);
+            }
+            assertTrue(heapStateLock.hasQueuedThreads());
+
+            for (int i = 1; i < 10; i++) {
+                setHeapValue(heap, i);
+            }
+            assertEquals(1, subject.getNumHeapsWaitingForUpdate());
+        } finally {
+            heapStateLock.unlock();
+        }
+
+        long timeout = System.currentTimeMillis() + 2000L;
+        while (subject.getNumHeapsWaitingForUpdate() > 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, subject.getNumHeapsWaitingForUpdate());
+    }
+
+    private void setHeapValue(MutableHeap heap, int value) {
+        heap.beginUpdate();
+        SimpleConnectedObject object = objectProjector(SimpleConnectedObject.class).project(heap.ensureRoot(NodeType.OBJECT));
+        object.value().set(value);
+        heap.endUpdate();
+    }
+
     @Test
     public void subscribeToTerminatedHeap() throws Exception {
         SocketTransportCommandProcessor commandProcessor = mock(SocketTransportCommandProcessor.class);
@@ -1098,6 +1152,41 @@ public class PooledServerConnectedObjectManagerTest {
         assertEquals(0, getHeapListeners(heap).size());
     }
 
+    @Test
+    public void unknownHeapClosedBySubscriber() throws Exception {
+        SocketTransportCommandProcessor commandProcessor = mock(SocketTransportCommandProcessor.class);
+        when(commandProcessor.writeSuccessResponse(any(SocketTransportRPCCommand.class), any(ExecutionResult.class), any(DehydratedExecutionContext.class))).thenReturn(true);
+
+        SocketTransportRPCCommand command = mock(SocketTransportRPCCommand.class);
+        MyIoSession session = new MyIoSession(String.valueOf(ioSessionId++));
+        session.setAttribute(CougarProtocol.PROTOCOL_VERSION_ATTR_NAME, CougarProtocol.TRANSPORT_PROTOCOL_VERSION_MAX_SUPPORTED);
+        when(command.getSession()).thenReturn(session);
+
+        DehydratedExecutionContext requestContext = mock(DehydratedExecutionContext.class);
+
+        MutableHeap heap = new MutableHeap("unknownHeapClosedBySubscriber");
+        Subscription sub = mock(Subscription.class);
+        OperationDefinition operationDefinition = mock(OperationDefinition.class);
+
+        subject.addSubscription(commandProcessor, command, new ConnectedResponseImpl(heap, sub), operationDefinition, requestContext, null);
+
+        String subscriptionId = getSubscriptionId(subject.getHeapStates().get("unknownHeapClosedBySubscriber"), sub);
+
+        // never existed, so should be ignored and leave the real subscription alone
+        subject.terminateSubscription(session, new TerminateSubscription(99, subscriptionId, Subscription.CloseReason.REQUESTED_BY_SUBSCRIBER.name()));
+        verify(sub, never()).close(any(Subscription.CloseReason.class));
+        assertNotNull(subject.getHeapStates().get("unknownHeapClosedBySubscriber"));
+
+        subject.terminateSubscription(session, new TerminateSubscription(1, subscriptionId, Subscription.CloseReason.REQUESTED_BY_SUBSCRIBER.name()));
+        verify(sub).close(Subscription.CloseReason.REQUESTED_BY_SUBSCRIBER);
+        assertNull(subject.getHeapStates().get("unknownHeapClosedBySubscriber"));
+
+        // heap's already been torn down, so a late terminate from the client should also be ignored
+        subject.terminateSubscription(session, new TerminateSubscription(1, subscriptionId, Subscription.CloseReason.REQUESTED_BY_SUBSCRIBER.name()));
+        verify(sub, times(1)).close(any(Subscription.CloseReason.class));
+        assertNull(subject.getHeapsByClient().get(session));
+    }
+
     private String getSubscriptionId(PooledServerConnectedObjectManager.HeapState heapState, Subscription sub) {
         Map<String, PooledServerConnectedObjectManager.HeapState.SubscriptionDetails> subs = heapState.getSubscriptions();
         String subscriptionId = null;
@@ -1129,8 +1218,7 @@ public class PooledServerConnectedObjectManagerTest {
 
         cougarOutput.start();
 
-        BlockingDeque queue = subject.getHeapsWaitingForUpdate();
-        while (!queue.isEmpty()) {
+        while (subject.getNumHeapsWaitingForUpdate() > 0) {
             Thread.sleep(10);
         }
         // queue empty, now check the heap stats